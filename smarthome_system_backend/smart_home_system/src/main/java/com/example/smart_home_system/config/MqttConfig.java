@@ -3,6 +3,7 @@ package com.example.smart_home_system.config;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.annotation.ServiceActivator;
@@ -17,6 +18,8 @@ import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
 
+import java.util.UUID;
+
 /**
  * MQTT Configuration for Smart Home System.
  * 
@@ -51,6 +54,12 @@ public class MqttConfig {
     @Value("${mqtt.default-qos:1}")
     private int defaultQos;
 
+    @Value("${realtime.bus.topic:smarthome-cluster/realtime}")
+    private String realtimeBusTopic;
+
+    // Hậu tố client id của node: broker ngắt client cũ khi một client khác kết nối cùng id
+    private final String nodeSuffix = UUID.randomUUID().toString().substring(0, 8);
+
     /**
      * MQTT Client Factory with connection options
      */
@@ -84,7 +93,9 @@ public class MqttConfig {
     // ============ INBOUND (Receive from ESP32) ============
 
     /**
-     * Channel for receiving messages from ESP32
+     * Channel for receiving messages from ESP32.
+     * Subscribed by MqttIngestDispatcher, which shards messages by homeId onto
+     * worker lanes so the Paho callback thread never runs JPA/WebSocket work.
      */
     @Bean
     public MessageChannel mqttInputChannel() {
@@ -92,7 +103,9 @@ public class MqttConfig {
     }
 
     /**
-     * Inbound adapter subscribing to all ESP32 topics
+     * Inbound adapter subscribing to all ESP32 topics.
+     * Chỉ một node được ingest ({@code mqtt.ingest.enabled}): mọi client cùng subscribe đều
+     * nhận mọi frame, và trạng thái emergency / heartbeat / snapshot nằm trong bộ nhớ node.
      * Topics:
      * - smarthome/+/sensors - Sensor data updates
      * - smarthome/+/rfid/# - RFID access and learning
@@ -102,9 +115,10 @@ public class MqttConfig {
      * - smarthome/+/commands/ack - Command acknowledgments
      */
     @Bean
+    @ConditionalOnProperty(name = "mqtt.ingest.enabled", havingValue = "true", matchIfMissing = true)
     public MessageProducer inboundAdapter() {
         MqttPahoMessageDrivenChannelAdapter         adapter = new MqttPahoMessageDrivenChannelAdapter(
-                clientId + "-inbound",
+                clientId + "-inbound-" + nodeSuffix,
                 mqttClientFactory(),
                 "smarthome/+/sensors",
                 "smarthome/+/rfid/#",
@@ -133,6 +147,36 @@ public class MqttConfig {
         return adapter;
     }
 
+    // ============ REALTIME BUS (giữa các instance backend) ============
+
+    /**
+     * Channel nhận sự kiện real-time do các node khác phát (realtime.bus.mode=MQTT).
+     * Không đi qua MqttIngestDispatcher.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "realtime.bus.mode", havingValue = "MQTT")
+    public MessageChannel realtimeBusInputChannel() {
+        return new DirectChannel();
+    }
+
+    /**
+     * Mỗi node cần một client id riêng để cùng nhận mọi sự kiện trên topic của bus
+     */
+    @Bean
+    @ConditionalOnProperty(name = "realtime.bus.mode", havingValue = "MQTT")
+    public MessageProducer realtimeBusInboundAdapter() {
+        MqttPahoMessageDrivenChannelAdapter adapter = new MqttPahoMessageDrivenChannelAdapter(
+                clientId + "-bus-" + nodeSuffix,
+                mqttClientFactory(),
+                realtimeBusTopic);
+        adapter.setCompletionTimeout(5000);
+        adapter.setConverter(new DefaultPahoMessageConverter());
+        adapter.setQos(defaultQos);
+        adapter.setOutputChannel(realtimeBusInputChannel());
+        log.info("[MQTT] Realtime bus adapter subscribed to {}", realtimeBusTopic);
+        return adapter;
+    }
+
     // ============ OUTBOUND (Send to ESP32) ============
 
     /**
@@ -150,7 +194,7 @@ public class MqttConfig {
     @ServiceActivator(inputChannel = "mqttOutboundChannel")
     public MessageHandler mqttOutbound() {
         MqttPahoMessageHandler messageHandler = new MqttPahoMessageHandler(
-                clientId + "-outbound",
+                clientId + "-outbound-" + nodeSuffix,
                 mqttClientFactory());
         messageHandler.setAsync(true);
         messageHandler.setDefaultTopic("smarthome/commands");
@@ -0,0 +1,41 @@
+package com.example.smart_home_system.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+
+/**
+ * TaskScheduler dùng chung cho job {@code @Scheduled} và các tác vụ hẹn giờ của service
+ * (flush định kỳ, timing wheel heartbeat, gửi sensor frame trễ), thay cho mỗi service
+ * một thread scheduler riêng.
+ *
+ * <p>
+ * WebSocket message broker khai báo sẵn {@code messageBrokerTaskScheduler}, nên Spring
+ * Boot không tạo {@code taskScheduler} mặc định và {@code @Scheduled} sẽ chạy trên
+ * scheduler của broker. Bean này dùng {@code spring.task.scheduling.*} như scheduler mặc
+ * định của Boot (pool mặc định 4 thay vì 1, chờ tác vụ đang chạy khi shutdown) và là
+ * {@code @Primary} cho cả {@code @Scheduled} lẫn service inject {@code TaskScheduler}.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    @Value("${spring.task.scheduling.pool.size:4}")
+    private int poolSize;
+
+    @Value("${spring.task.scheduling.shutdown.await-termination-period:5s}")
+    private Duration awaitTerminationPeriod;
+
+    @Bean
+    @Primary
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.poolSize(poolSize)
+                .awaitTermination(true)
+                .awaitTerminationPeriod(awaitTerminationPeriod)
+                .build();
+    }
+}
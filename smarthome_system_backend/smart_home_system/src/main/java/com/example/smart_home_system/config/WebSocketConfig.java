@@ -1,10 +1,18 @@
 package com.example.smart_home_system.config;
 
+import com.example.smart_home_system.service.WebSocketMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * WebSocket Configuration for Real-time Updates.
@@ -13,16 +21,113 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
  * Enables STOMP over WebSocket for real-time sensor data and status updates.
  * Frontend clients subscribe to topics to receive updates pushed from the
  * backend.
+ *
+ * <p>
+ * Mặc định dùng simple broker trong JVM. Khi chạy nhiều instance có thể bật
+ * {@code websocket.broker.relay.enabled} để chuyển sang STOMP broker relay (RabbitMQ,
+ * ActiveMQ, ...): broker ngoài fan-out cho client của mọi node. Relay cần
+ * reactor-netty trên classpath; sensor frame khi đó đi thẳng qua broker, không qua
+ * SensorPushConflator. Cách còn lại là giữ simple broker và dùng
+ * {@code realtime.bus.mode=MQTT} (xem RealtimeEventBus): mỗi node vẫn conflate sensor
+ * frame cho client của mình.
+ *
+ * <p>
+ * clientInboundChannel / clientOutboundChannel dùng thread pool cấu hình được
+ * ({@code websocket.channel.*}, giá trị 0 = mặc định của Spring) hoặc virtual thread.
+ * Giới hạn gửi ({@code websocket.transport.*}) bảo vệ server khỏi client chậm: session
+ * vượt send buffer / send time limit bị đóng thay vì giữ thread outbound. Số liệu xem
+ * WebSocketMetrics.
  */
+@Slf4j
 @Configuration
+@RequiredArgsConstructor
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${websocket.broker.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${realtime.bus.mode:LOCAL}")
+    private String realtimeBusMode;
+
+    @Value("${websocket.channel.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${websocket.channel.inbound.core-pool-size:0}")
+    private int inboundCorePoolSize;
+
+    @Value("${websocket.channel.inbound.max-pool-size:0}")
+    private int inboundMaxPoolSize;
+
+    @Value("${websocket.channel.inbound.queue-capacity:0}")
+    private int inboundQueueCapacity;
+
+    @Value("${websocket.channel.outbound.core-pool-size:0}")
+    private int outboundCorePoolSize;
+
+    @Value("${websocket.channel.outbound.max-pool-size:0}")
+    private int outboundMaxPoolSize;
+
+    @Value("${websocket.channel.outbound.queue-capacity:0}")
+    private int outboundQueueCapacity;
+
+    @Value("${websocket.channel.keep-alive-seconds:60}")
+    private int keepAliveSeconds;
+
+    @Value("${websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${websocket.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${websocket.transport.time-to-first-message-ms:60000}")
+    private int timeToFirstMessageMs;
+
+    private final WebSocketMetrics webSocketMetrics;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple memory-based message broker to carry the messages
-        // back to the client on destinations prefixed with "/topic"
-        config.enableSimpleBroker("/topic");
+        if (relayEnabled) {
+            // Broker ngoài giữ subscription và fan-out cho client của mọi node
+            var relay = config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode);
+            if (!relayVirtualHost.isEmpty()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            if (!"LOCAL".equalsIgnoreCase(realtimeBusMode)) {
+                log.warn("STOMP broker relay is enabled together with realtime.bus.mode={}: " +
+                        "events will be delivered twice, use realtime.bus.mode=LOCAL", realtimeBusMode);
+            }
+            log.info("WebSocket using STOMP broker relay at {}:{} (sensor frames are not conflated per subscriber)",
+                    relayHost, relayPort);
+        } else {
+            // Enable a simple memory-based message broker to carry the messages
+            // back to the client on destinations prefixed with "/topic"
+            config.enableSimpleBroker("/topic");
+        }
 
         // Designates the prefix for messages that are bound for methods annotated
         // with @MessageMapping
@@ -37,4 +142,53 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*") // Allow all origins for development
                 .withSockJS(); // Enable SockJS fallback for better compatibility
     }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        } else {
+            configurePool(registration.taskExecutor(), inboundCorePoolSize, inboundMaxPoolSize,
+                    inboundQueueCapacity);
+        }
+        registration.interceptors(webSocketMetrics.inboundInterceptor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+        } else {
+            configurePool(registration.taskExecutor(), outboundCorePoolSize, outboundMaxPoolSize,
+                    outboundQueueCapacity);
+        }
+        registration.interceptors(webSocketMetrics.outboundInterceptor());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs)
+                .setMessageSizeLimit(messageSizeLimit)
+                .setTimeToFirstMessage(timeToFirstMessageMs)
+                .addDecoratorFactory(webSocketMetrics.decoratorFactory());
+        webSocketMetrics.recordSettings(virtualThreads, sendBufferSizeLimit, sendTimeLimitMs, messageSizeLimit);
+        log.info("WebSocket transport: virtualThreads={}, sendBufferSizeLimit={}, sendTimeLimitMs={}, messageSizeLimit={}",
+                virtualThreads, sendBufferSizeLimit, sendTimeLimitMs, messageSizeLimit);
+    }
+
+    private void configurePool(TaskExecutorRegistration executor, int corePoolSize, int maxPoolSize,
+                               int queueCapacity) {
+        // 0 = giữ mặc định của Spring (core = số CPU * 2, max/queue không giới hạn)
+        if (corePoolSize > 0) {
+            executor.corePoolSize(corePoolSize);
+        }
+        if (maxPoolSize > 0) {
+            executor.maxPoolSize(maxPoolSize);
+        }
+        if (queueCapacity > 0) {
+            executor.queueCapacity(queueCapacity);
+        }
+        executor.keepAliveSeconds(keepAliveSeconds);
+    }
 }
@@ -193,8 +193,10 @@ public class RequestApi {
     public static final String NOTIFICATION_GET_BY_ID = "/{notificationId}";
     public static final String NOTIFICATION_MARK_READ = "/{notificationId}/read";
     public static final String NOTIFICATION_MARK_ALL_READ = "/read-all";
+    public static final String NOTIFICATION_MARK_READ_BATCH = "/read";
     public static final String NOTIFICATION_DELETE = "/{notificationId}";
     public static final String NOTIFICATION_DELETE_ALL = "/delete-all";
+    public static final String NOTIFICATION_DELETE_READ = "/delete-read";
     public static final String NOTIFICATION_UNREAD_COUNT = "/unread-count";
     public static final String NOTIFICATION_SETTINGS = "/settings";
     public static final String NOTIFICATION_UPDATE_SETTINGS = "/settings";
@@ -4,9 +4,25 @@ import com.example.smart_home_system.dto.response.ApiResponse;
 import com.example.smart_home_system.dto.response.DeviceListResponse;
 import com.example.smart_home_system.dto.response.UserResponse;
 import com.example.smart_home_system.dto.response.admin.AdminDashboardResponse;
+import com.example.smart_home_system.dto.response.admin.DeviceStateStats;
+import com.example.smart_home_system.dto.response.admin.MetricSamplingStats;
+import com.example.smart_home_system.dto.response.admin.MqttIngestStats;
+import com.example.smart_home_system.dto.response.admin.NotificationFanoutStats;
+import com.example.smart_home_system.dto.response.admin.SensorPushStats;
+import com.example.smart_home_system.dto.response.admin.SseBroadcastStats;
+import com.example.smart_home_system.dto.response.admin.UserDetailsCacheStats;
+import com.example.smart_home_system.dto.response.admin.WebSocketStats;
+import com.example.smart_home_system.security.service.UserDetailsCache;
 import com.example.smart_home_system.service.implement.AdminServiceImpl;
 import com.example.smart_home_system.service.ExcelExportService;
+import com.example.smart_home_system.service.DeviceStateStore;
+import com.example.smart_home_system.service.MetricSamplingPolicy;
+import com.example.smart_home_system.service.MqttIngestDispatcher;
+import com.example.smart_home_system.service.NotificationFanout;
+import com.example.smart_home_system.service.SensorDataSSEService;
+import com.example.smart_home_system.service.SensorPushConflator;
 import com.example.smart_home_system.service.UserService;
+import com.example.smart_home_system.service.WebSocketMetrics;
 import com.example.smart_home_system.service.implement.DeviceServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -34,6 +50,14 @@ public class AdminController {
     private final UserService userService;
     private final DeviceServiceImpl deviceService;
     private final ExcelExportService excelExportService;
+    private final MqttIngestDispatcher mqttIngestDispatcher;
+    private final DeviceStateStore deviceStateStore;
+    private final MetricSamplingPolicy metricSamplingPolicy;
+    private final NotificationFanout notificationFanout;
+    private final SensorPushConflator sensorPushConflator;
+    private final SensorDataSSEService sensorDataSSEService;
+    private final WebSocketMetrics webSocketMetrics;
+    private final UserDetailsCache userDetailsCache;
 
     @Operation(summary = "Get Detailed Dashboard", description = "Returns comprehensive stats for admin dashboard widgets and charts")
     @GetMapping("/dashboard/detail")
@@ -91,4 +115,60 @@ public class AdminController {
         
         excelExportService.exportUsersToExcel(users, response);
     }
-}
\ No newline at end of file
+
+    // 6. API Theo dõi MQTT ingest pipeline
+    @Operation(summary = "Get MQTT Ingest Metrics", description = "Queue depth and latency of each MQTT ingest lane")
+    @GetMapping("/metrics/mqtt-ingest")
+    public ResponseEntity<ApiResponse<MqttIngestStats>> getMqttIngestStats() {
+        return ResponseEntity.ok(ApiResponse.success("MQTT ingest metrics retrieved", mqttIngestDispatcher.getStats()));
+    }
+
+    // 7. API Theo dõi write-behind device state
+    @Operation(summary = "Get Device State Store Metrics", description = "Dirty entries, flushes and write amplification of the device state store")
+    @GetMapping("/metrics/device-state")
+    public ResponseEntity<ApiResponse<DeviceStateStats>> getDeviceStateStats() {
+        return ResponseEntity.ok(ApiResponse.success("Device state metrics retrieved", deviceStateStore.getStats()));
+    }
+
+    // 8. API Theo dõi sampling metric (deadband / max-silence)
+    @Operation(summary = "Get Metric Sampling Metrics", description = "Samples kept versus dropped by the per-sensor deadband policy")
+    @GetMapping("/metrics/metric-sampling")
+    public ResponseEntity<ApiResponse<MetricSamplingStats>> getMetricSamplingStats() {
+        return ResponseEntity.ok(ApiResponse.success("Metric sampling metrics retrieved", metricSamplingPolicy.getStats()));
+    }
+
+    // 9. API Theo dõi fan-out notification (số row, latency sự kiện -> commit)
+    @Operation(summary = "Get Notification Fan-out Metrics", description = "Bulk notification inserts and latency histogram from event to committed notification")
+    @GetMapping("/metrics/notification-fanout")
+    public ResponseEntity<ApiResponse<NotificationFanoutStats>> getNotificationFanoutStats() {
+        return ResponseEntity.ok(ApiResponse.success("Notification fan-out metrics retrieved", notificationFanout.getStats()));
+    }
+
+    // 10. API Theo dõi push sensor qua WebSocket (conflation theo subscriber)
+    @Operation(summary = "Get Sensor Push Metrics", description = "Sensor frames conflated versus delivered per WebSocket client class")
+    @GetMapping("/metrics/sensor-push")
+    public ResponseEntity<ApiResponse<SensorPushStats>> getSensorPushStats() {
+        return ResponseEntity.ok(ApiResponse.success("Sensor push metrics retrieved", sensorPushConflator.getStats()));
+    }
+
+    // 11. API Theo dõi SSE broadcaster (connection, hàng đợi, event bị bỏ / connection bị đóng)
+    @Operation(summary = "Get SSE Broadcast Metrics", description = "SSE connections, per-connection queue depth, dropped events and evicted slow consumers")
+    @GetMapping("/metrics/sse")
+    public ResponseEntity<ApiResponse<SseBroadcastStats>> getSseBroadcastStats() {
+        return ResponseEntity.ok(ApiResponse.success("SSE broadcast metrics retrieved", sensorDataSSEService.getStats()));
+    }
+
+    // 12. API Theo dõi WebSocket (session, subscription, channel executor, client chậm)
+    @Operation(summary = "Get WebSocket Metrics", description = "Active STOMP sessions, subscriptions per destination, inbound/outbound channel executors and sessions closed for being too slow")
+    @GetMapping("/metrics/websocket")
+    public ResponseEntity<ApiResponse<WebSocketStats>> getWebSocketStats() {
+        return ResponseEntity.ok(ApiResponse.success("WebSocket metrics retrieved", webSocketMetrics.getStats()));
+    }
+
+    // 13. API Theo dõi cache UserDetails dùng khi xác thực JWT
+    @Operation(summary = "Get User Details Cache Metrics", description = "Size, hit/miss counts, LRU evictions, TTL expirations and invalidations of the authentication user-details cache")
+    @GetMapping("/metrics/user-cache")
+    public ResponseEntity<ApiResponse<UserDetailsCacheStats>> getUserDetailsCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success("User details cache metrics retrieved", userDetailsCache.getStats()));
+    }
+}
@@ -17,11 +17,13 @@ import com.example.smart_home_system.dto.response.MCU.MCUPairingInitResponse;
 import com.example.smart_home_system.dto.response.MCU.MCUPairingResponse;
 import com.example.smart_home_system.dto.response.MCU.MCUSensorDataResponse;
 import com.example.smart_home_system.dto.response.MCU.MCUCommandsResponse;
+import com.example.smart_home_system.dto.response.MetricSeriesResponse;
 import com.example.smart_home_system.dto.response.RFID.RFIDAccessLogResponse;
 import com.example.smart_home_system.dto.response.RFID.RFIDAccessStatsResponse;
 import com.example.smart_home_system.dto.response.RFID.RFIDCardsListResponse;
 import com.example.smart_home_system.dto.response.RFID.RFIDLearnStatusResponse;
 import com.example.smart_home_system.entity.MCUGateway;
+import com.example.smart_home_system.service.DeviceMetricService;
 import com.example.smart_home_system.service.MCUGatewayService;
 import com.example.smart_home_system.service.HomeService;
 import com.example.smart_home_system.service.MqttResponseStore;
@@ -31,7 +33,10 @@ import com.example.smart_home_system.service.RFIDService;
 import com.example.smart_home_system.exception.AppException;
 import com.example.smart_home_system.exception.ErrorCode;
 import com.example.smart_home_system.enums.MCUStatus;
+import com.example.smart_home_system.enums.SensorKey;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.data.domain.Page;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -95,6 +100,10 @@ public class MCUGatewayController {
         private final MqttService mqttService;
         private final MqttResponseStore mqttResponseStore;
         private final NotificationService notificationService;
+        private final DeviceMetricService deviceMetricService;
+
+        @Value("${metrics.history.max-points:2000}")
+        private int maxHistoryPoints;
 
         /**
          * Init pairing - Tạo MCU Gateway với status PAIRING và trả về danh sách homes
@@ -304,6 +313,36 @@ public class MCUGatewayController {
                 return ResponseEntity.ok(ApiResponse.success("Sensor data retrieved", response));
         }
 
+        /**
+         * Lịch sử một sensor cho biểu đồ, đã downsample (LTTB) về tối đa {@code points} điểm
+         * Mặc định: 24 giờ gần nhất, 300 điểm
+         */
+        @Operation(summary = "Get Sensor History", description = "Get downsampled history of a numeric sensor (e.g. tempIn, gas) for charts. Peaks are preserved. Any home member can view.")
+        @GetMapping("/home/{homeId}/sensors/history")
+        @PreAuthorize("hasRole('ADMIN') or @homeService.isHomeMember(#homeId)")
+        public ResponseEntity<ApiResponse<MetricSeriesResponse>> getSensorHistory(
+                        @PathVariable("homeId") Long homeId,
+                        @RequestParam("key") String key,
+                        @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime from,
+                        @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime to,
+                        @RequestParam(value = "points", defaultValue = "300") int points) {
+                SensorKey sensorKey = SensorKey.fromJsonName(key);
+                if (sensorKey == null || !sensorKey.isNumeric()) {
+                        throw new AppException(ErrorCode.INVALID_INPUT, "Unknown or non-numeric sensor key: " + key);
+                }
+
+                java.time.LocalDateTime end = to != null ? to : java.time.LocalDateTime.now();
+                java.time.LocalDateTime start = from != null ? from : end.minusHours(24);
+                if (!start.isBefore(end)) {
+                        throw new AppException(ErrorCode.INVALID_INPUT, "'from' must be before 'to'");
+                }
+                int maxPoints = Math.min(Math.max(points, 3), maxHistoryPoints);
+
+                MetricSeriesResponse response = deviceMetricService.getHistory(homeId, sensorKey.getJsonName(),
+                                start, end, maxPoints);
+                return ResponseEntity.ok(ApiResponse.success("Sensor history retrieved", response));
+        }
+
         /**
          * Send API Key to ESP32 via MQTT (MQTT-only mode)
          * Backend publishes to smarthome/pairing/{serialNumber}, ESP32 subscribes when
@@ -1,6 +1,7 @@
 package com.example.smart_home_system.controller;
 
 import com.example.smart_home_system.constant.RequestApi;
+import com.example.smart_home_system.dto.request.NotificationBulkReadRequest;
 import com.example.smart_home_system.dto.request.NotificationCreateRequest;
 import com.example.smart_home_system.dto.response.ApiResponse;
 import com.example.smart_home_system.dto.response.NotificationResponse;
@@ -146,16 +147,29 @@ public class NotificationController {
         return ResponseEntity.ok(ApiResponse.success("Notification marked as read"));
     }
 
+    @Operation(
+            summary = "Mark notifications as read (batch)",
+            description = "Mark a list of notifications as read; returns how many changed from unread to read"
+    )
+    @PostMapping(RequestApi.NOTIFICATION_MARK_READ_BATCH)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<Integer>> markAsReadBatch(
+            @Valid @RequestBody NotificationBulkReadRequest request) {
+        String userId = SecurityUtils.getCurrentUserId();
+        int affected = notificationService.markAsRead(request.getIds(), userId);
+        return ResponseEntity.ok(ApiResponse.success("Notifications marked as read", affected));
+    }
+
     @Operation(
             summary = "Mark all notifications as read",
-            description = "Mark all notifications as read for the current user"
+            description = "Mark all notifications as read for the current user; returns how many changed"
     )
     @PutMapping(RequestApi.NOTIFICATION_MARK_ALL_READ)
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<ApiResponse<Void>> markAllAsRead() {
+    public ResponseEntity<ApiResponse<Integer>> markAllAsRead() {
         String userId = SecurityUtils.getCurrentUserId();
-        notificationService.markAllAsRead(userId);
-        return ResponseEntity.ok(ApiResponse.success("All notifications marked as read"));
+        int affected = notificationService.markAllAsRead(userId);
+        return ResponseEntity.ok(ApiResponse.success("All notifications marked as read", affected));
     }
 
     @Operation(
@@ -172,15 +186,27 @@ public class NotificationController {
         return ResponseEntity.ok(ApiResponse.success("Notification deleted successfully"));
     }
 
+    @Operation(
+            summary = "Delete read notifications",
+            description = "Delete all read notifications for the current user; returns how many were deleted"
+    )
+    @DeleteMapping(RequestApi.NOTIFICATION_DELETE_READ)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<Integer>> deleteReadNotifications() {
+        String userId = SecurityUtils.getCurrentUserId();
+        int affected = notificationService.deleteReadNotifications(userId);
+        return ResponseEntity.ok(ApiResponse.success("Read notifications deleted successfully", affected));
+    }
+
     @Operation(
             summary = "Delete all notifications",
-            description = "Delete all notifications for the current user"
+            description = "Delete all notifications for the current user; returns how many were deleted"
     )
     @DeleteMapping(RequestApi.NOTIFICATION_DELETE_ALL)
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<ApiResponse<Void>> deleteAllNotifications() {
+    public ResponseEntity<ApiResponse<Integer>> deleteAllNotifications() {
         String userId = SecurityUtils.getCurrentUserId();
-        notificationService.deleteAllNotifications(userId);
-        return ResponseEntity.ok(ApiResponse.success("All notifications deleted successfully"));
+        int affected = notificationService.deleteAllNotifications(userId);
+        return ResponseEntity.ok(ApiResponse.success("All notifications deleted successfully", affected));
     }
 }
@@ -20,6 +20,8 @@ public class CustomUserDetails implements UserDetails {
     private final String password;
     private final UserStatus status;
     private final List<SimpleGrantedAuthority> authorities;
+    @JsonIgnore
+    private final long tokenVersion;
 
     public CustomUserDetails(User user) {
         this.id = user.getId();
@@ -27,6 +29,7 @@ public class CustomUserDetails implements UserDetails {
         this.email = user.getEmail();
         this.password = user.getPassword();
         this.status = user.getStatus();
+        this.tokenVersion = user.getTokenVersion();
 
         List<SimpleGrantedAuthority> auths = user.getRoles().stream()
                 .flatMap(role -> role.getPermissions().stream())
@@ -40,6 +43,20 @@ public class CustomUserDetails implements UserDetails {
         this.authorities = auths;
     }
 
+    /**
+     * Principal dựng từ claims của JWT (xác thực stateless, không đọc DB). Không có email
+     * và mật khẩu; trạng thái luôn ACTIVE vì token của user bị khóa đã bị thu hồi.
+     */
+    public CustomUserDetails(String id, String username, List<SimpleGrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.email = null;
+        this.password = null;
+        this.status = UserStatus.ACTIVE;
+        this.authorities = authorities;
+        this.tokenVersion = 0L;
+    }
+
     @Override
     public boolean isAccountNonExpired() {
         return true;
@@ -0,0 +1,197 @@
+package com.example.smart_home_system.dto;
+
+import com.example.smart_home_system.enums.SensorKey;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Một sensor frame từ ESP32 ({@code smarthome/{homeId}/sensors} hoặc heartbeat HTTP),
+ * được decode đúng một lần bằng Jackson streaming parser và truyền nguyên vẹn qua
+ * toàn bộ pipeline: heartbeat, cập nhật device state, lấy mẫu metrics, phát hiện
+ * emergency và broadcast WebSocket.
+ *
+ * <p>
+ * Immutable. Giá trị được giữ ở dạng primitive; dùng {@link #has(SensorKey)} để biết
+ * key có xuất hiện trong payload hay không. {@link #getRawJson()} giữ payload gốc để
+ * lưu/broadcast mà không cần serialize lại.
+ *
+ * <pre>
+ * {
+ *   "tempIn": 25.5, "humIn": 60, "tempOut": 28.0, "humOut": 55,
+ *   "gas": 500, "light": 300, "rain": 4095,
+ *   "flame": false, "motion": true, "door": false,
+ *   "lightStatus": true, "fanStatus": false,
+ *   "gasAlert": false, "emergency": false
+ * }
+ * </pre>
+ */
+@Getter
+public final class SensorFrame {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int KEY_COUNT = SensorKey.values().length;
+
+    private final String rawJson;
+    private final long receivedAt;
+    private final String ipAddress;
+
+    // Bit i = SensorKey.values()[i] có trong payload
+    @Getter(AccessLevel.NONE)
+    private final long presentMask;
+
+    private final double tempIn;
+    private final double humIn;
+    private final double tempOut;
+    private final double humOut;
+    private final int gas;
+    private final int light;
+    private final int rain;
+    private final boolean flame;
+    private final boolean motion;
+    private final boolean door;
+    private final boolean lightStatus;
+    private final boolean fanStatus;
+
+    private final boolean gasAlert;
+    private final boolean emergency;
+    private final boolean emergencyFire;
+    private final boolean emergencyGas;
+
+    private final boolean autoLight;
+    private final boolean autoFan;
+    private final boolean autoCloseDoor;
+    private final int autoLightThreshold;
+    private final int autoFanThreshold;
+    private final int gasAlertThreshold;
+
+    private SensorFrame(Decoder d) {
+        this.rawJson = d.rawJson;
+        this.receivedAt = d.receivedAt;
+        this.ipAddress = d.ipAddress;
+        this.presentMask = d.presentMask;
+        this.tempIn = d.numbers[SensorKey.TEMP_IN.ordinal()];
+        this.humIn = d.numbers[SensorKey.HUM_IN.ordinal()];
+        this.tempOut = d.numbers[SensorKey.TEMP_OUT.ordinal()];
+        this.humOut = d.numbers[SensorKey.HUM_OUT.ordinal()];
+        this.gas = (int) d.numbers[SensorKey.GAS.ordinal()];
+        this.light = (int) d.numbers[SensorKey.LIGHT.ordinal()];
+        this.rain = (int) d.numbers[SensorKey.RAIN.ordinal()];
+        this.flame = d.flags[SensorKey.FLAME.ordinal()];
+        this.motion = d.flags[SensorKey.MOTION.ordinal()];
+        this.door = d.flags[SensorKey.DOOR.ordinal()];
+        this.lightStatus = d.flags[SensorKey.LIGHT_STATUS.ordinal()];
+        this.fanStatus = d.flags[SensorKey.FAN_STATUS.ordinal()];
+        this.gasAlert = d.flags[SensorKey.GAS_ALERT.ordinal()];
+        this.emergency = d.flags[SensorKey.EMERGENCY.ordinal()];
+        this.emergencyFire = d.flags[SensorKey.EMERGENCY_FIRE.ordinal()];
+        this.emergencyGas = d.flags[SensorKey.EMERGENCY_GAS.ordinal()];
+        this.autoLight = d.flags[SensorKey.AUTO_LIGHT.ordinal()];
+        this.autoFan = d.flags[SensorKey.AUTO_FAN.ordinal()];
+        this.autoCloseDoor = d.flags[SensorKey.AUTO_CLOSE_DOOR.ordinal()];
+        this.autoLightThreshold = (int) d.numbers[SensorKey.AUTO_LIGHT_THRESHOLD.ordinal()];
+        this.autoFanThreshold = (int) d.numbers[SensorKey.AUTO_FAN_THRESHOLD.ordinal()];
+        this.gasAlertThreshold = (int) d.numbers[SensorKey.GAS_ALERT_THRESHOLD.ordinal()];
+    }
+
+    /**
+     * Decode sensor frame từ JSON. Key không biết sẽ được bỏ qua.
+     *
+     * @throws IOException nếu payload không phải JSON object hợp lệ
+     */
+    public static SensorFrame parse(String json) throws IOException {
+        Decoder d = new Decoder(json);
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Sensor frame must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                SensorKey key = SensorKey.fromJsonName(name);
+
+                if (key != null && token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                    d.presentMask |= 1L << key.ordinal();
+                    if (key.isNumeric()) {
+                        d.numbers[key.ordinal()] = parser.getValueAsDouble();
+                    } else {
+                        d.flags[key.ordinal()] = parser.getValueAsBoolean();
+                    }
+                } else if ("ipAddress".equals(name) && token == JsonToken.VALUE_STRING) {
+                    d.ipAddress = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new SensorFrame(d);
+    }
+
+    public boolean has(SensorKey key) {
+        return (presentMask & (1L << key.ordinal())) != 0;
+    }
+
+    /**
+     * Giá trị số của key (boolean được quy đổi 1/0)
+     */
+    public double numericValue(SensorKey key) {
+        return switch (key) {
+            case TEMP_IN -> tempIn;
+            case HUM_IN -> humIn;
+            case TEMP_OUT -> tempOut;
+            case HUM_OUT -> humOut;
+            case GAS -> gas;
+            case LIGHT -> light;
+            case RAIN -> rain;
+            case AUTO_LIGHT_THRESHOLD -> autoLightThreshold;
+            case AUTO_FAN_THRESHOLD -> autoFanThreshold;
+            case GAS_ALERT_THRESHOLD -> gasAlertThreshold;
+            default -> booleanValue(key) ? 1 : 0;
+        };
+    }
+
+    public boolean booleanValue(SensorKey key) {
+        return switch (key) {
+            case FLAME -> flame;
+            case MOTION -> motion;
+            case DOOR -> door;
+            case LIGHT_STATUS -> lightStatus;
+            case FAN_STATUS -> fanStatus;
+            case GAS_ALERT -> gasAlert;
+            case EMERGENCY -> emergency;
+            case EMERGENCY_FIRE -> emergencyFire;
+            case EMERGENCY_GAS -> emergencyGas;
+            case AUTO_LIGHT -> autoLight;
+            case AUTO_FAN -> autoFan;
+            case AUTO_CLOSE_DOOR -> autoCloseDoor;
+            default -> numericValue(key) != 0;
+        };
+    }
+
+    /**
+     * Giá trị dạng boxed để lưu vào stateValue/metrics JSON: Double cho key số, Boolean cho cờ
+     */
+    public Object value(SensorKey key) {
+        return key.isNumeric() ? (Object) numericValue(key) : (Object) booleanValue(key);
+    }
+
+    /**
+     * Trạng thái mutable chỉ dùng trong lúc parse
+     */
+    private static final class Decoder {
+        final String rawJson;
+        final long receivedAt = System.currentTimeMillis();
+        final double[] numbers = new double[KEY_COUNT];
+        final boolean[] flags = new boolean[KEY_COUNT];
+        long presentMask;
+        String ipAddress;
+
+        Decoder(String rawJson) {
+            this.rawJson = rawJson;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.smart_home_system.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationBulkReadRequest {
+    @NotEmpty(message = "Notification IDs are required")
+    @Size(max = 500, message = "At most 500 notification IDs per request")
+    private List<@NotNull Long> ids;
+}
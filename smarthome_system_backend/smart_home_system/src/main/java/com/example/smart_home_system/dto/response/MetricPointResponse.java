@@ -0,0 +1,21 @@
+package com.example.smart_home_system.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricPointResponse {
+    // Thời điểm sample (RAW) hoặc bắt đầu bucket (rollup)
+    private LocalDateTime timestamp;
+    private Double avg;
+    private Double min;
+    private Double max;
+    private Long count;
+}
@@ -0,0 +1,26 @@
+package com.example.smart_home_system.dto.response;
+
+import com.example.smart_home_system.enums.MetricResolution;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricSeriesResponse {
+    private Long homeId;
+    private String sensorKey;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    // Mức dữ liệu đã dùng để trả lời (RAW hoặc rollup)
+    private MetricResolution resolution;
+    // Số điểm đã đọc từ DB trước khi downsample
+    private Long sourcePoints;
+    private List<MetricPointResponse> points;
+}
@@ -0,0 +1,29 @@
+package com.example.smart_home_system.dto.response.admin;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class DeviceStateStats {
+    private int trackedDevices;
+    private int dirtyDevices;
+    private long flushIntervalMs;
+    private int flushThreshold;
+
+    // Số sensor frame / status event đi vào
+    private long framesIn;
+    // Số lần giá trị thực sự thay đổi (entry bị đánh dấu dirty)
+    private long changesDetected;
+    // Số lần cập nhật bị bỏ qua vì giá trị không đổi
+    private long unchangedSkipped;
+    // Số row UPDATE thực sự ghi xuống DB
+    private long rowsWritten;
+    // rowsWritten / framesIn
+    private double writeAmplification;
+
+    private long flushCount;
+    private long flushFailures;
+    private int lastFlushRows;
+    private long lastFlushMs;
+}
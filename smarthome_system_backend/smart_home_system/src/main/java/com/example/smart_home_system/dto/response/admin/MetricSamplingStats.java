@@ -0,0 +1,33 @@
+package com.example.smart_home_system.dto.response.admin;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+public class MetricSamplingStats {
+    // Số (device, sensor) đang được theo dõi
+    private int trackedSeries;
+    private double defaultDeadband;
+    private long maxSilenceMs;
+
+    // Sample được ghi vào time-series / bị bỏ vì nằm trong deadband
+    private long kept;
+    private long dropped;
+    // kept / (kept + dropped)
+    private double keptRatio;
+
+    // Theo sensor key (tên JSON)
+    private Map<String, SensorStats> sensors;
+
+    @Data
+    @Builder
+    public static class SensorStats {
+        private double deadband;
+        private long maxSilenceMs;
+        private long kept;
+        private long dropped;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.smart_home_system.dto.response.admin;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class MqttIngestStats {
+    private int laneCount;
+    private int queueCapacity;
+    private String overflowPolicy;
+
+    private long totalEnqueued;
+    private long totalProcessed;
+    private long totalRejected;
+
+    // Load shedding: sensor frame bị bỏ khi lane đầy
+    private long totalShedOldest;
+    private long totalShedNewest;
+    // Số lần message quan trọng phải chờ vì lane đầy (dấu hiệu bão hòa)
+    private long totalCriticalBlocked;
+    // Message quan trọng bị từ chối sau khi chờ quá enqueue-timeout-ms
+    private long totalCriticalRejected;
+
+    private List<LaneStats> lanes;
+
+    private PriorityStats priority;
+
+    @Data
+    @Builder
+    public static class LaneStats {
+        private int lane;
+        private int queueDepth;
+        private long processed;
+        private long failed;
+        private long shed;
+
+        // Latency tính từ lúc enqueue đến khi handler xử lý xong (ms)
+        private double avgLatencyMs;
+        private long maxLatencyMs;
+        private long lastLatencyMs;
+    }
+
+    /**
+     * Priority lane (emergency frame, RFID access) và SLO latency MQTT receive -> publish realtime
+     * (không gồm phần ghi DB sau đó); {@code processed} chỉ đếm sự kiện đã được publish
+     */
+    @Data
+    @Builder
+    public static class PriorityStats {
+        private int laneCount;
+        private int queueCapacity;
+
+        private long sloMs;
+        private long sloBreaches;
+        private long processed;
+        private long p50Ms;
+        private long p95Ms;
+        private long p99Ms;
+        private long maxMs;
+        private Map<String, Long> latencyBuckets;
+
+        // Phần device state / metrics của priority frame (và frame cũ hơn nó) chạy trên lane thường
+        private long totalDeferred;
+        // Số DB connection tối đa các lane thường được dùng đồng thời
+        private int routineDbPermits;
+        private int routineDbPermitsAvailable;
+
+        private List<LaneStats> lanes;
+    }
+}
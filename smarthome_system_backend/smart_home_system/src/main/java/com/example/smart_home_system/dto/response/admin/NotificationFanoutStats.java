@@ -0,0 +1,28 @@
+package com.example.smart_home_system.dto.response.admin;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+public class NotificationFanoutStats {
+    // READ (một row dùng chung + receipt) hoặc WRITE (mỗi thành viên một row)
+    private String mode;
+    // Số lần fan-out (mỗi lần = một thông báo gửi tới mọi thành viên của home)
+    private long fanouts;
+    // Tổng số thành viên nhận thông báo / số row notification đã insert
+    private long recipients;
+    private long rowsInserted;
+    private int largestFanout;
+
+    // Latency từ lúc nhận sự kiện (sensor frame / request) đến khi notification được commit (ms)
+    private long latencySamples;
+    private double avgLatencyMs;
+    private long p50LatencyMs;
+    private long p95LatencyMs;
+    private long p99LatencyMs;
+    private long maxLatencyMs;
+    private Map<String, Long> latencyBuckets;
+}
@@ -0,0 +1,34 @@
+package com.example.smart_home_system.dto.response.admin;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+public class SensorPushStats {
+    // Subscription /topic/home/{homeId}/sensors đang được theo dõi
+    private int subscribers;
+
+    // Frame nhận từ MQTT (đã có ít nhất một subscriber)
+    private long published;
+    // Frame bị frame mới hơn thay thế trước khi kịp gửi cho subscriber
+    private long conflated;
+    // Frame thực sự được gửi tới subscriber
+    private long delivered;
+    // Frame khẩn cấp được gửi ngay, bỏ qua min interval
+    private long urgent;
+
+    // Theo client class (header "client-class" khi SUBSCRIBE)
+    private Map<String, ClientClassStats> clientClasses;
+
+    @Data
+    @Builder
+    public static class ClientClassStats {
+        private long minIntervalMs;
+        private int subscribers;
+        private long conflated;
+        private long delivered;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.smart_home_system.dto.response.admin;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SseBroadcastStats {
+    private int queueCapacity;
+    private String overflowPolicy;
+
+    // Gauges
+    private int homes;
+    private int connections;
+    private int totalQueued;
+    private int maxQueueDepth;
+
+    // Counters
+    private long broadcasts;
+    private long sent;
+    private long dropped;
+    // Connection bị đóng vì đầy hàng đợi (policy DISCONNECT)
+    private long evicted;
+    // Connection bị đóng vì lỗi khi gửi
+    private long failed;
+}
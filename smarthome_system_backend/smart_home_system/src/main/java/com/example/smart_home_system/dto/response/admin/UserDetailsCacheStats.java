@@ -0,0 +1,23 @@
+package com.example.smart_home_system.dto.response.admin;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class UserDetailsCacheStats {
+    private int size;
+    private int maximumSize;
+    private long ttlMs;
+
+    private long hits;
+    private long misses;
+    // hits / (hits + misses), 0 nếu chưa có request
+    private double hitRate;
+    // Entry bị bỏ vì cache đầy (LRU)
+    private long evictions;
+    // Entry bị bỏ vì quá TTL
+    private long expirations;
+    // Entry bị bỏ do user/role thay đổi
+    private long invalidations;
+}
@@ -0,0 +1,48 @@
+package com.example.smart_home_system.dto.response.admin;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+public class WebSocketStats {
+    // Session STOMP đang kết nối
+    private int activeSessions;
+    private int activeSubscriptions;
+    // Theo destination đã chuẩn hóa (id -> {id}), vd. /topic/home/{id}/sensors
+    private Map<String, Integer> subscriptionsByDestination;
+
+    // Session bị đóng vì vượt send buffer / send time limit (client chậm)
+    private long slowSessionsClosed;
+    // Số liệu của Spring (SubProtocolWebSocketHandler)
+    private int limitExceededSessions;
+    private int transportErrorSessions;
+    private int noMessagesReceivedSessions;
+
+    private ChannelStats inbound;
+    private ChannelStats outbound;
+
+    private int sendBufferSizeLimit;
+    private int sendTimeLimitMs;
+    private int messageSizeLimit;
+
+    @Data
+    @Builder
+    public static class ChannelStats {
+        // "pool" hoặc "virtual"
+        private String executor;
+        private long sent;
+        private long handled;
+        // Message đã gửi vào channel nhưng chưa bắt đầu xử lý (tính theo message, không theo handler)
+        private long pending;
+        // Message không gửi được (executor từ chối: hàng đợi đầy)
+        private long rejected;
+
+        // Chỉ có với thread pool
+        private Integer poolSize;
+        private Integer activeThreads;
+        private Integer queueSize;
+    }
+}
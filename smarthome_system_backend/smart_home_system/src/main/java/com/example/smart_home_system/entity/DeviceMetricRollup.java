@@ -0,0 +1,62 @@
+package com.example.smart_home_system.entity;
+
+import com.example.smart_home_system.enums.MetricResolution;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rollup min/max/sum/count của một sensor theo bucket 1 phút / 1 giờ / 1 ngày.
+ * Được cập nhật liên tục (upsert) mỗi lần flush sample.
+ */
+@Entity
+@Table(name = "device_metric_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_rollup_bucket", columnNames = { "device_id", "sensor_key", "resolution", "bucket_start" })
+}, indexes = {
+        @Index(name = "idx_rollup_home_key_time", columnList = "home_id, sensor_key, resolution, bucket_start")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DeviceMetricRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "home_id", nullable = false)
+    Long homeId;
+
+    @Column(name = "device_id", nullable = false)
+    Long deviceId;
+
+    @Column(name = "sensor_key", nullable = false, length = 32)
+    String sensorKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    MetricResolution resolution;
+
+    @Column(name = "bucket_start", nullable = false)
+    LocalDateTime bucketStart;
+
+    @Column(name = "min_value", nullable = false)
+    double minValue;
+
+    @Column(name = "max_value", nullable = false)
+    double maxValue;
+
+    @Column(name = "sum_value", nullable = false)
+    double sumValue;
+
+    @Column(name = "sample_count", nullable = false)
+    long sampleCount;
+
+    public double getAvgValue() {
+        return sampleCount > 0 ? sumValue / sampleCount : 0;
+    }
+}
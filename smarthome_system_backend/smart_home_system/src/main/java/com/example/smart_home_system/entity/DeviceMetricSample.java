@@ -0,0 +1,43 @@
+package com.example.smart_home_system.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một giá trị sensor tại một thời điểm (row hẹp, chỉ có số), thay cho JSON blob của
+ * {@link DeviceMetric}. Được ghi theo batch bằng JDBC, xem DeviceMetricService.
+ */
+@Entity
+@Table(name = "device_metric_samples", indexes = {
+        @Index(name = "idx_sample_home_key_time", columnList = "home_id, sensor_key, sampled_at"),
+        @Index(name = "idx_sample_device_key_time", columnList = "device_id, sensor_key, sampled_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class DeviceMetricSample {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "home_id", nullable = false)
+    Long homeId;
+
+    @Column(name = "device_id", nullable = false)
+    Long deviceId;
+
+    @Column(name = "sensor_key", nullable = false, length = 32)
+    String sensorKey;
+
+    @Column(name = "sampled_at", nullable = false)
+    LocalDateTime sampledAt;
+
+    @Column(name = "metric_value", nullable = false)
+    double metricValue;
+}
@@ -7,6 +7,7 @@ import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 /**
  * JPA Entity representing an ESP32 MCU Gateway device.
@@ -130,13 +131,29 @@ public class MCUGateway extends BaseEntity {
     /**
      * Metadata bổ sung (JSON format)
      * Lưu thông tin: WiFi SSID, WiFi signal strength, chip info, etc.
+     *
+     * <p>
+     * Chỉ ghi khi insert. Sau đó cột chỉ được cập nhật bằng UPDATE riêng của
+     * SensorSnapshotStore, nên save() toàn bộ entity (heartbeat, status, IP) không ghi đè
+     * snapshot mới hơn bằng bản đã load từ trước.
      */
-    @Column(columnDefinition = "json")
+    @Column(columnDefinition = "json", updatable = false)
     String metadata;
 
+    /**
+     * Heartbeat cũ hơn khoảng này thì MCU không còn được coi là online.
+     *
+     * <p>
+     * {@code lastHeartbeat} trong DB không được ghi trên mỗi frame mà được MCUHeartbeatMonitor
+     * gom lại mỗi {@code app.mcu.heartbeat-persist-interval-ms}, nên giá trị đọc từ DB có thể
+     * trễ tới một chu kỳ persist. Monitor bảo đảm chu kỳ đó nhỏ hơn khoảng này.
+     */
+    public static final long ONLINE_WINDOW_MS = 300000;
+
     /**
      * Kiểm tra xem MCU có online không.
-     * Trả về false nếu: status=OFFLINE (LWT đã báo), hoặc chưa có heartbeat, hoặc heartbeat cũ hơn 5 phút.
+     * Trả về false nếu: status=OFFLINE (LWT đã báo), hoặc chưa có heartbeat, hoặc heartbeat
+     * cũ hơn {@link #ONLINE_WINDOW_MS}.
      */
     public boolean isOnline() {
         if (status == MCUStatus.OFFLINE) {
@@ -145,7 +162,7 @@ public class MCUGateway extends BaseEntity {
         if (lastHeartbeat == null) {
             return false;
         }
-        return lastHeartbeat.isAfter(LocalDateTime.now().minusMinutes(5));
+        return lastHeartbeat.isAfter(LocalDateTime.now().minus(ONLINE_WINDOW_MS, ChronoUnit.MILLIS));
     }
 
     /**
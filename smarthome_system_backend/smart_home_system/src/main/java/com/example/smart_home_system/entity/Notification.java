@@ -14,7 +14,9 @@ import java.time.LocalDateTime;
         @Index(name = "idx_notification_user", columnList = "user_id"),
         @Index(name = "idx_notification_created", columnList = "created_at"),
         @Index(name = "idx_notification_type", columnList = "type"),
-        @Index(name = "idx_notification_read", columnList = "is_read")
+        @Index(name = "idx_notification_read", columnList = "is_read"),
+        @Index(name = "idx_notification_home_created", columnList = "home_id, created_at"),
+        @Index(name = "idx_notification_user_created", columnList = "user_id, created_at")
 })
 @Getter
 @Setter
@@ -32,6 +34,7 @@ public class Notification {
     @JoinColumn(name = "home_id")
     Home home;
 
+    // NULL: notification dùng chung cho mọi thành viên của home (xem NotificationReceipt)
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     User user;
@@ -0,0 +1,49 @@
+package com.example.smart_home_system.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mốc đọc/xóa của một user với các notification dùng chung của một home.
+ *
+ * <p>
+ * "Đọc hết" / "xóa hết" không ghi receipt cho từng notification dùng chung (số row sẽ
+ * tăng theo toàn bộ lịch sử của home) mà chỉ dời mốc của mỗi home user là thành viên:
+ * notification dùng chung tạo trước {@code readBefore} được coi là đã đọc, tạo trước
+ * {@code deletedBefore} bị ẩn. Thao tác trên từng notification vẫn dùng
+ * {@link NotificationReceipt}.
+ */
+@Entity
+@Table(name = "notification_home_watermarks", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_watermark_user_home", columnNames = { "user_id", "home_id" })
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class NotificationHomeWatermark {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "home_id", nullable = false)
+    Home home;
+
+    LocalDateTime readBefore;
+
+    LocalDateTime deletedBefore;
+
+    @Column(nullable = false)
+    LocalDateTime updatedAt;
+}
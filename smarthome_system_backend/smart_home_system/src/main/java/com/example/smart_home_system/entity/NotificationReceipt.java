@@ -0,0 +1,53 @@
+package com.example.smart_home_system.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trạng thái đọc/xóa của một user với một notification dùng chung của home
+ * ({@code notifications.user_id IS NULL}).
+ *
+ * <p>
+ * Notification dùng chung chỉ có một row cho mọi thành viên; receipt chỉ được tạo khi
+ * user đọc hoặc xóa nó. Không có receipt nghĩa là chưa đọc.
+ */
+@Entity
+@Table(name = "notification_receipts", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_receipt_notification_user", columnNames = { "notification_id", "user_id" })
+}, indexes = {
+        @Index(name = "idx_receipt_user", columnList = "user_id")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class NotificationReceipt {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "notification_id", nullable = false)
+    Notification notification;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    User user;
+
+    @Column(nullable = false)
+    @Builder.Default
+    Boolean isRead = false;
+
+    @Column(nullable = false)
+    @Builder.Default
+    Boolean deleted = false;
+
+    @Column(nullable = false)
+    LocalDateTime updatedAt;
+}
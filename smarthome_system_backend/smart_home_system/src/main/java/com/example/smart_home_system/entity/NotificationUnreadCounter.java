@@ -0,0 +1,38 @@
+package com.example.smart_home_system.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số notification chưa đọc của user, được cập nhật trong cùng transaction với thay đổi
+ * notification bởi {@link com.example.smart_home_system.service.UnreadCounterStore}
+ */
+@Entity
+@Table(name = "notification_unread_counters")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class NotificationUnreadCounter {
+
+    @Id
+    @Column(name = "user_id")
+    String userId;
+
+    @Column(nullable = false)
+    Long unreadCount;
+
+    /**
+     * Tăng mỗi lần ghi; cache trong bộ nhớ chỉ nhận giá trị có version lớn hơn
+     */
+    @Column(nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    Long version;
+
+    @Column(nullable = false)
+    LocalDateTime updatedAt;
+}
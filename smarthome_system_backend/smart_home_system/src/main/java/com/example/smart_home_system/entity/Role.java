@@ -25,6 +25,11 @@ public class Role extends BaseEntity {
     @Enumerated(EnumType.STRING)
     RoleType name;
 
+    // Phiên bản token chung (TokenVersionStore), chỉ ghi bằng UPDATE riêng
+    @Column(name = "permissions_version", nullable = false, updatable = false,
+            columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    long permissionsVersion;
+
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "role_permissions",
@@ -11,7 +11,8 @@ import java.util.Set;
 @Entity
 @Table(name = "users", indexes = {
         @Index(name = "idx_user_status", columnList = "status"),
-        @Index(name = "idx_user_email", columnList = "email")
+        @Index(name = "idx_user_email", columnList = "email"),
+        @Index(name = "idx_user_token_version", columnList = "token_version")
 })
 @Getter
 @Setter
@@ -39,6 +40,11 @@ public class User extends BaseEntity {
     @Enumerated(EnumType.STRING)
     UserStatus status;
 
+    // Phiên bản token (TokenVersionStore), chỉ ghi bằng UPDATE riêng: save() không ghi đè
+    @Column(name = "token_version", nullable = false, updatable = false,
+            columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    long tokenVersion;
+
     @ManyToMany(fetch = FetchType.LAZY)
             @JoinTable(
                     name = "user_roles",
@@ -0,0 +1,51 @@
+package com.example.smart_home_system.enums;
+
+import lombok.Getter;
+
+/**
+ * Loại tình huống khẩn cấp ESP32 báo lên (cờ emergencyFire / emergencyGas)
+ */
+@Getter
+public enum EmergencyType {
+    FIRE("Cảnh báo cháy (phát hiện lửa)"),
+    GAS("Cảnh báo rò rỉ khí gas"),
+    BOTH("Cảnh báo cháy và rò rỉ khí gas"),
+    UNKNOWN("Tình huống khẩn cấp");
+
+    // Mô tả dùng trong thông báo "đã được giải quyết"
+    private final String resolvedLabel;
+
+    EmergencyType(String resolvedLabel) {
+        this.resolvedLabel = resolvedLabel;
+    }
+
+    public boolean hasFire() {
+        return this == FIRE || this == BOTH;
+    }
+
+    public boolean hasGas() {
+        return this == GAS || this == BOTH;
+    }
+
+    public static EmergencyType of(boolean fire, boolean gas) {
+        if (fire && gas) {
+            return BOTH;
+        }
+        if (fire) {
+            return FIRE;
+        }
+        return gas ? GAS : UNKNOWN;
+    }
+
+    /**
+     * Suy ra loại khẩn cấp từ tiêu đề thông báo EMERGENCY đã lưu
+     */
+    public static EmergencyType fromTitle(String title) {
+        if (title == null) {
+            return UNKNOWN;
+        }
+        boolean fire = title.contains("LỬA");
+        boolean gas = title.contains("KHÍ") || title.contains("GAS");
+        return of(fire, gas);
+    }
+}
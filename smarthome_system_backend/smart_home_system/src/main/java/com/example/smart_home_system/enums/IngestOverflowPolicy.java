@@ -0,0 +1,32 @@
+package com.example.smart_home_system.enums;
+
+/**
+ * Chính sách xử lý khi một ingest lane của MQTT đầy (MySQL chậm, message dồn lại).
+ *
+ * <p>
+ * Chỉ áp dụng cho sensor telemetry ({@code smarthome/{homeId}/sensors} không có cờ
+ * emergency). Các message quan trọng ({@code rfid/access}, {@code status}, frame
+ * emergency, ...) không bị shed: nếu lane đầy thì Paho thread chờ (backpressure) tối đa
+ * enqueue-timeout-ms, quá hạn thì message bị từ chối và được đếm.
+ *
+ * <p>
+ * Chỉ frame của chính home đang gửi bị bỏ, để một home gửi dồn không làm mất telemetry
+ * của các home khác cùng lane.
+ */
+public enum IngestOverflowPolicy {
+    /**
+     * Bỏ sensor frame cũ nhất của cùng home (frame mới thay thế frame cũ),
+     * nếu home đó không có frame nào đang chờ thì bỏ frame mới
+     */
+    DROP_OLDEST_SENSORS,
+
+    /**
+     * Bỏ ngay sensor frame mới đến, giữ nguyên các frame đang chờ
+     */
+    DROP_NEWEST,
+
+    /**
+     * Chờ tối đa enqueue-timeout-ms rồi mới bỏ frame mới (hành vi cũ)
+     */
+    BLOCK
+}
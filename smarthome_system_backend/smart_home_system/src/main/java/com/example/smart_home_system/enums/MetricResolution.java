@@ -0,0 +1,52 @@
+package com.example.smart_home_system.enums;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Độ phân giải của chuỗi metric: RAW là sample gốc, các mức còn lại là rollup
+ * (min/max/sum/count) theo bucket cố định.
+ */
+@Getter
+public enum MetricResolution {
+    RAW(Duration.ZERO, null),
+    MINUTE(Duration.ofMinutes(1), ChronoUnit.MINUTES),
+    HOUR(Duration.ofHours(1), ChronoUnit.HOURS),
+    DAY(Duration.ofDays(1), ChronoUnit.DAYS);
+
+    /**
+     * Các mức rollup được duy trì liên tục khi ghi sample
+     */
+    public static final MetricResolution[] ROLLUPS = { MINUTE, HOUR, DAY };
+
+    private final Duration bucket;
+    private final ChronoUnit unit;
+
+    MetricResolution(Duration bucket, ChronoUnit unit) {
+        this.bucket = bucket;
+        this.unit = unit;
+    }
+
+    /**
+     * Thời điểm bắt đầu bucket chứa {@code time}
+     */
+    public LocalDateTime bucketStart(LocalDateTime time) {
+        return unit != null ? time.truncatedTo(unit) : time;
+    }
+
+    /**
+     * Mức thô nhất có bucket không lớn hơn bước thời gian yêu cầu
+     */
+    public static MetricResolution coarsestFor(Duration step) {
+        MetricResolution best = RAW;
+        for (MetricResolution resolution : ROLLUPS) {
+            if (resolution.bucket.compareTo(step) <= 0) {
+                best = resolution;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.smart_home_system.enums;
+
+/**
+ * Cách lưu notification gửi cho mọi thành viên của home
+ */
+public enum NotificationFanoutMode {
+    // Fan-out-on-read: một row dùng chung (user_id NULL), trạng thái đọc/xóa nằm trong notification_receipts
+    READ,
+    // Fan-out-on-write: mỗi thành viên một row (mô hình cũ)
+    WRITE
+}
@@ -0,0 +1,17 @@
+package com.example.smart_home_system.enums;
+
+/**
+ * Cách phát sự kiện real-time (WebSocket) giữa các instance backend.
+ */
+public enum RealtimeBusMode {
+    /**
+     * Chỉ giao cho client đang kết nối tới chính node này (một instance, hoặc dùng STOMP
+     * broker relay để broker ngoài fan-out)
+     */
+    LOCAL,
+
+    /**
+     * Phát sự kiện qua MQTT broker sẵn có; mọi node nhận và giao cho client của mình
+     */
+    MQTT
+}
@@ -0,0 +1,90 @@
+package com.example.smart_home_system.enums;
+
+import com.example.smart_home_system.util.GPIOMapping;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Các key trong sensor frame ESP32 publish lên {@code smarthome/{homeId}/sensors}.
+ *
+ * <p>
+ * Key có {@code gpioPin} là giá trị của một thiết bị vật lý (sensor hoặc actuator)
+ * và được dùng để cập nhật state của device tương ứng. Các key còn lại là cờ
+ * cảnh báo hoặc cấu hình automation của ESP32.
+ */
+@Getter
+public enum SensorKey {
+    TEMP_IN("tempIn", GPIOMapping.PIN_DHT_IN, true),
+    HUM_IN("humIn", GPIOMapping.PIN_DHT_IN, true),
+    TEMP_OUT("tempOut", GPIOMapping.PIN_DHT_OUT, true),
+    HUM_OUT("humOut", GPIOMapping.PIN_DHT_OUT, true),
+    GAS("gas", GPIOMapping.PIN_MQ2, true),
+    LIGHT("light", GPIOMapping.PIN_LDR, true),
+    RAIN("rain", GPIOMapping.PIN_RAIN, true),
+    FLAME("flame", GPIOMapping.PIN_FLAME, false),
+    MOTION("motion", GPIOMapping.PIN_PIR, false),
+    DOOR("door", GPIOMapping.PIN_SERVO, false),
+    LIGHT_STATUS("lightStatus", GPIOMapping.PIN_RELAY_LIGHT, false),
+    FAN_STATUS("fanStatus", GPIOMapping.PIN_RELAY_FAN, false),
+
+    // Cờ cảnh báo
+    GAS_ALERT("gasAlert", null, false),
+    EMERGENCY("emergency", null, false),
+    EMERGENCY_FIRE("emergencyFire", null, false),
+    EMERGENCY_GAS("emergencyGas", null, false),
+
+    // Cấu hình automation
+    AUTO_LIGHT("autoLight", null, false),
+    AUTO_FAN("autoFan", null, false),
+    AUTO_CLOSE_DOOR("autoCloseDoor", null, false),
+    AUTO_LIGHT_THRESHOLD("autoLightThreshold", null, true),
+    AUTO_FAN_THRESHOLD("autoFanThreshold", null, true),
+    GAS_ALERT_THRESHOLD("gasAlertThreshold", null, true);
+
+    private static final Map<String, SensorKey> BY_JSON_NAME = new HashMap<>();
+
+    /**
+     * Các key gắn với GPIO pin (dùng để map sang device)
+     */
+    public static final List<SensorKey> DEVICE_KEYS = Stream.of(values())
+            .filter(SensorKey::isDeviceMapped)
+            .toList();
+
+    static {
+        for (SensorKey key : values()) {
+            BY_JSON_NAME.put(key.jsonName, key);
+        }
+    }
+
+    private final String jsonName;
+    private final Integer gpioPin;
+    private final boolean numeric;
+
+    SensorKey(String jsonName, Integer gpioPin, boolean numeric) {
+        this.jsonName = jsonName;
+        this.gpioPin = gpioPin;
+        this.numeric = numeric;
+    }
+
+    public boolean isDeviceMapped() {
+        return gpioPin != null;
+    }
+
+    /**
+     * Actuator (Light, Fan, Door): giá trị true/false tương ứng trạng thái ON/OFF
+     */
+    public boolean isActuator() {
+        return this == LIGHT_STATUS || this == FAN_STATUS || this == DOOR;
+    }
+
+    /**
+     * @return SensorKey hoặc null nếu không phải key đã biết
+     */
+    public static SensorKey fromJsonName(String jsonName) {
+        return BY_JSON_NAME.get(jsonName);
+    }
+}
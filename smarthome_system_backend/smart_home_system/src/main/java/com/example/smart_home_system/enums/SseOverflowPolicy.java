@@ -0,0 +1,22 @@
+package com.example.smart_home_system.enums;
+
+/**
+ * Chính sách xử lý khi hàng đợi outbound của một SSE connection đầy (client đọc chậm
+ * hoặc TCP bị treo).
+ */
+public enum SseOverflowPolicy {
+    /**
+     * Bỏ event cũ nhất đang chờ để nhận event mới
+     */
+    DROP_OLDEST,
+
+    /**
+     * Bỏ event mới đến, giữ nguyên các event đang chờ
+     */
+    DROP_NEWEST,
+
+    /**
+     * Đóng connection (client sẽ tự reconnect và nhận lại trạng thái mới)
+     */
+    DISCONNECT
+}
@@ -0,0 +1,35 @@
+package com.example.smart_home_system.event;
+
+import com.example.smart_home_system.entity.User;
+
+/**
+ * Thông tin dùng để xác thực/phân quyền của user vừa thay đổi (trạng thái, mật khẩu,
+ * role, logout) hoặc permission của một role thay đổi.
+ *
+ * <p>
+ * {@code userId == null} nghĩa là thay đổi ảnh hưởng tới mọi user (vd. sửa permission
+ * của role). Listener nên xử lý sau commit để không đọc lại dữ liệu cũ.
+ */
+public record UserSecurityChangedEvent(String userId, String username, Reason reason) {
+
+    public enum Reason {
+        STATUS,
+        PASSWORD,
+        ROLES,
+        DELETED,
+        LOGOUT,
+        ROLE_PERMISSIONS
+    }
+
+    public static UserSecurityChangedEvent of(User user, Reason reason) {
+        return new UserSecurityChangedEvent(user.getId(), user.getUsername(), reason);
+    }
+
+    public static UserSecurityChangedEvent allUsers(Reason reason) {
+        return new UserSecurityChangedEvent(null, null, reason);
+    }
+
+    public boolean affectsAllUsers() {
+        return userId == null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.smart_home_system.repository;
+
+import com.example.smart_home_system.dto.response.MetricPointResponse;
+import com.example.smart_home_system.entity.DeviceMetricRollup;
+import com.example.smart_home_system.enums.MetricResolution;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface DeviceMetricRollupRepository extends JpaRepository<DeviceMetricRollup, Long> {
+
+    // Rollup được ghi theo device; đọc theo (home, sensor key) thì gộp các device của home
+    // trong cùng bucket thành một điểm (avg theo tổng sum / tổng count)
+    String SERIES = "SELECT new com.example.smart_home_system.dto.response.MetricPointResponse("
+            + "r.bucketStart, SUM(r.sumValue) / SUM(r.sampleCount), MIN(r.minValue), MAX(r.maxValue), "
+            + "SUM(r.sampleCount)) "
+            + "FROM DeviceMetricRollup r WHERE r.homeId = :homeId AND r.sensorKey = :sensorKey "
+            + "AND r.resolution = :resolution AND r.bucketStart BETWEEN :from AND :to "
+            + "GROUP BY r.bucketStart ORDER BY r.bucketStart";
+
+    @Query(SERIES)
+    List<MetricPointResponse> findSeries(@Param("homeId") Long homeId, @Param("sensorKey") String sensorKey,
+            @Param("resolution") MetricResolution resolution, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    /**
+     * Như {@link #findSeries} nhưng stream từng row (projection, không tạo entity), xem
+     * DeviceMetricSampleRepository#streamSeries
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query(SERIES)
+    Stream<MetricPointResponse> streamSeries(@Param("homeId") Long homeId, @Param("sensorKey") String sensorKey,
+            @Param("resolution") MetricResolution resolution, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,33 @@
+package com.example.smart_home_system.repository;
+
+import com.example.smart_home_system.dto.response.MetricPointResponse;
+import com.example.smart_home_system.entity.DeviceMetricSample;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface DeviceMetricSampleRepository extends JpaRepository<DeviceMetricSample, Long> {
+    List<DeviceMetricSample> findByHomeIdAndSensorKeyAndSampledAtBetweenOrderBySampledAtAsc(
+            Long homeId, String sensorKey, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Stream sample (projection, không tạo entity) - MySQL chỉ stream từng row khi fetch
+     * size = Integer.MIN_VALUE. Phải được tiêu thụ trong transaction và đóng sau khi dùng.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT new com.example.smart_home_system.dto.response.MetricPointResponse("
+            + "s.sampledAt, s.metricValue, s.metricValue, s.metricValue, 1L) "
+            + "FROM DeviceMetricSample s WHERE s.homeId = :homeId AND s.sensorKey = :sensorKey "
+            + "AND s.sampledAt BETWEEN :from AND :to ORDER BY s.sampledAt")
+    Stream<MetricPointResponse> streamSeries(@Param("homeId") Long homeId, @Param("sensorKey") String sensorKey,
+            @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -66,6 +66,10 @@ public interface HomeMemberRepository extends JpaRepository<HomeMember, Long> {
     @Query("SELECT hm FROM HomeMember hm WHERE hm.home.id = :homeId AND hm.deletedAt IS NULL")
     List<HomeMember> findAllByHomeId(@Param("homeId") Long homeId);
 
+    // Chỉ lấy user id của thành viên (fan-out notification, không load entity)
+    @Query("SELECT hm.user.id FROM HomeMember hm WHERE hm.home.id = :homeId AND hm.deletedAt IS NULL")
+    List<String> findUserIdsByHomeId(@Param("homeId") Long homeId);
+
     // Kiểm tra xem User có phải là thành viên của nhà này không (bất kể role)
     boolean existsByUserUsernameAndHomeId(String username, Long homeId);
 
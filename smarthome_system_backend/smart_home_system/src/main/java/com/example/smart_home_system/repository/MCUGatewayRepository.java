@@ -3,11 +3,13 @@ package com.example.smart_home_system.repository;
 import com.example.smart_home_system.entity.MCUGateway;
 import com.example.smart_home_system.enums.MCUStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -70,6 +72,31 @@ public interface MCUGatewayRepository extends JpaRepository<MCUGateway, Long> {
     @Query("SELECT m FROM MCUGateway m WHERE m.serialNumber = :serialNumber AND m.status = 'PAIRING'")
     Optional<MCUGateway> findPairingBySerialNumber(@Param("serialNumber") String serialNumber);
 
-    /** MCU đang ONLINE nhưng lastHeartbeat cũ hơn ngưỡng → đánh dấu offline (khi LWT không kịp phát). */
-    List<MCUGateway> findByStatusAndLastHeartbeatBefore(MCUStatus status, LocalDateTime lastHeartbeatBefore);
+    /** MCU theo trạng thái (nạp deadline heartbeat của các MCU đang ONLINE khi khởi động). */
+    List<MCUGateway> findByStatus(MCUStatus status);
+
+    /**
+     * Bulk chuyển trạng thái cho các MCU quá hạn heartbeat (chỉ những MCU còn ở trạng thái expected)
+     */
+    @Modifying
+    @Query("UPDATE MCUGateway m SET m.status = :status WHERE m.id IN :ids AND m.status = :expected")
+    int updateStatusByIds(@Param("ids") Collection<Long> ids, @Param("expected") MCUStatus expected,
+            @Param("status") MCUStatus status);
+
+    /**
+     * Chuyển MCU về ONLINE khi có heartbeat sau khi đã OFFLINE (MCU đang PAIRING giữ nguyên)
+     */
+    @Modifying
+    @Query("UPDATE MCUGateway m SET m.status = com.example.smart_home_system.enums.MCUStatus.ONLINE, " +
+            "m.lastHeartbeat = :now WHERE m.id = :id " +
+            "AND m.status <> com.example.smart_home_system.enums.MCUStatus.PAIRING")
+    int markOnline(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Ghi IP / firmware mới mà MCU báo qua heartbeat
+     */
+    @Modifying
+    @Query("UPDATE MCUGateway m SET m.ipAddress = :ipAddress, m.firmwareVersion = :firmwareVersion WHERE m.id = :id")
+    int updateNetworkInfo(@Param("id") Long id, @Param("ipAddress") String ipAddress,
+            @Param("firmwareVersion") String firmwareVersion);
 }
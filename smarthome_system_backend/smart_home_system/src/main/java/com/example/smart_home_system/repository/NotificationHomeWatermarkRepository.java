@@ -0,0 +1,43 @@
+package com.example.smart_home_system.repository;
+
+import com.example.smart_home_system.entity.NotificationHomeWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface NotificationHomeWatermarkRepository extends JpaRepository<NotificationHomeWatermark, Long> {
+
+    /**
+     * Dời mốc đọc/xóa của user cho mọi home user đang là thành viên: một row mỗi home,
+     * không phụ thuộc số notification. Mốc chỉ tiến lên; {@code deletedBefore} null = giữ
+     * nguyên mốc xóa.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO notification_home_watermarks (user_id, home_id, read_before, deleted_before, updated_at) " +
+            "SELECT * FROM (SELECT hm.user_id, hm.home_id, :readBefore AS new_read_before, " +
+            ":deletedBefore AS new_deleted_before, NOW() AS updated_at FROM home_members hm " +
+            "WHERE hm.user_id = :userId AND hm.deleted_at IS NULL) AS src " +
+            "ON DUPLICATE KEY UPDATE " +
+            "read_before = GREATEST(COALESCE(read_before, src.new_read_before), " +
+            "COALESCE(src.new_read_before, read_before)), " +
+            "deleted_before = GREATEST(COALESCE(deleted_before, src.new_deleted_before), " +
+            "COALESCE(src.new_deleted_before, deleted_before)), " +
+            "updated_at = NOW()", nativeQuery = true)
+    int advance(@Param("userId") String userId,
+                @Param("readBefore") LocalDateTime readBefore,
+                @Param("deletedBefore") LocalDateTime deletedBefore);
+
+    /**
+     * Ẩn các notification dùng chung đã đọc theo mốc: mốc xóa được dời tới mốc đọc
+     */
+    @Modifying
+    @Query(value = "UPDATE notification_home_watermarks " +
+            "SET deleted_before = GREATEST(COALESCE(deleted_before, read_before), read_before), updated_at = NOW() " +
+            "WHERE user_id = :userId AND read_before IS NOT NULL", nativeQuery = true)
+    int hideReadByUserId(@Param("userId") String userId);
+}
@@ -0,0 +1,74 @@
+package com.example.smart_home_system.repository;
+
+import com.example.smart_home_system.entity.NotificationReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface NotificationReceiptRepository extends JpaRepository<NotificationReceipt, Long> {
+
+    // Notification dùng chung trong danh sách id mà user nhìn thấy (thành viên home, tạo sau
+    // khi tham gia) và còn chưa đọc theo watermark của home
+    String VISIBLE = "JOIN home_members hm ON hm.home_id = n.home_id AND hm.user_id = :userId " +
+            "AND hm.deleted_at IS NULL AND (hm.joined_at IS NULL OR hm.joined_at <= n.created_at) " +
+            "LEFT JOIN notification_home_watermarks w ON w.user_id = hm.user_id AND w.home_id = hm.home_id ";
+    String UNREAD = "WHERE n.user_id IS NULL AND n.id IN (:ids) " +
+            "AND (w.read_before IS NULL OR n.created_at > w.read_before) " +
+            "AND (w.deleted_before IS NULL OR n.created_at > w.deleted_before) ";
+
+    Optional<NotificationReceipt> findByNotificationIdAndUserId(Long notificationId, String userId);
+
+    /**
+     * Tạo hoặc cập nhật receipt của user cho một notification dùng chung. Cờ chỉ được bật,
+     * không bị tắt lại (đã xóa thì vẫn là đã xóa).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO notification_receipts (notification_id, user_id, is_read, deleted, updated_at) " +
+            "VALUES (:notificationId, :userId, :isRead, :deleted, NOW()) AS new " +
+            "ON DUPLICATE KEY UPDATE is_read = notification_receipts.is_read OR new.is_read, " +
+            "deleted = notification_receipts.deleted OR new.deleted, updated_at = NOW()", nativeQuery = true)
+    int upsert(@Param("notificationId") Long notificationId,
+               @Param("userId") String userId,
+               @Param("isRead") boolean isRead,
+               @Param("deleted") boolean deleted);
+
+    /**
+     * Chuyển các receipt đang chưa đọc (và chưa xóa) sang đã đọc, ẩn luôn nếu
+     * {@code deleted}. Số row trả về là số notification vừa chuyển từ chưa đọc: UPDATE khóa
+     * row nên hai request song song không cùng đếm một receipt.
+     */
+    @Modifying
+    @Query(value = "UPDATE notification_receipts r JOIN notifications n ON n.id = r.notification_id " +
+            VISIBLE + "SET r.is_read = true, r.deleted = :deleted, r.updated_at = NOW() " +
+            UNREAD + "AND r.user_id = :userId AND r.is_read = false AND r.deleted = false", nativeQuery = true)
+    int markUnreadRead(@Param("ids") Collection<Long> ids,
+                       @Param("userId") String userId,
+                       @Param("deleted") boolean deleted);
+
+    /**
+     * Tạo receipt đã đọc (ẩn nếu {@code deleted}) cho các notification chưa đọc chưa có
+     * receipt. Số row trả về là số receipt vừa tạo; receipt đã tồn tại (kể cả do request
+     * song song vừa tạo) bị unique key bỏ qua và không được đếm.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO notification_receipts (notification_id, user_id, is_read, deleted, updated_at) " +
+            "SELECT n.id, hm.user_id, true, :deleted, NOW() FROM notifications n " + VISIBLE + UNREAD,
+            nativeQuery = true)
+    int insertRead(@Param("ids") Collection<Long> ids,
+                   @Param("userId") String userId,
+                   @Param("deleted") boolean deleted);
+
+    /**
+     * Ẩn các notification dùng chung user đã đọc (receipt đã đọc nhưng chưa xóa)
+     */
+    @Modifying
+    @Query("UPDATE NotificationReceipt r SET r.deleted = true, r.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE r.user.id = :userId AND r.isRead = true AND r.deleted = false")
+    int hideReadByUserId(@Param("userId") String userId);
+}
@@ -5,14 +5,48 @@ import com.example.smart_home_system.enums.NotificationType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
-    
+
+    /*
+     * Notification user nhìn thấy = row riêng của user (idx_notification_user_created)
+     * + row dùng chung (user_id NULL) của các home user là thành viên, tạo sau khi user
+     * tham gia (home_members theo user, rồi idx_notification_home_created theo từng home).
+     * Hai nhánh được query riêng (UNION ALL / cộng hai COUNT) thay vì một điều kiện OR để
+     * mỗi nhánh dùng được index của nó.
+     *
+     * Row dùng chung: receipt (NotificationReceipt) giữ trạng thái đọc/xóa của từng
+     * notification, watermark (NotificationHomeWatermark) giữ mốc "đọc hết"/"xóa hết" theo
+     * home. Không có receipt và nằm sau mốc = chưa đọc, chưa xóa.
+     */
+    String OWN = "FROM notifications n WHERE n.user_id = :userId ";
+    String SHARED = "FROM home_members hm " +
+            "JOIN notifications n ON n.home_id = hm.home_id AND n.user_id IS NULL " +
+            "AND (hm.joined_at IS NULL OR n.created_at >= hm.joined_at) " +
+            "LEFT JOIN notification_home_watermarks w ON w.user_id = hm.user_id AND w.home_id = hm.home_id " +
+            "LEFT JOIN notification_receipts r ON r.notification_id = n.id AND r.user_id = hm.user_id " +
+            "WHERE hm.user_id = :userId AND hm.deleted_at IS NULL " +
+            "AND (r.id IS NULL OR r.deleted = false) " +
+            "AND (w.deleted_before IS NULL OR n.created_at > w.deleted_before) ";
+    String SHARED_IS_READ = "(COALESCE(r.is_read, false) = true " +
+            "OR (w.read_before IS NOT NULL AND n.created_at <= w.read_before))";
+
+    String OWN_FILTERS = "AND (:type IS NULL OR n.type = :type) " +
+            "AND (:isRead IS NULL OR n.is_read = :isRead) " +
+            "AND (:startDate IS NULL OR n.created_at >= :startDate) " +
+            "AND (:endDate IS NULL OR n.created_at <= :endDate) ";
+    String SHARED_FILTERS = "AND (:type IS NULL OR n.type = :type) " +
+            "AND (:isRead IS NULL OR " + SHARED_IS_READ + " = :isRead) " +
+            "AND (:startDate IS NULL OR n.created_at >= :startDate) " +
+            "AND (:endDate IS NULL OR n.created_at <= :endDate) ";
+
     /**
      * Lấy tất cả notifications của một user
      */
@@ -26,34 +60,46 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     Page<Notification> findByHomeId(@Param("homeId") Long homeId, Pageable pageable);
 
     /**
-     * Lấy notifications chưa đọc của một user
+     * Đếm số notifications chưa đọc của một user (riêng + dùng chung)
      */
-    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId AND n.isRead = false ORDER BY n.createdAt DESC")
-    List<Notification> findUnreadByUserId(@Param("userId") String userId);
+    @Query(value = "SELECT (SELECT COUNT(*) " + OWN + "AND n.is_read = false) + " +
+            "(SELECT COUNT(*) " + SHARED + "AND NOT " + SHARED_IS_READ + ")", nativeQuery = true)
+    Long countUnreadByUserId(@Param("userId") String userId);
 
     /**
-     * Đếm số notifications chưa đọc của một user
+     * Đếm số notifications user đang nhìn thấy (riêng + dùng chung, chưa bị ẩn)
      */
-    @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId AND n.isRead = false")
-    Long countUnreadByUserId(@Param("userId") String userId);
+    @Query(value = "SELECT (SELECT COUNT(*) " + OWN + ") + (SELECT COUNT(*) " + SHARED + ")", nativeQuery = true)
+    long countVisibleByUserId(@Param("userId") String userId);
 
     /**
-     * Lấy notifications với filter
+     * Một trang notifications với filter (riêng của user + dùng chung của các home), mới
+     * nhất trước. Chỉ trả id để entity được load một lần cho cả trang, xem
+     * {@link #findAllWithRelationsByIdIn}.
+     *
+     * @param type tên {@link NotificationType}, null = mọi loại
+     * @return [id, isRead của user]
      */
-    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId " +
-           "AND (:type IS NULL OR n.type = :type) " +
-           "AND (:isRead IS NULL OR n.isRead = :isRead) " +
-           "AND (:startDate IS NULL OR n.createdAt >= :startDate) " +
-           "AND (:endDate IS NULL OR n.createdAt <= :endDate) " +
-           "ORDER BY n.createdAt DESC")
-    Page<Notification> findByUserIdWithFilters(
+    @Query(value = "SELECT t.id, t.is_read FROM (" +
+            "SELECT n.id, n.created_at, n.is_read " + OWN + OWN_FILTERS +
+            "UNION ALL " +
+            "SELECT n.id, n.created_at, " + SHARED_IS_READ + " " + SHARED + SHARED_FILTERS +
+            ") t ORDER BY t.created_at DESC, t.id DESC",
+            countQuery = "SELECT (SELECT COUNT(*) " + OWN + OWN_FILTERS + ") + " +
+            "(SELECT COUNT(*) " + SHARED + SHARED_FILTERS + ")",
+            nativeQuery = true)
+    Page<Object[]> findByUserIdWithFilters(
             @Param("userId") String userId,
-            @Param("type") NotificationType type,
+            @Param("type") String type,
             @Param("isRead") Boolean isRead,
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate,
             Pageable pageable);
 
+    @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.home LEFT JOIN FETCH n.user " +
+           "LEFT JOIN FETCH n.device WHERE n.id IN :ids")
+    List<Notification> findAllWithRelationsByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Lấy notifications của home với filter
      */
@@ -70,26 +116,59 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
             Pageable pageable);
 
     /**
-     * Xóa tất cả notifications đã đọc của một user
+     * User có nhìn thấy notification này không (row riêng hoặc dùng chung của home)
      */
-    void deleteByUserIdAndIsReadTrue(String userId);
+    @Query("SELECT COUNT(n) > 0 FROM Notification n WHERE n.id = :notificationId " +
+           "AND (n.user.id = :userId OR (n.user IS NULL AND EXISTS (" +
+           "SELECT hm.id FROM HomeMember hm WHERE hm.home = n.home AND hm.user.id = :userId " +
+           "AND hm.deletedAt IS NULL AND (hm.joinedAt IS NULL OR hm.joinedAt <= n.createdAt))))")
+    boolean isVisibleTo(@Param("notificationId") Long notificationId, @Param("userId") String userId);
 
     /**
-     * Xóa tất cả notifications của một user
+     * Đánh dấu đã đọc các notification riêng của user bằng một câu UPDATE
+     *
+     * @return số row thực sự chuyển từ chưa đọc sang đã đọc
      */
-    void deleteByUserId(String userId);
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = :userId AND n.isRead = false")
+    int markAllReadByUserId(@Param("userId") String userId);
 
     /**
-     * Kiểm tra xem có emergency notification đang hoạt động gần đây không (trong vòng X phút)
-     * Dùng để tránh tạo CLEARED notification khi không có emergency đang hoạt động trước đó
+     * Như {@link #markAllReadByUserId} nhưng chỉ cho các id trong danh sách
      */
-    @Query("SELECT COUNT(n) > 0 FROM Notification n WHERE n.home.id = :homeId " +
-           "AND n.type = :type " +
-           "AND n.createdAt >= :since")
-    boolean existsRecentEmergencyByHomeId(
-            @Param("homeId") Long homeId,
-            @Param("type") NotificationType type,
-            @Param("since") LocalDateTime since);
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true " +
+           "WHERE n.id IN :ids AND n.user.id = :userId AND n.isRead = false")
+    int markReadByIdsAndUserId(@Param("ids") Collection<Long> ids, @Param("userId") String userId);
+
+    /**
+     * Xóa một notification riêng của user nếu nó còn chưa đọc; trả về 1 nếu đã xóa. Kết
+     * quả cho biết counter chưa đọc có phải giảm không mà không cần đọc trước.
+     */
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.id = :id AND n.user.id = :userId AND n.isRead = false")
+    int deleteUnreadByIdAndUserId(@Param("id") Long id, @Param("userId") String userId);
+
+    /**
+     * Xóa một notification riêng của user bằng một câu DELETE
+     */
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.id = :id AND n.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") String userId);
+
+    /**
+     * Xóa các notification riêng đã đọc của user bằng một câu DELETE
+     */
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.user.id = :userId AND n.isRead = true")
+    int deleteReadByUserId(@Param("userId") String userId);
+
+    /**
+     * Xóa tất cả notification riêng của user bằng một câu DELETE
+     */
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.user.id = :userId")
+    int deleteAllByUserId(@Param("userId") String userId);
 
     /**
      * Lấy thông báo khẩn cấp gần nhất của home (để biết loại FIRE/GAS/BOTH khi tạo CLEARED)
@@ -101,13 +180,15 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
             Pageable pageable);
 
     /**
-     * Kiểm tra đã tạo thông báo CLEARED gần đây cho home (tránh trùng khi ESP32 gửi sensor data nhiều lần)
+     * Các thông báo khẩn cấp / đã giải quyết kể từ {@code since}, theo thứ tự thời gian
+     * (homeId, type, title). Dùng để dựng lại trạng thái khẩn cấp của các home khi khởi động.
      */
-    @Query("SELECT COUNT(n) > 0 FROM Notification n WHERE n.home.id = :homeId " +
-           "AND n.type = com.example.smart_home_system.enums.NotificationType.SUCCESS " +
-           "AND n.title LIKE :pattern AND n.createdAt >= :since")
-    boolean existsRecentClearedByHomeId(
-            @Param("homeId") Long homeId,
-            @Param("pattern") String pattern,
-            @Param("since") LocalDateTime since);
+    @Query("SELECT n.home.id, n.type, n.title FROM Notification n WHERE n.home IS NOT NULL " +
+           "AND n.createdAt >= :since " +
+           "AND (n.type = com.example.smart_home_system.enums.NotificationType.EMERGENCY " +
+           "OR (n.type = com.example.smart_home_system.enums.NotificationType.SUCCESS AND n.title LIKE :clearedPattern)) " +
+           "ORDER BY n.createdAt")
+    List<Object[]> findEmergencyEventsSince(
+            @Param("since") LocalDateTime since,
+            @Param("clearedPattern") String clearedPattern);
 }
@@ -1,12 +1,16 @@
 package com.example.smart_home_system.security.jwt;
 
+import com.example.smart_home_system.dto.CustomUserDetails;
 import com.example.smart_home_system.security.service.CustomUserDetailService;
+import com.example.smart_home_system.security.service.TokenVersionStore;
+import com.example.smart_home_system.security.service.UserDetailsCache;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -14,53 +18,31 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
-import jakarta.annotation.PreDestroy;
 
 import java.io.IOException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * Xác thực request bằng JWT.
+ *
+ * <p>
+ * Với {@code jwt.stateless.enabled} (mặc định), principal được dựng trực tiếp từ claims
+ * (subject, userId, scope) khi token còn đúng phiên bản (TokenVersionStore): không đọc DB.
+ * Token đã bị thu hồi (user đổi trạng thái / mật khẩu / role sau khi phát hành) bị từ chối.
+ * Token chưa xác định được (phát hành trước lần restart, trước khi permission của role đổi,
+ * hoặc không có claim tv) mới load user từ DB, và bị từ chối nếu cũ hơn
+ * {@code token_version} của user (thu hồi ở node khác).
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtTokenProvider jwtTokenProvider;
     private final CustomUserDetailService customUserDetailService;
-    
-    // Cache user details để tránh query DB mỗi request
-    // Key: username, Value: UserDetails với timestamp
-    private final ConcurrentHashMap<String, CachedUserDetails> userCache = new ConcurrentHashMap<>();
-    private static final long CACHE_TTL_MS = 5 * 60 * 1000; // 5 phút
-    private final ScheduledExecutorService cacheCleaner = Executors.newSingleThreadScheduledExecutor(r -> {
-        Thread t = new Thread(r, "jwt-user-cache-cleaner");
-        t.setDaemon(true);
-        return t;
-    });
-    
-    {
-        // Clean cache mỗi 1 phút
-        cacheCleaner.scheduleAtFixedRate(this::cleanExpiredCache, 1, 1, TimeUnit.MINUTES);
-    }
-    
-    private static class CachedUserDetails {
-        final UserDetails userDetails;
-        final long timestamp;
-        
-        CachedUserDetails(UserDetails userDetails) {
-            this.userDetails = userDetails;
-            this.timestamp = System.currentTimeMillis();
-        }
-        
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > CACHE_TTL_MS;
-        }
-    }
-    
-    private void cleanExpiredCache() {
-        userCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-    }
+    private final TokenVersionStore tokenVersionStore;
+    private final UserDetailsCache userDetailsCache;
+
+    @Value("${jwt.stateless.enabled:true}")
+    private boolean statelessEnabled;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -69,24 +51,48 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         String token = getTokenFromRequest(request);
 
-        if (StringUtils.hasText(token) && jwtTokenProvider.validateToken(token)) {
-            String username = jwtTokenProvider.getUsernameFromToken(token);
+        JwtTokenProvider.VerifiedToken verified = StringUtils.hasText(token) ? jwtTokenProvider.verify(token) : null;
+
+        if (verified != null) {
+            String username = verified.username();
+            UserDetails userDetails = null;
+
+            if (statelessEnabled && verified.userId() != null) {
+                if (tokenVersionStore.isRevoked(verified.userId(), verified.version())) {
+                    log.debug("Rejected revoked JWT for username: {}", username);
+                    filterChain.doFilter(request, response);
+                    return;
+                }
+                if (tokenVersionStore.isCurrent(verified.userId(), verified.version())) {
+                    userDetails = new CustomUserDetails(verified.userId(), username, verified.authorities());
+                }
+            }
 
-            // Lấy user details từ cache hoặc load từ DB
-            UserDetails userDetails = getUserDetailsFromCache(username);
-            
             if (userDetails == null) {
                 try {
-                    // Load từ DB và cache lại
-                    userDetails = customUserDetailService.loadUserByUsername(username);
-                    userCache.put(username, new CachedUserDetails(userDetails));
+                    // Lấy user details từ cache hoặc load từ DB
+                    userDetails = userDetailsCache.get(username, customUserDetailService::loadUserByUsername);
                 } catch (Exception e) {
                     log.error("Failed to load user details for username: {}", username, e);
-                    // Nếu load thất bại, clear cache entry nếu có
-                    userCache.remove(username);
                     filterChain.doFilter(request, response);
                     return;
                 }
+
+                // token_version trong DB có thể do node khác tăng (logout, đổi mật khẩu...)
+                if (verified.userId() != null && userDetails instanceof CustomUserDetails details) {
+                    tokenVersionStore.observe(details.getId(), details.getTokenVersion());
+                    if (tokenVersionStore.isRevoked(details.getId(), verified.version())) {
+                        log.debug("Rejected revoked JWT for username: {}", username);
+                        filterChain.doFilter(request, response);
+                        return;
+                    }
+                }
+            }
+
+            if (!userDetails.isEnabled() || !userDetails.isAccountNonLocked()) {
+                log.debug("Rejected JWT for disabled user: {}", username);
+                filterChain.doFilter(request, response);
+                return;
             }
 
             // Tạo Authentication object với Principal là userDetails (Object) chứ không phải username (String)
@@ -104,31 +110,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
-    private UserDetails getUserDetailsFromCache(String username) {
-        CachedUserDetails cached = userCache.get(username);
-        if (cached != null && !cached.isExpired()) {
-            return cached.userDetails;
-        }
-        // Remove expired entry
-        if (cached != null) {
-            userCache.remove(username);
-        }
-        return null;
-    }
-    
-    @PreDestroy
-    public void destroy() {
-        cacheCleaner.shutdown();
-        try {
-            if (!cacheCleaner.awaitTermination(5, TimeUnit.SECONDS)) {
-                cacheCleaner.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            cacheCleaner.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-    }
-
     private String getTokenFromRequest(HttpServletRequest request) {
         // First, try to get token from Authorization header (standard way)
         String bearerToken = request.getHeader("Authorization");
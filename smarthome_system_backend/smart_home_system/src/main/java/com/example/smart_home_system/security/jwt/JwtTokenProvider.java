@@ -2,16 +2,21 @@ package com.example.smart_home_system.security.jwt;
 
 import com.example.smart_home_system.dto.CustomUserDetails;
 import com.example.smart_home_system.security.service.CustomUserDetailService;
+import com.example.smart_home_system.security.service.TokenVersionStore;
+import com.example.smart_home_system.util.SecurityUtils;
+import com.example.smart_home_system.util.SegmentedLruCache;
 import com.nimbusds.jose.*;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -28,9 +33,24 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+/**
+ * Tạo và xác thực JWT (HS512).
+ *
+ * <p>
+ * Signer/verifier được tạo một lần và dùng chung (thread-safe). Token đã xác thực được
+ * cache theo SHA-256 của token cho tới {@code exp}: các request sau với cùng token (vd.
+ * dashboard polling) chỉ tốn một lần hash thay vì parse + HMAC-SHA512. Cache bị giới hạn
+ * bởi {@code jwt.verified-cache.max-size} ({@link SegmentedLruCache}): khi đầy, token ít
+ * được dùng nhất của segment bị đẩy ra (O(1)), token hết hạn bị bỏ khi được đọc.
+ *
+ * <p>
+ * Claim {@code tv} mang phiên bản token của user lúc phát hành (xem TokenVersionStore).
+ */
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class JwtTokenProvider {
     @Value("${jwt.secret}")
@@ -39,6 +59,29 @@ public class JwtTokenProvider {
     @Value("${jwt.expiration}")
     private long EXPIRATION_TIME;
 
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize;
+
+    private final TokenVersionStore tokenVersionStore;
+
+    private JWSSigner signer;
+    private JWSVerifier verifier;
+
+    @Value("${jwt.verified-cache.segments:16}")
+    private int verifiedCacheSegments;
+
+    // Base64(SHA-256(token)) -> claims đã xác thực
+    private SegmentedLruCache<String, VerifiedToken> verifiedCache;
+
+    @PostConstruct
+    public void init() throws JOSEException {
+        byte[] key = SIGNER_KEY.getBytes();
+        signer = new MACSigner(key);
+        verifier = new MACVerifier(key);
+
+        verifiedCache = new SegmentedLruCache<>(verifiedCacheMaxSize, verifiedCacheSegments);
+    }
+
     public String generateToken(Authentication authentication) {
         CustomUserDetails userPrincipal = (CustomUserDetails) authentication.getPrincipal();
 
@@ -55,12 +98,12 @@ public class JwtTokenProvider {
                 .expirationTime(new Date(System.currentTimeMillis() + (EXPIRATION_TIME * 1000)))
                 .claim("scope", scope)
                 .claim("userId", userPrincipal.getId())
+                .claim("tv", tokenVersionStore.current(userPrincipal.getId(), userPrincipal.getTokenVersion()))
                 .build();
 
         SignedJWT signedJWT = new SignedJWT(header, claimsSet);
 
         try {
-            JWSSigner signer = new MACSigner(SIGNER_KEY.getBytes());
             signedJWT.sign(signer);
         } catch (JOSEException e) {
             log.error("Error signing JWT token", e);
@@ -71,23 +114,52 @@ public class JwtTokenProvider {
     }
 
     public boolean validateToken(String token) {
+        return verify(token) != null;
+    }
+
+    /**
+     * Xác thực chữ ký + hạn của token và đọc claims trong một lần parse.
+     *
+     * @return claims của token, null nếu token sai định dạng, sai chữ ký hoặc đã hết hạn
+     */
+    public VerifiedToken verify(String token) {
+        long now = System.currentTimeMillis();
+        String key = SecurityUtils.sha256(token);
+
+        VerifiedToken cached = verifiedCache.get(key, now);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
             SignedJWT signedJWT = SignedJWT.parse(token);
-            JWSVerifier verifier = new MACVerifier(SIGNER_KEY.getBytes());
 
-            if(!signedJWT.verify(verifier)) return false;
+            if (!signedJWT.verify(verifier)) return null;
 
-            Date expirationTime = signedJWT.getJWTClaimsSet().getExpirationTime();
+            JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
+            Date expirationTime = claimsSet.getExpirationTime();
 
-            if (expirationTime == null || expirationTime.before(new Date())) return false;
+            if (expirationTime == null || expirationTime.getTime() <= now) return null;
 
-            return true;
+            String scope = claimsSet.getStringClaim("scope");
+            Object userId = claimsSet.getClaim("userId");
+            Object version = claimsSet.getClaim("tv");
+            VerifiedToken verified = new VerifiedToken(
+                    claimsSet.getSubject(),
+                    userId != null ? userId.toString() : null,
+                    scope,
+                    toAuthorities(scope),
+                    claimsSet.getIssueTime() != null ? claimsSet.getIssueTime().getTime() : 0L,
+                    expirationTime.getTime(),
+                    version instanceof Number number ? number.longValue() : 0L);
+            verifiedCache.put(key, verified, verified.expiresAtMs());
+            return verified;
         } catch (ParseException e) {
             log.error("Invalid JWT token format");
         } catch (JOSEException e) {
             log.error("Error verifying JWT token");
         }
-        return false;
+        return null;
     }
 
     public List<GrantedAuthority> getAuthoritiesFromToken(String token) {
@@ -95,27 +167,7 @@ public class JwtTokenProvider {
             SignedJWT signedJWT = SignedJWT.parse(token);
             JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
 
-            String scope = claimsSet.getStringClaim("scope");
-
-            List<GrantedAuthority> authorities = new ArrayList<>();
-            if (scope != null && !scope.isEmpty()) {
-                String[] scopeArray = scope.split(" ");
-                for (String role : scopeArray) {
-                    // Scope can contain BOTH:
-                    // - roles: "ROLE_ADMIN", "ROLE_USER" (or legacy "ADMIN"/"USER")
-                    // - permissions: "DEVICE_VIEW", "HOME_UPDATE", ...
-                    //
-                    // Only roles should be "ROLE_*". Permissions should stay as-is.
-                    if (role.startsWith("ROLE_")) {
-                        authorities.add(new SimpleGrantedAuthority(role));
-                    } else if (role.equals("ADMIN") || role.equals("USER")) {
-                        authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
-                    } else {
-                        authorities.add(new SimpleGrantedAuthority(role));
-                    }
-                }
-            }
-            return authorities;
+            return new ArrayList<>(toAuthorities(claimsSet.getStringClaim("scope")));
         } catch (ParseException e) {
             log.error("Cannot parse JWT to get authorities", e);
             return new ArrayList<>();
@@ -131,4 +183,37 @@ public class JwtTokenProvider {
             return null;
         }
     }
+
+    private List<SimpleGrantedAuthority> toAuthorities(String scope) {
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        if (scope != null && !scope.isEmpty()) {
+            String[] scopeArray = scope.split(" ");
+            for (String role : scopeArray) {
+                // Scope can contain BOTH:
+                // - roles: "ROLE_ADMIN", "ROLE_USER" (or legacy "ADMIN"/"USER")
+                // - permissions: "DEVICE_VIEW", "HOME_UPDATE", ...
+                //
+                // Only roles should be "ROLE_*". Permissions should stay as-is.
+                if (role.startsWith("ROLE_")) {
+                    authorities.add(new SimpleGrantedAuthority(role));
+                } else if (role.equals("ADMIN") || role.equals("USER")) {
+                    authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+                } else {
+                    authorities.add(new SimpleGrantedAuthority(role));
+                }
+            }
+        }
+        return authorities;
+    }
+
+    /**
+     * Claims của một token đã xác thực chữ ký và hạn ({@code version} = claim tv, 0 nếu không có)
+     */
+    public record VerifiedToken(String username, String userId, String scope,
+                                List<SimpleGrantedAuthority> authorities, long issuedAtMs, long expiresAtMs,
+                                long version) {
+        public VerifiedToken {
+            authorities = List.copyOf(authorities);
+        }
+    }
 }
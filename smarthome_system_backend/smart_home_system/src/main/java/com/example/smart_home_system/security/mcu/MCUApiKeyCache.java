@@ -0,0 +1,140 @@
+package com.example.smart_home_system.security.mcu;
+
+import com.example.smart_home_system.entity.MCUGateway;
+import com.example.smart_home_system.repository.MCUGatewayRepository;
+import com.example.smart_home_system.util.SecurityUtils;
+import com.example.smart_home_system.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache API key -> MCUIdentity cho các endpoint {@code /api/v1/mcu/*} của ESP32.
+ *
+ * <p>
+ * Key của cache là SHA-256 của API key, không giữ plaintext. Entry được nạp khi confirm
+ * pairing hoặc ở lần xác thực đầu tiên (đọc DB), và bị xóa khi MCU bị unpair hoặc khi
+ * thông tin của MCU đổi ngoài heartbeat. API key sai không được cache.
+ *
+ * <p>
+ * Giống UserDetailsCache, một lần đọc DB bắt đầu trước khi evict không được ghi vào cache
+ * (generation), nên gateway vừa bị unpair không bị nạp lại từ dữ liệu cũ. Entry hết hạn
+ * sau {@code security.mcu-key-cache.ttl-ms}, giới hạn thời gian một node khác còn chấp
+ * nhận key đã bị thu hồi.
+ *
+ * <p>
+ * {@link #resolve} dùng lại identity trong MCUAuthentication của request hiện tại nếu có,
+ * nên các service nhận API key từ controller không phải tra cứu lại.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MCUApiKeyCache {
+
+    private final MCUGatewayRepository mcuGatewayRepository;
+
+    @Value("${security.mcu-key-cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    private final Map<String, Entry> byKeyHash = new ConcurrentHashMap<>();
+    // mcuGatewayId -> key hash, để xóa theo MCU
+    private final Map<Long, String> keyHashByGateway = new ConcurrentHashMap<>();
+
+    // Tăng mỗi lần evict: load bắt đầu trước đó không được ghi vào cache
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @return identity của MCU sở hữu API key, null nếu key không hợp lệ
+     */
+    public MCUIdentity resolve(String apiKey) {
+        if (apiKey == null || apiKey.isEmpty()) {
+            return null;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof MCUAuthentication mcuAuthentication
+                && apiKey.equals(mcuAuthentication.getApiKey())) {
+            return mcuAuthentication.getIdentity();
+        }
+
+        String keyHash = SecurityUtils.sha256(apiKey);
+        long now = System.currentTimeMillis();
+        Entry cached = byKeyHash.get(keyHash);
+        if (cached != null) {
+            if (cached.expiresAtMs() > now) {
+                return cached.identity();
+            }
+            byKeyHash.remove(keyHash, cached);
+        }
+
+        long startGeneration = generation.get();
+        MCUGateway mcuGateway = mcuGatewayRepository.findByApiKey(apiKey).orElse(null);
+        if (mcuGateway == null) {
+            return null;
+        }
+        MCUIdentity identity = MCUIdentity.of(mcuGateway);
+        store(keyHash, identity, startGeneration);
+        return identity;
+    }
+
+    /**
+     * Nạp identity cho API key vừa được cấp (confirm pairing), sau commit nếu đang trong
+     * transaction. Key cũ của MCU (nếu có) bị xóa ngay.
+     */
+    public void put(String apiKey, MCUGateway mcuGateway) {
+        remove(mcuGateway.getId());
+        String keyHash = SecurityUtils.sha256(apiKey);
+        MCUIdentity identity = MCUIdentity.of(mcuGateway);
+
+        TransactionUtils.afterCommit(() -> store(keyHash, identity, generation.get()));
+    }
+
+    /**
+     * Cập nhật identity sau khi heartbeat ghi IP / firmware mới
+     */
+    public void update(MCUIdentity identity) {
+        String keyHash = keyHashByGateway.get(identity.mcuGatewayId());
+        if (keyHash != null) {
+            byKeyHash.computeIfPresent(keyHash, (k, current) -> new Entry(identity, current.expiresAtMs()));
+        }
+    }
+
+    /**
+     * Xóa entry của MCU (unpair, đổi thông tin). Nếu đang trong transaction, xóa thêm một
+     * lần sau commit để request song song không nạp lại dữ liệu chưa commit.
+     */
+    public void evict(Long mcuGatewayId) {
+        if (mcuGatewayId == null) {
+            return;
+        }
+        remove(mcuGatewayId);
+        TransactionUtils.afterCompletion(status -> remove(mcuGatewayId));
+    }
+
+    private synchronized void store(String keyHash, MCUIdentity identity, long startGeneration) {
+        // Kiểm tra trong lock: remove tăng generation trước khi xóa (cũng trong lock)
+        if (generation.get() != startGeneration) {
+            return;
+        }
+        byKeyHash.put(keyHash, new Entry(identity, System.currentTimeMillis() + ttlMs));
+        keyHashByGateway.put(identity.mcuGatewayId(), keyHash);
+    }
+
+    private synchronized void remove(Long mcuGatewayId) {
+        generation.incrementAndGet();
+        String keyHash = keyHashByGateway.remove(mcuGatewayId);
+        if (keyHash != null) {
+            byKeyHash.remove(keyHash);
+            log.debug("Evicted MCU API key cache entry: mcuGatewayId={}", mcuGatewayId);
+        }
+    }
+
+    private record Entry(MCUIdentity identity, long expiresAtMs) {
+    }
+}
@@ -1,9 +1,6 @@
 package com.example.smart_home_system.security.mcu;
 
-import com.example.smart_home_system.entity.MCUGateway;
-import com.example.smart_home_system.exception.AppException;
-import com.example.smart_home_system.exception.ErrorCode;
-import com.example.smart_home_system.repository.MCUGatewayRepository;
+import com.example.smart_home_system.util.SecurityUtils;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -27,7 +24,7 @@ import java.io.IOException;
  * <ol>
  *   <li>Check if request path starts with MCU API prefix</li>
  *   <li>Extract API key from header (or query parameter as fallback)</li>
- *   <li>Validate API key against database</li>
+ *   <li>Resolve API key via {@link MCUApiKeyCache} (database only on first use)</li>
  *   <li>Create {@link MCUAuthentication} and set in SecurityContext</li>
  * </ol>
  * 
@@ -43,8 +40,8 @@ import java.io.IOException;
  * 
  * <p><b>Security Considerations:</b>
  * <ul>
- *   <li>API keys are validated against the database on each request</li>
- *   <li>Invalid API keys are logged but don't block the request (handled by security config)</li>
+ *   <li>API keys are cached by SHA-256 hash, never in plaintext; entries are evicted on unpair</li>
+ *   <li>Invalid API keys are logged by hash prefix only and don't block the request (handled by security config)</li>
  *   <li>Pairing requests (without API key) are passed to JWT authentication</li>
  * </ul>
  * 
@@ -52,7 +49,7 @@ import java.io.IOException;
  * @version 1.0
  * @since 2025-01-01
  * @see MCUAuthentication
- * @see MCUGatewayRepository
+ * @see MCUApiKeyCache
  */
 @Component
 @RequiredArgsConstructor
@@ -62,7 +59,7 @@ public class MCUApiKeyFilter extends OncePerRequestFilter {
     private static final String MCU_API_KEY_HEADER = "X-MCU-API-Key";
     private static final String MCU_API_PATH_PREFIX = "/api/v1/mcu/";
 
-    private final MCUGatewayRepository mcuGatewayRepository;
+    private final MCUApiKeyCache mcuApiKeyCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -76,21 +73,19 @@ public class MCUApiKeyFilter extends OncePerRequestFilter {
             String apiKey = getApiKeyFromRequest(request);
             
             if (StringUtils.hasText(apiKey)) {
-                try {
-                    // Verify API Key và lấy MCU Gateway
-                    MCUGateway mcuGateway = mcuGatewayRepository.findByApiKey(apiKey)
-                            .orElseThrow(() -> new AppException(ErrorCode.MCU_INVALID_API_KEY));
+                // Verify API Key và lấy MCU Gateway (cache, DB chỉ ở lần đầu)
+                MCUIdentity identity = mcuApiKeyCache.resolve(apiKey);
 
+                if (identity != null) {
                     // Tạo MCUAuthentication và set vào SecurityContext
-                    MCUAuthentication authentication = new MCUAuthentication(apiKey, mcuGateway);
+                    MCUAuthentication authentication = new MCUAuthentication(apiKey, identity);
                     SecurityContextHolder.getContext().setAuthentication(authentication);
-                    
-                    log.debug("MCU Gateway authenticated: serialNumber={}, homeId={}", 
-                            mcuGateway.getSerialNumber(), 
-                            mcuGateway.getHome() != null ? mcuGateway.getHome().getId() : "null");
-                    
-                } catch (AppException e) {
-                    log.warn("Invalid MCU API Key: {}", apiKey);
+
+                    log.debug("MCU Gateway authenticated: serialNumber={}, homeId={}",
+                            identity.serialNumber(), identity.homeId());
+                } else {
+                    // Không log plaintext: chỉ một đoạn đầu của SHA-256 để đối chiếu
+                    log.warn("Invalid MCU API Key: sha256={}", SecurityUtils.sha256(apiKey).substring(0, 12));
                     // Let it pass through to be handled by exception handler
                 }
             } else {
@@ -1,6 +1,5 @@
 package com.example.smart_home_system.security.mcu;
 
-import com.example.smart_home_system.entity.MCUGateway;
 import lombok.Getter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
@@ -17,7 +16,8 @@ import java.util.List;
  * 
  * <p><b>Authentication Details:</b>
  * <ul>
- *   <li><b>Principal:</b> The {@link MCUGateway} entity representing the authenticated device</li>
+ *   <li><b>Principal:</b> The {@link MCUIdentity} of the authenticated device (id, homeId,
+ *       serial number), resolved once by {@link MCUApiKeyFilter} from {@link MCUApiKeyCache}</li>
  *   <li><b>Credentials:</b> The API key used for authentication</li>
  *   <li><b>Authorities:</b> {@code ROLE_MCU_GATEWAY} for role-based access control</li>
  * </ul>
@@ -25,12 +25,11 @@ import java.util.List;
  * <p><b>Usage:</b>
  * <pre>{@code
  * // In MCUApiKeyFilter
- * MCUAuthentication auth = new MCUAuthentication(apiKey, mcuGateway);
+ * MCUAuthentication auth = new MCUAuthentication(apiKey, identity);
  * SecurityContextHolder.getContext().setAuthentication(auth);
  * 
  * // In service layer
- * MCUAuthentication auth = (MCUAuthentication) SecurityContextHolder.getContext().getAuthentication();
- * MCUGateway gateway = auth.getMcuGateway();
+ * MCUIdentity mcu = mcuApiKeyCache.resolve(apiKey); // reuses auth.getIdentity()
  * }</pre>
  * 
  * <p><b>Security Model:</b>
@@ -47,12 +46,12 @@ import java.util.List;
 public class MCUAuthentication extends AbstractAuthenticationToken {
     
     private final String apiKey;
-    private final MCUGateway mcuGateway;
+    private final MCUIdentity identity;
     
-    public MCUAuthentication(String apiKey, MCUGateway mcuGateway) {
+    public MCUAuthentication(String apiKey, MCUIdentity identity) {
         super(getMCUAuthorities());
         this.apiKey = apiKey;
-        this.mcuGateway = mcuGateway;
+        this.identity = identity;
         setAuthenticated(true);
     }
     
@@ -71,6 +70,6 @@ public class MCUAuthentication extends AbstractAuthenticationToken {
     
     @Override
     public Object getPrincipal() {
-        return mcuGateway;
+        return identity;
     }
 }
@@ -0,0 +1,28 @@
+package com.example.smart_home_system.security.mcu;
+
+import com.example.smart_home_system.entity.MCUGateway;
+
+/**
+ * Danh tính của MCU Gateway đã xác thực bằng API key, đủ cho các endpoint của ESP32
+ * mà không phải load lại entity.
+ *
+ * <p>
+ * {@code ipAddress} / {@code firmwareVersion} là giá trị đã lưu trong DB, dùng để chỉ ghi
+ * khi heartbeat báo giá trị mới.
+ */
+public record MCUIdentity(Long mcuGatewayId, Long homeId, String serialNumber, String ipAddress,
+                          String firmwareVersion) {
+
+    public static MCUIdentity of(MCUGateway mcuGateway) {
+        return new MCUIdentity(
+                mcuGateway.getId(),
+                mcuGateway.getHome() != null ? mcuGateway.getHome().getId() : null,
+                mcuGateway.getSerialNumber(),
+                mcuGateway.getIpAddress(),
+                mcuGateway.getFirmwareVersion());
+    }
+
+    public MCUIdentity withNetworkInfo(String ipAddress, String firmwareVersion) {
+        return new MCUIdentity(mcuGatewayId, homeId, serialNumber, ipAddress, firmwareVersion);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.smart_home_system.security.service;
+
+import com.example.smart_home_system.event.UserSecurityChangedEvent;
+import com.example.smart_home_system.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phiên bản token theo user, dùng cho xác thực stateless.
+ *
+ * <p>
+ * JWT mang claim {@code tv} là phiên bản hiệu lực của user lúc phát hành. Khi trạng thái,
+ * mật khẩu hoặc role của user thay đổi, hoặc user logout, phiên bản của user được tăng:
+ * token cũ bị coi là đã thu hồi. Khi permission của một role thay đổi, phiên bản chung được
+ * tăng: token cũ không còn được tin tưởng nữa và phải load lại user từ DB (authorities mới).
+ *
+ * <p>
+ * Phiên bản là mốc thời gian tăng dần (ms) và được lưu trong DB cùng transaction với thay
+ * đổi ({@code users.token_version}, phiên bản chung trong {@code roles.permissions_version}).
+ * Bản trong bộ nhớ chỉ được áp dụng sau commit. Các node khác nhận thay đổi qua
+ * {@link #syncFromDatabase()} (mỗi {@code sync-interval-ms}), và đường load từ DB luôn so
+ * token với {@code token_version} của user vừa đọc, nên token đã thu hồi không được chấp
+ * nhận ở node khác quá một chu kỳ sync.
+ *
+ * <p>
+ * Phiên bản chung khởi tạo bằng thời điểm start, nên token phát hành trước lần restart cũng
+ * đi qua đường load từ DB cho tới khi hết hạn.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenVersionStore {
+
+    private static final String RAISE_USER_SQL =
+            "UPDATE users SET token_version = GREATEST(token_version, ?) WHERE id = ?";
+
+    // Phiên bản chung được ghi lên mọi role; đọc lại bằng MAX
+    private static final String RAISE_GLOBAL_SQL =
+            "UPDATE roles SET permissions_version = GREATEST(permissions_version, ?)";
+
+    private static final String CHANGED_USERS_SQL =
+            "SELECT id, username, token_version FROM users WHERE token_version > ?";
+
+    private static final String GLOBAL_SQL =
+            "SELECT COALESCE(MAX(permissions_version), 0) FROM roles";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserDetailsCache userDetailsCache;
+
+    // Phiên bản do node khác ghi có thể lệch đồng hồ: mỗi lần sync đọc lùi lại một khoảng
+    @Value("${security.token-version.clock-skew-ms:60000}")
+    private long clockSkewMs;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Long> userVersions = new ConcurrentHashMap<>();
+    private volatile long globalVersion = next();
+    private volatile long syncedThrough = globalVersion;
+
+    /**
+     * Phiên bản gắn vào token mới phát hành cho user
+     */
+    public long current(String userId) {
+        return Math.max(globalVersion, userVersions.getOrDefault(userId, 0L));
+    }
+
+    /**
+     * Như {@link #current(String)}, sau khi ghi nhận {@code token_version} vừa đọc từ DB
+     */
+    public long current(String userId, long persistedVersion) {
+        observe(userId, persistedVersion);
+        return current(userId);
+    }
+
+    /**
+     * Token phát hành sau mọi thay đổi: claims trong token còn đúng
+     */
+    public boolean isCurrent(String userId, long tokenVersion) {
+        return tokenVersion >= current(userId);
+    }
+
+    /**
+     * Token phát hành trước lần thay đổi gần nhất của chính user này
+     */
+    public boolean isRevoked(String userId, long tokenVersion) {
+        return tokenVersion < userVersions.getOrDefault(userId, 0L);
+    }
+
+    /**
+     * Ghi nhận phiên bản của user đọc từ DB (có thể do node khác ghi).
+     *
+     * @return true nếu phiên bản mới hơn bản đang giữ
+     */
+    public boolean observe(String userId, long version) {
+        if (userId == null || version <= 0) {
+            return false;
+        }
+        // Lần tăng tiếp theo ở node này phải lớn hơn mọi phiên bản đã thấy
+        clock.accumulateAndGet(version, Math::max);
+        long previous = userVersions.getOrDefault(userId, 0L);
+        return userVersions.merge(userId, version, Math::max) > previous;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onUserSecurityChanged(UserSecurityChangedEvent event) {
+        long version = next();
+        if (event.affectsAllUsers()) {
+            jdbcTemplate.update(RAISE_GLOBAL_SQL, version);
+        } else {
+            jdbcTemplate.update(RAISE_USER_SQL, version, event.userId());
+        }
+
+        TransactionUtils.afterCommit(() -> apply(event, version));
+    }
+
+    /**
+     * Đọc các lần tăng phiên bản do node khác ghi vào DB
+     */
+    @Scheduled(fixedDelayString = "${security.token-version.sync-interval-ms:5000}")
+    public void syncFromDatabase() {
+        long since = syncedThrough - clockSkewMs;
+        List<PersistedVersion> changed = jdbcTemplate.query(CHANGED_USERS_SQL,
+                (rs, rowNum) -> new PersistedVersion(rs.getString(1), rs.getString(2), rs.getLong(3)),
+                since);
+
+        long maxSeen = syncedThrough;
+        for (PersistedVersion row : changed) {
+            if (observe(row.userId(), row.version())) {
+                userDetailsCache.invalidate(row.username());
+                userDetailsCache.invalidateUserId(row.userId());
+                log.debug("Token version synced: userId={}, version={}", row.userId(), row.version());
+            }
+            maxSeen = Math.max(maxSeen, row.version());
+        }
+        syncedThrough = maxSeen;
+
+        Long global = jdbcTemplate.queryForObject(GLOBAL_SQL, Long.class);
+        if (global != null && global > globalVersion) {
+            clock.accumulateAndGet(global, Math::max);
+            globalVersion = global;
+            userDetailsCache.invalidateAll();
+            log.info("Global token version synced: {}", global);
+        }
+    }
+
+    private void apply(UserSecurityChangedEvent event, long version) {
+        if (event.affectsAllUsers()) {
+            globalVersion = Math.max(globalVersion, version);
+        } else {
+            userVersions.merge(event.userId(), version, Math::max);
+        }
+        log.info("Token version bumped: userId={}, reason={}",
+                event.affectsAllUsers() ? "*" : event.userId(), event.reason());
+    }
+
+    private long next() {
+        return clock.accumulateAndGet(System.currentTimeMillis(), (prev, now) -> Math.max(prev + 1, now));
+    }
+
+    private record PersistedVersion(String userId, String username, long version) {
+    }
+}
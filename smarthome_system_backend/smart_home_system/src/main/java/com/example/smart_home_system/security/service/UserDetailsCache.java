@@ -0,0 +1,121 @@
+package com.example.smart_home_system.security.service;
+
+import com.example.smart_home_system.dto.CustomUserDetails;
+import com.example.smart_home_system.dto.response.admin.UserDetailsCacheStats;
+import com.example.smart_home_system.event.UserSecurityChangedEvent;
+import com.example.smart_home_system.util.SegmentedLruCache;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache UserDetails theo username cho JwtAuthenticationFilter (đường load từ DB).
+ *
+ * <p>
+ * Cache có giới hạn {@code maximum-size} ({@link SegmentedLruCache}). Entry quá
+ * {@code ttl-ms} bị bỏ khi được đọc tới hoặc khi bị đẩy ra bởi LRU.
+ *
+ * <p>
+ * Entry bị xóa khi nhận UserSecurityChangedEvent (sau commit). Một lần load từ DB bắt
+ * đầu trước khi invalidate sẽ không được ghi vào cache, tránh giữ lại dữ liệu cũ.
+ */
+@Component
+@Slf4j
+public class UserDetailsCache {
+
+    @Value("${security.user-cache.maximum-size:10000}")
+    private int maximumSize;
+
+    @Value("${security.user-cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${security.user-cache.segments:16}")
+    private int segmentCount;
+
+    private SegmentedLruCache<String, UserDetails> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = new SegmentedLruCache<>(maximumSize, segmentCount);
+        log.info("User details cache: maximumSize={}, ttlMs={}, segments={}",
+                maximumSize, ttlMs, cache.getSegmentCount());
+    }
+
+    /**
+     * Lấy UserDetails từ cache, load bằng {@code loader} nếu chưa có hoặc đã hết hạn.
+     * Exception của loader được ném lại, không có gì được cache.
+     */
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        long now = System.currentTimeMillis();
+
+        UserDetails cached = cache.get(username, now);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        // Load bắt đầu trước một lần invalidate không được ghi vào cache
+        long startGeneration = cache.generation();
+        UserDetails loaded = loader.apply(username);
+        if (loaded != null) {
+            cache.put(username, loaded, now + ttlMs, startGeneration);
+        }
+        return loaded;
+    }
+
+    public void invalidate(String username) {
+        if (username != null && cache.remove(username)) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Xóa entry của user theo id (username có thể vừa đổi)
+     */
+    public void invalidateUserId(String userId) {
+        invalidations.addAndGet(cache.removeIf(
+                details -> details instanceof CustomUserDetails custom && userId.equals(custom.getId())));
+    }
+
+    public void invalidateAll() {
+        invalidations.addAndGet(cache.clear());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserSecurityChanged(UserSecurityChangedEvent event) {
+        if (event.affectsAllUsers()) {
+            invalidateAll();
+        } else {
+            invalidate(event.username());
+            invalidateUserId(event.userId());
+        }
+    }
+
+    public UserDetailsCacheStats getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+        return UserDetailsCacheStats.builder()
+                .size(cache.size())
+                .maximumSize(maximumSize)
+                .ttlMs(ttlMs)
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRate(requests > 0 ? (double) hitCount / requests : 0)
+                .evictions(cache.getEvictions())
+                .expirations(cache.getExpirations())
+                .invalidations(invalidations.get())
+                .build();
+    }
+}
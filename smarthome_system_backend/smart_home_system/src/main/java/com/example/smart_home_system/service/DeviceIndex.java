@@ -0,0 +1,247 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.entity.Device;
+import com.example.smart_home_system.enums.DeviceStatus;
+import com.example.smart_home_system.enums.SensorKey;
+import com.example.smart_home_system.repository.DeviceRepository;
+import com.example.smart_home_system.util.GPIOMapping;
+import com.example.smart_home_system.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index các device (chưa bị xóa) của từng home, tra cứu theo GPIO pin và
+ * deviceCode.
+ *
+ * <p>
+ * Dùng cho hot path MQTT/heartbeat: thay vì load toàn bộ device của home và
+ * {@code stream().filter()} cho mỗi sensor key trên mỗi frame, index được build một
+ * lần (lazy) và mọi lookup là O(1), không đọc DB.
+ *
+ * <p>
+ * Index chỉ giữ {@link DeviceSnapshot} bất biến (id, deviceCode, GPIO pin, giá trị
+ * status/stateValue lúc load), không giữ JPA entity: snapshot được dùng chung giữa các
+ * MQTT lane và HTTP thread mà không ai sửa được nó, và việc load không chạm tới
+ * persistence context của caller. Trạng thái live của device nằm ở
+ * {@link DeviceStateStore}, nên điều khiển/cập nhật state không cần invalidate index.
+ *
+ * <p>
+ * Khi một device được tạo/sửa/xóa, chỉ entry của device đó được thay trong snapshot của
+ * home, sau khi transaction commit (bỏ qua nếu rollback). Cả index của home chỉ bị xóa
+ * khi MCU bị unpair hoặc home bị xóa; khi đó index bị xóa thêm một lần sau commit để
+ * tránh một request song song build lại index từ dữ liệu chưa commit.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class DeviceIndex {
+
+    // Prefix deviceCode theo GPIO pin, dùng cho device cũ chưa được gán gpioPin
+    private static final Map<Integer, String> LEGACY_CODE_PREFIX = Map.of(
+            GPIOMapping.PIN_RELAY_LIGHT, "LIGHT_RELAY",
+            GPIOMapping.PIN_RELAY_FAN, "FAN_RELAY",
+            GPIOMapping.PIN_SERVO, "DOOR_SERVO",
+            GPIOMapping.PIN_MQ2, "GAS_SENSOR",
+            GPIOMapping.PIN_LDR, "LIGHT_SENSOR",
+            GPIOMapping.PIN_RAIN, "RAIN_SENSOR",
+            GPIOMapping.PIN_FLAME, "FLAME_SENSOR",
+            GPIOMapping.PIN_PIR, "MOTION_SENSOR",
+            GPIOMapping.PIN_DHT_IN, "TEMP_HUMIDITY_IN",
+            GPIOMapping.PIN_DHT_OUT, "TEMP_HUMIDITY_OUT");
+
+    private final DeviceRepository deviceRepository;
+
+    private final Map<Long, HomeDevices> byHome = new ConcurrentHashMap<>();
+
+    /**
+     * Lấy index của home, build từ DB nếu chưa có
+     */
+    public HomeDevices forHome(Long homeId) {
+        return byHome.computeIfAbsent(homeId, this::load);
+    }
+
+    /**
+     * Xóa index của home (sẽ được build lại ở lần truy cập tiếp theo)
+     */
+    public void invalidate(Long homeId) {
+        if (homeId == null) {
+            return;
+        }
+        byHome.remove(homeId);
+        TransactionUtils.afterCompletion(status -> byHome.remove(homeId));
+    }
+
+    /**
+     * Device vừa được tạo/sửa: thay entry của device trong index của các home chứa nó,
+     * sau khi transaction commit
+     */
+    public void refresh(Device device) {
+        if (device == null || device.getId() == null) {
+            return;
+        }
+        DeviceSnapshot snapshot = DeviceSnapshot.of(device);
+        Set<Long> homeIds = homeIdsOf(device);
+        TransactionUtils.afterCommit(() -> homeIds.forEach(homeId -> byHome.computeIfPresent(homeId,
+                (id, home) -> home.with(snapshot))));
+    }
+
+    /**
+     * Bỏ device khỏi index của các home đang chứa nó (device bị xóa, hoặc trước khi device
+     * được chuyển sang room/home khác), sau khi transaction commit
+     */
+    public void remove(Device device) {
+        if (device == null || device.getId() == null) {
+            return;
+        }
+        Long deviceId = device.getId();
+        Set<Long> homeIds = homeIdsOf(device);
+        TransactionUtils.afterCommit(() -> homeIds.forEach(homeId -> byHome.computeIfPresent(homeId,
+                (id, home) -> home.without(deviceId))));
+    }
+
+    public int getIndexedHomeCount() {
+        return byHome.size();
+    }
+
+    private HomeDevices load(Long homeId) {
+        List<DeviceSnapshot> devices = deviceRepository.findByRoomHomeId(homeId, Pageable.unpaged()).getContent()
+                .stream()
+                .map(DeviceSnapshot::of)
+                .toList();
+        log.debug("Built device index for homeId={}: {} devices", homeId, devices.size());
+        return new HomeDevices(devices);
+    }
+
+    /**
+     * Các home có index chứa device (device gắn home trực tiếp hoặc qua room)
+     */
+    private static Set<Long> homeIdsOf(Device device) {
+        Set<Long> homeIds = new HashSet<>();
+        if (device.getHome() != null) {
+            homeIds.add(device.getHome().getId());
+        }
+        if (device.getRoom() != null && device.getRoom().getHome() != null) {
+            homeIds.add(device.getRoom().getHome().getId());
+        }
+        return homeIds;
+    }
+
+    /**
+     * Bản sao bất biến của một device trong index. {@code status}/{@code stateValue} là giá
+     * trị lúc load, chỉ dùng làm giá trị ban đầu; giá trị live lấy từ {@link DeviceStateStore}.
+     */
+    public record DeviceSnapshot(Long id, String deviceCode, Integer gpioPin, DeviceStatus status,
+                                 String stateValue) {
+
+        static DeviceSnapshot of(Device device) {
+            return new DeviceSnapshot(device.getId(), device.getDeviceCode(), device.getGpioPin(),
+                    device.getStatus(), device.getStateValue());
+        }
+    }
+
+    /**
+     * Snapshot bất biến các device của một home
+     */
+    public static final class HomeDevices {
+        private final List<DeviceSnapshot> devices;
+        private final Map<Integer, DeviceSnapshot> byGpioPin = new HashMap<>();
+        private final Map<String, DeviceSnapshot> byDeviceCode = new HashMap<>();
+        // GPIO pin của sensor key -> device (đã tính cả fallback theo deviceCode prefix)
+        private final Map<Integer, DeviceSnapshot> bySensorPin = new HashMap<>();
+
+        private HomeDevices(List<DeviceSnapshot> devices) {
+            this.devices = List.copyOf(devices);
+
+            for (DeviceSnapshot device : this.devices) {
+                if (device.gpioPin() != null) {
+                    byGpioPin.putIfAbsent(device.gpioPin(), device);
+                }
+                if (device.deviceCode() != null) {
+                    byDeviceCode.putIfAbsent(device.deviceCode().toUpperCase(Locale.ROOT), device);
+                }
+            }
+
+            for (SensorKey key : SensorKey.DEVICE_KEYS) {
+                Integer pin = key.getGpioPin();
+                if (bySensorPin.containsKey(pin)) {
+                    continue;
+                }
+                // Ưu tiên GPIO pin (chính xác nhất), fallback về deviceCode prefix
+                DeviceSnapshot device = byGpioPin.get(pin);
+                String prefix = LEGACY_CODE_PREFIX.get(pin);
+                if (device == null && prefix != null) {
+                    device = this.devices.stream()
+                            .filter(d -> d.deviceCode() != null && d.deviceCode().startsWith(prefix))
+                            .findFirst()
+                            .orElse(null);
+                }
+                if (device != null) {
+                    bySensorPin.put(pin, device);
+                }
+            }
+        }
+
+        /**
+         * Bản sao với device được thêm mới hoặc thay thế (cùng id)
+         */
+        HomeDevices with(DeviceSnapshot device) {
+            List<DeviceSnapshot> next = new ArrayList<>(devices.size() + 1);
+            boolean replaced = false;
+            for (DeviceSnapshot current : devices) {
+                if (current.id().equals(device.id())) {
+                    next.add(device);
+                    replaced = true;
+                } else {
+                    next.add(current);
+                }
+            }
+            if (!replaced) {
+                next.add(device);
+            }
+            return new HomeDevices(next);
+        }
+
+        /**
+         * Bản sao không còn device này
+         */
+        HomeDevices without(Long deviceId) {
+            List<DeviceSnapshot> next = devices.stream()
+                    .filter(d -> !d.id().equals(deviceId))
+                    .toList();
+            return next.size() == devices.size() ? this : new HomeDevices(next);
+        }
+
+        public List<DeviceSnapshot> all() {
+            return devices;
+        }
+
+        public DeviceSnapshot byGpioPin(Integer gpioPin) {
+            return gpioPin != null ? byGpioPin.get(gpioPin) : null;
+        }
+
+        /**
+         * Tìm device theo deviceCode (không phân biệt hoa thường)
+         */
+        public DeviceSnapshot byDeviceCode(String deviceCode) {
+            return deviceCode != null ? byDeviceCode.get(deviceCode.toUpperCase(Locale.ROOT)) : null;
+        }
+
+        /**
+         * Device nhận giá trị của sensor key (theo GPIO pin, fallback deviceCode prefix)
+         */
+        public DeviceSnapshot forSensor(SensorKey key) {
+            return bySensorPin.get(key.getGpioPin());
+        }
+    }
+}
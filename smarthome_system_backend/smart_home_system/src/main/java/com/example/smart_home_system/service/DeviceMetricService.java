@@ -0,0 +1,50 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.response.MetricSeriesResponse;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Time-series storage cho metric của device (giá trị sensor theo thời gian).
+ *
+ * <p><b>Ghi:</b> mỗi giá trị là một row hẹp (home, device, sensor key, thời điểm, giá trị)
+ * được gom trong bộ nhớ và ghi theo JDBC batch. Cùng lúc đó các rollup 1 phút, 1 giờ,
+ * 1 ngày (min/max/sum/count) được upsert liên tục. Rollup nhận mọi giá trị, kể cả giá
+ * trị bị sampling bỏ khỏi bảng sample, nên avg/count của rollup không bị lệch về các
+ * giá trị vượt deadband.
+ *
+ * <p><b>Đọc:</b> {@link #queryRange} chọn mức rollup thô nhất vẫn đáp ứng bước thời gian
+ * yêu cầu, nên biểu đồ 30 ngày chỉ đọc vài trăm row thay vì toàn bộ sample.
+ */
+public interface DeviceMetricService {
+
+    /**
+     * Ghi nhận một giá trị sensor (buffer, sẽ được ghi ở lần flush kế tiếp). Giá trị luôn
+     * được cộng vào rollup; chỉ ghi thành một row sample khi {@code keepSample}.
+     *
+     * @param timestampMs thời điểm đo (epoch millis)
+     * @param keepSample  kết quả của MetricSamplingPolicy cho giá trị này
+     */
+    void record(Long homeId, Long deviceId, String sensorKey, long timestampMs, double value, boolean keepSample);
+
+    /**
+     * Lấy chuỗi giá trị của sensor trong khoảng thời gian
+     *
+     * @param step bước thời gian mong muốn giữa hai điểm; quyết định mức rollup được dùng
+     */
+    MetricSeriesResponse queryRange(Long homeId, String sensorKey, LocalDateTime from, LocalDateTime to,
+            Duration step);
+
+    /**
+     * Lịch sử sensor cho biểu đồ: đọc dạng stream ở mức rollup phù hợp rồi downsample
+     * (LTTB) về tối đa {@code maxPoints} điểm, giữ lại các đỉnh/đáy của chuỗi
+     */
+    MetricSeriesResponse getHistory(Long homeId, String sensorKey, LocalDateTime from, LocalDateTime to,
+            int maxPoints);
+
+    /**
+     * Ghi ngay các sample đang chờ trong buffer
+     */
+    void flush();
+}
@@ -0,0 +1,341 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.response.admin.DeviceStateStats;
+import com.example.smart_home_system.entity.Device;
+import com.example.smart_home_system.enums.DeviceStatus;
+import com.example.smart_home_system.util.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind store cho trạng thái live (status + stateValue) của device được cập nhật
+ * từ sensor frame / MQTT.
+ *
+ * <p>
+ * Mỗi frame chỉ so sánh giá trị mới với giá trị đang giữ trong bộ nhớ; entry chỉ bị
+ * đánh dấu dirty khi giá trị thực sự thay đổi. Các entry dirty được ghi xuống DB bằng
+ * JDBC batch UPDATE theo chu kỳ {@code device.state.flush-interval-ms}, hoặc sớm hơn
+ * khi số entry dirty đạt {@code device.state.flush-threshold}. Nhiều thay đổi của cùng
+ * device giữa hai lần flush được gộp thành một UPDATE.
+ *
+ * <p>
+ * Các thao tác ghi trực tiếp DB từ REST (điều khiển, đổi status, xóa device) phải gọi
+ * {@link #syncFromDatabase(Device)} / {@link #evict(Long)} để store không ghi đè giá trị
+ * mới bằng giá trị cũ khi flush.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceStateStore {
+
+    private static final String UPDATE_SQL =
+            "UPDATE devices SET status = ?, state_value = ?, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${device.state.flush-interval-ms:2000}")
+    private long flushIntervalMs;
+
+    @Value("${device.state.flush-threshold:500}")
+    private int flushThreshold;
+
+    @Value("${device.state.batch-size:200}")
+    private int batchSize;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    private final AtomicLong framesIn = new AtomicLong();
+    private final AtomicLong changesDetected = new AtomicLong();
+    private final AtomicLong unchangedSkipped = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private volatile int lastFlushRows;
+    private volatile long lastFlushMs;
+
+    @PostConstruct
+    public void start() {
+        log.info("Device state store started: flushIntervalMs={}, flushThreshold={}, batchSize={}",
+                flushIntervalMs, flushThreshold, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Ghi nốt các thay đổi còn lại trước khi tắt
+        flushSafely();
+        log.info("Device state store stopped: rowsWritten={}, framesIn={}", rowsWritten.get(), framesIn.get());
+    }
+
+    /**
+     * Đếm một sensor frame / status event đi vào (mẫu số của write amplification)
+     */
+    public void recordFrame() {
+        framesIn.incrementAndGet();
+    }
+
+    /**
+     * Cập nhật trạng thái live của device; DB chỉ được ghi ở lần flush kế tiếp.
+     *
+     * @param device     snapshot từ DeviceIndex (giá trị ban đầu nếu store chưa có device)
+     * @param status     status mới, null = giữ nguyên
+     * @param stateValue stateValue mới, null = giữ nguyên
+     * @return true nếu có thay đổi thật sự
+     */
+    public boolean update(DeviceIndex.DeviceSnapshot device, DeviceStatus status, String stateValue) {
+        Entry entry = entryFor(device);
+
+        boolean changed;
+        synchronized (entry) {
+            DeviceStatus newStatus = status != null ? status : entry.status;
+            String newStateValue = stateValue != null ? stateValue : entry.stateValue;
+            changed = newStatus != entry.status || !Objects.equals(newStateValue, entry.stateValue);
+
+            if (changed) {
+                entry.status = newStatus;
+                entry.stateValue = newStateValue;
+                entry.updatedAt = LocalDateTime.now();
+                entry.version++;
+                if (!entry.dirty) {
+                    entry.dirty = true;
+                    dirtyCount.incrementAndGet();
+                }
+            }
+        }
+
+        if (changed) {
+            changesDetected.incrementAndGet();
+            if (dirtyCount.get() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+                taskScheduler.schedule(this::flushSafely, Instant.now());
+            }
+        } else {
+            unchangedSkipped.incrementAndGet();
+        }
+        return changed;
+    }
+
+    /**
+     * Trạng thái live của device (có thể chưa được flush xuống DB)
+     */
+    public LiveState current(DeviceIndex.DeviceSnapshot device) {
+        Entry entry = entries.get(device.id());
+        if (entry == null) {
+            return new LiveState(device.status(), device.stateValue());
+        }
+        synchronized (entry) {
+            return new LiveState(entry.status, entry.stateValue);
+        }
+    }
+
+    private Entry entryFor(DeviceIndex.DeviceSnapshot device) {
+        Entry entry = entries.get(device.id());
+        if (entry != null) {
+            return entry;
+        }
+        return entries.computeIfAbsent(device.id(), id -> new Entry(device.status(), device.stateValue()));
+    }
+
+    /**
+     * Device vừa được ghi trực tiếp xuống DB: lấy giá trị đó làm giá trị live, thay cho
+     * thay đổi chưa flush.
+     *
+     * <p>
+     * Nếu đang trong transaction, giá trị chỉ được áp dụng sau commit (rollback thì store
+     * giữ nguyên giá trị và cờ dirty cũ). Trong lúc chờ, entry không được flush để không
+     * ghi đè row đang được transaction sửa.
+     */
+    public void syncFromDatabase(Device device) {
+        Long deviceId = device.getId();
+        DeviceStatus status = device.getStatus();
+        String stateValue = device.getStateValue();
+
+        Entry entry = entries.computeIfAbsent(deviceId, id -> new Entry(status, stateValue));
+        synchronized (entry) {
+            entry.pendingSyncs++;
+        }
+        TransactionUtils.afterCompletion(completion -> {
+            synchronized (entry) {
+                entry.pendingSyncs--;
+            }
+            if (completion == TransactionSynchronization.STATUS_COMMITTED) {
+                apply(entry, status, stateValue);
+            }
+        });
+    }
+
+    private void apply(Entry entry, DeviceStatus status, String stateValue) {
+        synchronized (entry) {
+            entry.status = status;
+            entry.stateValue = stateValue;
+            entry.updatedAt = LocalDateTime.now();
+            entry.version++;
+            // Ghi lại giá trị đã commit ở lần flush sau: một flush đã lấy giá trị cũ trước khi
+            // entry bị giữ lại có thể vừa ghi đè row sau commit
+            if (!entry.dirty) {
+                entry.dirty = true;
+                dirtyCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Bỏ device khỏi store (device bị xóa), sau khi transaction commit
+     */
+    public void evict(Long deviceId) {
+        TransactionUtils.afterCommit(() -> remove(deviceId));
+    }
+
+    private void remove(Long deviceId) {
+        Entry entry = entries.remove(deviceId);
+        if (entry != null) {
+            synchronized (entry) {
+                if (entry.dirty) {
+                    entry.dirty = false;
+                    dirtyCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Ghi tất cả entry dirty xuống DB bằng JDBC batch
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            if (dirtyCount.get() == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+
+            List<Object[]> batch = new ArrayList<>();
+            List<Entry> flushed = new ArrayList<>();
+            List<Long> versions = new ArrayList<>();
+
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                synchronized (entry) {
+                    // Entry đang chờ syncFromDatabase của một transaction: để lần flush sau
+                    if (!entry.dirty || entry.pendingSyncs > 0) {
+                        continue;
+                    }
+                    batch.add(new Object[] {
+                            entry.status != null ? entry.status.name() : null,
+                            entry.stateValue,
+                            Timestamp.valueOf(entry.updatedAt),
+                            e.getKey()
+                    });
+                    flushed.add(entry);
+                    versions.add(entry.version);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, batch, batchSize,
+                    (ps, args) -> {
+                        ps.setString(1, (String) args[0]);
+                        ps.setString(2, (String) args[1]);
+                        ps.setTimestamp(3, (Timestamp) args[2]);
+                        ps.setLong(4, (Long) args[3]);
+                    }));
+
+            // Chỉ xóa cờ dirty nếu entry không bị thay đổi trong lúc đang flush
+            for (int i = 0; i < flushed.size(); i++) {
+                Entry entry = flushed.get(i);
+                synchronized (entry) {
+                    if (entry.dirty && entry.version == versions.get(i)) {
+                        entry.dirty = false;
+                        dirtyCount.decrementAndGet();
+                    }
+                }
+            }
+
+            rowsWritten.addAndGet(batch.size());
+            flushCount.incrementAndGet();
+            lastFlushRows = batch.size();
+            lastFlushMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.debug("Flushed {} device state rows in {} ms", batch.size(), lastFlushMs);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${device.state.flush-interval-ms:2000}",
+            initialDelayString = "${device.state.flush-interval-ms:2000}")
+    void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // Entry vẫn dirty, sẽ được ghi lại ở lần flush sau
+            flushFailures.incrementAndGet();
+            log.error("Failed to flush device state: {}", e.getMessage(), e);
+        }
+    }
+
+    public DeviceStateStats getStats() {
+        long frames = framesIn.get();
+        long rows = rowsWritten.get();
+        return DeviceStateStats.builder()
+                .trackedDevices(entries.size())
+                .dirtyDevices(dirtyCount.get())
+                .flushIntervalMs(flushIntervalMs)
+                .flushThreshold(flushThreshold)
+                .framesIn(frames)
+                .changesDetected(changesDetected.get())
+                .unchangedSkipped(unchangedSkipped.get())
+                .rowsWritten(rows)
+                .writeAmplification(frames > 0 ? (double) rows / frames : 0)
+                .flushCount(flushCount.get())
+                .flushFailures(flushFailures.get())
+                .lastFlushRows(lastFlushRows)
+                .lastFlushMs(lastFlushMs)
+                .build();
+    }
+
+    /**
+     * Giá trị live của một device tại một thời điểm
+     */
+    public record LiveState(DeviceStatus status, String stateValue) {
+    }
+
+    private static final class Entry {
+        DeviceStatus status;
+        String stateValue;
+        LocalDateTime updatedAt = LocalDateTime.now();
+        long version;
+        boolean dirty;
+        // Số transaction đang ghi trực tiếp device này (xem syncFromDatabase)
+        int pendingSyncs;
+
+        Entry(DeviceStatus status, String stateValue) {
+            this.status = status;
+            this.stateValue = stateValue;
+        }
+    }
+}
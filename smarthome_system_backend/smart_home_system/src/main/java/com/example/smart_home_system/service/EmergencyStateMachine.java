@@ -0,0 +1,214 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.SensorFrame;
+import com.example.smart_home_system.entity.MCUGateway;
+import com.example.smart_home_system.enums.EmergencyType;
+import com.example.smart_home_system.enums.NotificationType;
+import com.example.smart_home_system.enums.SensorKey;
+import com.example.smart_home_system.repository.NotificationRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trạng thái khẩn cấp của từng home, giữ trong bộ nhớ:
+ * {@code NORMAL -> ACTIVE(FIRE/GAS/BOTH) -> CLEARED}.
+ *
+ * <p>
+ * Trước đây mỗi sensor frame có {@code emergency=false} đều chạy hai query trên bảng
+ * notifications (emergency gần đây? đã tạo CLEARED chưa?) và mỗi frame có
+ * {@code emergency=true} lại tạo thêm một thông báo. Giờ frame chỉ được so với trạng
+ * thái trong bộ nhớ; thông báo và WebSocket chỉ được gửi đúng một lần khi trạng thái
+ * chuyển (kích hoạt, thêm loại mới, được giải quyết). Frame ở trạng thái ổn định không
+ * chạm DB.
+ *
+ * <p>
+ * Khi khởi động, trạng thái được dựng lại từ các thông báo khẩn cấp / đã giải quyết
+ * trong {@code app.emergency.restore-window-minutes} gần nhất, để một tình huống đang
+ * diễn ra trước khi restart vẫn nhận được thông báo "đã giải quyết".
+ *
+ * <p>
+ * Frame của một home có thể tới từ lane thường hoặc priority lane; MqttIngestDispatcher
+ * gọi {@link #onFrame} dưới lock của home và chỉ với frame mới hơn frame đã xử lý gần
+ * nhất, nên state machine không nhận frame cũ hay hai frame song song của cùng home.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmergencyStateMachine {
+
+    // Tiêu đề thông báo CLEARED, xem NotificationServiceImpl#createEmergencyNotification
+    private static final String CLEARED_TITLE_PATTERN = "%giải quyết%";
+
+    private final NotificationService notificationService;
+    private final NotificationRepository notificationRepository;
+    private final RealtimeEventBus realtimeEventBus;
+
+    @Value("${app.emergency.restore-window-minutes:60}")
+    private long restoreWindowMinutes;
+
+    private final Map<Long, HomeEmergency> states = new ConcurrentHashMap<>();
+
+    public enum State {
+        NORMAL, ACTIVE, CLEARED
+    }
+
+    @PostConstruct
+    public void restore() {
+        LocalDateTime since = LocalDateTime.now().minusMinutes(restoreWindowMinutes);
+        List<Object[]> events = notificationRepository.findEmergencyEventsSince(since, CLEARED_TITLE_PATTERN);
+        for (Object[] event : events) {
+            Long homeId = (Long) event[0];
+            if (event[1] == NotificationType.EMERGENCY) {
+                HomeEmergency current = states.get(homeId);
+                EmergencyType type = EmergencyType.fromTitle((String) event[2]);
+                states.put(homeId, new HomeEmergency(State.ACTIVE,
+                        current != null && current.state == State.ACTIVE ? union(current.type, type) : type));
+            } else {
+                states.put(homeId, new HomeEmergency(State.CLEARED, null));
+            }
+        }
+        long active = states.values().stream().filter(s -> s.state == State.ACTIVE).count();
+        log.info("[Emergency] Restored emergency state for {} homes ({} active)", states.size(), active);
+    }
+
+    /**
+     * Cập nhật trạng thái theo sensor frame, gửi thông báo nếu trạng thái chuyển.
+     *
+     * <p>
+     * Trạng thái mới được ghi trước (atomically, trong {@code compute}) để frame song song
+     * không gửi trùng thông báo, nhưng bị hoàn lại nếu tạo notification thất bại: frame kế
+     * tiếp sẽ thử lại thay vì coi như cảnh báo đã được gửi. Notification đã được tạo thì
+     * trạng thái được giữ dù push realtime lỗi, để frame kế tiếp không tạo notification trùng.
+     */
+    public void onFrame(Long homeId, MCUGateway mcu, SensorFrame frame) {
+        boolean fire = frame.isEmergencyFire();
+        boolean gas = frame.isEmergencyGas();
+        boolean active = frame.isEmergency() || fire || gas;
+        boolean clearing = !active && frame.has(SensorKey.EMERGENCY);
+
+        Transition[] transition = new Transition[1];
+        states.compute(homeId, (id, stored) -> {
+            HomeEmergency current = stored != null ? stored : HomeEmergency.NORMAL;
+            HomeEmergency next = next(current, active, clearing, EmergencyType.of(fire, gas));
+            if (next == null) {
+                return stored;
+            }
+            transition[0] = new Transition(current, next);
+            return next;
+        });
+
+        if (transition[0] != null) {
+            HomeEmergency previous = transition[0].previous();
+            HomeEmergency next = transition[0].next();
+            String payload;
+            try {
+                if (next.state == State.ACTIVE) {
+                    log.warn("[Emergency] {} for homeId={}: type={}, fire={}, gas={}",
+                            previous.state == State.ACTIVE ? "Escalated" : "Activated", homeId, next.type, fire, gas);
+                    payload = notifyActive(mcu, frame, next.type, fire, gas);
+                } else {
+                    log.info("[Emergency] Cleared for homeId={} (was {})", homeId, previous.type);
+                    payload = notifyCleared(mcu, frame, previous.type);
+                }
+            } catch (RuntimeException e) {
+                // Hoàn lại nếu chưa có frame nào khác chuyển tiếp trạng thái
+                states.computeIfPresent(homeId, (id, stored) -> stored.equals(next)
+                        ? (previous.state == State.NORMAL ? null : previous)
+                        : stored);
+                log.error("[Emergency] Failed to notify {} for homeId={}, will retry on next frame: {}",
+                        next.state, homeId, e.getMessage());
+                throw e;
+            }
+
+            try {
+                realtimeEventBus.publish("/topic/home/" + homeId + "/emergency", payload);
+            } catch (RuntimeException e) {
+                // Notification đã được lưu (và fan-out tới member): không hoàn lại trạng thái
+                log.error("[Emergency] Failed to publish {} for homeId={}: {}", next.state, homeId, e.getMessage());
+            }
+        }
+
+        if (frame.isGasAlert() && !active) {
+            log.warn("[Emergency] Gas alert (warning) for homeId={}", homeId);
+        }
+    }
+
+    /**
+     * Trạng thái kế tiếp, null nếu frame không làm trạng thái thay đổi
+     */
+    static HomeEmergency next(HomeEmergency current, boolean active, boolean clearing, EmergencyType frameType) {
+        if (active) {
+            EmergencyType type = current.state == State.ACTIVE ? union(current.type, frameType) : frameType;
+            if (current.state == State.ACTIVE && type == current.type) {
+                return null;
+            }
+            return new HomeEmergency(State.ACTIVE, type);
+        }
+        if (clearing && current.state == State.ACTIVE) {
+            return new HomeEmergency(State.CLEARED, null);
+        }
+        return null;
+    }
+
+    public State getState(Long homeId) {
+        return states.getOrDefault(homeId, HomeEmergency.NORMAL).state;
+    }
+
+    /**
+     * Bỏ trạng thái của home (MCU bị unpair)
+     */
+    public void forget(Long homeId) {
+        if (homeId != null) {
+            states.remove(homeId);
+        }
+    }
+
+    /**
+     * Tạo notification ACTIVE
+     *
+     * @return payload realtime của sự kiện
+     */
+    private String notifyActive(MCUGateway mcu, SensorFrame frame, EmergencyType type, boolean fire, boolean gas) {
+        if (mcu.getApiKey() != null) {
+            notificationService.createEmergencyNotification(mcu.getApiKey(), type.name(), true, null,
+                    frame.getRawJson(), frame.getReceivedAt());
+        }
+        return String.format(
+                "{\"type\":\"%s\",\"isActive\":true,\"fire\":%s,\"gas\":%s,\"timestamp\":%d}",
+                type, fire, gas, System.currentTimeMillis());
+    }
+
+    /**
+     * Tạo notification CLEARED
+     *
+     * @return payload realtime của sự kiện
+     */
+    private String notifyCleared(MCUGateway mcu, SensorFrame frame, EmergencyType resolvedType) {
+        if (mcu.getApiKey() != null) {
+            notificationService.createEmergencyNotification(mcu.getApiKey(), "CLEARED", false, null,
+                    frame.getRawJson(), frame.getReceivedAt());
+        }
+        return String.format(
+                "{\"type\":\"CLEARED\",\"isActive\":false,\"resolvedTypeLabel\":\"%s\",\"timestamp\":%d}",
+                resolvedType.getResolvedLabel().replace("\"", "\\\""), System.currentTimeMillis());
+    }
+
+    private static EmergencyType union(EmergencyType a, EmergencyType b) {
+        return EmergencyType.of(a.hasFire() || b.hasFire(), a.hasGas() || b.hasGas());
+    }
+
+    record HomeEmergency(State state, EmergencyType type) {
+        static final HomeEmergency NORMAL = new HomeEmergency(State.NORMAL, null);
+    }
+
+    private record Transition(HomeEmergency previous, HomeEmergency next) {
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.entity.HomeMember;
+import com.example.smart_home_system.enums.HomeMemberRole;
+import com.example.smart_home_system.enums.HomePermission;
+import com.example.smart_home_system.repository.HomeMemberRepository;
+import com.example.smart_home_system.util.PermissionUtils;
+import com.example.smart_home_system.util.SegmentedLruCache;
+import com.example.smart_home_system.util.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Quyền hiệu lực của từng member trong home, tính sẵn thành bitmask {@code long} theo
+ * ordinal của {@link HomePermission}.
+ *
+ * <p>
+ * Mỗi check {@code @PreAuthorize} trước đây query {@code home_members}, parse JSON
+ * permissions và merge với quyền mặc định của role thành {@code Set<String>}. Với cache,
+ * quyền mặc định của role + quyền custom được gộp một lần khi load; check sau đó chỉ là
+ * một phép AND, không đọc DB. User không phải member cũng được cache (mask rỗng) nhưng
+ * với TTL ngắn hơn, để các lần check user lạ không chiếm chỗ của member thật lâu.
+ *
+ * <p>
+ * Cache có giới hạn {@code max-size} ({@link SegmentedLruCache}); entry quá
+ * {@code ttl-ms} bị bỏ khi được đọc tới hoặc khi bị LRU đẩy ra. TTL cũng giới hạn thời
+ * gian một node khác còn dùng quyền cũ sau khi member bị đổi.
+ *
+ * <p>
+ * Entry bị invalidate khi member được thêm/xóa, đổi role/quyền hoặc chuyển quyền sở hữu.
+ * Nếu đang trong transaction, entry bị xóa thêm một lần sau commit để tránh một request
+ * song song load lại từ dữ liệu chưa commit; một lần load bắt đầu trước khi invalidate
+ * không được ghi vào cache.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HomePermissionCache {
+
+    static {
+        if (HomePermission.values().length > Long.SIZE) {
+            throw new IllegalStateException("HomePermission no longer fits in a long bitmask");
+        }
+    }
+
+    private static final MemberPermissions NOT_MEMBER = new MemberPermissions(null, 0L);
+
+    private final HomeMemberRepository homeMemberRepository;
+
+    @Value("${home.permission-cache.max-size:50000}")
+    private int maxSize;
+
+    @Value("${home.permission-cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${home.permission-cache.negative-ttl-ms:30000}")
+    private long negativeTtlMs;
+
+    @Value("${home.permission-cache.segments:16}")
+    private int segmentCount;
+
+    private SegmentedLruCache<Key, MemberPermissions> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = new SegmentedLruCache<>(maxSize, segmentCount);
+        log.info("Home permission cache: maxSize={}, ttlMs={}, negativeTtlMs={}, segments={}",
+                maxSize, ttlMs, negativeTtlMs, cache.getSegmentCount());
+    }
+
+    /**
+     * Quyền hiệu lực của user trong home, load từ DB nếu chưa có hoặc đã hết hạn
+     */
+    public MemberPermissions get(Long homeId, String userId) {
+        if (homeId == null || userId == null) {
+            return NOT_MEMBER;
+        }
+        Key key = new Key(homeId, userId);
+        long now = System.currentTimeMillis();
+        MemberPermissions cached = cache.get(key, now);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Load bắt đầu trước một lần invalidate không được ghi vào cache
+        long startGeneration = cache.generation();
+        MemberPermissions loaded = load(key);
+        long ttl = loaded.isMember() ? ttlMs : negativeTtlMs;
+        cache.put(key, loaded, now + ttl, startGeneration);
+        return loaded;
+    }
+
+    /**
+     * Xóa entry của một member (sẽ được load lại ở lần check tiếp theo)
+     */
+    public void invalidate(Long homeId, String userId) {
+        if (homeId == null || userId == null) {
+            return;
+        }
+        Key key = new Key(homeId, userId);
+        cache.remove(key);
+        TransactionUtils.afterCompletion(status -> cache.remove(key));
+    }
+
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    private MemberPermissions load(Key key) {
+        return homeMemberRepository.findByHomeIdAndUserId(key.homeId(), key.userId())
+                .map(member -> new MemberPermissions(member.getRole(), toMask(member)))
+                .orElse(NOT_MEMBER);
+    }
+
+    /**
+     * Quyền mặc định của role + quyền custom, giống {@link PermissionUtils#mergePermissions}
+     */
+    private static long toMask(HomeMember member) {
+        long mask = 0L;
+        for (HomePermission permission : PermissionUtils.getDefaultPermissionsByRole(member.getRole())) {
+            mask |= bit(permission);
+        }
+        for (String name : PermissionUtils.parsePermissionsFromJson(member.getPermissions())) {
+            try {
+                mask |= bit(HomePermission.valueOf(name));
+            } catch (IllegalArgumentException e) {
+                // Quyền cũ/không hợp lệ trong JSON không cấp gì
+                log.debug("Ignoring unknown home permission '{}' for member {}", name, member.getId());
+            }
+        }
+        return mask;
+    }
+
+    private static long bit(HomePermission permission) {
+        return 1L << permission.ordinal();
+    }
+
+    private record Key(Long homeId, String userId) {
+    }
+
+    /**
+     * Snapshot bất biến role + bitmask quyền của member; role null nghĩa là không phải member
+     */
+    public record MemberPermissions(HomeMemberRole role, long mask) {
+
+        public boolean isMember() {
+            return role != null;
+        }
+
+        public boolean has(HomePermission permission) {
+            return (mask & bit(permission)) != 0;
+        }
+    }
+}
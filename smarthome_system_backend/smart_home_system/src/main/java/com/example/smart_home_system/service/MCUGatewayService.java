@@ -1,5 +1,6 @@
 package com.example.smart_home_system.service;
 
+import com.example.smart_home_system.dto.SensorFrame;
 import com.example.smart_home_system.dto.request.MCU.MCUAutoPairRequest;
 import com.example.smart_home_system.dto.request.MCU.MCUHeartbeatRequest;
 import com.example.smart_home_system.dto.request.MCU.MCUPairingRequest;
@@ -129,9 +130,10 @@ public interface MCUGatewayService {
 
     /**
      * Process sensor data từ ESP32 và cập nhật device status
-     * Được gọi từ MQTT handler khi nhận sensor data
+     * Được gọi từ MQTT handler khi nhận sensor data (frame đã được decode một lần ở handler,
+     * heartbeat và metadata của MCU cũng đã được handler cập nhật)
      */
-    void processSensorDataFromMQTT(Long homeId, String sensorDataJson);
+    void processSensorDataFromMQTT(Long homeId, SensorFrame frame);
 
     /**
      * Process device status update từ ESP32 (immediate status change)
@@ -0,0 +1,334 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.entity.MCUGateway;
+import com.example.smart_home_system.enums.MCUStatus;
+import com.example.smart_home_system.repository.MCUGatewayRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Theo dõi heartbeat của MCU bằng hashed timing wheel, thay cho việc quét định kỳ toàn
+ * bảng {@code mcu_gateways}.
+ *
+ * <p>
+ * Mỗi MCU đang online có một deadline {@code lastSeen + timeout} nằm trong một slot của
+ * wheel ({@code tick-ms} mỗi slot). Heartbeat chỉ cập nhật {@code lastSeen} trong bộ nhớ
+ * (O(1), không chạm wheel); khi slot tới hạn, entry có heartbeat mới được xếp lại vào
+ * slot của deadline mới, entry thực sự quá hạn bị đánh dấu OFFLINE. Nhờ vậy MCU chuyển
+ * OFFLINE chỉ vài giây sau deadline, thay vì chờ tới lần quét kế tiếp.
+ *
+ * <p>
+ * Ghi DB:
+ * <ul>
+ * <li>Các MCU quá hạn trong cùng một tick được chuyển OFFLINE bằng một bulk UPDATE.</li>
+ * <li>{@code lastHeartbeat} không còn được ghi trên mỗi frame mà được gom lại và ghi bằng
+ * JDBC batch mỗi {@code heartbeat-persist-interval-ms}. {@link MCUGateway#isOnline()} đọc
+ * giá trị này, nên chu kỳ persist phải nhỏ hơn {@link MCUGateway#ONLINE_WINDOW_MS}
+ * (được giới hạn khi khởi động).</li>
+ * </ul>
+ * Chuyển trạng thái sang ONLINE vẫn do nơi nhận heartbeat ghi ngay (xem
+ * MqttMessageHandler), vì đó là sự kiện FE cần thấy tức thì.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MCUHeartbeatMonitor {
+
+    private static final String UPDATE_HEARTBEAT_SQL = "UPDATE mcu_gateways SET last_heartbeat = ? WHERE id = ?";
+
+    private final MCUGatewayRepository mcuGatewayRepository;
+    private final RealtimeEventBus realtimeEventBus;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${app.mcu.heartbeat-timeout-ms:300000}")
+    private long timeoutMs;
+
+    @Value("${app.mcu.heartbeat-tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${app.mcu.heartbeat-wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${app.mcu.heartbeat-persist-interval-ms:60000}")
+    private long persistIntervalMs;
+
+    private final Map<Long, Tracker> trackers = new ConcurrentHashMap<>();
+    // Tracker mới chờ được đưa vào wheel (chỉ advance() thao tác trên slots)
+    private final Queue<Tracker> pendingSchedule = new ConcurrentLinkedQueue<>();
+
+    private List<ArrayDeque<Tracker>> wheel;
+    private long tick;
+    private ScheduledFuture<?> tickTask;
+    private ScheduledFuture<?> persistTask;
+
+    @PostConstruct
+    public void start() {
+        // lastHeartbeat trong DB trễ tối đa một chu kỳ persist; quá ONLINE_WINDOW_MS thì
+        // isOnline() báo offline cho MCU vẫn đang gửi heartbeat
+        long maxPersistIntervalMs = MCUGateway.ONLINE_WINDOW_MS / 2;
+        if (persistIntervalMs > maxPersistIntervalMs) {
+            log.warn("[HeartbeatCheck] heartbeat-persist-interval-ms={} exceeds half of the online window, using {}",
+                    persistIntervalMs, maxPersistIntervalMs);
+            persistIntervalMs = maxPersistIntervalMs;
+        }
+
+        wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+
+        // Nạp deadline cho các MCU đang ONLINE trong DB: MCU đã quá hạn sẽ OFFLINE ở tick đầu tiên
+        List<MCUGateway> online = mcuGatewayRepository.findByStatus(MCUStatus.ONLINE);
+        for (MCUGateway mcu : online) {
+            if (mcu.getHome() == null) {
+                continue;
+            }
+            long lastSeen = mcu.getLastHeartbeat() != null
+                    ? mcu.getLastHeartbeat().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : System.currentTimeMillis();
+            Tracker tracker = new Tracker(mcu.getId(), mcu.getHome().getId(), lastSeen);
+            trackers.put(mcu.getId(), tracker);
+            pendingSchedule.add(tracker);
+        }
+
+        // Tác vụ định kỳ của scheduler chung không chạy chồng lên chính nó: advance() vẫn tuần tự
+        Instant now = Instant.now();
+        tickTask = taskScheduler.scheduleAtFixedRate(this::advanceSafely, now.plusMillis(tickMs),
+                Duration.ofMillis(tickMs));
+        persistTask = taskScheduler.scheduleWithFixedDelay(this::persistSafely, now.plusMillis(persistIntervalMs),
+                Duration.ofMillis(persistIntervalMs));
+
+        log.info("[HeartbeatCheck] Timing wheel started: timeoutMs={}, tickMs={}, wheelSize={}, tracked={}",
+                timeoutMs, tickMs, wheelSize, trackers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+        }
+        if (persistTask != null) {
+            persistTask.cancel(false);
+        }
+        persistSafely();
+    }
+
+    /**
+     * Ghi nhận heartbeat (sensor frame, LWT online, HTTP heartbeat) của MCU
+     *
+     * @return true nếu MCU chưa được theo dõi (tức chưa ONLINE theo monitor)
+     */
+    public boolean beat(Long mcuId, Long homeId) {
+        if (mcuId == null || homeId == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        boolean[] added = new boolean[1];
+        trackers.compute(mcuId, (id, tracker) -> {
+            if (tracker == null) {
+                tracker = new Tracker(id, homeId, now);
+                pendingSchedule.add(tracker);
+                added[0] = true;
+            } else {
+                tracker.lastSeenMs = now;
+            }
+            tracker.dirty = true;
+            return tracker;
+        });
+        return added[0];
+    }
+
+    /**
+     * Ngừng theo dõi MCU (LWT offline hoặc unpair). Entry còn trong wheel sẽ bị bỏ qua.
+     */
+    public void forget(Long mcuId) {
+        if (mcuId != null) {
+            trackers.remove(mcuId);
+        }
+    }
+
+    public int getTrackedCount() {
+        return trackers.size();
+    }
+
+    /**
+     * Xử lý slot hiện tại của wheel (các lần gọi luôn tuần tự, không song song)
+     */
+    void advance() {
+        long now = System.currentTimeMillis();
+
+        Tracker added;
+        while ((added = pendingSchedule.poll()) != null) {
+            schedule(added, now);
+        }
+
+        ArrayDeque<Tracker> slot = wheel.get((int) (tick % wheelSize));
+        List<Tracker> expired = new ArrayList<>();
+        List<Tracker> rescheduled = new ArrayList<>();
+
+        Iterator<Tracker> it = slot.iterator();
+        while (it.hasNext()) {
+            Tracker tracker = it.next();
+            if (tracker.deadlineTick > tick) {
+                // Chưa tới vòng của entry này
+                continue;
+            }
+            it.remove();
+
+            if (trackers.get(tracker.mcuId) != tracker) {
+                // Đã bị forget hoặc được thay bằng tracker mới
+                continue;
+            }
+            if (tracker.lastSeenMs + timeoutMs > now) {
+                // Có heartbeat mới từ lần xếp trước: dời deadline
+                rescheduled.add(tracker);
+                continue;
+            }
+            // Xóa atomically với beat(): nếu beat vừa tới thì giữ lại
+            boolean removed = trackers.computeIfPresent(tracker.mcuId,
+                    (id, current) -> current == tracker && current.lastSeenMs + timeoutMs <= now ? null : current) == null;
+            if (removed) {
+                expired.add(tracker);
+            } else {
+                rescheduled.add(tracker);
+            }
+        }
+
+        tick++;
+        for (Tracker tracker : rescheduled) {
+            schedule(tracker, now);
+        }
+        if (!expired.isEmpty()) {
+            markOffline(expired);
+        }
+    }
+
+    private void schedule(Tracker tracker, long now) {
+        long delayMs = Math.max(0, tracker.lastSeenMs + timeoutMs - now);
+        long ticks = Math.max(1, (delayMs + tickMs - 1) / tickMs);
+        tracker.deadlineTick = tick + ticks;
+        wheel.get((int) (tracker.deadlineTick % wheelSize)).add(tracker);
+    }
+
+    private void markOffline(List<Tracker> expired) {
+        Integer updated;
+        try {
+            // lastHeartbeat cuối cùng phải nằm trong DB trước khi chuyển OFFLINE
+            persistHeartbeats(expired);
+
+            List<Long> ids = expired.stream().map(t -> t.mcuId).toList();
+            updated = transactionTemplate.execute(
+                    status -> mcuGatewayRepository.updateStatusByIds(ids, MCUStatus.ONLINE, MCUStatus.OFFLINE));
+        } catch (RuntimeException e) {
+            restore(expired);
+            throw e;
+        }
+
+        for (Tracker tracker : expired) {
+            realtimeEventBus.publish("/topic/home/" + tracker.homeId + "/status", "offline");
+            log.info("[HeartbeatCheck] MCU marked OFFLINE (no heartbeat > {} ms): homeId={}, mcuId={}",
+                    timeoutMs, tracker.homeId, tracker.mcuId);
+        }
+        log.debug("[HeartbeatCheck] Bulk OFFLINE: expired={}, updated={}", expired.size(), updated);
+    }
+
+    /**
+     * Đưa các tracker chưa được chuyển OFFLINE trong DB trở lại slot của tick kế tiếp để thử
+     * lại. MCU vừa có heartbeat (beat() đã tạo tracker mới) giữ tracker mới.
+     */
+    private void restore(List<Tracker> expired) {
+        ArrayDeque<Tracker> nextSlot = wheel.get((int) (tick % wheelSize));
+        for (Tracker tracker : expired) {
+            if (trackers.putIfAbsent(tracker.mcuId, tracker) == null) {
+                tracker.deadlineTick = tick;
+                nextSlot.add(tracker);
+            }
+        }
+    }
+
+    /**
+     * Ghi lastHeartbeat của các MCU có heartbeat mới xuống DB
+     */
+    void persist() {
+        persistHeartbeats(trackers.values());
+    }
+
+    private void persistHeartbeats(Collection<Tracker> candidates) {
+        List<Object[]> batch = new ArrayList<>();
+        for (Tracker tracker : candidates) {
+            if (!tracker.dirty) {
+                continue;
+            }
+            tracker.dirty = false;
+            batch.add(new Object[] { new Timestamp(tracker.lastSeenMs), tracker.mcuId });
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_HEARTBEAT_SQL, batch);
+            log.debug("[HeartbeatCheck] Persisted lastHeartbeat for {} MCUs", batch.size());
+        } catch (RuntimeException e) {
+            for (Tracker tracker : candidates) {
+                tracker.dirty = true;
+            }
+            throw e;
+        }
+    }
+
+    private void advanceSafely() {
+        try {
+            advance();
+        } catch (Exception e) {
+            log.error("[HeartbeatCheck] Timing wheel tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void persistSafely() {
+        try {
+            persist();
+        } catch (Exception e) {
+            log.error("[HeartbeatCheck] Failed to persist lastHeartbeat: {}", e.getMessage(), e);
+        }
+    }
+
+    private static final class Tracker {
+        final Long mcuId;
+        final Long homeId;
+        volatile long lastSeenMs;
+        // lastHeartbeat chưa được ghi xuống DB
+        volatile boolean dirty;
+        // Chỉ advance() đọc/ghi
+        long deadlineTick;
+
+        Tracker(Long mcuId, Long homeId, long lastSeenMs) {
+            this.mcuId = mcuId;
+            this.homeId = homeId;
+            this.lastSeenMs = lastSeenMs;
+        }
+    }
+}
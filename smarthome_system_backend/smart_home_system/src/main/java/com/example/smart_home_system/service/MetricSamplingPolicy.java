@@ -0,0 +1,135 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.response.admin.MetricSamplingStats;
+import com.example.smart_home_system.enums.SensorKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Quyết định sample sensor nào được ghi vào time-series (deadband + max-silence).
+ *
+ * <p>
+ * Thay cho việc ghi mọi sensor của home mỗi 120 giây: với từng (device, sensor key),
+ * một giá trị được giữ khi nó lệch khỏi giá trị đã ghi gần nhất quá {@code deadband},
+ * hoặc khi đã quá {@code max-silence-ms} kể từ lần ghi trước. Tín hiệu phẳng (nhiệt độ
+ * trong nhà) chỉ còn một điểm mỗi max-silence, còn biến động nhanh (gas tăng đột biến)
+ * được ghi ngay ở frame đầu tiên vượt deadband.
+ *
+ * <p>
+ * Policy chỉ áp dụng cho bảng sample: rollup vẫn nhận mọi giá trị (xem
+ * DeviceMetricService#record), nên avg của rollup không bị lệch về các giá trị được giữ.
+ *
+ * <p>
+ * Cấu hình theo sensor key (tên JSON), vd.
+ * {@code metrics.sampling.deadbands={tempIn:0.2,gas:10.0}}. Key boolean (flame, motion,
+ * door...) dùng deadband mặc định 0.5 nên mọi lần đổi trạng thái đều được ghi.
+ */
+@Component
+@Slf4j
+public class MetricSamplingPolicy {
+
+    @Value("#{${metrics.sampling.deadbands:{tempIn:0.2,tempOut:0.2,humIn:1.0,humOut:1.0,gas:10.0,light:20.0,rain:20.0}}}")
+    private Map<String, Double> deadbands;
+
+    @Value("#{${metrics.sampling.max-silence-overrides:{:}}}")
+    private Map<String, Long> maxSilenceOverrides;
+
+    @Value("${metrics.sampling.default-deadband:0.5}")
+    private double defaultDeadband;
+
+    @Value("${metrics.sampling.max-silence-ms:300000}")
+    private long maxSilenceMs;
+
+    // (device, sensor key) -> giá trị đã ghi gần nhất
+    private final Map<SeriesKey, LastKept> lastKept = new ConcurrentHashMap<>();
+    private final Map<String, Counters> countersBySensor = new ConcurrentHashMap<>();
+
+    /**
+     * @return true nếu giá trị cần được ghi vào time-series
+     */
+    public boolean shouldKeep(Long deviceId, SensorKey key, long timestampMs, double value) {
+        String sensor = key.getJsonName();
+        SeriesKey seriesKey = new SeriesKey(deviceId, sensor);
+        double deadband = deadbandFor(sensor);
+        long maxSilence = maxSilenceFor(sensor);
+
+        LastKept last = lastKept.get(seriesKey);
+        boolean keep = last == null
+                || Math.abs(value - last.value) >= deadband
+                || timestampMs - last.timestampMs >= maxSilence
+                // Đồng hồ lùi (MCU reboot, frame đến muộn): bắt đầu lại từ giá trị này
+                || timestampMs < last.timestampMs;
+
+        Counters counters = countersBySensor.computeIfAbsent(sensor, k -> new Counters());
+        if (keep) {
+            lastKept.put(seriesKey, new LastKept(value, timestampMs));
+            counters.kept.incrementAndGet();
+        } else {
+            counters.dropped.incrementAndGet();
+        }
+        return keep;
+    }
+
+    /**
+     * Bỏ trạng thái của device đã bị xóa
+     */
+    public void forgetDevice(Long deviceId) {
+        if (deviceId != null) {
+            lastKept.keySet().removeIf(k -> deviceId.equals(k.deviceId()));
+        }
+    }
+
+    public MetricSamplingStats getStats() {
+        Map<String, MetricSamplingStats.SensorStats> sensors = new LinkedHashMap<>();
+        long kept = 0;
+        long dropped = 0;
+        for (Map.Entry<String, Counters> entry : countersBySensor.entrySet()) {
+            long k = entry.getValue().kept.get();
+            long d = entry.getValue().dropped.get();
+            kept += k;
+            dropped += d;
+            sensors.put(entry.getKey(), MetricSamplingStats.SensorStats.builder()
+                    .deadband(deadbandFor(entry.getKey()))
+                    .maxSilenceMs(maxSilenceFor(entry.getKey()))
+                    .kept(k)
+                    .dropped(d)
+                    .build());
+        }
+        return MetricSamplingStats.builder()
+                .trackedSeries(lastKept.size())
+                .defaultDeadband(defaultDeadband)
+                .maxSilenceMs(maxSilenceMs)
+                .kept(kept)
+                .dropped(dropped)
+                .keptRatio(kept + dropped > 0 ? (double) kept / (kept + dropped) : 0)
+                .sensors(sensors)
+                .build();
+    }
+
+    private double deadbandFor(String sensor) {
+        Double deadband = deadbands.get(sensor);
+        return deadband != null ? deadband : defaultDeadband;
+    }
+
+    private long maxSilenceFor(String sensor) {
+        Long override = maxSilenceOverrides.get(sensor);
+        return override != null ? override : maxSilenceMs;
+    }
+
+    private record SeriesKey(Long deviceId, String sensorKey) {
+    }
+
+    private record LastKept(double value, long timestampMs) {
+    }
+
+    private static final class Counters {
+        final AtomicLong kept = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+    }
+}
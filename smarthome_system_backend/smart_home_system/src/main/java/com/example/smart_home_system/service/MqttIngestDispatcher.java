@@ -0,0 +1,648 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.response.admin.MqttIngestStats;
+import com.example.smart_home_system.enums.IngestOverflowPolicy;
+import com.example.smart_home_system.service.implement.MqttMessageHandler;
+import com.example.smart_home_system.util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches inbound MQTT messages from {@code mqttInputChannel} onto N worker lanes.
+ *
+ * <p>
+ * Paho delivers every message on a single callback thread. Instead of running the
+ * whole pipeline (JPA, emergency checks, WebSocket) on that thread, the dispatcher
+ * parses {@code homeId} from the topic {@code smarthome/{homeId}/...} and hands the
+ * message to lane {@code homeId % lanes}. Each lane has its own bounded queue and a
+ * single worker thread, so messages of one home are always processed in order while
+ * different homes are processed in parallel.
+ *
+ * <p>
+ * <b>Overflow handling:</b> routine sensor telemetry is sheddable and handled by the
+ * configured {@link IngestOverflowPolicy}; a full lane only ever sheds frames of the
+ * home that is sending, so one flooding home cannot push out another home's telemetry.
+ * Critical messages ({@code rfid/access}, {@code status}, emergency frames, command
+ * acks, ...) are not shed: when the lane is full they first evict a queued sensor frame,
+ * otherwise the Paho thread waits up to {@code mqtt.ingest.enqueue-timeout-ms}
+ * (backpressure towards the broker). A critical message that still finds no room is
+ * rejected and counted in {@code totalCriticalRejected} rather than stalling every
+ * other home behind the Paho thread.
+ *
+ * <p>
+ * <b>Priority lane:</b> emergency-flagged sensor frames and {@code rfid/access} events
+ * bypass the home lanes and go to dedicated priority lanes (own threads, own queues).
+ * The priority handler only does the essential work (heartbeat, snapshot, WebSocket
+ * push, emergency state machine / access log); device state and metric sampling for
+ * an emergency frame are deferred to the home's routine lane so they stay ordered with
+ * the other frames of that home.
+ *
+ * <p>
+ * <b>Per-home ordering:</b> a home's sensor frames can therefore be handled by two
+ * threads (its routine lane and its priority lane). The "live" part of a sensor frame
+ * (gateway touch, snapshot, emergency state machine, WebSocket push) runs under a
+ * per-home lock and only if the frame was received after the last frame whose live part
+ * already ran for that home; a stale frame, from either lane, only contributes its
+ * device state. Device state always runs on the routine lane in receive order.
+ *
+ * <p>
+ * <b>DB budget:</b> routine lanes share {@code mqtt.ingest.routine-db-permits} permits
+ * (default: Hikari pool size minus {@code mqtt.ingest.priority.reserved-connections}),
+ * so a telemetry burst cannot take every pooled connection away from the priority lanes.
+ *
+ * <p>
+ * <b>Shutdown:</b> new messages are rejected, and the workers keep draining what is
+ * already queued for up to {@code mqtt.ingest.shutdown-drain-ms}; whatever is still
+ * queued after that is dropped and the count is logged.
+ *
+ * <p>
+ * Queue depth, per-lane latency, shed counters and the priority latency SLO (MQTT
+ * receive -> realtime publish, recorded before the handler's DB writes) are exposed via
+ * {@link #getStats()}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MqttIngestDispatcher {
+
+    private static final String SENSORS_SUB_TOPIC = "sensors";
+    private static final String RFID_ACCESS_SUB_TOPIC = "rfid/access";
+    private static final long IDLE_POLL_MS = 100;
+    private static final String[] EMERGENCY_FLAGS = { "\"emergency\"", "\"emergencyFire\"", "\"emergencyGas\"" };
+
+    private final MqttMessageHandler mqttMessageHandler;
+
+    @Value("${mqtt.ingest.lanes:0}")
+    private int configuredLanes;
+
+    @Value("${mqtt.ingest.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${mqtt.ingest.enqueue-timeout-ms:2000}")
+    private long enqueueTimeoutMs;
+
+    @Value("${mqtt.ingest.overflow-policy:DROP_OLDEST_SENSORS}")
+    private IngestOverflowPolicy overflowPolicy;
+
+    @Value("${mqtt.ingest.priority.lanes:1}")
+    private int priorityLaneCount;
+
+    @Value("${mqtt.ingest.priority.queue-capacity:256}")
+    private int priorityQueueCapacity;
+
+    @Value("${mqtt.ingest.priority.slo-ms:250}")
+    private long prioritySloMs;
+
+    @Value("${mqtt.ingest.priority.reserved-connections:2}")
+    private int reservedConnections;
+
+    @Value("${mqtt.ingest.routine-db-permits:0}")
+    private int configuredRoutineDbPermits;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int poolSize;
+
+    @Value("${mqtt.ingest.shutdown-drain-ms:10000}")
+    private long shutdownDrainMs;
+
+    private Lane[] lanes;
+    private Lane[] priorityLanes;
+    private Semaphore routineDbPermits;
+    private int routineDbPermitCount;
+    private volatile boolean running;
+
+    // Thứ tự phần live của sensor frame theo home, dùng chung cho lane thường và priority lane
+    private final Map<Long, HomeOrder> homeOrders = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram priorityLatency = new LatencyHistogram();
+    private final AtomicLong prioritySloBreaches = new AtomicLong();
+    private final AtomicLong totalDeferred = new AtomicLong();
+
+    private final AtomicLong totalEnqueued = new AtomicLong();
+    private final AtomicLong totalRejected = new AtomicLong();
+    private final AtomicLong totalShedOldest = new AtomicLong();
+    private final AtomicLong totalShedNewest = new AtomicLong();
+    private final AtomicLong totalCriticalBlocked = new AtomicLong();
+    private final AtomicLong totalCriticalRejected = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        int laneCount = configuredLanes > 0 ? configuredLanes : Runtime.getRuntime().availableProcessors();
+        lanes = new Lane[laneCount];
+        running = true;
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, queueCapacity, false);
+            lanes[i].worker.start();
+        }
+
+        priorityLanes = new Lane[Math.max(1, priorityLaneCount)];
+        for (int i = 0; i < priorityLanes.length; i++) {
+            priorityLanes[i] = new Lane(i, priorityQueueCapacity, true);
+            priorityLanes[i].worker.start();
+        }
+
+        routineDbPermitCount = configuredRoutineDbPermits > 0
+                ? configuredRoutineDbPermits
+                : Math.max(1, poolSize - reservedConnections);
+        routineDbPermits = new Semaphore(routineDbPermitCount);
+
+        log.info("[MQTT] Ingest dispatcher started: lanes={}, queueCapacity={}, overflowPolicy={}, " +
+                        "priorityLanes={}, prioritySloMs={}, routineDbPermits={}",
+                laneCount, queueCapacity, overflowPolicy, priorityLanes.length, prioritySloMs, routineDbPermitCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Worker tự thoát khi queue của nó rỗng; message mới bị từ chối từ đây
+        running = false;
+        List<Lane> all = new ArrayList<>(List.of(lanes));
+        all.addAll(List.of(priorityLanes));
+
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + shutdownDrainMs;
+        for (Lane lane : all) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                lane.worker.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        // Hết thời gian drain: bỏ phần còn lại
+        long dropped = 0;
+        for (Lane lane : all) {
+            if (lane.worker.isAlive()) {
+                lane.worker.interrupt();
+            }
+            List<IngestTask> leftover = new ArrayList<>();
+            lane.queue.drainTo(leftover);
+            dropped += leftover.size();
+        }
+
+        long elapsedMs = System.currentTimeMillis() - startedAt;
+        if (dropped > 0) {
+            log.warn("[MQTT] Ingest dispatcher stopped: dropped {} queued messages after {} ms drain",
+                    dropped, elapsedMs);
+        } else {
+            log.info("[MQTT] Ingest dispatcher stopped: queues drained in {} ms", elapsedMs);
+        }
+    }
+
+    /**
+     * Entry point cho mọi message từ mqttInputChannel (chạy trên thread của Paho)
+     */
+    @ServiceActivator(inputChannel = "mqttInputChannel")
+    public void dispatch(Message<?> message) {
+        String topic = (String) message.getHeaders().get("mqtt_receivedTopic");
+        long homeId = parseHomeId(topic);
+        long now = System.nanoTime();
+
+        if (homeId >= 0 && isPriority(topic, message.getPayload())) {
+            boolean sensorFrame = topic.endsWith("/" + SENSORS_SUB_TOPIC);
+            enqueue(priorityLanes[(int) (homeId % priorityLanes.length)],
+                    new IngestTask(message, homeId, false, now, TaskKind.PRIORITY), topic);
+            if (sensorFrame) {
+                // Phần không khẩn cấp (device state, metrics) chạy trên lane thường của home
+                enqueue(lanes[laneIndex(homeId, topic)],
+                        new IngestTask(message, homeId, false, now, TaskKind.DEFERRED), topic);
+            }
+            return;
+        }
+
+        IngestTask task = new IngestTask(message, homeId, isSheddable(topic, message.getPayload()), now,
+                TaskKind.ROUTINE);
+        enqueue(lanes[laneIndex(homeId, topic)], task, topic);
+    }
+
+    private void enqueue(Lane lane, IngestTask task, String topic) {
+        if (!running) {
+            totalRejected.incrementAndGet();
+            return;
+        }
+        try {
+            if (lane.queue.offer(task)) {
+                totalEnqueued.incrementAndGet();
+                return;
+            }
+
+            boolean accepted = task.sheddable() ? offerSheddable(lane, task) : offerCritical(lane, task);
+            if (accepted) {
+                totalEnqueued.incrementAndGet();
+            } else {
+                log.warn("[MQTT] Ingest lane {} is saturated ({} queued), shed message on topic {}",
+                        lane.name(), lane.queue.size(), topic);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            totalRejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Lane đầy và message là sensor telemetry: áp dụng overflow policy
+     */
+    private boolean offerSheddable(Lane lane, IngestTask task) throws InterruptedException {
+        switch (overflowPolicy) {
+            case DROP_OLDEST_SENSORS:
+                // Chỉ bỏ frame cũ của chính home này: home gửi dồn không đẩy frame của home khác ra
+                if (evictOldestSheddable(lane, task.homeId())) {
+                    totalShedOldest.incrementAndGet();
+                    lane.shed.incrementAndGet();
+                    if (lane.queue.offer(task)) {
+                        return true;
+                    }
+                }
+                // Home này không có frame nào đang chờ: bỏ frame mới
+                totalShedNewest.incrementAndGet();
+                lane.shed.incrementAndGet();
+                return false;
+            case DROP_NEWEST:
+                totalShedNewest.incrementAndGet();
+                lane.shed.incrementAndGet();
+                return false;
+            case BLOCK:
+            default:
+                if (lane.queue.offer(task, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+                totalRejected.incrementAndGet();
+                lane.shed.incrementAndGet();
+                return false;
+        }
+    }
+
+    /**
+     * Lane đầy và message là quan trọng: nhường chỗ bằng sensor frame (của chính home trước),
+     * nếu không có thì chờ tối đa enqueue-timeout-ms
+     */
+    private boolean offerCritical(Lane lane, IngestTask task) throws InterruptedException {
+        if (evictOldestSheddable(lane, task.homeId()) || evictOldestSheddable(lane, -1)) {
+            totalShedOldest.incrementAndGet();
+            lane.shed.incrementAndGet();
+            if (lane.queue.offer(task)) {
+                return true;
+            }
+        }
+
+        totalCriticalBlocked.incrementAndGet();
+        if (running && lane.queue.offer(task, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        // Không chặn Paho thread vô hạn: mọi home khác đang chờ sau thread này
+        totalRejected.incrementAndGet();
+        totalCriticalRejected.incrementAndGet();
+        log.error("[MQTT] Ingest lane {} full for {} ms, rejected critical message for homeId={}",
+                lane.name(), enqueueTimeoutMs, task.homeId());
+        return false;
+    }
+
+    /**
+     * Xóa sensor frame cũ nhất đang chờ trong lane
+     *
+     * @param homeId chỉ xét frame của home này, -1 = bất kỳ home nào
+     */
+    private boolean evictOldestSheddable(Lane lane, long homeId) {
+        Iterator<IngestTask> iterator = lane.queue.iterator();
+        while (iterator.hasNext()) {
+            IngestTask queued = iterator.next();
+            if (queued.sheddable() && (homeId < 0 || queued.homeId() == homeId)) {
+                // remove() trả về false nếu worker vừa lấy task này ra
+                if (lane.queue.remove(queued)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chọn lane theo homeId để giữ thứ tự xử lý trong cùng một home
+     */
+    private int laneIndex(long homeId, String topic) {
+        if (homeId >= 0) {
+            return (int) (homeId % lanes.length);
+        }
+        // Topic không đúng format: vẫn đưa vào một lane cố định để handler log cảnh báo
+        return topic != null ? Math.floorMod(topic.hashCode(), lanes.length) : 0;
+    }
+
+    /**
+     * Parse homeId từ topic smarthome/{homeId}/... mà không dùng regex
+     *
+     * @return homeId hoặc -1 nếu topic không hợp lệ
+     */
+    static long parseHomeId(String topic) {
+        if (topic == null) {
+            return -1;
+        }
+        int start = topic.indexOf('/');
+        if (start < 0) {
+            return -1;
+        }
+        int end = topic.indexOf('/', start + 1);
+        if (end < 0 || end == start + 1) {
+            return -1;
+        }
+        long homeId = 0;
+        for (int i = start + 1; i < end; i++) {
+            char c = topic.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            homeId = homeId * 10 + (c - '0');
+        }
+        return homeId;
+    }
+
+    /**
+     * Chỉ sensor telemetry thường mới được phép bỏ; frame có cờ emergency luôn được giữ
+     */
+    static boolean isSheddable(String topic, Object payload) {
+        return isSensorTopic(topic) && !hasEmergencyFlag(payload);
+    }
+
+    /**
+     * Message đi priority lane: sensor frame có cờ emergency và sự kiện RFID access
+     */
+    static boolean isPriority(String topic, Object payload) {
+        if (topic == null) {
+            return false;
+        }
+        if (topic.endsWith("/" + RFID_ACCESS_SUB_TOPIC)) {
+            return true;
+        }
+        return isSensorTopic(topic) && hasEmergencyFlag(payload);
+    }
+
+    private static boolean isSensorTopic(String topic) {
+        return topic != null && topic.endsWith("/" + SENSORS_SUB_TOPIC);
+    }
+
+    private static boolean hasEmergencyFlag(Object payload) {
+        String json = payload != null ? payload.toString() : "";
+        for (String flag : EMERGENCY_FLAGS) {
+            if (hasTrueFlag(json, flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Kiểm tra "key": true trong JSON mà không cần parse cả payload
+     */
+    private static boolean hasTrueFlag(String json, String quotedKey) {
+        int from = 0;
+        while (true) {
+            int idx = json.indexOf(quotedKey, from);
+            if (idx < 0) {
+                return false;
+            }
+            int i = idx + quotedKey.length();
+            while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                i++;
+            }
+            if (i < json.length() && json.charAt(i) == ':') {
+                i++;
+                while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                    i++;
+                }
+                if (json.startsWith("true", i)) {
+                    return true;
+                }
+            }
+            from = idx + quotedKey.length();
+        }
+    }
+
+    public MqttIngestStats getStats() {
+        List<MqttIngestStats.LaneStats> laneStats = new ArrayList<>(lanes.length);
+        long totalProcessed = 0;
+        for (Lane lane : lanes) {
+            totalProcessed += lane.processed.get();
+            laneStats.add(lane.stats());
+        }
+        List<MqttIngestStats.LaneStats> priorityLaneStats = new ArrayList<>(priorityLanes.length);
+        for (Lane lane : priorityLanes) {
+            totalProcessed += lane.processed.get();
+            priorityLaneStats.add(lane.stats());
+        }
+
+        MqttIngestStats.PriorityStats priority = MqttIngestStats.PriorityStats.builder()
+                .laneCount(priorityLanes.length)
+                .queueCapacity(priorityQueueCapacity)
+                .sloMs(prioritySloMs)
+                .sloBreaches(prioritySloBreaches.get())
+                .processed(priorityLatency.getCount())
+                .p50Ms(priorityLatency.percentileMs(50))
+                .p95Ms(priorityLatency.percentileMs(95))
+                .p99Ms(priorityLatency.percentileMs(99))
+                .maxMs(priorityLatency.getMaxMs())
+                .latencyBuckets(priorityLatency.buckets())
+                .totalDeferred(totalDeferred.get())
+                .routineDbPermits(routineDbPermitCount)
+                .routineDbPermitsAvailable(routineDbPermits.availablePermits())
+                .lanes(priorityLaneStats)
+                .build();
+
+        return MqttIngestStats.builder()
+                .laneCount(lanes.length)
+                .queueCapacity(queueCapacity)
+                .overflowPolicy(overflowPolicy.name())
+                .totalEnqueued(totalEnqueued.get())
+                .totalProcessed(totalProcessed)
+                .totalRejected(totalRejected.get())
+                .totalShedOldest(totalShedOldest.get())
+                .totalShedNewest(totalShedNewest.get())
+                .totalCriticalBlocked(totalCriticalBlocked.get())
+                .totalCriticalRejected(totalCriticalRejected.get())
+                .lanes(laneStats)
+                .priority(priority)
+                .build();
+    }
+
+    private enum TaskKind {
+        ROUTINE,
+        // Xử lý phần khẩn cấp trên priority lane
+        PRIORITY,
+        // Phần còn lại (device state, metrics) của một priority frame, chạy trên lane thường
+        DEFERRED
+    }
+
+    private record IngestTask(Message<?> message, long homeId, boolean sheddable, long enqueuedAtNanos,
+                              TaskKind kind) {
+    }
+
+    /**
+     * Một lane = một queue bounded + một worker thread
+     */
+    private class Lane {
+        final int index;
+        final boolean priority;
+        final BlockingQueue<IngestTask> queue;
+        final Thread worker;
+
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong shed = new AtomicLong();
+        final AtomicLong totalLatencyNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+        volatile long lastLatencyNanos;
+
+        Lane(int index, int capacity, boolean priority) {
+            this.index = index;
+            this.priority = priority;
+            // LinkedBlockingQueue hỗ trợ remove(Object) để bỏ sensor frame cũ khi lane đầy
+            this.queue = new LinkedBlockingQueue<>(capacity);
+            this.worker = new Thread(this::runLoop, (priority ? "mqtt-priority-" : "mqtt-ingest-") + index);
+            this.worker.setDaemon(true);
+            if (priority) {
+                this.worker.setPriority(Thread.MAX_PRIORITY);
+            }
+        }
+
+        private void runLoop() {
+            while (true) {
+                IngestTask task;
+                try {
+                    task = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (task == null) {
+                    // Chỉ thoát khi đã dừng và queue đã rỗng: message đang chờ vẫn được xử lý
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+
+                try {
+                    if (priority) {
+                        mqttMessageHandler.handlePriority(task.message(), gateFor(task),
+                                () -> recordPriorityLatency(task, System.nanoTime() - task.enqueuedAtNanos()));
+                    } else {
+                        handleRoutine(task);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    log.error("[MQTT] Ingest lane {} failed to handle message: {}", name(), e.getMessage(), e);
+                }
+
+                long latency = System.nanoTime() - task.enqueuedAtNanos();
+                lastLatencyNanos = latency;
+                totalLatencyNanos.addAndGet(latency);
+                maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                processed.incrementAndGet();
+            }
+        }
+
+        private void handleRoutine(IngestTask task) throws InterruptedException {
+            routineDbPermits.acquire();
+            try {
+                if (task.kind() == TaskKind.DEFERRED) {
+                    // Phần còn lại của một frame đã được priority lane xử lý
+                    totalDeferred.incrementAndGet();
+                    mqttMessageHandler.handleDeferred(task.message());
+                } else {
+                    mqttMessageHandler.handleMessage(task.message(), gateFor(task));
+                }
+            } finally {
+                routineDbPermits.release();
+            }
+        }
+
+        private String name() {
+            return (priority ? "priority-" : "") + index;
+        }
+
+        private MqttIngestStats.LaneStats stats() {
+            long count = processed.get();
+            return MqttIngestStats.LaneStats.builder()
+                    .lane(index)
+                    .queueDepth(queue.size())
+                    .processed(count)
+                    .failed(failed.get())
+                    .shed(shed.get())
+                    .avgLatencyMs(count > 0 ? totalLatencyNanos.get() / 1_000_000.0 / count : 0)
+                    .maxLatencyMs(TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()))
+                    .lastLatencyMs(TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos))
+                    .build();
+        }
+    }
+
+    /**
+     * Gate cho phần live của sensor frame: tuần tự theo home, bỏ qua frame cũ hơn frame live
+     * gần nhất. Frame cũ vẫn được cập nhật device state (trên lane thường).
+     */
+    private MqttMessageHandler.LiveGate gateFor(IngestTask task) {
+        if (task.homeId() < 0) {
+            return MqttMessageHandler.UNORDERED;
+        }
+        return live -> {
+            HomeOrder order = homeOrders.computeIfAbsent(task.homeId(), id -> new HomeOrder());
+            synchronized (order) {
+                if (order.seen && task.enqueuedAtNanos() - order.lastLiveNanos <= 0) {
+                    totalDeferred.incrementAndGet();
+                    return false;
+                }
+                order.seen = true;
+                order.lastLiveNanos = task.enqueuedAtNanos();
+                live.run();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Thời điểm nhận (nanoTime) của frame live gần nhất của một home; chỉ đọc/ghi khi giữ
+     * lock của chính object này
+     */
+    private static final class HomeOrder {
+        boolean seen;
+        long lastLiveNanos;
+    }
+
+    /**
+     * SLO của priority lane: từ lúc nhận message MQTT tới khi sự kiện được đưa lên realtime bus.
+     * Không tính phần ghi DB phía sau (notification, access log); ở chế độ MQTT bus là lúc
+     * publish lên bus, chưa tính chặng bus -> node giữ kết nối của client.
+     */
+    private void recordPriorityLatency(IngestTask task, long latencyNanos) {
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+        priorityLatency.record(latencyMs);
+        if (latencyMs > prioritySloMs) {
+            prioritySloBreaches.incrementAndGet();
+            log.warn("[MQTT] Priority event exceeded SLO: homeId={}, topic={}, latencyMs={}, sloMs={}",
+                    task.homeId(), topicOf(task), latencyMs, prioritySloMs);
+        }
+    }
+
+    private static String topicOf(IngestTask task) {
+        return (String) task.message().getHeaders().get("mqtt_receivedTopic");
+    }
+}
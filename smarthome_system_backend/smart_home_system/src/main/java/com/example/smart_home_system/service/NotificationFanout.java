@@ -0,0 +1,178 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.response.admin.NotificationFanoutStats;
+import com.example.smart_home_system.enums.NotificationFanoutMode;
+import com.example.smart_home_system.enums.NotificationType;
+import com.example.smart_home_system.repository.HomeMemberRepository;
+import com.example.smart_home_system.util.LatencyHistogram;
+import com.example.smart_home_system.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi một thông báo tới mọi thành viên của home.
+ *
+ * <p>
+ * Mặc định ({@code notification.fanout.mode=READ}) chỉ ghi một row dùng chung
+ * ({@code user_id NULL}); mỗi thành viên nhìn thấy nó qua query đọc, trạng thái đọc/xóa
+ * riêng nằm trong {@code notification_receipts} (chỉ được tạo khi user thao tác trên
+ * từng notification) và {@code notification_home_watermarks} (mốc "đọc hết"/"xóa hết"
+ * theo home). Số row ghi cho mỗi sự kiện không còn tăng theo số thành viên.
+ *
+ * <p>
+ * Mode {@code WRITE} giữ mô hình cũ (mỗi thành viên một row). {@code Notification} dùng
+ * id IDENTITY nên Hibernate không batch được insert, vì vậy các row được insert trong
+ * một câu lệnh nhiều row (chia {@value #CHUNK_SIZE} row mỗi câu).
+ *
+ * <p>
+ * Sau khi transaction commit, một event duy nhất được publish lên
+ * {@code /topic/home/{homeId}/notifications} và latency từ sự kiện gốc đến lúc commit
+ * được ghi vào histogram (xem {@link #getStats()}).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationFanout {
+
+    static final int CHUNK_SIZE = 500;
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO notifications (home_id, user_id, device_id, title, message, type, is_read, metadata, created_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 9;
+
+    private final HomeMemberRepository homeMemberRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final RealtimeEventBus realtimeEventBus;
+    private final UnreadCounterStore unreadCounterStore;
+
+    @Value("${notification.fanout.mode:READ}")
+    private NotificationFanoutMode mode;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong fanouts = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong recipients = new AtomicLong();
+    private final AtomicInteger largestFanout = new AtomicInteger();
+
+    /**
+     * Tạo notification cho mọi thành viên của home. Nên được gọi trong transaction của
+     * service; event WebSocket chỉ được gửi sau commit.
+     *
+     * @param eventAtMs thời điểm xảy ra sự kiện gốc (epoch millis), dùng để đo latency
+     * @return kết quả fan-out, {@code recipients == 0} nếu home không có thành viên
+     */
+    public Result fanOut(Long homeId, Long deviceId, String title, String message, NotificationType type,
+            String metadata, long eventAtMs) {
+        List<String> userIds = homeMemberRepository.findUserIdsByHomeId(homeId);
+        if (userIds.isEmpty()) {
+            return new Result(0, null, null, null);
+        }
+
+        LocalDateTime createdAt = LocalDateTime.now();
+        Timestamp createdAtTs = Timestamp.valueOf(createdAt);
+        // READ: một row dùng chung (user_id NULL) thay cho một row mỗi thành viên
+        List<String> rowUsers = mode == NotificationFanoutMode.READ ? Collections.<String>singletonList(null) : userIds;
+        Long firstId = null;
+
+        for (int from = 0; from < rowUsers.size(); from += CHUNK_SIZE) {
+            List<String> chunk = rowUsers.subList(from, Math.min(from + CHUNK_SIZE, rowUsers.size()));
+            String sql = INSERT_PREFIX + String.join(", ", Collections.nCopies(chunk.size(), ROW_PLACEHOLDERS));
+
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                int i = 0;
+                for (String userId : chunk) {
+                    ps.setLong(i + 1, homeId);
+                    if (userId != null) {
+                        ps.setString(i + 2, userId);
+                    } else {
+                        ps.setNull(i + 2, Types.VARCHAR);
+                    }
+                    if (deviceId != null) {
+                        ps.setLong(i + 3, deviceId);
+                    } else {
+                        ps.setNull(i + 3, Types.BIGINT);
+                    }
+                    ps.setString(i + 4, title);
+                    ps.setString(i + 5, message);
+                    ps.setString(i + 6, type.name());
+                    ps.setBoolean(i + 7, false);
+                    ps.setString(i + 8, metadata);
+                    ps.setTimestamp(i + 9, createdAtTs);
+                    i += COLUMNS;
+                }
+                return ps;
+            }, keyHolder);
+
+            if (firstId == null && !keyHolder.getKeyList().isEmpty()) {
+                Object key = keyHolder.getKeyList().get(0).values().iterator().next();
+                firstId = key instanceof Number number ? number.longValue() : null;
+            }
+        }
+
+        fanouts.incrementAndGet();
+        rowsInserted.addAndGet(rowUsers.size());
+        recipients.addAndGet(userIds.size());
+        largestFanout.accumulateAndGet(userIds.size(), Math::max);
+
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("title", title);
+        event.put("message", message);
+        event.put("type", type.name());
+        event.put("deviceId", deviceId);
+        event.put("recipients", userIds.size());
+        event.put("timestamp", System.currentTimeMillis());
+        unreadCounterStore.increment(userIds);
+        TransactionUtils.afterCommit(() -> {
+            latency.record(System.currentTimeMillis() - eventAtMs);
+            realtimeEventBus.publish("/topic/home/" + homeId + "/notifications", event);
+        });
+
+        log.debug("Fanned out notification to {} members of homeId={} (type={}, mode={}, rows={})",
+                userIds.size(), homeId, type, mode, rowUsers.size());
+        return new Result(userIds.size(), firstId, rowUsers.get(0), createdAt);
+    }
+
+    public NotificationFanoutStats getStats() {
+        return NotificationFanoutStats.builder()
+                .mode(mode.name())
+                .fanouts(fanouts.get())
+                .recipients(recipients.get())
+                .rowsInserted(rowsInserted.get())
+                .largestFanout(largestFanout.get())
+                .latencySamples(latency.getCount())
+                .avgLatencyMs(latency.getAvgMs())
+                .p50LatencyMs(latency.percentileMs(50))
+                .p95LatencyMs(latency.percentileMs(95))
+                .p99LatencyMs(latency.percentileMs(99))
+                .maxLatencyMs(latency.getMaxMs())
+                .latencyBuckets(latency.buckets())
+                .build();
+    }
+
+    /**
+     * @param firstId     id của row đầu tiên (row dùng chung ở mode READ)
+     * @param firstUserId user của row đầu tiên, null với row dùng chung
+     */
+    public record Result(int recipients, Long firstId, String firstUserId, LocalDateTime createdAt) {
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 public interface NotificationService {
     
@@ -37,20 +38,38 @@ public interface NotificationService {
      */
     void markAsRead(Long notificationId, String userId);
 
+    /**
+     * Mark a batch of notifications as read. Id không thuộc user bị bỏ qua.
+     *
+     * @return số notification chuyển từ chưa đọc sang đã đọc
+     */
+    int markAsRead(Collection<Long> notificationIds, String userId);
+
     /**
      * Mark all notifications as read for a user
+     *
+     * @return số notification chuyển từ chưa đọc sang đã đọc
      */
-    void markAllAsRead(String userId);
+    int markAllAsRead(String userId);
 
     /**
      * Delete a notification
      */
     void deleteNotification(Long notificationId, String userId);
 
+    /**
+     * Delete all read notifications for a user
+     *
+     * @return số notification bị xóa
+     */
+    int deleteReadNotifications(String userId);
+
     /**
      * Delete all notifications for a user
+     *
+     * @return số notification bị xóa
      */
-    void deleteAllNotifications(String userId);
+    int deleteAllNotifications(String userId);
 
     /**
      * Create emergency notification from ESP32
@@ -58,6 +77,14 @@ public interface NotificationService {
     void createEmergencyNotification(String apiKey, String emergencyType, Boolean isActive,
                                     String deviceCode, String metadata);
 
+    /**
+     * Create emergency notification, đo latency từ thời điểm sự kiện gốc (sensor frame)
+     *
+     * @param eventAtMs thời điểm nhận sự kiện (epoch millis)
+     */
+    void createEmergencyNotification(String apiKey, String emergencyType, Boolean isActive,
+                                    String deviceCode, String metadata, long eventAtMs);
+
     /**
      * Lấy mô tả loại khẩn cấp đã được giải quyết (FIRE/GAS/BOTH) từ thông báo gần nhất
      */
@@ -0,0 +1,52 @@
+package com.example.smart_home_system.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Giao sự kiện real-time cho client WebSocket đang kết nối tới node này.
+ *
+ * <p>
+ * Khi dùng STOMP broker relay, sensor frame cũng đi qua broker ngoài (broker fan-out
+ * cho mọi node) thay vì conflator cục bộ, vì subscriber có thể ở node khác: mọi
+ * subscriber nhận mọi frame, không có conflation / min interval theo client class.
+ * Cần conflation trên nhiều node thì giữ simple broker và dùng {@code realtime.bus.mode=MQTT}.
+ */
+@Component
+@RequiredArgsConstructor
+public class RealtimeDelivery {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SensorPushConflator sensorPushConflator;
+
+    @Value("${websocket.broker.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    public void deliver(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+    }
+
+    /**
+     * Giao payload đã serialize ở node khác, giữ nguyên content-type gốc
+     */
+    public void deliverSerialized(String destination, String payload, MimeType contentType) {
+        messagingTemplate.send(destination, MessageBuilder.withPayload(payload.getBytes(StandardCharsets.UTF_8))
+                .setHeader(MessageHeaders.CONTENT_TYPE, contentType)
+                .build());
+    }
+
+    public void deliverSensorFrame(Long homeId, String payload, boolean urgent) {
+        if (relayEnabled) {
+            messagingTemplate.convertAndSend("/topic/home/" + homeId + "/sensors", payload);
+        } else {
+            sensorPushConflator.publish(homeId, payload, urgent);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.smart_home_system.service;
+
+/**
+ * Điểm phát duy nhất cho sự kiện real-time gửi tới client WebSocket.
+ *
+ * <p>
+ * Node ingest (MQTT, scheduler, request HTTP) chỉ gọi bus; việc giao tới client do
+ * {@link RealtimeDelivery} trên từng node đảm nhận. Với {@code realtime.bus.mode=LOCAL}
+ * sự kiện chỉ tới client của node hiện tại, với {@code MQTT} sự kiện được phát cho mọi
+ * node (kể cả node phát) qua MQTT broker và chỉ được giao từ subscription của bus.
+ */
+public interface RealtimeEventBus {
+
+    /**
+     * Phát sự kiện tới destination STOMP (vd. {@code /topic/home/1/status})
+     */
+    void publish(String destination, Object payload);
+
+    /**
+     * Phát sensor frame của home; mỗi node giao qua {@link SensorPushConflator} của nó
+     *
+     * @param urgent frame khẩn cấp, gửi ngay không chờ min interval
+     */
+    void publishSensorFrame(Long homeId, String payload, boolean urgent);
+}
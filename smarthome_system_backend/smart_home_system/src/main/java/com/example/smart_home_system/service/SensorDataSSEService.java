@@ -1,15 +1,31 @@
 package com.example.smart_home_system.service;
 
 import com.example.smart_home_system.dto.response.MCU.MCUSensorDataResponse;
+import com.example.smart_home_system.dto.response.admin.SseBroadcastStats;
+import com.example.smart_home_system.enums.SseOverflowPolicy;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service for managing Server-Sent Events (SSE) connections for real-time sensor data streaming.
@@ -24,6 +40,18 @@ import java.util.concurrent.ConcurrentHashMap;
  *   <li>Automatically cleans up disconnected clients</li>
  *   <li>Thread-safe connection management</li>
  * </ul>
+ *
+ * <p><b>Non-blocking broadcast:</b> mỗi connection có một hàng đợi outbound bounded
+ * ({@code sse.connection.queue-capacity}). Broadcast chỉ serialize event một lần rồi đưa
+ * vào hàng đợi của từng connection, không gọi {@code emitter.send} trên thread của caller
+ * (thread ingest). Khi hàng đợi đầy, event được xử lý theo {@link SseOverflowPolicy}.
+ *
+ * <p><b>Sender:</b> hàng đợi được gửi bởi một pool platform thread cố định
+ * ({@code sse.sender.threads}); mỗi connection có nhiều nhất một task gửi trong pool và
+ * task nhả thread sau mỗi lô event để các connection khác được phục vụ. Không dùng
+ * virtual thread: {@code ResponseBodyEmitter.send} là synchronized, một lần ghi bị treo
+ * sẽ pin carrier thread và làm chậm mọi virtual thread khác của JVM. Với pool riêng, một
+ * client treo chỉ giữ một sender tới khi write timeout của Tomcat làm lần ghi thất bại.
  * 
  * @author Smart Home System Team
  * @version 1.0
@@ -36,17 +64,53 @@ public class SensorDataSSEService {
 
     private final ObjectMapper objectMapper;
 
+    @Value("${sse.connection.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${sse.connection.overflow-policy:DROP_OLDEST}")
+    private SseOverflowPolicy overflowPolicy;
+
+    @Value("${sse.sender.threads:8}")
+    private int senderThreads;
+
+    // Số event một task gửi trước khi nhả thread cho connection khác
+    private static final int SEND_BATCH = 16;
+
+    private ExecutorService senderExecutor;
+
     /**
-     * Map of homeId -> Set of SSE emitters for that home
+     * Map of homeId -> connections for that home
      * Thread-safe to handle concurrent connections
      */
-    private final Map<Long, Map<String, SseEmitter>> homeConnections = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Connection>> homeConnections = new ConcurrentHashMap<>();
     
     /**
      * Default timeout for SSE connections (30 minutes)
      */
     private static final long SSE_TIMEOUT = 30 * 60 * 1000L;
 
+    private final AtomicLong broadcasts = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, senderThreads);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("sse-sender-");
+        threadFactory.setDaemon(true);
+        senderExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        log.info("SSE sender pool started: threads={}, queueCapacity={}, overflowPolicy={}",
+                threads, queueCapacity, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senderExecutor.shutdownNow();
+    }
+
     /**
      * Create a new SSE connection for a home
      * 
@@ -58,9 +122,11 @@ public class SensorDataSSEService {
         String connectionId = generateConnectionId();
         
         try {
+            Connection connection = new Connection(connectionId, homeId, emitter);
+
             // Add to connections map
             homeConnections.computeIfAbsent(homeId, k -> new ConcurrentHashMap<>())
-                          .put(connectionId, emitter);
+                          .put(connectionId, connection);
             
             // Giảm log level từ debug xuống trace để giảm log
             log.trace("SSE connection created: homeId={}, connectionId={}, totalConnections={}", 
@@ -82,17 +148,11 @@ public class SensorDataSSEService {
                 log.error("SSE connection error: homeId={}, connectionId={}", homeId, connectionId, ex);
             });
             
-            // Send initial connection event
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("connected")
-                        .data("{\"message\":\"Connected to sensor data stream\",\"homeId\":" + homeId + "}"));
-            } catch (IOException e) {
-                log.error("Failed to send initial connection event for homeId={}, connectionId={}", 
-                         homeId, connectionId, e);
-                removeConnection(homeId, connectionId);
-                emitter.completeWithError(e);
-            }
+            // Initial connection event goes through the same queue as every other event
+            connection.offer(SseEmitter.event()
+                    .name("connected")
+                    .data("{\"message\":\"Connected to sensor data stream\",\"homeId\":" + homeId + "}")
+                    .build());
         } catch (Exception e) {
             log.error("Failed to create SSE connection for homeId={}: {}", homeId, e.getMessage(), e);
             removeConnection(homeId, connectionId);
@@ -109,53 +169,25 @@ public class SensorDataSSEService {
      * @param sensorData Sensor data to broadcast
      */
     public void broadcastSensorData(Long homeId, MCUSensorDataResponse sensorData) {
-        Map<String, SseEmitter> connections = homeConnections.get(homeId);
+        Map<String, Connection> connections = homeConnections.get(homeId);
         if (connections == null || connections.isEmpty()) {
             log.debug("No SSE connections for homeId={}, skipping broadcast", homeId);
             return;
         }
-        
-        // Giảm log level - chỉ log khi có nhiều connections
-        if (connections.size() > 5) {
-            log.debug("Broadcasting sensor data to {} connections for homeId={}", 
-                     connections.size(), homeId);
-        }
-        
-        // Convert sensor data to JSON string
-        String jsonData = convertToJson(sensorData);
-        
-        // Broadcast to all connections
-        connections.entrySet().removeIf(entry -> {
-            SseEmitter emitter = entry.getValue();
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("sensor-data")
-                        .data(jsonData));
-                return false; // Keep connection
-            } catch (IOException e) {
-                log.debug("Failed to send sensor data to connection {}: {}", 
-                         entry.getKey(), e.getMessage());
-                return true; // Remove connection
-            }
-        });
-        
-        // Chỉ log khi có nhiều connections hoặc có vấn đề
-        if (connections.size() > 5) {
-            log.debug("Broadcast completed for homeId={}, activeConnections={}", 
-                     homeId, connections.size());
-        }
+        broadcast(homeId, "sensor-data", convertToJson(sensorData));
     }
 
     /**
-     * Remove a connection from the map
+     * Remove a connection from the map and stop its sender
      */
     private void removeConnection(Long homeId, String connectionId) {
-        Map<String, SseEmitter> connections = homeConnections.get(homeId);
+        Map<String, Connection> connections = homeConnections.get(homeId);
         if (connections != null) {
-            connections.remove(connectionId);
-            if (connections.isEmpty()) {
-                homeConnections.remove(homeId);
+            Connection connection = connections.remove(connectionId);
+            if (connection != null) {
+                connection.close();
             }
+            homeConnections.computeIfPresent(homeId, (id, current) -> current.isEmpty() ? null : current);
             log.debug("Removed SSE connection: homeId={}, connectionId={}, remainingConnections={}", 
                      homeId, connectionId, getConnectionCount(homeId));
         }
@@ -165,7 +197,7 @@ public class SensorDataSSEService {
      * Get connection count for a home
      */
     public int getConnectionCount(Long homeId) {
-        Map<String, SseEmitter> connections = homeConnections.get(homeId);
+        Map<String, Connection> connections = homeConnections.get(homeId);
         return connections != null ? connections.size() : 0;
     }
 
@@ -243,14 +275,15 @@ public class SensorDataSSEService {
     }
 
     /**
-     * Generic broadcast method
+     * Generic broadcast method: event được build (serialize) một lần rồi đưa vào hàng đợi
+     * của từng connection, không gọi {@code emitter.send} trên thread của caller
      * 
      * @param homeId Home ID
      * @param eventName SSE event name
      * @param jsonData JSON data to send
      */
     private void broadcast(Long homeId, String eventName, String jsonData) {
-        Map<String, SseEmitter> connections = homeConnections.get(homeId);
+        Map<String, Connection> connections = homeConnections.get(homeId);
         if (connections == null || connections.isEmpty()) {
             log.trace("No SSE connections for homeId={}, skipping broadcast", homeId);
             return;
@@ -259,18 +292,144 @@ public class SensorDataSSEService {
         log.trace("Broadcasting {} to {} connections for homeId={}", 
                 eventName, connections.size(), homeId);
 
-        connections.entrySet().removeIf(entry -> {
-            SseEmitter emitter = entry.getValue();
+        broadcasts.incrementAndGet();
+        Set<ResponseBodyEmitter.DataWithMediaType> event = SseEmitter.event()
+                .name(eventName)
+                .data(jsonData)
+                .build();
+        for (Connection connection : connections.values()) {
+            connection.offer(event);
+        }
+    }
+
+    public SseBroadcastStats getStats() {
+        int connections = 0;
+        int totalQueued = 0;
+        int maxQueueDepth = 0;
+        for (Map<String, Connection> home : homeConnections.values()) {
+            for (Connection connection : home.values()) {
+                int depth = connection.queue.size();
+                connections++;
+                totalQueued += depth;
+                maxQueueDepth = Math.max(maxQueueDepth, depth);
+            }
+        }
+
+        return SseBroadcastStats.builder()
+                .queueCapacity(queueCapacity)
+                .overflowPolicy(overflowPolicy.name())
+                .homes(homeConnections.size())
+                .connections(connections)
+                .totalQueued(totalQueued)
+                .maxQueueDepth(maxQueueDepth)
+                .broadcasts(broadcasts.get())
+                .sent(sent.get())
+                .dropped(dropped.get())
+                .evicted(evicted.get())
+                .failed(failed.get())
+                .build();
+    }
+
+    /**
+     * Một SSE connection: hàng đợi outbound bounded, gửi tuần tự bởi tối đa một task trong
+     * sender pool
+     */
+    private final class Connection {
+        final String id;
+        final Long homeId;
+        final SseEmitter emitter;
+        final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        // Đã có task gửi trong pool (đang chạy hoặc chờ)
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Connection(String id, Long homeId, SseEmitter emitter) {
+            this.id = id;
+            this.homeId = homeId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        }
+
+        /**
+         * Đưa event vào hàng đợi, không bao giờ block caller
+         */
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (closed) {
+                return;
+            }
+            if (queue.offer(event)) {
+                schedule();
+                return;
+            }
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    while (!queue.offer(event)) {
+                        if (queue.poll() != null) {
+                            dropped.incrementAndGet();
+                        }
+                    }
+                    schedule();
+                    break;
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    break;
+                case DISCONNECT:
+                default:
+                    evicted.incrementAndGet();
+                    log.debug("SSE connection too slow, disconnecting: homeId={}, connectionId={}", homeId, id);
+                    removeConnection(homeId, id);
+                    // complete() chờ lock của emitter mà sender có thể đang giữ (TCP treo)
+                    execute(emitter::complete);
+                    break;
+            }
+        }
+
+        private void schedule() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                execute(this::drain);
+            }
+        }
+
+        private void execute(Runnable task) {
             try {
-                emitter.send(SseEmitter.event()
-                        .name(eventName)
-                        .data(jsonData));
-                return false; // Keep connection
-            } catch (IOException e) {
-                log.debug("Failed to send {} to connection {}: {}", 
-                        eventName, entry.getKey(), e.getMessage());
-                return true; // Remove connection
+                senderExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Đang shutdown
+                removeConnection(homeId, id);
+            }
+        }
+
+        /**
+         * Gửi tối đa SEND_BATCH event rồi nhả thread; còn event thì xếp lại vào pool
+         */
+        private void drain() {
+            for (int i = 0; i < SEND_BATCH && !closed; i++) {
+                Set<ResponseBodyEmitter.DataWithMediaType> event = queue.poll();
+                if (event == null) {
+                    break;
+                }
+                try {
+                    emitter.send(event);
+                    sent.incrementAndGet();
+                } catch (Exception e) {
+                    if (!closed) {
+                        failed.incrementAndGet();
+                        log.debug("Failed to send SSE event to connection {}: {}", id, e.getMessage());
+                        removeConnection(homeId, id);
+                    }
+                    return;
+                }
+            }
+            scheduled.set(false);
+            // Event đến sau poll() cuối nhưng trước khi cờ được bỏ không có ai gửi
+            if (!queue.isEmpty()) {
+                schedule();
             }
-        });
+        }
+
+        void close() {
+            closed = true;
+            queue.clear();
+        }
     }
 }
@@ -0,0 +1,266 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.response.admin.SensorPushStats;
+import com.example.smart_home_system.service.StompSubscriptionRegistry.Subscription;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Push sensor frame tới {@code /topic/home/{homeId}/sensors} theo kiểu conflation
+ * (chỉ giữ giá trị mới nhất) cho từng subscriber.
+ *
+ * <p>
+ * Trước đây mỗi frame được broadcast qua simple broker cho mọi subscriber, client chậm
+ * (mobile) bị dồn backlog frame cũ. Ở đây mỗi subscription có tối đa một frame đang chờ:
+ * frame mới thay thế frame chưa gửi, và một subscription không nhận quá một frame mỗi
+ * {@code min-interval-ms} của client class của nó. Client khai báo class bằng header
+ * {@code client-class} khi SUBSCRIBE (vd. {@code web}, {@code mobile}); không có header
+ * thì dùng class {@code default}.
+ *
+ * <p>
+ * Frame được gửi thẳng vào {@code clientOutboundChannel} cho từng session (giống cách
+ * simple broker làm), nên client vẫn subscribe đúng destination cũ. Frame khẩn cấp
+ * ({@code urgent}) được gửi ngay, không chờ min interval.
+ *
+ * <p>
+ * Subscription lấy từ StompSubscriptionRegistry (conflator chỉ giữ trạng thái gửi của
+ * từng subscriber, theo home); lần gửi trễ chạy trên TaskScheduler dùng chung.
+ */
+@Component
+@Slf4j
+public class SensorPushConflator implements StompSubscriptionRegistry.Listener {
+
+    private static final Pattern DESTINATION_PATTERN = Pattern.compile("/topic/home/(\\d+)/sensors");
+    private static final String DEFAULT_CLIENT_CLASS = "default";
+    private static final MimeType CONTENT_TYPE = new MimeType("text", "plain", StandardCharsets.UTF_8);
+
+    private final MessageChannel clientOutboundChannel;
+    private final StompSubscriptionRegistry subscriptionRegistry;
+    private final TaskScheduler taskScheduler;
+
+    @Value("#{${websocket.sensors.min-interval-ms:{default:1000,web:1000,mobile:5000}}}")
+    private Map<String, Long> minIntervals;
+
+    // homeId -> subscription -> trạng thái gửi của subscriber
+    private final Map<Long, Map<Subscription, Subscriber>> byHome = new ConcurrentHashMap<>();
+    private final Map<String, ClassCounters> classCounters = new ConcurrentHashMap<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong urgent = new AtomicLong();
+
+    public SensorPushConflator(@Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                               StompSubscriptionRegistry subscriptionRegistry, TaskScheduler taskScheduler) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.taskScheduler = taskScheduler;
+    }
+
+    @PostConstruct
+    public void start() {
+        subscriptionRegistry.addListener(this);
+        log.info("Sensor push conflator started: minIntervals={}", minIntervals);
+    }
+
+    /**
+     * Đưa frame mới nhất của home tới các subscriber
+     *
+     * @param urgent gửi ngay (frame khẩn cấp), không chờ min interval
+     */
+    public void publish(Long homeId, String payload, boolean urgent) {
+        Map<Subscription, Subscriber> subscribers = byHome.get(homeId);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        published.incrementAndGet();
+        if (urgent) {
+            this.urgent.incrementAndGet();
+        }
+
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers.values()) {
+            if (subscriber.pending.getAndSet(payload) != null) {
+                conflated.incrementAndGet();
+                subscriber.counters.conflated.incrementAndGet();
+            }
+            if (urgent) {
+                deliver(subscriber);
+            } else {
+                scheduleDelivery(subscriber, now);
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribed(Subscription subscription) {
+        Matcher matcher = DESTINATION_PATTERN.matcher(subscription.destination());
+        if (!matcher.matches()) {
+            return;
+        }
+
+        Long homeId = Long.parseLong(matcher.group(1));
+        // Chỉ nhận các class đã cấu hình, tránh client tự tạo class tùy ý
+        String header = subscription.clientClass();
+        String clientClass = header != null ? header.trim().toLowerCase(Locale.ROOT) : DEFAULT_CLIENT_CLASS;
+        if (!minIntervals.containsKey(clientClass)) {
+            clientClass = DEFAULT_CLIENT_CLASS;
+        }
+
+        Subscriber subscriber = new Subscriber(subscription, clientClass, minIntervalOf(clientClass),
+                classCounters.computeIfAbsent(clientClass, k -> new ClassCounters()));
+        byHome.computeIfAbsent(homeId, k -> new ConcurrentHashMap<>()).put(subscription, subscriber);
+        log.debug("Sensor push subscriber added: sessionId={}, homeId={}, clientClass={}",
+                subscription.sessionId(), homeId, clientClass);
+    }
+
+    @Override
+    public void onUnsubscribed(Subscription subscription) {
+        Matcher matcher = DESTINATION_PATTERN.matcher(subscription.destination());
+        if (!matcher.matches()) {
+            return;
+        }
+        byHome.computeIfPresent(Long.parseLong(matcher.group(1)), (id, subscribers) -> {
+            Subscriber subscriber = subscribers.remove(subscription);
+            if (subscriber != null) {
+                subscriber.removed = true;
+                subscriber.pending.set(null);
+            }
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    public SensorPushStats getStats() {
+        Map<String, Integer> subscribersByClass = new LinkedHashMap<>();
+        int total = 0;
+        for (Map<Subscription, Subscriber> subscribers : byHome.values()) {
+            for (Subscriber subscriber : subscribers.values()) {
+                subscribersByClass.merge(subscriber.clientClass, 1, Integer::sum);
+                total++;
+            }
+        }
+
+        Map<String, SensorPushStats.ClientClassStats> classes = new LinkedHashMap<>();
+        classCounters.forEach((clientClass, counters) -> classes.put(clientClass,
+                SensorPushStats.ClientClassStats.builder()
+                        .minIntervalMs(minIntervalOf(clientClass))
+                        .subscribers(subscribersByClass.getOrDefault(clientClass, 0))
+                        .conflated(counters.conflated.get())
+                        .delivered(counters.delivered.get())
+                        .build()));
+
+        return SensorPushStats.builder()
+                .subscribers(total)
+                .published(published.get())
+                .conflated(conflated.get())
+                .delivered(delivered.get())
+                .urgent(urgent.get())
+                .clientClasses(classes)
+                .build();
+    }
+
+    private void scheduleDelivery(Subscriber subscriber, long now) {
+        if (!subscriber.scheduled.compareAndSet(false, true)) {
+            // Đã có lần gửi đang chờ, nó sẽ lấy frame mới nhất
+            return;
+        }
+        long delayMs = subscriber.lastSentMs + subscriber.minIntervalMs - now;
+        if (delayMs <= 0) {
+            deliver(subscriber);
+        } else {
+            taskScheduler.schedule(() -> deliver(subscriber), Instant.now().plusMillis(delayMs));
+        }
+    }
+
+    private void deliver(Subscriber subscriber) {
+        String payload = subscriber.pending.getAndSet(null);
+        long now = System.currentTimeMillis();
+        if (payload != null) {
+            subscriber.lastSentMs = now;
+        }
+        subscriber.scheduled.set(false);
+
+        if (payload != null && !subscriber.removed) {
+            try {
+                send(subscriber, payload);
+                delivered.incrementAndGet();
+                subscriber.counters.delivered.incrementAndGet();
+            } catch (Exception e) {
+                log.warn("Failed to push sensor frame to sessionId={}: {}", subscriber.subscription.sessionId(), e.getMessage());
+            }
+        }
+
+        // Frame tới trong lúc đang gửi mà không lên lịch được (scheduled còn true)
+        if (subscriber.pending.get() != null && !subscriber.removed) {
+            scheduleDelivery(subscriber, now);
+        }
+    }
+
+    /**
+     * Gửi MESSAGE frame cho đúng một subscription, giống SimpleBrokerMessageHandler
+     */
+    private void send(Subscriber subscriber, String payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(subscriber.subscription.sessionId());
+        accessor.setSubscriptionId(subscriber.subscription.subscriptionId());
+        accessor.setDestination(subscriber.subscription.destination());
+        accessor.setContentType(CONTENT_TYPE);
+        accessor.setLeaveMutable(true);
+        clientOutboundChannel.send(MessageBuilder.createMessage(payload.getBytes(StandardCharsets.UTF_8),
+                accessor.getMessageHeaders()));
+    }
+
+    private long minIntervalOf(String clientClass) {
+        Long interval = minIntervals.get(clientClass);
+        if (interval == null) {
+            interval = minIntervals.getOrDefault(DEFAULT_CLIENT_CLASS, 0L);
+        }
+        return Math.max(0, interval);
+    }
+
+    private static final class ClassCounters {
+        final AtomicLong conflated = new AtomicLong();
+        final AtomicLong delivered = new AtomicLong();
+    }
+
+    private static final class Subscriber {
+        final Subscription subscription;
+        final String clientClass;
+        final long minIntervalMs;
+        final ClassCounters counters;
+
+        // Frame mới nhất chưa gửi (tối đa một frame cho mỗi subscription)
+        final AtomicReference<String> pending = new AtomicReference<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile long lastSentMs;
+        volatile boolean removed;
+
+        Subscriber(Subscription subscription, String clientClass, long minIntervalMs, ClassCounters counters) {
+            this.subscription = subscription;
+            this.clientClass = clientClass;
+            this.minIntervalMs = minIntervalMs;
+            this.counters = counters;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.SensorFrame;
+import com.example.smart_home_system.dto.response.MCU.MCUSensorDataResponse;
+import com.example.smart_home_system.entity.MCUGateway;
+import com.example.smart_home_system.enums.SensorKey;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sensor snapshot mới nhất của từng home, giữ trong bộ nhớ.
+ *
+ * <p>
+ * Trước đây mỗi frame đều ghi toàn bộ payload vào cột JSON {@code mcu_gateways.metadata}
+ * và mỗi lần FE poll {@code /home/{homeId}/sensor-data} hoặc dashboard lại đọc và parse
+ * lại cột này. Store giữ frame đã decode cùng thời điểm nhận; response cho FE được build
+ * một lần cho mỗi frame và dùng lại cho mọi request sau đó.
+ *
+ * <p>
+ * Cột metadata vẫn được cập nhật (để còn dữ liệu sau khi restart) nhưng chỉ theo chu kỳ
+ * chậm {@code sensor.snapshot.persist-interval-ms} và khi shutdown, bằng một JDBC batch
+ * cho các home có snapshot mới. Đây là đường ghi duy nhất sau khi MCU được tạo
+ * ({@code MCUGateway.metadata} là {@code updatable = false}).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SensorSnapshotStore {
+
+    private static final String UPDATE_SQL = "UPDATE mcu_gateways SET metadata = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${sensor.snapshot.persist-interval-ms:300000}")
+    private long persistIntervalMs;
+
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyHomes = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void start() {
+        log.info("Sensor snapshot store started: persistIntervalMs={}", persistIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        persistSafely();
+    }
+
+    /**
+     * Cập nhật snapshot từ frame mới nhận (sẽ được persist ở chu kỳ kế tiếp)
+     */
+    public void put(Long homeId, MCUGateway mcu, SensorFrame frame) {
+        put(homeId, mcu.getId(), mcu.getSerialNumber(), frame);
+    }
+
+    public void put(Long homeId, Long mcuGatewayId, String serialNumber, SensorFrame frame) {
+        LocalDateTime receivedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(frame.getReceivedAt()),
+                ZoneId.systemDefault());
+        snapshots.put(homeId, new Snapshot(mcuGatewayId, serialNumber, frame, receivedAt));
+        dirtyHomes.add(homeId);
+    }
+
+    /**
+     * Nạp snapshot từ cột metadata (sau restart), không đánh dấu cần persist
+     */
+    public void seed(Long homeId, MCUGateway mcu) throws IOException {
+        SensorFrame frame = SensorFrame.parse(mcu.getMetadata());
+        snapshots.putIfAbsent(homeId,
+                new Snapshot(mcu.getId(), mcu.getSerialNumber(), frame, mcu.getLastHeartbeat()));
+    }
+
+    /**
+     * Ghi đè một số field (vd. ngưỡng automation vừa gửi xuống ESP32) để FE thấy ngay giá
+     * trị mới mà không phải chờ frame kế tiếp
+     */
+    public void merge(Long homeId, MCUGateway mcu, Map<String, Object> values) throws IOException {
+        Snapshot current = snapshots.get(homeId);
+        String json = current != null ? current.getFrame().getRawJson() : mcu.getMetadata();
+
+        Map<String, Object> merged = new LinkedHashMap<>();
+        if (json != null && !json.trim().isEmpty()) {
+            try {
+                merged.putAll(objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+                }));
+            } catch (Exception e) {
+                log.warn("Could not parse sensor snapshot for merge, creating new: {}", e.getMessage());
+            }
+        }
+        merged.putAll(values);
+
+        SensorFrame frame = SensorFrame.parse(objectMapper.writeValueAsString(merged));
+        LocalDateTime receivedAt = current != null ? current.getReceivedAt() : mcu.getLastHeartbeat();
+        snapshots.put(homeId, new Snapshot(mcu.getId(), mcu.getSerialNumber(), frame, receivedAt));
+        dirtyHomes.add(homeId);
+    }
+
+    public Snapshot get(Long homeId) {
+        return snapshots.get(homeId);
+    }
+
+    /**
+     * Response cho {@code /home/{homeId}/sensor-data}, null nếu chưa có snapshot
+     */
+    public MCUSensorDataResponse getResponse(Long homeId) {
+        Snapshot snapshot = snapshots.get(homeId);
+        return snapshot != null ? snapshot.response(objectMapper) : null;
+    }
+
+    /**
+     * Bỏ snapshot của home (MCU bị unpair), kể cả thay đổi chưa persist
+     */
+    public void evict(Long homeId) {
+        snapshots.remove(homeId);
+        dirtyHomes.remove(homeId);
+    }
+
+    /**
+     * Ghi snapshot của các home có thay đổi vào cột metadata
+     */
+    public synchronized void persist() {
+        if (dirtyHomes.isEmpty()) {
+            return;
+        }
+        List<Long> homeIds = new ArrayList<>(dirtyHomes);
+        List<Object[]> batch = new ArrayList<>(homeIds.size());
+        for (Long homeId : homeIds) {
+            dirtyHomes.remove(homeId);
+            Snapshot snapshot = snapshots.get(homeId);
+            if (snapshot != null) {
+                batch.add(new Object[] { snapshot.getFrame().getRawJson(), snapshot.getMcuGatewayId() });
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+            log.debug("Persisted {} sensor snapshots", batch.size());
+        } catch (RuntimeException e) {
+            // Đánh dấu lại để thử ở chu kỳ sau
+            dirtyHomes.addAll(homeIds);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sensor.snapshot.persist-interval-ms:300000}",
+            initialDelayString = "${sensor.snapshot.persist-interval-ms:300000}")
+    void persistSafely() {
+        try {
+            persist();
+        } catch (Exception e) {
+            log.error("Failed to persist sensor snapshots: {}", e.getMessage(), e);
+        }
+    }
+
+    @Getter
+    public static final class Snapshot {
+        private final Long mcuGatewayId;
+        private final String serialNumber;
+        private final SensorFrame frame;
+        private final LocalDateTime receivedAt;
+
+        // Build lazily một lần cho mỗi frame, dùng chung cho mọi lần poll
+        @Getter(lombok.AccessLevel.NONE)
+        private volatile MCUSensorDataResponse response;
+
+        private Snapshot(Long mcuGatewayId, String serialNumber, SensorFrame frame, LocalDateTime receivedAt) {
+            this.mcuGatewayId = mcuGatewayId;
+            this.serialNumber = serialNumber;
+            this.frame = frame;
+            this.receivedAt = receivedAt;
+        }
+
+        private MCUSensorDataResponse response(ObjectMapper objectMapper) {
+            MCUSensorDataResponse result = response;
+            if (result == null) {
+                result = buildResponse(objectMapper);
+                response = result;
+            }
+            return result;
+        }
+
+        private MCUSensorDataResponse buildResponse(ObjectMapper objectMapper) {
+            Map<String, Object> rawData = new LinkedHashMap<>();
+            try {
+                Map<String, Object> values = objectMapper.readValue(frame.getRawJson(),
+                        new TypeReference<Map<String, Object>>() {
+                        });
+                // Giữ định dạng cũ: số luôn là Double
+                values.forEach((key, value) -> rawData.put(key,
+                        value instanceof Number number ? (Object) number.doubleValue() : value));
+            } catch (Exception e) {
+                log.warn("Failed to build rawData from sensor snapshot: {}", e.getMessage());
+            }
+
+            return MCUSensorDataResponse.builder()
+                    .mcuGatewayId(mcuGatewayId)
+                    .serialNumber(serialNumber)
+                    .lastUpdate(receivedAt)
+                    .tempIn(frame.has(SensorKey.TEMP_IN) ? frame.getTempIn() : null)
+                    .humIn(frame.has(SensorKey.HUM_IN) ? frame.getHumIn() : null)
+                    .tempOut(frame.has(SensorKey.TEMP_OUT) ? frame.getTempOut() : null)
+                    .humOut(frame.has(SensorKey.HUM_OUT) ? frame.getHumOut() : null)
+                    .gas(frame.has(SensorKey.GAS) ? frame.getGas() : null)
+                    .light(frame.has(SensorKey.LIGHT) ? frame.getLight() : null)
+                    .rain(frame.has(SensorKey.RAIN) ? frame.getRain() : null)
+                    .flame(frame.has(SensorKey.FLAME) ? frame.isFlame() : null)
+                    .motion(frame.has(SensorKey.MOTION) ? frame.isMotion() : null)
+                    .door(frame.has(SensorKey.DOOR) ? frame.isDoor() : null)
+                    .lightStatus(frame.has(SensorKey.LIGHT_STATUS) ? frame.isLightStatus() : null)
+                    .fanStatus(frame.has(SensorKey.FAN_STATUS) ? frame.isFanStatus() : null)
+                    .gasAlert(frame.has(SensorKey.GAS_ALERT) ? frame.isGasAlert() : null)
+                    .emergency(frame.has(SensorKey.EMERGENCY) ? frame.isEmergency() : null)
+                    .autoLight(frame.has(SensorKey.AUTO_LIGHT) ? frame.isAutoLight() : null)
+                    .autoFan(frame.has(SensorKey.AUTO_FAN) ? frame.isAutoFan() : null)
+                    .autoCloseDoor(frame.has(SensorKey.AUTO_CLOSE_DOOR) ? frame.isAutoCloseDoor() : null)
+                    .autoLightThreshold(frame.has(SensorKey.AUTO_LIGHT_THRESHOLD) ? frame.getAutoLightThreshold() : null)
+                    .autoFanThreshold(frame.has(SensorKey.AUTO_FAN_THRESHOLD) ? frame.getAutoFanThreshold() : null)
+                    .gasAlertThreshold(frame.has(SensorKey.GAS_ALERT_THRESHOLD) ? frame.getGasAlertThreshold() : null)
+                    .rawData(rawData)
+                    .build();
+        }
+    }
+}
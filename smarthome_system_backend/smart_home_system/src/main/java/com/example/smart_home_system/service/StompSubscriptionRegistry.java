@@ -0,0 +1,118 @@
+package com.example.smart_home_system.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Session STOMP và subscription của chúng trên node này, dựng từ session event.
+ *
+ * <p>
+ * Là nguồn duy nhất cho các thành phần cần biết ai đang subscribe gì (WebSocketMetrics,
+ * SensorPushConflator). Thành phần cần phản ứng khi subscription thay đổi đăng ký
+ * {@link Listener}; callback được gọi trong lock của session, nên các thay đổi của cùng
+ * một session (subscribe / unsubscribe / disconnect) tới listener theo đúng thứ tự.
+ */
+@Component
+public class StompSubscriptionRegistry {
+
+    /**
+     * Header SUBSCRIBE để client khai báo class của nó (vd. {@code web}, {@code mobile})
+     */
+    public static final String CLIENT_CLASS_HEADER = "client-class";
+
+    // sessionId -> subscriptionId -> subscription
+    private final Map<String, Map<String, Subscription>> sessions = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public void forEachSubscription(Consumer<Subscription> action) {
+        for (Map<String, Subscription> subscriptions : sessions.values()) {
+            subscriptions.values().forEach(action);
+        }
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (sessionId != null) {
+            sessions.putIfAbsent(sessionId, new ConcurrentHashMap<>());
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() == null || accessor.getSubscriptionId() == null
+                || accessor.getDestination() == null) {
+            return;
+        }
+        Subscription subscription = new Subscription(accessor.getSessionId(), accessor.getSubscriptionId(),
+                accessor.getDestination(), accessor.getFirstNativeHeader(CLIENT_CLASS_HEADER));
+        sessions.compute(subscription.sessionId(), (id, subscriptions) -> {
+            if (subscriptions == null) {
+                subscriptions = new ConcurrentHashMap<>();
+            }
+            Subscription previous = subscriptions.put(subscription.subscriptionId(), subscription);
+            if (previous != null) {
+                listeners.forEach(listener -> listener.onUnsubscribed(previous));
+            }
+            listeners.forEach(listener -> listener.onSubscribed(subscription));
+            return subscriptions;
+        });
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        sessions.computeIfPresent(accessor.getSessionId(), (id, subscriptions) -> {
+            Subscription removed = subscriptions.remove(accessor.getSubscriptionId());
+            if (removed != null) {
+                listeners.forEach(listener -> listener.onUnsubscribed(removed));
+            }
+            return subscriptions;
+        });
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.computeIfPresent(event.getSessionId(), (id, subscriptions) -> {
+            subscriptions.values().forEach(subscription ->
+                    listeners.forEach(listener -> listener.onUnsubscribed(subscription)));
+            return null;
+        });
+    }
+
+    /**
+     * Một subscription STOMP; {@code clientClass} là header {@value #CLIENT_CLASS_HEADER} gốc (có thể null)
+     */
+    public record Subscription(String sessionId, String subscriptionId, String destination, String clientClass) {
+    }
+
+    public interface Listener {
+
+        void onSubscribed(Subscription subscription);
+
+        void onUnsubscribed(Subscription subscription);
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.repository.NotificationRepository;
+import com.example.smart_home_system.util.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Số notification chưa đọc của từng user, giữ trong bảng {@code notification_unread_counters}
+ * và cache trong bộ nhớ.
+ *
+ * <p>
+ * Badge trên FE trước đây poll {@code /notifications/unread-count}, mỗi lần là một
+ * COUNT trên bảng notifications. Giờ mỗi thay đổi (tạo, đọc, xóa notification) cộng/trừ
+ * counter của user bằng một UPDATE trong cùng transaction với thay đổi đó, nên bảng counter
+ * luôn khớp với dữ liệu đã commit, kể cả khi app dừng đột ngột. Mỗi lần ghi tăng
+ * {@code version} của row.
+ *
+ * <p>
+ * Bộ nhớ chỉ giữ counter của user đã được đọc trên node này. Sau commit, các counter đó
+ * được đọc lại từ bảng (một query theo khóa chính cho cả nhóm user) và giá trị mới được push
+ * tới {@code /topic/user/{userId}/unread}; bản có version lớn hơn luôn thắng. User chưa
+ * được đọc không tốn gì thêm và được nạp khi {@link #get(String)} lần đầu.
+ *
+ * <p>
+ * User chưa có row (hoặc cần đếm lại, vd. vừa rời home) được đếm lại từ notifications trong
+ * một transaction SERIALIZABLE riêng: các đọc khi đếm là locking read, nên thay đổi song
+ * song hoặc đã nằm trong số đếm, hoặc phải chờ và được cộng lên row sau đó.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UnreadCounterStore {
+
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    private static final String SELECT_SQL =
+            "SELECT unread_count, version FROM notification_unread_counters WHERE user_id = ?";
+
+    private static final String LOCK_SQL =
+            "SELECT unread_count FROM notification_unread_counters WHERE user_id = ? FOR UPDATE";
+
+    private static final String ADJUST_SQL = "UPDATE notification_unread_counters "
+            + "SET unread_count = GREATEST(0, unread_count + ?), version = version + 1, updated_at = ? WHERE user_id = ?";
+
+    private static final String CLEAR_SQL = "UPDATE notification_unread_counters "
+            + "SET unread_count = 0, version = version + 1, updated_at = ? WHERE user_id = ?";
+
+    private static final String REBUILD_SQL = "INSERT INTO notification_unread_counters "
+            + "(user_id, unread_count, version, updated_at) VALUES (?, ?, 1, ?) AS new "
+            + "ON DUPLICATE KEY UPDATE unread_count = new.unread_count, "
+            + "version = notification_unread_counters.version + 1, updated_at = new.updated_at";
+
+    private final NotificationRepository notificationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RealtimeEventBus realtimeEventBus;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private TransactionTemplate rebuildTransaction;
+
+    @PostConstruct
+    public void init() {
+        rebuildTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        rebuildTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        rebuildTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+    }
+
+    /**
+     * Số notification chưa đọc của user (đọc row counter một lần nếu chưa có trong bộ nhớ)
+     */
+    public long get(String userId) {
+        Counter counter = counters.get(userId);
+        if (counter != null) {
+            return counter.value();
+        }
+        Counter loaded = load(userId);
+        if (loaded == null) {
+            loaded = rebuild(userId);
+        }
+        return counters.merge(userId, loaded, Counter::newer).value();
+    }
+
+    /**
+     * Cộng delta vào counter của user trong transaction hiện tại
+     */
+    public void adjust(String userId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        jdbcTemplate.update(ADJUST_SQL, delta, now(), userId);
+        TransactionUtils.afterCommit(() -> refresh(List.of(userId)));
+    }
+
+    /**
+     * Mỗi user nhận thêm một notification (fan-out tới các thành viên của home): một UPDATE
+     * cho cả nhóm
+     */
+    public void increment(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<String> users = List.copyOf(userIds);
+        List<Object> args = new ArrayList<>(users.size() + 1);
+        args.add(now());
+        args.addAll(users);
+        jdbcTemplate.update("UPDATE notification_unread_counters "
+                + "SET unread_count = unread_count + 1, version = version + 1, updated_at = ? WHERE user_id IN ("
+                + String.join(",", Collections.nCopies(users.size(), "?")) + ")", args.toArray());
+        TransactionUtils.afterCommit(() -> refresh(users));
+    }
+
+    /**
+     * Đặt counter của user về 0 trong transaction hiện tại (đọc hết / xóa hết), sau khi các
+     * notification đã được cập nhật. Row bị khóa tới khi commit: fan-out song song chờ và
+     * được cộng lên sau, không bị xóa mất.
+     *
+     * <p>
+     * Row phải có sẵn: gọi {@link #get(String)} trước khi transaction ghi notification (nếu
+     * phải đếm lại, việc đếm chạy trong transaction riêng và sẽ chờ chính các lock đó).
+     * Không có row thì counter được đếm lại sau commit.
+     *
+     * @return số chưa đọc ngay trước đó, 0 nếu chưa có row
+     */
+    public long clear(String userId) {
+        List<Long> previous = jdbcTemplate.queryForList(LOCK_SQL, Long.class, userId);
+        if (previous.isEmpty()) {
+            recount(userId);
+            return 0;
+        }
+        jdbcTemplate.update(CLEAR_SQL, now(), userId);
+        TransactionUtils.afterCommit(() -> refresh(List.of(userId)));
+        return previous.get(0);
+    }
+
+    /**
+     * Đếm lại từ notifications sau khi transaction commit (vd. user rời home: notification
+     * dùng chung của home đó không còn được tính)
+     */
+    public void recount(String userId) {
+        TransactionUtils.afterCommit(() -> {
+            try {
+                Counter rebuilt = rebuild(userId);
+                if (counters.containsKey(userId)) {
+                    publishIfNewer(userId, rebuilt);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to recount unread notifications for userId={}: {}", userId, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Đọc lại row counter của các user đang có trong bộ nhớ và push giá trị mới
+     */
+    private void refresh(List<String> userIds) {
+        List<String> loaded = userIds.stream().filter(counters::containsKey).toList();
+        if (loaded.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.query("SELECT user_id, unread_count, version FROM notification_unread_counters "
+                            + "WHERE user_id IN (" + String.join(",", Collections.nCopies(loaded.size(), "?")) + ")",
+                    rs -> {
+                        publishIfNewer(rs.getString(1), new Counter(rs.getLong(2), rs.getLong(3)));
+                    }, loaded.toArray());
+        } catch (RuntimeException e) {
+            // Bảng đã đúng; bộ nhớ được làm mới ở lần thay đổi sau hoặc sau khi bị bỏ khỏi cache
+            loaded.forEach(counters::remove);
+            log.warn("Failed to refresh unread counters, dropped {} cached entries: {}", loaded.size(), e.getMessage());
+        }
+    }
+
+    private void publishIfNewer(String userId, Counter counter) {
+        Counter current = counters.merge(userId, counter, Counter::newer);
+        if (current == counter) {
+            realtimeEventBus.publish("/topic/user/" + userId + "/unread", Map.of("unread", counter.value()));
+        }
+    }
+
+    private Counter load(String userId) {
+        List<Counter> rows = jdbcTemplate.query(SELECT_SQL,
+                (rs, rowNum) -> new Counter(rs.getLong(1), rs.getLong(2)), userId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private Counter rebuild(String userId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return rebuildTransaction.execute(status -> {
+                    Long count = notificationRepository.countUnreadByUserId(userId);
+                    jdbcTemplate.update(REBUILD_SQL, userId, count != null ? count : 0, now());
+                    return load(userId);
+                });
+            } catch (PessimisticLockingFailureException e) {
+                // Deadlock / lock wait với transaction ghi notification: thử lại
+                if (attempt >= REBUILD_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Retrying unread counter rebuild for userId={}: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+
+    /**
+     * Giá trị của row counter tại một version
+     */
+    private record Counter(long value, long version) {
+
+        Counter newer(Counter other) {
+            return other.version > version ? other : this;
+        }
+    }
+}
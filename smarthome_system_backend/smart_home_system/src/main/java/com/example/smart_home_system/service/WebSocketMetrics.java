@@ -0,0 +1,198 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.response.admin.WebSocketStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Số liệu của tầng WebSocket/STOMP: session, subscription theo destination, tình trạng
+ * clientInboundChannel / clientOutboundChannel và các session bị đóng vì client chậm.
+ *
+ * <p>
+ * WebSocketConfig gắn {@link #inboundInterceptor()} / {@link #outboundInterceptor()} vào
+ * hai channel và {@link #decoratorFactory()} vào transport; session / subscription đọc từ
+ * StompSubscriptionRegistry, phần còn lại từ executor của channel.
+ *
+ * <p>
+ * Số liệu channel tính theo message: channel gọi interceptor một lần cho mỗi handler
+ * đăng ký (inbound có nhiều handler), nên started/handled chỉ được đếm ở handler đầu
+ * tiên, để {@code pending} = message đã gửi nhưng chưa bắt đầu xử lý.
+ */
+@Component
+@Slf4j
+public class WebSocketMetrics {
+
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+
+    private final ObjectProvider<TaskExecutor> inboundExecutor;
+    private final ObjectProvider<TaskExecutor> outboundExecutor;
+    private final ObjectProvider<WebSocketHandler> subProtocolWebSocketHandler;
+    private final StompSubscriptionRegistry subscriptionRegistry;
+
+    private final AtomicLong slowSessionsClosed = new AtomicLong();
+
+    private final ChannelCounters inbound = new ChannelCounters();
+    private final ChannelCounters outbound = new ChannelCounters();
+
+    private volatile boolean virtualThreads;
+    private volatile int sendBufferSizeLimit;
+    private volatile int sendTimeLimitMs;
+    private volatile int messageSizeLimit;
+
+    public WebSocketMetrics(@Qualifier("clientInboundChannelExecutor") ObjectProvider<TaskExecutor> inboundExecutor,
+                            @Qualifier("clientOutboundChannelExecutor") ObjectProvider<TaskExecutor> outboundExecutor,
+                            @Qualifier("subProtocolWebSocketHandler") ObjectProvider<WebSocketHandler> subProtocolWebSocketHandler,
+                            StompSubscriptionRegistry subscriptionRegistry) {
+        this.inboundExecutor = inboundExecutor;
+        this.outboundExecutor = outboundExecutor;
+        this.subProtocolWebSocketHandler = subProtocolWebSocketHandler;
+        this.subscriptionRegistry = subscriptionRegistry;
+    }
+
+    /**
+     * Ghi lại cấu hình đang dùng để hiển thị cùng số liệu
+     */
+    public void recordSettings(boolean virtualThreads, int sendBufferSizeLimit, int sendTimeLimitMs,
+                               int messageSizeLimit) {
+        this.virtualThreads = virtualThreads;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.messageSizeLimit = messageSizeLimit;
+    }
+
+    public ExecutorChannelInterceptor inboundInterceptor() {
+        return new CountingInterceptor(inbound);
+    }
+
+    public ExecutorChannelInterceptor outboundInterceptor() {
+        return new CountingInterceptor(outbound);
+    }
+
+    /**
+     * Đếm session bị đóng với SESSION_NOT_RELIABLE (vượt send buffer / send time limit)
+     */
+    public WebSocketHandlerDecoratorFactory decoratorFactory() {
+        return handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                if (CloseStatus.SESSION_NOT_RELIABLE.equalsCode(closeStatus)) {
+                    slowSessionsClosed.incrementAndGet();
+                    log.warn("WebSocket session closed as too slow: sessionId={}", session.getId());
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public WebSocketStats getStats() {
+        // Đếm lại từ registry mỗi lần đọc (endpoint admin), không giữ counter riêng
+        Map<String, Integer> byDestination = new TreeMap<>();
+        subscriptionRegistry.forEachSubscription(subscription -> byDestination.merge(
+                NUMERIC_SEGMENT.matcher(subscription.destination()).replaceAll("/{id}"), 1, Integer::sum));
+        int activeSubscriptions = byDestination.values().stream().mapToInt(Integer::intValue).sum();
+
+        WebSocketStats.WebSocketStatsBuilder builder = WebSocketStats.builder()
+                .activeSessions(subscriptionRegistry.getSessionCount())
+                .activeSubscriptions(activeSubscriptions)
+                .subscriptionsByDestination(byDestination)
+                .slowSessionsClosed(slowSessionsClosed.get())
+                .inbound(channelStats(inbound, inboundExecutor.getIfAvailable()))
+                .outbound(channelStats(outbound, outboundExecutor.getIfAvailable()))
+                .sendBufferSizeLimit(sendBufferSizeLimit)
+                .sendTimeLimitMs(sendTimeLimitMs)
+                .messageSizeLimit(messageSizeLimit);
+
+        if (subProtocolWebSocketHandler.getIfAvailable() instanceof SubProtocolWebSocketHandler handler) {
+            SubProtocolWebSocketHandler.Stats stats = handler.getStats();
+            builder.limitExceededSessions(stats.getLimitExceededSessions())
+                    .transportErrorSessions(stats.getTransportErrorSessions())
+                    .noMessagesReceivedSessions(stats.getNoMessagesReceivedSessions());
+        }
+        return builder.build();
+    }
+
+    private WebSocketStats.ChannelStats channelStats(ChannelCounters counters, TaskExecutor executor) {
+        long sent = counters.sent.get();
+        long handled = counters.handled.get();
+        WebSocketStats.ChannelStats.ChannelStatsBuilder builder = WebSocketStats.ChannelStats.builder()
+                .executor(virtualThreads ? "virtual" : "pool")
+                .sent(sent)
+                .handled(handled)
+                .pending(Math.max(0, sent - counters.rejected.get() - counters.started.get()))
+                .rejected(counters.rejected.get());
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            builder.poolSize(pool.getPoolSize())
+                    .activeThreads(pool.getActiveCount())
+                    .queueSize(pool.getQueueSize());
+        }
+        return builder.build();
+    }
+
+    private static final class ChannelCounters {
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong started = new AtomicLong();
+        final AtomicLong handled = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+    }
+
+    private static final class CountingInterceptor implements ExecutorChannelInterceptor {
+        private final ChannelCounters counters;
+
+        CountingInterceptor(ChannelCounters counters) {
+            this.counters = counters;
+        }
+
+        @Override
+        public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+            counters.sent.incrementAndGet();
+            if (ex != null || !sent) {
+                counters.rejected.incrementAndGet();
+            }
+        }
+
+        @Override
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            if (isFirstHandler(channel, handler)) {
+                counters.started.incrementAndGet();
+            }
+            return message;
+        }
+
+        @Override
+        public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+                                        Exception ex) {
+            if (isFirstHandler(channel, handler)) {
+                counters.handled.incrementAndGet();
+            }
+        }
+
+        private static boolean isFirstHandler(MessageChannel channel, MessageHandler handler) {
+            if (channel instanceof ExecutorSubscribableChannel executorChannel) {
+                Iterator<MessageHandler> handlers = executorChannel.getSubscribers().iterator();
+                return handlers.hasNext() && handlers.next() == handler;
+            }
+            return true;
+        }
+    }
+}
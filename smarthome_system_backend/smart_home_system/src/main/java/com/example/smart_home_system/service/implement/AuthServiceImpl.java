@@ -10,6 +10,7 @@ import com.example.smart_home_system.entity.Role;
 import com.example.smart_home_system.entity.User;
 import com.example.smart_home_system.enums.RoleType;
 import com.example.smart_home_system.enums.UserStatus;
+import com.example.smart_home_system.event.UserSecurityChangedEvent;
 import com.example.smart_home_system.exception.*;
 import com.example.smart_home_system.mapper.UserMapper;
 import com.example.smart_home_system.repository.PasswordResetTokenRepository;
@@ -23,6 +24,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import com.example.smart_home_system.exception.BadRequestException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -84,6 +86,7 @@ public class AuthServiceImpl implements AuthService {
     private final UserMapper userMapper;
     private final RefreshTokenService refreshTokenService;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${jwt.expiration}")
     private Long jwtExpiration;
@@ -257,12 +260,16 @@ public class AuthServiceImpl implements AuthService {
 
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.PASSWORD));
     }
 
     @Override
     public void logout() {
         String userId = getCurrentUserId();
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
         refreshTokenService.deleteByUserId(userId);
+        // Thu hồi cả access token đang còn hạn (token_version, mọi node)
+        eventPublisher.publishEvent(new UserSecurityChangedEvent(userId, username, UserSecurityChangedEvent.Reason.LOGOUT));
         SecurityContextHolder.clearContext();
     }
 
@@ -307,6 +314,7 @@ public class AuthServiceImpl implements AuthService {
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
         passwordResetTokenRepository.deleteByEmail(request.getEmail());
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.PASSWORD));
     }
 
     private String getCurrentUserId() {
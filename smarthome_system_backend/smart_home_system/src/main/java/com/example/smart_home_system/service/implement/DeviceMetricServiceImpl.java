@@ -0,0 +1,253 @@
+package com.example.smart_home_system.service.implement;
+
+import com.example.smart_home_system.dto.response.MetricPointResponse;
+import com.example.smart_home_system.dto.response.MetricSeriesResponse;
+import com.example.smart_home_system.enums.MetricResolution;
+import com.example.smart_home_system.repository.DeviceMetricRollupRepository;
+import com.example.smart_home_system.repository.DeviceMetricSampleRepository;
+import com.example.smart_home_system.service.DeviceMetricService;
+import com.example.smart_home_system.util.LttbDownsampler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceMetricServiceImpl implements DeviceMetricService {
+
+    private static final String INSERT_SAMPLE_SQL =
+            "INSERT INTO device_metric_samples (home_id, device_id, sensor_key, sampled_at, metric_value) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+
+    // Rollup được cộng dồn: bucket đã có thì gộp min/max/sum/count
+    private static final String UPSERT_ROLLUP_SQL =
+            "INSERT INTO device_metric_rollups (home_id, device_id, sensor_key, resolution, bucket_start, "
+                    + "min_value, max_value, sum_value, sample_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
+                    + "AS new ON DUPLICATE KEY UPDATE "
+                    + "min_value = LEAST(device_metric_rollups.min_value, new.min_value), "
+                    + "max_value = GREATEST(device_metric_rollups.max_value, new.max_value), "
+                    + "sum_value = device_metric_rollups.sum_value + new.sum_value, "
+                    + "sample_count = device_metric_rollups.sample_count + new.sample_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DeviceMetricSampleRepository sampleRepository;
+    private final DeviceMetricRollupRepository rollupRepository;
+
+    @Value("${metrics.timeseries.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Value("${metrics.timeseries.buffer-capacity:50000}")
+    private int bufferCapacity;
+
+    @Value("${metrics.timeseries.batch-size:500}")
+    private int batchSize;
+
+    private final Queue<Sample> buffer = new ConcurrentLinkedQueue<>();
+    // Rollup của mọi giá trị (kể cả giá trị không được giữ làm sample), gộp dần tới lần flush
+    private final Map<RollupKey, double[]> pendingRollups = new ConcurrentHashMap<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final AtomicLong droppedSamples = new AtomicLong();
+    private final Object flushLock = new Object();
+
+    @PostConstruct
+    public void start() {
+        log.info("Metric time-series writer started: flushIntervalMs={}, bufferCapacity={}",
+                flushIntervalMs, bufferCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flushSafely();
+    }
+
+    @Override
+    public void record(Long homeId, Long deviceId, String sensorKey, long timestampMs, double value,
+            boolean keepSample) {
+        LocalDateTime sampledAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMs), ZoneId.systemDefault());
+        for (MetricResolution resolution : MetricResolution.ROLLUPS) {
+            RollupKey key = new RollupKey(homeId, deviceId, sensorKey, resolution, resolution.bucketStart(sampledAt));
+            pendingRollups.merge(key, new double[] { value, value, value, 1 }, DeviceMetricServiceImpl::combine);
+        }
+        if (!keepSample) {
+            return;
+        }
+        if (buffered.incrementAndGet() > bufferCapacity) {
+            // DB không theo kịp: bỏ sample mới thay vì làm đầy heap
+            buffered.decrementAndGet();
+            long dropped = droppedSamples.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                log.warn("Metric buffer full ({}), dropped {} samples so far", bufferCapacity, dropped);
+            }
+            return;
+        }
+        buffer.add(new Sample(homeId, deviceId, sensorKey, sampledAt, value));
+    }
+
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            List<Sample> samples = new ArrayList<>();
+            Sample sample;
+            while ((sample = buffer.poll()) != null) {
+                samples.add(sample);
+            }
+            // remove từng key: atomic với merge() của record(), không mất giá trị nào
+            Map<RollupKey, double[]> rollups = new HashMap<>();
+            for (RollupKey key : pendingRollups.keySet()) {
+                double[] agg = pendingRollups.remove(key);
+                if (agg != null) {
+                    rollups.put(key, agg);
+                }
+            }
+            if (samples.isEmpty() && rollups.isEmpty()) {
+                return;
+            }
+            buffered.addAndGet(-samples.size());
+
+            List<Object[]> rollupRows = toRows(rollups);
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(INSERT_SAMPLE_SQL, samples, batchSize, (ps, s) -> {
+                        ps.setLong(1, s.homeId());
+                        ps.setLong(2, s.deviceId());
+                        ps.setString(3, s.sensorKey());
+                        ps.setTimestamp(4, Timestamp.valueOf(s.sampledAt()));
+                        ps.setDouble(5, s.value());
+                    });
+                    jdbcTemplate.batchUpdate(UPSERT_ROLLUP_SQL, rollupRows);
+                });
+            } catch (RuntimeException e) {
+                // Transaction đã rollback: trả sample và rollup về để thử lại ở lần flush sau
+                buffer.addAll(samples);
+                buffered.addAndGet(samples.size());
+                rollups.forEach((key, agg) -> pendingRollups.merge(key, agg, DeviceMetricServiceImpl::combine));
+                throw e;
+            }
+            log.debug("Flushed {} metric samples, {} rollup buckets", samples.size(), rollupRows.size());
+        }
+    }
+
+    private static List<Object[]> toRows(Map<RollupKey, double[]> rollups) {
+        List<Object[]> rows = new ArrayList<>(rollups.size());
+        // agg = [min, max, sum, count]
+        rollups.forEach((key, agg) -> rows.add(new Object[] {
+                key.homeId(), key.deviceId(), key.sensorKey(), key.resolution().name(),
+                Timestamp.valueOf(key.bucketStart()), agg[0], agg[1], agg[2], (long) agg[3]
+        }));
+        return rows;
+    }
+
+    /**
+     * Gộp hai aggregate [min, max, sum, count] của cùng bucket
+     */
+    private static double[] combine(double[] a, double[] b) {
+        return new double[] { Math.min(a[0], b[0]), Math.max(a[1], b[1]), a[2] + b[2], a[3] + b[3] };
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MetricSeriesResponse queryRange(Long homeId, String sensorKey, LocalDateTime from, LocalDateTime to,
+            Duration step) {
+        MetricResolution resolution = MetricResolution.coarsestFor(step);
+        List<MetricPointResponse> points;
+
+        if (resolution == MetricResolution.RAW) {
+            points = sampleRepository
+                    .findByHomeIdAndSensorKeyAndSampledAtBetweenOrderBySampledAtAsc(homeId, sensorKey, from, to)
+                    .stream()
+                    .map(s -> MetricPointResponse.builder()
+                            .timestamp(s.getSampledAt())
+                            .avg(s.getMetricValue())
+                            .min(s.getMetricValue())
+                            .max(s.getMetricValue())
+                            .count(1L)
+                            .build())
+                    .toList();
+        } else {
+            // Lấy cả bucket chứa "from" (bucket bắt đầu trước from)
+            points = rollupRepository.findSeries(homeId, sensorKey, resolution, resolution.bucketStart(from), to);
+        }
+
+        return MetricSeriesResponse.builder()
+                .homeId(homeId)
+                .sensorKey(sensorKey)
+                .from(from)
+                .to(to)
+                .resolution(resolution)
+                .points(points)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MetricSeriesResponse getHistory(Long homeId, String sensorKey, LocalDateTime from, LocalDateTime to,
+            int maxPoints) {
+        // Mức rollup thô nhất vẫn cho ít nhất maxPoints điểm trên khoảng thời gian
+        MetricResolution resolution = MetricResolution.coarsestFor(Duration.between(from, to).dividedBy(maxPoints));
+        LttbDownsampler downsampler = new LttbDownsampler(from, to, maxPoints);
+
+        // Stream từng row: không giữ toàn bộ sample của khoảng thời gian trong heap
+        try (Stream<MetricPointResponse> points = resolution == MetricResolution.RAW
+                ? sampleRepository.streamSeries(homeId, sensorKey, from, to)
+                : rollupRepository.streamSeries(homeId, sensorKey, resolution, resolution.bucketStart(from), to)) {
+            points.forEach(downsampler::add);
+        }
+
+        List<MetricPointResponse> selected = downsampler.finish();
+        log.debug("Sensor history homeId={}, key={}, resolution={}: {} -> {} points",
+                homeId, sensorKey, resolution, downsampler.getCount(), selected.size());
+
+        return MetricSeriesResponse.builder()
+                .homeId(homeId)
+                .sensorKey(sensorKey)
+                .from(from)
+                .to(to)
+                .resolution(resolution)
+                .sourcePoints(downsampler.getCount())
+                .points(selected)
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.timeseries.flush-interval-ms:5000}",
+            initialDelayString = "${metrics.timeseries.flush-interval-ms:5000}")
+    void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush metric samples: {}", e.getMessage(), e);
+        }
+    }
+
+    private record Sample(Long homeId, Long deviceId, String sensorKey, LocalDateTime sampledAt, double value) {
+    }
+
+    private record RollupKey(Long homeId, Long deviceId, String sensorKey, MetricResolution resolution,
+            LocalDateTime bucketStart) {
+    }
+}
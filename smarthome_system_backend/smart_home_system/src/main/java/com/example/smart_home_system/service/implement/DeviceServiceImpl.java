@@ -22,13 +22,16 @@ import com.example.smart_home_system.repository.HomeRepository;
 import com.example.smart_home_system.repository.MCUDeviceCommandRepository;
 import com.example.smart_home_system.repository.MCUGatewayRepository;
 import com.example.smart_home_system.repository.RoomRepository;
+import com.example.smart_home_system.service.DeviceIndex;
 import com.example.smart_home_system.service.DeviceService;
+import com.example.smart_home_system.service.DeviceStateStore;
+import com.example.smart_home_system.service.MetricSamplingPolicy;
 import com.example.smart_home_system.service.EventLogService;
 import com.example.smart_home_system.service.MqttService;
+import com.example.smart_home_system.service.RealtimeEventBus;
 import com.example.smart_home_system.util.GPIOMapping;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -94,7 +97,10 @@ public class DeviceServiceImpl implements DeviceService {
     private final MCUGatewayRepository mcuGatewayRepository;
     private final MqttService mqttService;
     private final EventLogService eventLogService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final RealtimeEventBus realtimeEventBus;
+    private final DeviceIndex deviceIndex;
+    private final DeviceStateStore deviceStateStore;
+    private final MetricSamplingPolicy metricSamplingPolicy;
 
     @Override
     @Transactional
@@ -139,6 +145,7 @@ public class DeviceServiceImpl implements DeviceService {
         device.setStatus(DeviceStatus.OFFLINE);
 
         Device savedDevice = deviceRepository.save(device);
+        deviceIndex.refresh(savedDevice);
 
         // Ghi log tạo device
         String eventValue;
@@ -209,6 +216,8 @@ public class DeviceServiceImpl implements DeviceService {
         Device device = deviceRepository.findById(deviceId)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         ErrorCode.DEVICE_NOT_FOUND.getMessage() + ": " + deviceId));
+        // Device có thể chuyển sang room/home khác: bỏ khỏi index của home cũ
+        deviceIndex.remove(device);
 
         if (request.getRoomId() != null) {
             Room newRoom = roomRepository.findById(request.getRoomId())
@@ -219,6 +228,9 @@ public class DeviceServiceImpl implements DeviceService {
 
         deviceMapper.updateDevice(device, request);
         Device updatedDevice = deviceRepository.save(device);
+        // save() ghi cả status/state_value (từ request hoặc bản vừa load): store phải lấy đúng giá trị đó
+        deviceStateStore.syncFromDatabase(updatedDevice);
+        deviceIndex.refresh(updatedDevice);
 
         // Ghi log cập nhật device
         String eventValue = String.format("{\"deviceCode\":\"%s\",\"deviceName\":\"%s\"}",
@@ -250,6 +262,9 @@ public class DeviceServiceImpl implements DeviceService {
 
         device.softDelete();
         deviceRepository.save(device);
+        deviceStateStore.evict(device.getId());
+        metricSamplingPolicy.forgetDevice(device.getId());
+        deviceIndex.remove(device);
     }
 
     @Override
@@ -267,6 +282,7 @@ public class DeviceServiceImpl implements DeviceService {
         }
 
         Device updatedDevice = deviceRepository.save(device);
+        deviceStateStore.syncFromDatabase(updatedDevice);
         // Ghi log trạng thái
         // deviceLogService.logStatusChange(device, oldStatus, status);
 
@@ -407,6 +423,7 @@ public class DeviceServiceImpl implements DeviceService {
                 return;
         }
         deviceRepository.save(device);
+        deviceStateStore.syncFromDatabase(device);
     }
 
     /**
@@ -424,7 +441,7 @@ public class DeviceServiceImpl implements DeviceService {
                     "source", "WEB"
             );
             String topic = "/topic/home/" + homeId + "/device-status";
-            messagingTemplate.convertAndSend(topic, payload);
+            realtimeEventBus.publish(topic, payload);
             log.debug("[WebSocket] Broadcast device-status for homeId={}, deviceCode={}", homeId, device.getDeviceCode());
         } catch (Exception e) {
             log.warn("[WebSocket] Failed to broadcast device-status: {}", e.getMessage());
@@ -504,6 +521,7 @@ public class DeviceServiceImpl implements DeviceService {
         }
 
         deviceRepository.save(device);
+        deviceStateStore.syncFromDatabase(device);
     }
 
     @Override
@@ -561,6 +579,7 @@ public class DeviceServiceImpl implements DeviceService {
 
         device.setStateValue(stateValue);
         deviceRepository.save(device);
+        deviceStateStore.syncFromDatabase(device);
     }
 
     @Transactional(readOnly = true)
@@ -15,6 +15,8 @@ import com.example.smart_home_system.repository.HomeRepository;
 import com.example.smart_home_system.repository.UserRepository;
 import com.example.smart_home_system.service.EventLogService;
 import com.example.smart_home_system.service.HomeMemberService;
+import com.example.smart_home_system.service.HomePermissionCache;
+import com.example.smart_home_system.service.UnreadCounterStore;
 import com.example.smart_home_system.util.PermissionUtils;
 import com.example.smart_home_system.util.SecurityUtils;
 import lombok.RequiredArgsConstructor;
@@ -78,6 +80,8 @@ public class HomeMemberServiceImpl implements HomeMemberService {
     private final HomeMemberMapper homeMemberMapper;
     private final PermissionServiceImpl permissionService;
     private final EventLogService eventLogService;
+    private final UnreadCounterStore unreadCounterStore;
+    private final HomePermissionCache homePermissionCache;
 
     @Override
     @Transactional
@@ -130,6 +134,7 @@ public class HomeMemberServiceImpl implements HomeMemberService {
                 .build();
 
         HomeMember savedMember = homeMemberRepository.save(newMember);
+        homePermissionCache.invalidate(homeId, targetUser.getId());
         
         // Ghi log thêm member
         String eventValue = String.format("{\"role\":\"%s\",\"username\":\"%s\"}",
@@ -175,6 +180,8 @@ public class HomeMemberServiceImpl implements HomeMemberService {
         
         // 3. Xóa (Soft Delete hoặc Hard Delete tùy cấu hình BaseEntity)
         homeMemberRepository.delete(targetMember);
+        homePermissionCache.invalidate(homeId, targetMember.getUser().getId());
+        unreadCounterStore.recount(targetMember.getUser().getId());
     }
 
     @Override
@@ -223,6 +230,7 @@ public class HomeMemberServiceImpl implements HomeMemberService {
 
         // 9. Save và trả về response
         HomeMember updatedMember = homeMemberRepository.save(targetMember);
+        homePermissionCache.invalidate(homeId, targetMember.getUser().getId());
         
         // Ghi log cập nhật role
         String eventValue = String.format("{\"oldRole\":\"%s\",\"newRole\":\"%s\",\"username\":\"%s\"}",
@@ -267,6 +275,8 @@ public class HomeMemberServiceImpl implements HomeMemberService {
         eventLogService.logMemberEvent(homeId, member.getUser().getId(), "MEMBER_LEAVE", eventValue, "WEB");
 
         homeMemberRepository.delete(member);
+        homePermissionCache.invalidate(homeId, member.getUser().getId());
+        unreadCounterStore.recount(member.getUser().getId());
     }
 
     @Override
@@ -301,6 +311,8 @@ public class HomeMemberServiceImpl implements HomeMemberService {
         newOwnerMember.setUpdatedAt(LocalDateTime.now());
 
         homeMemberRepository.saveAll(List.of(currentOwner, newOwnerMember));
+        homePermissionCache.invalidate(homeId, currentOwner.getUser().getId());
+        homePermissionCache.invalidate(homeId, newOwnerMember.getUser().getId());
 
         log.info("Ownership transferred for home {}: {} -> {}",
                 homeId, currentUsername, newOwnerMember.getUser().getUsername());
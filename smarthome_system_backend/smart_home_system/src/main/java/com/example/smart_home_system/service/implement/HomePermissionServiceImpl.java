@@ -4,6 +4,7 @@ import com.example.smart_home_system.entity.HomeMember;
 import com.example.smart_home_system.enums.HomeMemberRole;
 import com.example.smart_home_system.enums.HomePermission;
 import com.example.smart_home_system.repository.HomeMemberRepository;
+import com.example.smart_home_system.service.HomePermissionCache;
 import com.example.smart_home_system.service.HomePermissionService;
 import com.example.smart_home_system.util.PermissionUtils;
 import com.example.smart_home_system.util.SecurityUtils;
@@ -25,6 +26,9 @@ import java.util.stream.Collectors;
  *   <li>Custom permission assignment to individual members</li>
  *   <li>Permission aggregation from role and custom permissions</li>
  * </ul>
+ *
+ * <p>Permission and role checks are served from {@link HomePermissionCache}, which keeps
+ * each member's merged permissions as a precomputed bitmask.
  * 
  * <p><b>Permission Resolution Order:</b>
  * <ol>
@@ -52,45 +56,34 @@ import java.util.stream.Collectors;
 public class HomePermissionServiceImpl implements HomePermissionService {
 
     private final HomeMemberRepository homeMemberRepository;
+    private final HomePermissionCache homePermissionCache;
 
     @Override
-    @Transactional(readOnly = true)
     public boolean hasPermission(Long homeId, HomePermission permission) {
         String currentUserId = SecurityUtils.getCurrentUserId();
 
-        HomeMember member = homeMemberRepository.findByHomeIdAndUserId(homeId, currentUserId)
-                .orElse(null);
-
-        if (member == null) {
-            return false;
-        }
-
-        return member.hasPermission(permission.name());
+        // Bitmask đã tính sẵn: không đọc DB khi cache hit
+        return homePermissionCache.get(homeId, currentUserId).has(permission);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public boolean hasRole(Long homeId, HomeMemberRole requiredRole) {
         String currentUserId = SecurityUtils.getCurrentUserId();
 
-        HomeMember member = homeMemberRepository.findByHomeIdAndUserId(homeId, currentUserId)
-                .orElse(null);
-
-        if (member == null) {
+        HomePermissionCache.MemberPermissions member = homePermissionCache.get(homeId, currentUserId);
+        if (!member.isMember()) {
             return false;
         }
 
-        return PermissionUtils.hasHigherOrEqualRole(member.getRole(), requiredRole);
+        return PermissionUtils.hasHigherOrEqualRole(member.role(), requiredRole);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public boolean isOwner(Long homeId) {
         return hasRole(homeId, HomeMemberRole.OWNER);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public boolean isAdminOrHigher(Long homeId) {
         return hasRole(homeId, HomeMemberRole.ADMIN);
     }
@@ -128,6 +121,7 @@ public class HomePermissionServiceImpl implements HomePermissionService {
         // Cập nhật permissions
         member.setPermissionSet(permissionNames);
         homeMemberRepository.save(member);
+        homePermissionCache.invalidate(homeId, memberId);
 
         log.info("Updated permissions for member {} in home {}: {}",
                 memberId, homeId, permissionNames);
@@ -156,5 +150,6 @@ public class HomePermissionServiceImpl implements HomePermissionService {
         String permissionsJson = PermissionUtils.toPermissionsJson(defaultPermissions);
 
         homeMemberRepository.updatePermissions(homeId, userId, permissionsJson);
+        homePermissionCache.invalidate(homeId, userId);
     }
 }
\ No newline at end of file
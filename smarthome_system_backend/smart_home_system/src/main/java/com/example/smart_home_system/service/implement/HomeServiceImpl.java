@@ -17,9 +17,11 @@ import com.example.smart_home_system.repository.HomeMemberRepository;
 import com.example.smart_home_system.repository.HomeRepository;
 import com.example.smart_home_system.repository.RoomRepository;
 import com.example.smart_home_system.repository.UserRepository;
+import com.example.smart_home_system.service.DeviceIndex;
 import com.example.smart_home_system.service.EventLogService;
 import org.springframework.data.domain.PageRequest;
 import com.example.smart_home_system.service.HomeMemberService;
+import com.example.smart_home_system.service.HomePermissionCache;
 import com.example.smart_home_system.service.HomeService;
 import com.example.smart_home_system.util.PermissionUtils;
 import com.example.smart_home_system.util.SecurityUtils;
@@ -82,6 +84,8 @@ public class HomeServiceImpl implements HomeService {
     private final RoomRepository roomRepository;
     private final EventLogRepository eventLogRepository;
     private final EventLogService eventLogService;
+    private final DeviceIndex deviceIndex;
+    private final HomePermissionCache homePermissionCache;
 
     @Override
     @Transactional
@@ -131,6 +135,7 @@ public class HomeServiceImpl implements HomeService {
                 .build();
 
         homeMemberRepository.save(ownerMember);
+        homePermissionCache.invalidate(home.getId(), currentUser.getId());
 
         // Ghi log tạo home
         String eventValue = String.format("{\"homeName\":\"%s\",\"address\":\"%s\",\"timeZone\":\"%s\"}",
@@ -183,6 +188,7 @@ public class HomeServiceImpl implements HomeService {
         // Soft delete (BaseEntity xử lý nếu cấu hình) hoặc xóa cứng cascade
         home.softDelete();
         homeRepository.save(home);
+        deviceIndex.invalidate(homeId);
         //homeRepository.delete(home);
     }
 
@@ -0,0 +1,30 @@
+package com.example.smart_home_system.service.implement;
+
+import com.example.smart_home_system.service.RealtimeDelivery;
+import com.example.smart_home_system.service.RealtimeEventBus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bus in-process: giao thẳng cho client của node hiện tại (một instance, test, hoặc
+ * STOMP broker relay đảm nhận fan-out giữa các node; khi đó sensor frame không được
+ * conflate, xem RealtimeDelivery)
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "realtime.bus.mode", havingValue = "LOCAL", matchIfMissing = true)
+public class LocalRealtimeEventBus implements RealtimeEventBus {
+
+    private final RealtimeDelivery realtimeDelivery;
+
+    @Override
+    public void publish(String destination, Object payload) {
+        realtimeDelivery.deliver(destination, payload);
+    }
+
+    @Override
+    public void publishSensorFrame(Long homeId, String payload, boolean urgent) {
+        realtimeDelivery.deliverSensorFrame(homeId, payload, urgent);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.smart_home_system.service.implement;
 
+import com.example.smart_home_system.dto.SensorFrame;
 import com.example.smart_home_system.dto.request.MCU.MCUAutoPairRequest;
 import com.example.smart_home_system.dto.request.MCU.MCUHeartbeatRequest;
 import com.example.smart_home_system.dto.request.MCU.MCUPairingRequest;
@@ -22,37 +23,44 @@ import com.example.smart_home_system.enums.MCUStatus;
 import com.example.smart_home_system.exception.AppException;
 import com.example.smart_home_system.exception.ErrorCode;
 import com.example.smart_home_system.entity.Device;
-import com.example.smart_home_system.entity.DeviceMetric;
 import com.example.smart_home_system.entity.MCUDeviceCommand;
 import com.example.smart_home_system.enums.DeviceStatus;
-import com.example.smart_home_system.repository.DeviceMetricRepository;
+import com.example.smart_home_system.enums.SensorKey;
 import com.example.smart_home_system.repository.DeviceRepository;
 import com.example.smart_home_system.repository.HomeRepository;
 import com.example.smart_home_system.repository.MCUGatewayRepository;
 import com.example.smart_home_system.repository.MCUDeviceCommandRepository;
 import com.example.smart_home_system.repository.RFIDAccessLogRepository;
 import com.example.smart_home_system.repository.UserRepository;
+import com.example.smart_home_system.security.mcu.MCUApiKeyCache;
+import com.example.smart_home_system.security.mcu.MCUIdentity;
+import com.example.smart_home_system.service.DeviceIndex;
+import com.example.smart_home_system.service.DeviceMetricService;
+import com.example.smart_home_system.service.DeviceStateStore;
+import com.example.smart_home_system.service.EmergencyStateMachine;
 import com.example.smart_home_system.service.MCUGatewayService;
+import com.example.smart_home_system.service.MCUHeartbeatMonitor;
+import com.example.smart_home_system.service.MetricSamplingPolicy;
 import com.example.smart_home_system.service.MqttService;
+import com.example.smart_home_system.service.SensorSnapshotStore;
 import com.example.smart_home_system.util.SecurityUtils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -103,19 +111,20 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
     private final HomeMapper homeMapper;
     private final DeviceMapper deviceMapper;
     private final DeviceRepository deviceRepository;
-    private final DeviceMetricRepository deviceMetricRepository;
+    private final DeviceMetricService deviceMetricService;
     private final MCUDeviceCommandRepository mcuDeviceCommandRepository;
     private final RFIDAccessLogRepository rfidAccessLogRepository;
     private final MqttService mqttService;
+    private final DeviceIndex deviceIndex;
+    private final DeviceStateStore deviceStateStore;
+    private final SensorSnapshotStore sensorSnapshotStore;
+    private final MCUHeartbeatMonitor mcuHeartbeatMonitor;
+    private final MetricSamplingPolicy metricSamplingPolicy;
+    private final EmergencyStateMachine emergencyStateMachine;
+    private final MCUApiKeyCache mcuApiKeyCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final SecureRandom secureRandom = new SecureRandom();
 
-    @Value("${app.mcu.metric-sampling-interval-seconds:120}")
-    private int metricSamplingIntervalSeconds = 120;
-
-    /** Track lần cuối lưu metrics theo homeId - cho sampling */
-    private final Map<Long, LocalDateTime> lastMetricSaveByHomeId = new ConcurrentHashMap<>();
-
     @Override
     public MCUPairingInitResponse initPairing(MCUAutoPairRequest request) {
         // Lấy user hiện tại
@@ -248,6 +257,8 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
         mcuGateway.setLastHeartbeat(LocalDateTime.now());
 
         mcuGateway = mcuGatewayRepository.save(mcuGateway);
+        mcuApiKeyCache.put(apiKey, mcuGateway);
+        mcuHeartbeatMonitor.beat(mcuGateway.getId(), homeId);
         log.info("MCU Gateway paired successfully: id={}, serialNumber={}, homeId={}, homeName={}",
                 mcuGatewayId, mcuGateway.getSerialNumber(), homeId, home.getName());
 
@@ -261,70 +272,64 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
 
     @Override
     public void processHeartbeat(String apiKey, MCUHeartbeatRequest request) {
-        MCUGateway mcuGateway = mcuGatewayRepository.findByApiKey(apiKey)
-                .orElseThrow(() -> new AppException(ErrorCode.MCU_INVALID_API_KEY));
-
-        // Update heartbeat và thông tin
-        MCUStatus oldStatus = mcuGateway.getStatus();
-        mcuGateway.updateHeartbeat();
-        MCUStatus newStatus = mcuGateway.getStatus();
-
-        if (oldStatus != newStatus) {
-            log.info("MCU Gateway status changed: {} -> {} (id={}, serialNumber={})",
-                    oldStatus, newStatus, mcuGateway.getId(), mcuGateway.getSerialNumber());
+        // Identity đã được MCUApiKeyFilter resolve (cache), không load lại entity
+        MCUIdentity mcu = mcuApiKeyCache.resolve(apiKey);
+        if (mcu == null) {
+            throw new AppException(ErrorCode.MCU_INVALID_API_KEY);
         }
 
-        if (request.getIpAddress() != null) {
-            mcuGateway.setIpAddress(request.getIpAddress());
+        // Heartbeat deadline được theo dõi trong bộ nhớ, lastHeartbeat được persist theo batch.
+        // Chỉ ghi row MCU khi MCU ONLINE trở lại hoặc IP / firmware thay đổi
+        if (mcu.homeId() != null && mcuHeartbeatMonitor.beat(mcu.mcuGatewayId(), mcu.homeId())) {
+            if (mcuGatewayRepository.markOnline(mcu.mcuGatewayId(), LocalDateTime.now()) > 0) {
+                log.info("MCU Gateway status changed to ONLINE (id={}, serialNumber={})",
+                        mcu.mcuGatewayId(), mcu.serialNumber());
+            } else {
+                // MCU đang PAIRING: không theo dõi heartbeat
+                mcuHeartbeatMonitor.forget(mcu.mcuGatewayId());
+            }
         }
-        if (request.getFirmwareVersion() != null) {
-            mcuGateway.setFirmwareVersion(request.getFirmwareVersion());
+
+        String ipAddress = request.getIpAddress() != null ? request.getIpAddress() : mcu.ipAddress();
+        String firmwareVersion = request.getFirmwareVersion() != null
+                ? request.getFirmwareVersion()
+                : mcu.firmwareVersion();
+        if (!Objects.equals(ipAddress, mcu.ipAddress()) || !Objects.equals(firmwareVersion, mcu.firmwareVersion())) {
+            mcuGatewayRepository.updateNetworkInfo(mcu.mcuGatewayId(), ipAddress, firmwareVersion);
+            mcuApiKeyCache.update(mcu.withNetworkInfo(ipAddress, firmwareVersion));
         }
 
         // Parse và lưu sensor data từ ESP32
         if (request.getStatus() != null && !request.getStatus().trim().isEmpty()) {
             try {
-                // Lưu sensor data vào MCUGateway metadata để frontend có thể lấy ngay
-                // Không cần phải có devices trước
-                mcuGateway.setMetadata(request.getStatus());
-                log.debug("Saved sensor data to metadata: {}",
-                        request.getStatus().substring(0, Math.min(100, request.getStatus().length())));
-
-                // Process sensor data để update devices nếu có
-                processSensorData(mcuGateway, request.getStatus());
+                // Lưu sensor data vào snapshot in-memory để frontend có thể lấy ngay
+                // (metadata được persist theo chu kỳ chậm). Không cần phải có devices trước
+                if (mcu.homeId() != null) {
+                    Long homeId = mcu.homeId();
+                    SensorFrame frame = SensorFrame.parse(request.getStatus());
+                    sensorSnapshotStore.put(homeId, mcu.mcuGatewayId(), mcu.serialNumber(), frame);
+                    log.debug("Saved sensor data to snapshot: {}",
+                            request.getStatus().substring(0, Math.min(100, request.getStatus().length())));
+
+                    // Process sensor data để update devices nếu có
+                    processSensorData(homeId, frame);
+                }
 
-                // Sensor data đã được lưu vào metadata, frontend sẽ poll để lấy
+                // Frontend poll snapshot để lấy sensor data
                 // Không cần SSE broadcast nữa - chỉ dùng polling
             } catch (Exception e) {
                 log.warn("Failed to process sensor data from MCU Gateway: {}", e.getMessage(), e);
                 // Không throw exception để không làm gián đoạn heartbeat
             }
         }
-
-        mcuGatewayRepository.save(mcuGateway);
     }
 
     @Override
     @Transactional
-    public void processSensorDataFromMQTT(Long homeId, String sensorDataJson) {
-        Optional<MCUGateway> mcuOpt = mcuGatewayRepository.findByHomeId(homeId);
-        if (mcuOpt.isPresent()) {
-            MCUGateway mcuGateway = mcuOpt.get();
-
-            // Save sensor data (including automation config) to metadata for frontend to
-            // fetch
-            mcuGateway.setMetadata(sensorDataJson);
-            mcuGateway.setLastHeartbeat(java.time.LocalDateTime.now());
-            mcuGatewayRepository.save(mcuGateway);
-
-            log.debug("Saved sensor data to MCU Gateway metadata: homeId={}, dataLength={}",
-                    homeId, sensorDataJson.length());
-
-            // Process sensor data to update device states
-            processSensorData(mcuGateway, sensorDataJson);
-        } else {
-            log.warn("MCU Gateway not found for homeId={}, cannot process sensor data", homeId);
-        }
+    public void processSensorDataFromMQTT(Long homeId, SensorFrame frame) {
+        // Heartbeat + metadata của MCU đã được MqttMessageHandler cập nhật,
+        // ở đây chỉ cập nhật device state từ frame đã decode
+        processSensorData(homeId, frame);
     }
 
     @Override
@@ -345,28 +350,12 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
                 return;
             }
 
-            // Tìm device theo GPIO pin hoặc deviceCode
-            // Sử dụng findByRoomHomeId để hỗ trợ cả device có home.id trực tiếp và
-            // room.home.id
-            List<Device> devices = deviceRepository
-                    .findByRoomHomeId(homeId, org.springframework.data.domain.Pageable.unpaged())
-                    .getContent();
-
-            Device device = devices.stream()
-                    .filter(d -> {
-                        // Ưu tiên tìm bằng GPIO pin
-                        if (gpioPin != null && d.getGpioPin() != null && d.getGpioPin().equals(gpioPin)) {
-                            return true;
-                        }
-                        // Fallback: tìm bằng deviceCode
-                        if (deviceCode != null && d.getDeviceCode() != null &&
-                                d.getDeviceCode().equalsIgnoreCase(deviceCode)) {
-                            return true;
-                        }
-                        return false;
-                    })
-                    .findFirst()
-                    .orElse(null);
+            // Tìm device theo GPIO pin (ưu tiên) hoặc deviceCode qua index in-memory
+            DeviceIndex.HomeDevices homeDevices = deviceIndex.forHome(homeId);
+            DeviceIndex.DeviceSnapshot device = homeDevices.byGpioPin(gpioPin);
+            if (device == null) {
+                device = homeDevices.byDeviceCode(deviceCode);
+            }
 
             if (device == null) {
                 log.warn("Device not found for gpioPin={}, deviceCode={}, homeId={}",
@@ -375,192 +364,90 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
             }
 
             // Cập nhật device status
+            DeviceStatus status = null;
             if (statusStr != null) {
                 try {
-                    DeviceStatus status = DeviceStatus.valueOf(statusStr.toUpperCase());
-                    DeviceStatus oldStatus = device.getStatus();
-                    device.setStatus(status);
-                    log.info("Updated device {} status from {} to {}", device.getDeviceCode(), oldStatus, status);
+                    status = DeviceStatus.valueOf(statusStr.toUpperCase());
                 } catch (IllegalArgumentException e) {
                     log.warn("Invalid device status: {}, skipping status update", statusStr);
                 }
             }
 
-            // Cập nhật stateValue nếu có
-            if (stateValue != null) {
-                String oldStateValue = device.getStateValue();
-                device.setStateValue(stateValue);
-                log.info("Updated device {} stateValue from {} to {}", device.getDeviceCode(), oldStateValue,
-                        stateValue);
+            // Cập nhật status/stateValue qua write-behind store (chỉ ghi DB nếu thực sự thay đổi)
+            deviceStateStore.recordFrame();
+            DeviceStateStore.LiveState old = deviceStateStore.current(device);
+            if (deviceStateStore.update(device, status, stateValue)) {
+                DeviceStateStore.LiveState updated = deviceStateStore.current(device);
+                log.info("✅ Device status updated: deviceCode={}, gpioPin={}, status {} -> {}, stateValue {} -> {}, homeId={}",
+                        device.deviceCode(), gpioPin, old.status(), updated.status(), old.stateValue(),
+                        updated.stateValue(), homeId);
             }
 
-            // Lưu vào database
-            deviceRepository.save(device);
-            log.info("✅ Device status updated in database: deviceCode={}, gpioPin={}, status={}, homeId={}",
-                    device.getDeviceCode(), gpioPin, statusStr, homeId);
-
         } catch (Exception e) {
             log.error("Error processing device status update for homeId={}: {}", homeId, e.getMessage(), e);
         }
     }
 
     /**
-     * Parse và lưu sensor data từ ESP32 vào DeviceMetric và update Device state
-     * Sensor data format từ ESP32:
-     * {
-     * "tempIn": 25.5, "humIn": 60,
-     * "tempOut": 28.0, "humOut": 55,
-     * "gas": 500, "light": 300, "rain": 4095,
-     * "flame": false, "motion": true,
-     * "door": false, "lightStatus": true, "fanStatus": false,
-     * "gasAlert": false, "emergency": false
-     * }
+     * Lưu sensor data từ ESP32 vào time-series metrics và update Device state.
+     * Frame đã được decode một lần (xem {@link SensorFrame}), mỗi device chỉ được
+     * merge stateValue một lần cho tất cả sensor key của nó.
      */
-    private void processSensorData(MCUGateway mcuGateway, String sensorDataJson) {
+    private void processSensorData(Long homeId, SensorFrame frame) {
         try {
-            JsonNode sensorData = objectMapper.readTree(sensorDataJson);
-
-            // Mapping sensor names từ ESP32 với GPIO pins (từ config.h)
-            // GPIO pins: PIN_RELAY_LIGHT=42, PIN_RELAY_FAN=21, PIN_SERVO=18,
-            // PIN_MQ2=4, PIN_LDR=5, PIN_RAIN=3, PIN_FLAME=6, PIN_PIR=41,
-            // PIN_DHT_IN=7, PIN_DHT_OUT=16
-            Map<String, Integer> sensorToGpioPin = new HashMap<>();
-            sensorToGpioPin.put("lightStatus", 42); // PIN_RELAY_LIGHT
-            sensorToGpioPin.put("fanStatus", 21); // PIN_RELAY_FAN
-            sensorToGpioPin.put("door", 18); // PIN_SERVO
-            sensorToGpioPin.put("gas", 4); // PIN_MQ2
-            sensorToGpioPin.put("light", 5); // PIN_LDR
-            sensorToGpioPin.put("rain", 3); // PIN_RAIN
-            sensorToGpioPin.put("flame", 6); // PIN_FLAME
-            sensorToGpioPin.put("motion", 41); // PIN_PIR
-            sensorToGpioPin.put("tempIn", 7); // PIN_DHT_IN
-            sensorToGpioPin.put("humIn", 7); // PIN_DHT_IN (same pin)
-            sensorToGpioPin.put("tempOut", 16); // PIN_DHT_OUT
-            sensorToGpioPin.put("humOut", 16); // PIN_DHT_OUT (same pin)
-
-            // Lấy tất cả devices của home này được quản lý bởi MCU Gateway này
-            Long homeId = mcuGateway.getHome() != null ? mcuGateway.getHome().getId() : null;
-            if (homeId == null) {
-                log.warn("MCU Gateway has no home associated, skipping sensor data processing");
-                return;
-            }
-
-            List<Device> devices = deviceRepository
-                    .findAllByRoom_Home_Id(homeId, org.springframework.data.domain.Pageable.unpaged()).getContent();
+            DeviceIndex.HomeDevices homeDevices = deviceIndex.forHome(homeId);
+            deviceStateStore.recordFrame();
 
             // QUAN TRỌNG: Khi nhận được sensor data từ MCU, tất cả devices của home này
             // được coi là ONLINE (vì MCU đang hoạt động và gửi data)
             // Cập nhật status từ OFFLINE sang ONLINE cho tất cả devices
             // (Status ON/OFF sẽ được cập nhật sau khi process sensor values cụ thể)
-            for (Device device : devices) {
-                if (device.getStatus() == DeviceStatus.OFFLINE) {
+            for (DeviceIndex.DeviceSnapshot device : homeDevices.all()) {
+                if (deviceStateStore.current(device).status() == DeviceStatus.OFFLINE) {
                     // Set status = ONLINE khi MCU online và gửi data
                     // Status sẽ được cập nhật lại thành ON/OFF nếu có sensor value tương ứng
-                    device.setStatus(DeviceStatus.ONLINE);
-                    deviceRepository.save(device);
-                    log.debug("Updated device {} status from OFFLINE to ONLINE (MCU online)", device.getDeviceCode());
+                    deviceStateStore.update(device, DeviceStatus.ONLINE, null);
+                    log.debug("Updated device {} status from OFFLINE to ONLINE (MCU online)", device.deviceCode());
                 }
             }
 
-            // Collect metrics theo device để batch save (1 record/device thay vì 1
-            // record/sensor)
-            Map<Device, Map<String, Object>> metricsByDevice = new HashMap<>();
+            // Gom sensor key theo device: 1 lần merge stateValue + 1 record metrics/device
+            Map<DeviceIndex.DeviceSnapshot, Map<String, Object>> valuesByDevice = new LinkedHashMap<>();
+            Map<DeviceIndex.DeviceSnapshot, SensorKey> lastKeyByDevice = new HashMap<>();
 
-            // Process từng sensor value để cập nhật state cụ thể + collect metrics
-            for (Map.Entry<String, Integer> entry : sensorToGpioPin.entrySet()) {
-                String sensorName = entry.getKey();
-                Integer gpioPin = entry.getValue();
-
-                if (!sensorData.has(sensorName)) {
+            for (SensorKey key : SensorKey.DEVICE_KEYS) {
+                if (!frame.has(key)) {
                     continue;
                 }
-
-                // Tìm device có GPIO pin match (ưu tiên GPIO pin, fallback về deviceCode
-                // prefix)
-                Device device = devices.stream()
-                        .filter(d -> {
-                            // Ưu tiên tìm bằng GPIO pin (chính xác nhất)
-                            if (d.getGpioPin() != null && d.getGpioPin().equals(gpioPin)) {
-                                return true;
-                            }
-                            // Fallback: tìm bằng deviceCode prefix (cho backward compatibility)
-                            String deviceCodePrefix = getDeviceCodePrefixFromGpio(gpioPin);
-                            return d.getDeviceCode() != null && d.getDeviceCode().startsWith(deviceCodePrefix);
-                        })
-                        .findFirst()
-                        .orElse(null);
-
+                DeviceIndex.DeviceSnapshot device = homeDevices.forSensor(key);
                 if (device == null) {
                     // Device chưa được tạo hoặc chưa được gán GPIO pin
-                    log.debug("Device with GPIO pin {} not found for sensor {}", gpioPin, sensorName);
+                    log.debug("Device with GPIO pin {} not found for sensor {}", key.getGpioPin(), key.getJsonName());
                     continue;
                 }
 
-                // Lấy giá trị sensor
-                JsonNode valueNode = sensorData.get(sensorName);
-                Object value = null;
-                if (valueNode.isNumber()) {
-                    value = valueNode.asDouble();
-                } else if (valueNode.isBoolean()) {
-                    value = valueNode.asBoolean();
-                } else {
-                    value = valueNode.asText();
-                }
-
-                // Update device state (sẽ set status = ONLINE/ON/OFF) - luôn cập nhật real-time
-                updateDeviceState(device, sensorName, value);
-
-                // Collect metrics để batch save (sampling áp dụng ở bước sau)
-                metricsByDevice.computeIfAbsent(device, k -> new HashMap<>()).put(sensorName, value);
+                valuesByDevice.computeIfAbsent(device, k -> new LinkedHashMap<>()).put(key.getJsonName(), frame.value(key));
+                lastKeyByDevice.put(device, key);
             }
 
-            // Lưu metrics: chỉ khi đủ sampling interval (batch 1 record/device)
-            if (shouldSampleMetrics(homeId) && !metricsByDevice.isEmpty()) {
-                saveDeviceMetricsBatch(metricsByDevice);
-                lastMetricSaveByHomeId.put(homeId, LocalDateTime.now());
+            // Update device state (sẽ set status = ONLINE/ON/OFF) - luôn cập nhật real-time
+            for (Map.Entry<DeviceIndex.DeviceSnapshot, Map<String, Object>> entry : valuesByDevice.entrySet()) {
+                updateDeviceState(entry.getKey(), entry.getValue(), lastKeyByDevice.get(entry.getKey()), frame);
             }
 
-            log.debug("Processed sensor data from MCU Gateway: {}", mcuGateway.getId());
+            // Lưu metrics: chỉ các giá trị vượt deadband hoặc quá max-silence (xem MetricSamplingPolicy)
+            saveDeviceMetrics(homeId, valuesByDevice, frame);
 
-        } catch (Exception e) {
-            log.error("Error parsing sensor data JSON: {}", sensorDataJson, e);
-            throw new RuntimeException("Failed to parse sensor data", e);
-        }
-    }
+            log.debug("Processed sensor data for homeId={}", homeId);
 
-    /**
-     * Helper method để lấy deviceCode prefix từ GPIO pin (cho backward
-     * compatibility)
-     */
-    private String getDeviceCodePrefixFromGpio(Integer gpioPin) {
-        switch (gpioPin) {
-            case 42:
-                return "LIGHT_RELAY";
-            case 21:
-                return "FAN_RELAY";
-            case 18:
-                return "DOOR_SERVO";
-            case 4:
-                return "GAS_SENSOR";
-            case 5:
-                return "LIGHT_SENSOR";
-            case 3:
-                return "RAIN_SENSOR";
-            case 6:
-                return "FLAME_SENSOR";
-            case 41:
-                return "MOTION_SENSOR";
-            case 7:
-                return "TEMP_HUMIDITY_IN";
-            case 16:
-                return "TEMP_HUMIDITY_OUT";
-            default:
-                return "";
+        } catch (Exception e) {
+            log.error("Error processing sensor data for homeId={}: {}", homeId, frame.getRawJson(), e);
+            throw new RuntimeException("Failed to process sensor data", e);
         }
     }
 
     /**
-     * Update device state từ sensor value
+     * Update device state từ các sensor value của device trong một frame
      * 
      * QUAN TRỌNG: Phân biệt rõ:
      * - DeviceStatus (ONLINE/OFFLINE): Thiết bị có kết nối với hệ thống hay không
@@ -570,88 +457,74 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
      * Khi nhận được sensor data từ ESP32, thiết bị luôn được coi là ONLINE (đã kết
      * nối),
      * còn giá trị sensor (door: false = cửa đóng) là STATE, không phải STATUS.
+     *
+     * stateValue cũ chỉ được parse một lần và serialize lại một lần cho mỗi device.
      */
-    private void updateDeviceState(Device device, String sensorName, Object value) {
+    private void updateDeviceState(DeviceIndex.DeviceSnapshot device, Map<String, Object> sensorValues,
+            SensorKey statusKey, SensorFrame frame) {
         try {
-            Map<String, Object> stateMap = new HashMap<>();
+            Map<String, Object> stateMap = new LinkedHashMap<>();
 
-            // Nếu device đã có stateValue, parse nó
-            if (device.getStateValue() != null && !device.getStateValue().trim().isEmpty()) {
+            // Nếu device đã có stateValue (live), parse nó
+            String currentStateValue = deviceStateStore.current(device).stateValue();
+            if (currentStateValue != null && !currentStateValue.trim().isEmpty()) {
                 try {
-                    JsonNode existingState = objectMapper.readTree(device.getStateValue());
+                    JsonNode existingState = objectMapper.readTree(currentStateValue);
+                    // Giữ nguyên kiểu JSON của giá trị cũ để so sánh thay đổi ổn định giữa các frame
                     existingState.fields()
-                            .forEachRemaining(entry -> stateMap.put(entry.getKey(), entry.getValue().asText()));
+                            .forEachRemaining(entry -> stateMap.put(entry.getKey(), entry.getValue()));
                 } catch (Exception e) {
-                    log.warn("Failed to parse existing stateValue for device {}", device.getDeviceCode());
+                    log.warn("Failed to parse existing stateValue for device {}", device.deviceCode());
                 }
             }
 
             // Update với giá trị mới - lưu vào state, KHÔNG phải status
-            stateMap.put(sensorName, value);
+            stateMap.putAll(sensorValues);
 
             // Logic update Status:
             // - Actuators (Light, Fan, Door): ON/OFF (để hiển thị màu Green/Gray trên FE)
             // - Sensors: ONLINE (để hiển thị màu Blue - Connected)
-            if (sensorName.equals("lightStatus") || sensorName.equals("fanStatus") || sensorName.equals("door")) {
-                boolean isOn = (Boolean) value;
-                device.setStatus(isOn ? DeviceStatus.ON : DeviceStatus.OFF);
+            DeviceStatus status;
+            if (statusKey.isActuator()) {
+                boolean isOn = frame.booleanValue(statusKey);
+                status = isOn ? DeviceStatus.ON : DeviceStatus.OFF;
                 stateMap.put("power", isOn ? "ON" : "OFF");
             } else {
-                device.setStatus(DeviceStatus.ONLINE);
+                status = DeviceStatus.ONLINE;
             }
 
-            // Lưu stateValue dưới dạng JSON
-            device.setStateValue(objectMapper.writeValueAsString(stateMap));
-            deviceRepository.save(device);
-
-            log.debug("Updated device {} state: sensorName={}, value={}, status=ONLINE",
-                    device.getDeviceCode(), sensorName, value);
+            // Lưu stateValue dưới dạng JSON - write-behind, chỉ ghi DB khi giá trị thay đổi
+            if (deviceStateStore.update(device, status, objectMapper.writeValueAsString(stateMap))) {
+                log.debug("Updated device {} state: values={}, status={}",
+                        device.deviceCode(), sensorValues, status);
+            }
 
         } catch (Exception e) {
-            log.error("Error updating device state for device {}: {}", device.getDeviceCode(), e.getMessage());
+            log.error("Error updating device state for device {}: {}", device.deviceCode(), e.getMessage());
         }
     }
 
     /**
-     * Kiểm tra đã đủ interval để lưu metrics chưa (sampling).
-     * Lần đầu luôn lưu, các lần sau chỉ lưu khi đã qua
-     * metricSamplingIntervalSeconds.
+     * Ghi giá trị sensor của frame vào time-series (row hẹp + rollup, ghi theo batch)
      */
-    private boolean shouldSampleMetrics(Long homeId) {
-        LocalDateTime lastSave = lastMetricSaveByHomeId.get(homeId);
-        if (lastSave == null) {
-            return true;
-        }
-        long secondsSinceLastSave = ChronoUnit.SECONDS.between(lastSave, LocalDateTime.now());
-        return secondsSinceLastSave >= metricSamplingIntervalSeconds;
-    }
-
-    /**
-     * Lưu batch metrics: 1 record per device với tất cả sensors trong metricsData.
-     * Giảm ~80-90% số records so với lưu 1 record/sensor.
-     */
-    private void saveDeviceMetricsBatch(Map<Device, Map<String, Object>> metricsByDevice) {
-        LocalDateTime now = LocalDateTime.now();
-        try {
-            for (Map.Entry<Device, Map<String, Object>> entry : metricsByDevice.entrySet()) {
-                Device device = entry.getKey();
-                Map<String, Object> sensors = entry.getValue();
-                if (sensors.isEmpty()) {
-                    continue;
+    private void saveDeviceMetrics(Long homeId, Map<DeviceIndex.DeviceSnapshot, Map<String, Object>> valuesByDevice,
+            SensorFrame frame) {
+        int recorded = 0;
+        for (Map.Entry<DeviceIndex.DeviceSnapshot, Map<String, Object>> entry : valuesByDevice.entrySet()) {
+            Long deviceId = entry.getKey().id();
+            for (String sensorName : entry.getValue().keySet()) {
+                SensorKey key = SensorKey.fromJsonName(sensorName);
+                double value = frame.numericValue(key);
+                // Rollup nhận mọi giá trị; sampling chỉ quyết định row sample
+                boolean keep = metricSamplingPolicy.shouldKeep(deviceId, key, frame.getReceivedAt(), value);
+                deviceMetricService.record(homeId, deviceId, sensorName, frame.getReceivedAt(), value, keep);
+                if (keep) {
+                    recorded++;
                 }
-                Map<String, Object> metricData = new HashMap<>();
-                metricData.put("sensors", sensors);
-                metricData.put("timestamp", now.toString());
-
-                DeviceMetric metric = DeviceMetric.builder()
-                        .device(device)
-                        .metricsData(objectMapper.writeValueAsString(metricData))
-                        .build();
-                deviceMetricRepository.save(metric);
             }
-            log.debug("Saved {} device metrics (batch)", metricsByDevice.size());
-        } catch (Exception e) {
-            log.error("Error saving device metrics batch: {}", e.getMessage());
+        }
+        if (recorded > 0) {
+            log.debug("Recorded {} metric samples for homeId={}", recorded, homeId);
         }
     }
 
@@ -737,6 +610,11 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
         // bởi MCU này
         int updatedDevices = deviceRepository.clearMcuGatewayFromDevices(mcuGatewayId);
         log.debug("Cleared MCU Gateway reference from {} devices: id={}", updatedDevices, mcuGatewayId);
+        deviceIndex.invalidate(homeId);
+        sensorSnapshotStore.evict(homeId);
+        emergencyStateMachine.forget(homeId);
+        mcuHeartbeatMonitor.forget(mcuGatewayId);
+        mcuApiKeyCache.evict(mcuGatewayId);
 
         // 4. Xóa hoàn toàn MCU Gateway khỏi database
         // ESP32 sẽ không thể authenticate nữa vì API Key bị xóa
@@ -779,6 +657,7 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
         // Update IP address
         mcuGateway.setIpAddress(ipAddress);
         mcuGateway = mcuGatewayRepository.save(mcuGateway);
+        mcuApiKeyCache.evict(mcuGatewayId);
 
         log.info("MCU Gateway IP address updated: id={}, newIP={}", mcuGatewayId, ipAddress);
 
@@ -788,7 +667,7 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
     @Override
     @Transactional(readOnly = true)
     public boolean verifyApiKey(String apiKey) {
-        return mcuGatewayRepository.findByApiKey(apiKey).isPresent();
+        return mcuApiKeyCache.resolve(apiKey) != null;
     }
 
     @Override
@@ -832,105 +711,47 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
         return "mcu_" + serialNumber + "_" + randomPart;
     }
 
+    /**
+     * Reference tới MCU Gateway của API Key (qua MCUApiKeyCache, không query entity)
+     */
+    private MCUGateway resolveGatewayReference(String apiKey) {
+        MCUIdentity mcu = mcuApiKeyCache.resolve(apiKey);
+        if (mcu == null) {
+            throw new AppException(ErrorCode.UNAUTHORIZED, "Invalid API Key");
+        }
+        return mcuGatewayRepository.getReferenceById(mcu.mcuGatewayId());
+    }
+
     @Override
     @Transactional(readOnly = true)
     public MCUSensorDataResponse getSensorDataByHomeId(Long homeId) {
+        // Hot path: snapshot in-memory, response đã build sẵn cho frame mới nhất
+        MCUSensorDataResponse cached = sensorSnapshotStore.getResponse(homeId);
+        if (cached != null) {
+            return cached;
+        }
+
         MCUGateway mcuGateway = mcuGatewayRepository.findByHomeId(homeId)
                 .orElseThrow(() -> new AppException(ErrorCode.MCU_NOT_FOUND));
 
-        MCUSensorDataResponse.MCUSensorDataResponseBuilder builder = MCUSensorDataResponse.builder()
-                .mcuGatewayId(mcuGateway.getId())
-                .serialNumber(mcuGateway.getSerialNumber())
-                .lastUpdate(mcuGateway.getLastHeartbeat());
-
-        Map<String, Object> rawData = new HashMap<>();
-
-        // Ưu tiên lấy sensor data từ MCUGateway metadata (từ heartbeat mới nhất)
+        // Sau restart: nạp snapshot từ metadata đã persist (chỉ parse một lần)
         if (mcuGateway.getMetadata() != null && !mcuGateway.getMetadata().trim().isEmpty()) {
             try {
-                log.debug("Parsing sensor data from metadata: {}",
-                        mcuGateway.getMetadata().substring(0, Math.min(200, mcuGateway.getMetadata().length())));
-                JsonNode sensorData = objectMapper.readTree(mcuGateway.getMetadata());
-                log.debug("Parsed sensor data successfully, fields: {}", sensorData.size());
-                sensorData.fields().forEachRemaining(entry -> {
-                    String key = entry.getKey();
-                    JsonNode value = entry.getValue();
-
-                    Object valueObj = value.isNumber() ? value.asDouble()
-                            : value.isBoolean() ? value.asBoolean() : value.asText();
-                    rawData.put(key, valueObj);
-
-                    // Map to response fields
-                    switch (key) {
-                        case "tempIn":
-                            builder.tempIn(value.asDouble());
-                            break;
-                        case "humIn":
-                            builder.humIn(value.asDouble());
-                            break;
-                        case "tempOut":
-                            builder.tempOut(value.asDouble());
-                            break;
-                        case "humOut":
-                            builder.humOut(value.asDouble());
-                            break;
-                        case "gas":
-                            builder.gas(value.asInt());
-                            break;
-                        case "light":
-                            builder.light(value.asInt());
-                            break;
-                        case "rain":
-                            builder.rain(value.asInt());
-                            break;
-                        case "flame":
-                            builder.flame(value.asBoolean());
-                            break;
-                        case "motion":
-                            builder.motion(value.asBoolean());
-                            break;
-                        case "door":
-                            builder.door(value.asBoolean());
-                            break;
-                        case "lightStatus":
-                            builder.lightStatus(value.asBoolean());
-                            break;
-                        case "fanStatus":
-                            builder.fanStatus(value.asBoolean());
-                            break;
-                        case "gasAlert":
-                            builder.gasAlert(value.asBoolean());
-                            break;
-                        case "emergency":
-                            builder.emergency(value.asBoolean());
-                            break;
-                        // Automation configuration fields
-                        case "autoLight":
-                            builder.autoLight(value.asBoolean());
-                            break;
-                        case "autoFan":
-                            builder.autoFan(value.asBoolean());
-                            break;
-                        case "autoCloseDoor":
-                            builder.autoCloseDoor(value.asBoolean());
-                            break;
-                        case "autoLightThreshold":
-                            builder.autoLightThreshold(value.asInt());
-                            break;
-                        case "autoFanThreshold":
-                            builder.autoFanThreshold(value.asInt());
-                            break;
-                        case "gasAlertThreshold":
-                            builder.gasAlertThreshold(value.asInt());
-                            break;
-                    }
-                });
+                sensorSnapshotStore.seed(homeId, mcuGateway);
+                return sensorSnapshotStore.getResponse(homeId);
             } catch (Exception e) {
                 log.warn("Failed to parse metadata sensor data: {}", e.getMessage(), e);
                 log.warn("Metadata content: {}", mcuGateway.getMetadata());
             }
         }
 
+        MCUSensorDataResponse.MCUSensorDataResponseBuilder builder = MCUSensorDataResponse.builder()
+                .mcuGatewayId(mcuGateway.getId())
+                .serialNumber(mcuGateway.getSerialNumber())
+                .lastUpdate(mcuGateway.getLastHeartbeat());
+
+        Map<String, Object> rawData = new HashMap<>();
+
         // Fallback: Lấy sensor data từ devices nếu metadata không có
         if (rawData.isEmpty()) {
             List<Device> devices = deviceRepository
@@ -1023,6 +844,16 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
         return builder.build();
     }
 
+    /**
+     * Sensor payload mới nhất: snapshot in-memory nếu có, nếu không thì cột metadata
+     */
+    private String latestMetadata(MCUGateway mcuGateway) {
+        SensorSnapshotStore.Snapshot snapshot = mcuGateway.getHome() != null
+                ? sensorSnapshotStore.get(mcuGateway.getHome().getId())
+                : null;
+        return snapshot != null ? snapshot.getFrame().getRawJson() : mcuGateway.getMetadata();
+    }
+
     /**
      * Convert MCUGateway entity to DTO
      */
@@ -1043,7 +874,7 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
                 .pairedByUsername(mcuGateway.getPairedBy() != null ? mcuGateway.getPairedBy().getUsername() : null)
                 .homeId(mcuGateway.getHome() != null ? mcuGateway.getHome().getId() : null)
                 .homeName(mcuGateway.getHome() != null ? mcuGateway.getHome().getName() : null)
-                .metadata(mcuGateway.getMetadata())
+                .metadata(latestMetadata(mcuGateway))
                 .isOnline(isOnline)
                 .build();
     }
@@ -1138,9 +969,8 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
 
     @Transactional(readOnly = true)
     public MCUCommandsResponse getPendingCommands(String apiKey) {
-        // Verify API Key và lấy MCU Gateway
-        MCUGateway mcuGateway = mcuGatewayRepository.findByApiKey(apiKey)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Invalid API Key"));
+        // Verify API Key và lấy MCU Gateway (reference, không load entity)
+        MCUGateway mcuGateway = resolveGatewayReference(apiKey);
 
         // Lấy tất cả commands PENDING
         List<MCUDeviceCommand> pendingCommands = mcuDeviceCommandRepository
@@ -1164,9 +994,8 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
 
     @Transactional
     public void acknowledgeCommand(String apiKey, Long commandId) {
-        // Verify API Key và lấy MCU Gateway
-        MCUGateway mcuGateway = mcuGatewayRepository.findByApiKey(apiKey)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Invalid API Key"));
+        // Verify API Key và lấy MCU Gateway (reference, không load entity)
+        MCUGateway mcuGateway = resolveGatewayReference(apiKey);
 
         // Tìm command
         MCUDeviceCommand command = mcuDeviceCommandRepository
@@ -1241,29 +1070,17 @@ public class MCUGatewayServiceImpl implements MCUGatewayService {
             log.info("Sent automation config to homeId={}: light={}, temp={}, gas={}",
                     homeId, lightThreshold, tempThreshold, gasThreshold);
 
-            // Update metadata immediately so getSensorDataByHomeId returns new values on
+            // Update snapshot immediately so getSensorDataByHomeId returns new values on
             // refresh
             // (otherwise frontend would see old values until ESP32 sends next heartbeat)
-            String metadata = mcuGateway.getMetadata();
-            Map<String, Object> metaMap;
-            if (metadata != null && !metadata.trim().isEmpty()) {
-                try {
-                    metaMap = objectMapper.readValue(metadata, Map.class);
-                } catch (Exception e) {
-                    log.warn("Could not parse metadata for merge, creating new: {}", e.getMessage());
-                    metaMap = new HashMap<>();
-                }
-            } else {
-                metaMap = new HashMap<>();
-            }
+            Map<String, Object> thresholds = new HashMap<>();
             if (lightThreshold != null)
-                metaMap.put("autoLightThreshold", lightThreshold);
+                thresholds.put("autoLightThreshold", lightThreshold);
             if (tempThreshold != null)
-                metaMap.put("autoFanThreshold", tempThreshold);
+                thresholds.put("autoFanThreshold", tempThreshold);
             if (gasThreshold != null)
-                metaMap.put("gasAlertThreshold", gasThreshold);
-            mcuGateway.setMetadata(objectMapper.writeValueAsString(metaMap));
-            mcuGatewayRepository.save(mcuGateway);
+                thresholds.put("gasAlertThreshold", gasThreshold);
+            sensorSnapshotStore.merge(homeId, mcuGateway, thresholds);
 
         } catch (Exception e) {
             log.error("Failed to send automation config to homeId={}: {}", homeId, e.getMessage(), e);
@@ -1,21 +1,25 @@
 package com.example.smart_home_system.service.implement;
 
+import com.example.smart_home_system.dto.SensorFrame;
 import com.example.smart_home_system.dto.request.RFID.RFIDAccessLogRequest;
 import com.example.smart_home_system.entity.MCUGateway;
 import com.example.smart_home_system.enums.MCUStatus;
-import com.example.smart_home_system.enums.NotificationType;
 import com.example.smart_home_system.repository.MCUGatewayRepository;
-import com.example.smart_home_system.repository.NotificationRepository;
+import com.example.smart_home_system.security.mcu.MCUApiKeyCache;
+import com.example.smart_home_system.service.EmergencyStateMachine;
+import com.example.smart_home_system.service.MCUHeartbeatMonitor;
 import com.example.smart_home_system.service.RFIDService;
+import com.example.smart_home_system.service.RealtimeEventBus;
+import com.example.smart_home_system.service.SensorSnapshotStore;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.regex.Matcher;
@@ -42,22 +46,43 @@ public class MqttMessageHandler {
     private final RFIDService rfidService;
     private final com.example.smart_home_system.service.MqttResponseStore mqttResponseStore;
     private final com.example.smart_home_system.service.MCUGatewayService mcuGatewayService;
-    private final com.example.smart_home_system.service.NotificationService notificationService;
-    private final NotificationRepository notificationRepository;
-    private final org.springframework.messaging.simp.SimpMessagingTemplate messagingTemplate;
+    private final EmergencyStateMachine emergencyStateMachine;
+    private final SensorSnapshotStore sensorSnapshotStore;
+    private final MCUHeartbeatMonitor mcuHeartbeatMonitor;
+    private final RealtimeEventBus realtimeEventBus;
+    private final MCUApiKeyCache mcuApiKeyCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    
-    // Time window to check for recent active emergency (5 minutes)
-    private static final int RECENT_EMERGENCY_WINDOW_MINUTES = 5;
 
     // Pattern to extract homeId from topic: smarthome/{homeId}/...
     private static final Pattern TOPIC_PATTERN = Pattern.compile("smarthome/(\\d+)/(.+)");
 
     /**
-     * Main message handler for all incoming MQTT messages
+     * Quyết định phần "live" của một sensor frame (heartbeat, snapshot, emergency state,
+     * push WebSocket) có được chạy hay không. Dispatcher chạy phần này tuần tự theo home
+     * và bỏ qua frame cũ hơn frame live gần nhất của home, vì frame của một home có thể
+     * tới từ cả lane thường lẫn priority lane.
      */
-    @ServiceActivator(inputChannel = "mqttInputChannel")
-    public void handleMessage(Message<?> message) {
+    @FunctionalInterface
+    public interface LiveGate {
+        /**
+         * @return false nếu frame đã cũ và {@code live} không được chạy
+         */
+        boolean runIfLatest(Runnable live);
+    }
+
+    // Không kiểm tra thứ tự (frame chỉ đến từ một nguồn)
+    public static final LiveGate UNORDERED = live -> {
+        live.run();
+        return true;
+    };
+
+    /**
+     * Main message handler for all incoming MQTT messages.
+     * Called from an ingest lane of {@link com.example.smart_home_system.service.MqttIngestDispatcher},
+     * messages of the same home always arrive on the same lane (in order); the live part of
+     * sensor frames is additionally ordered against the priority lane through {@code gate}.
+     */
+    public void handleMessage(Message<?> message, LiveGate gate) {
         try {
             String topic = (String) message.getHeaders().get("mqtt_receivedTopic");
             String payload = message.getPayload().toString();
@@ -77,7 +102,7 @@ public class MqttMessageHandler {
             // Route to appropriate handler based on sub-topic
             switch (subTopic) {
                 case "sensors":
-                    handleSensorData(homeId, payload);
+                    handleSensorData(homeId, payload, gate);
                     break;
                 case "status":
                     handleDeviceStatus(homeId, payload);
@@ -106,50 +131,102 @@ public class MqttMessageHandler {
     }
 
     /**
-     * Handle sensor data from ESP32
-     * Updates MCU heartbeat, stores sensor data in metadata, and updates device status
+     * Handler của priority lane (emergency frame, RFID access): chỉ làm phần cần thiết để
+     * FE nhận được sự kiện sớm nhất. Device state và metric sampling của emergency frame
+     * được xử lý sau bởi {@link #handleDeferred} trên lane thường của home.
+     *
+     * <p>
+     * Exception không bị nuốt ở đây để lane ghi nhận message xử lý lỗi.
+     *
+     * @param onPublished gọi ngay sau khi sự kiện được đưa lên realtime bus, trước phần ghi DB
+     *                    (notification, access log); không được gọi nếu frame đã cũ
      */
-    private void handleSensorData(Long homeId, String payload) {
-        try {
-            JsonNode data = objectMapper.readTree(payload);
-            log.debug("[MQTT] Sensor data received for homeId={}", homeId);
+    public void handlePriority(Message<?> message, LiveGate gate, Runnable onPublished) throws Exception {
+        String topic = (String) message.getHeaders().get("mqtt_receivedTopic");
+        String payload = message.getPayload().toString();
+        Matcher matcher = TOPIC_PATTERN.matcher(topic);
+        if (!matcher.matches()) {
+            log.warn("[MQTT] Invalid topic format: {}", topic);
+            return;
+        }
 
-            // Update MCU Gateway heartbeat
-            Optional<MCUGateway> mcuOpt = mcuGatewayRepository.findByHomeId(homeId);
-            if (mcuOpt.isPresent()) {
-                MCUGateway mcu = mcuOpt.get();
-                mcu.setLastHeartbeat(LocalDateTime.now());
-                mcu.setStatus(MCUStatus.ONLINE);
+        Long homeId = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "sensors":
+                handleEmergencyFrame(homeId, payload, gate, onPublished);
+                break;
+            case "rfid/access":
+                processRFIDAccess(homeId, payload, onPublished);
+                break;
+            default:
+                handleMessage(message, gate);
+        }
+    }
 
-                // Update IP if provided
-                if (data.has("ipAddress")) {
-                    mcu.setIpAddress(data.get("ipAddress").asText());
-                }
+    /**
+     * Phần không khẩn cấp của sensor frame (device state, metrics), dùng cho frame đã được
+     * priority lane xử lý hoặc frame cũ hơn một frame như vậy
+     */
+    public void handleDeferred(Message<?> message) {
+        try {
+            String topic = (String) message.getHeaders().get("mqtt_receivedTopic");
+            Matcher matcher = TOPIC_PATTERN.matcher(topic);
+            if (!matcher.matches() || !"sensors".equals(matcher.group(2))) {
+                return;
+            }
+            Long homeId = Long.parseLong(matcher.group(1));
+            mcuGatewayService.processSensorDataFromMQTT(homeId, SensorFrame.parse(message.getPayload().toString()));
+        } catch (Exception e) {
+            log.warn("[MQTT] Failed to process deferred sensor data: {}", e.getMessage());
+        }
+    }
 
-                // Store sensor data as metadata
-                mcu.setMetadata(payload);
-                mcuGatewayRepository.save(mcu);
+    /**
+     * Emergency frame trên priority lane: heartbeat, snapshot, push WebSocket rồi mới tới
+     * state machine (tạo notification)
+     */
+    private void handleEmergencyFrame(Long homeId, String payload, LiveGate gate, Runnable onPublished)
+            throws IOException {
+        SensorFrame frame = SensorFrame.parse(payload);
+        boolean live = gate.runIfLatest(() -> {
+            Optional<MCUGateway> mcuOpt = touchGateway(homeId, frame);
+            if (mcuOpt.isEmpty()) {
+                return;
+            }
+            MCUGateway mcu = mcuOpt.get();
+            sensorSnapshotStore.put(homeId, mcu, frame);
+            realtimeEventBus.publishSensorFrame(homeId, payload, true);
+            onPublished.run();
+            emergencyStateMachine.onFrame(homeId, mcu, frame);
+        });
+        if (!live) {
+            log.debug("[MQTT] Skipped stale emergency frame for homeId={}", homeId);
+        }
+    }
 
-                // Process sensor data to update device status (ONLINE/ON/OFF)
-                // This will update all devices based on their GPIO pins and sensor values
-                try {
-                    mcuGatewayService.processSensorDataFromMQTT(homeId, payload);
-                    log.debug("[MQTT] Device status updated from sensor data for homeId={}", homeId);
-                } catch (Exception e) {
-                    log.warn("[MQTT] Failed to process sensor data for device status update: {}", e.getMessage());
-                    // Don't fail the whole handler if device update fails
-                }
+    /**
+     * Handle sensor data from ESP32
+     * Updates MCU heartbeat, the in-memory sensor snapshot, and device status.
+     * Payload is decoded once into a {@link SensorFrame} shared by every step below.
+     */
+    private void handleSensorData(Long homeId, String payload, LiveGate gate) {
+        try {
+            SensorFrame frame = SensorFrame.parse(payload);
+            log.debug("[MQTT] Sensor data received for homeId={}", homeId);
 
-                // Check for emergency conditions and create notifications
-                try {
-                    checkAndHandleEmergency(homeId, mcu, data);
-                } catch (Exception e) {
-                    log.warn("[MQTT] Failed to process emergency: {}", e.getMessage());
-                    // Don't fail the whole handler if emergency processing fails
-                }
+            // Heartbeat, snapshot, emergency state và push chỉ chạy nếu không có frame mới hơn
+            // (vd. một emergency frame trên priority lane) đã được xử lý trước
+            gate.runIfLatest(() -> handleLiveSensorData(homeId, payload, frame));
 
-                // Broadcast to WebSocket: /topic/home/{homeId}/sensors
-                messagingTemplate.convertAndSend("/topic/home/" + homeId + "/sensors", payload);
+            // Process sensor data to update device status (ONLINE/ON/OFF)
+            // This will update all devices based on their GPIO pins and sensor values.
+            // Luôn chạy theo thứ tự nhận trên lane thường của home.
+            try {
+                mcuGatewayService.processSensorDataFromMQTT(homeId, frame);
+                log.debug("[MQTT] Device status updated from sensor data for homeId={}", homeId);
+            } catch (Exception e) {
+                log.warn("[MQTT] Failed to process sensor data for device status update: {}", e.getMessage());
+                // Don't fail the whole handler if device update fails
             }
 
         } catch (Exception e) {
@@ -157,6 +234,59 @@ public class MqttMessageHandler {
         }
     }
 
+    private void handleLiveSensorData(Long homeId, String payload, SensorFrame frame) {
+        // Update MCU Gateway heartbeat
+        Optional<MCUGateway> mcuOpt = touchGateway(homeId, frame);
+        if (mcuOpt.isEmpty()) {
+            return;
+        }
+        MCUGateway mcu = mcuOpt.get();
+
+        // Latest snapshot is kept in memory and persisted to metadata on a slow cadence
+        sensorSnapshotStore.put(homeId, mcu, frame);
+
+        // Emergency state machine: notifications only on state transitions
+        try {
+            emergencyStateMachine.onFrame(homeId, mcu, frame);
+        } catch (Exception e) {
+            log.warn("[MQTT] Failed to process emergency: {}", e.getMessage());
+            // Don't fail the whole handler if emergency processing fails
+        }
+
+        // Push to WebSocket /topic/home/{homeId}/sensors (latest value per subscriber)
+        realtimeEventBus.publishSensorFrame(homeId, payload, false);
+    }
+
+    /**
+     * Cập nhật heartbeat của MCU; chỉ ghi row MCU khi có thay đổi cần lưu (ONLINE lại, IP mới)
+     */
+    private Optional<MCUGateway> touchGateway(Long homeId, SensorFrame frame) {
+        Optional<MCUGateway> mcuOpt = mcuGatewayRepository.findByHomeId(homeId);
+        if (mcuOpt.isEmpty()) {
+            return mcuOpt;
+        }
+        MCUGateway mcu = mcuOpt.get();
+
+        // Heartbeat deadline is tracked in memory; lastHeartbeat is persisted in batches
+        mcuHeartbeatMonitor.beat(mcu.getId(), homeId);
+
+        boolean changed = false;
+        if (mcu.getStatus() != MCUStatus.ONLINE) {
+            mcu.setStatus(MCUStatus.ONLINE);
+            mcu.setLastHeartbeat(LocalDateTime.now());
+            changed = true;
+        }
+        if (frame.getIpAddress() != null && !frame.getIpAddress().equals(mcu.getIpAddress())) {
+            mcu.setIpAddress(frame.getIpAddress());
+            mcuApiKeyCache.evict(mcu.getId());
+            changed = true;
+        }
+        if (changed) {
+            mcuGatewayRepository.save(mcu);
+        }
+        return mcuOpt;
+    }
+
     /**
      * Handle device status updates (online/offline via LWT)
      */
@@ -171,14 +301,16 @@ public class MqttMessageHandler {
                 if ("online".equalsIgnoreCase(payload)) {
                     mcu.setStatus(MCUStatus.ONLINE);
                     mcu.setLastHeartbeat(LocalDateTime.now());
+                    mcuHeartbeatMonitor.beat(mcu.getId(), homeId);
                 } else if ("offline".equalsIgnoreCase(payload)) {
                     mcu.setStatus(MCUStatus.OFFLINE);
+                    mcuHeartbeatMonitor.forget(mcu.getId());
                 }
 
                 mcuGatewayRepository.save(mcu);
 
                 // Broadcast to WebSocket: /topic/home/{homeId}/status
-                messagingTemplate.convertAndSend("/topic/home/" + homeId + "/status", payload);
+                realtimeEventBus.publish("/topic/home/" + homeId + "/status", payload);
             }
         } catch (Exception e) {
             log.error("[MQTT] Error handling device status: {}", e.getMessage(), e);
@@ -190,35 +322,41 @@ public class MqttMessageHandler {
      */
     private void handleRFIDAccess(Long homeId, String payload) {
         try {
-            JsonNode data = objectMapper.readTree(payload);
-            log.info("[MQTT] RFID access event for homeId={}: cardUid={}, authorized={}",
-                    homeId,
-                    data.has("cardUid") ? data.get("cardUid").asText() : "unknown",
-                    data.has("authorized") ? data.get("authorized").asBoolean() : "unknown");
-
-            // Find MCU Gateway to get API key for recording
-            Optional<MCUGateway> mcuOpt = mcuGatewayRepository.findByHomeId(homeId);
-            if (mcuOpt.isPresent() && mcuOpt.get().getApiKey() != null) {
-                RFIDAccessLogRequest request = RFIDAccessLogRequest.builder()
-                        .serialNumber(data.has("serialNumber") ? data.get("serialNumber").asText() : null)
-                        .cardUid(data.get("cardUid").asText())
-                        .authorized(data.get("authorized").asBoolean())
-                        .cardName(data.has("cardName") ? data.get("cardName").asText() : null)
-                        .status(data.has("status") ? data.get("status").asText() : null)
-                        .timestamp(data.has("timestamp") ? data.get("timestamp").asLong() : null)
-                        .build();
-
-                rfidService.recordAccessLog(mcuOpt.get().getApiKey(), request);
-            }
-
-            // Broadcast to WebSocket: /topic/home/{homeId}/rfid/access
-            messagingTemplate.convertAndSend("/topic/home/" + homeId + "/rfid/access", payload);
-
+            // Lane thường: không tính vào SLO của priority lane
+            processRFIDAccess(homeId, payload, () -> { });
         } catch (Exception e) {
             log.error("[MQTT] Error handling RFID access: {}", e.getMessage(), e);
         }
     }
 
+    private void processRFIDAccess(Long homeId, String payload, Runnable onPublished) throws IOException {
+        JsonNode data = objectMapper.readTree(payload);
+        log.info("[MQTT] RFID access event for homeId={}: cardUid={}, authorized={}",
+                homeId,
+                data.has("cardUid") ? data.get("cardUid").asText() : "unknown",
+                data.has("authorized") ? data.get("authorized").asBoolean() : "unknown");
+
+        // Push trước khi ghi access log để FE nhận sự kiện cửa sớm nhất
+        // Broadcast to WebSocket: /topic/home/{homeId}/rfid/access
+        realtimeEventBus.publish("/topic/home/" + homeId + "/rfid/access", payload);
+        onPublished.run();
+
+        // Find MCU Gateway to get API key for recording
+        Optional<MCUGateway> mcuOpt = mcuGatewayRepository.findByHomeId(homeId);
+        if (mcuOpt.isPresent() && mcuOpt.get().getApiKey() != null) {
+            RFIDAccessLogRequest request = RFIDAccessLogRequest.builder()
+                    .serialNumber(data.has("serialNumber") ? data.get("serialNumber").asText() : null)
+                    .cardUid(data.get("cardUid").asText())
+                    .authorized(data.get("authorized").asBoolean())
+                    .cardName(data.has("cardName") ? data.get("cardName").asText() : null)
+                    .status(data.has("status") ? data.get("status").asText() : null)
+                    .timestamp(data.has("timestamp") ? data.get("timestamp").asLong() : null)
+                    .build();
+
+            rfidService.recordAccessLog(mcuOpt.get().getApiKey(), request);
+        }
+    }
+
     /**
      * Handle RFID learning status updates from ESP32
      */
@@ -238,7 +376,7 @@ public class MqttMessageHandler {
             }
 
             // Broadcast to WebSocket: /topic/home/{homeId}/rfid/learn/status
-            messagingTemplate.convertAndSend("/topic/home/" + homeId + "/rfid/learn/status", payload);
+            realtimeEventBus.publish("/topic/home/" + homeId + "/rfid/learn/status", payload);
 
         } catch (Exception e) {
             log.error("[MQTT] Error handling RFID learn status: {}", e.getMessage(), e);
@@ -264,7 +402,7 @@ public class MqttMessageHandler {
             }
 
             // Broadcast to WebSocket: /topic/home/{homeId}/rfid/cards
-            messagingTemplate.convertAndSend("/topic/home/" + homeId + "/rfid/cards", payload);
+            realtimeEventBus.publish("/topic/home/" + homeId + "/rfid/cards", payload);
 
         } catch (Exception e) {
             log.error("[MQTT] Error handling RFID cards list: {}", e.getMessage(), e);
@@ -290,7 +428,7 @@ public class MqttMessageHandler {
             }
 
             // Broadcast to WebSocket if no requestId
-            messagingTemplate.convertAndSend("/topic/home/" + homeId + "/gpio/available", payload);
+            realtimeEventBus.publish("/topic/home/" + homeId + "/gpio/available", payload);
 
         } catch (Exception e) {
             log.error("[MQTT] Error handling GPIO available: {}", e.getMessage(), e);
@@ -319,132 +457,11 @@ public class MqttMessageHandler {
 
             // Broadcast to WebSocket: /topic/home/{homeId}/device-status
             String wsTopic = "/topic/home/" + homeId + "/device-status";
-            messagingTemplate.convertAndSend(wsTopic, payload);
+            realtimeEventBus.publish(wsTopic, payload);
             log.info("[MQTT] Broadcast device status to WebSocket topic: {}", wsTopic);
 
         } catch (Exception e) {
             log.error("[MQTT] Error handling device status update: {}", e.getMessage(), e);
         }
     }
-
-    /**
-     * Check for emergency conditions in sensor data and create notifications
-     */
-    private void checkAndHandleEmergency(Long homeId, MCUGateway mcu, JsonNode sensorData) {
-        try {
-            boolean hasEmergency = false;
-            boolean emergencyFire = false;
-            boolean emergencyGas = false;
-            String emergencyType = null;
-
-            // Check emergency flags from sensor data
-            if (sensorData.has("emergency") && sensorData.get("emergency").asBoolean()) {
-                hasEmergency = true;
-                
-                // Check specific emergency types
-                if (sensorData.has("emergencyFire") && sensorData.get("emergencyFire").asBoolean()) {
-                    emergencyFire = true;
-                }
-                if (sensorData.has("emergencyGas") && sensorData.get("emergencyGas").asBoolean()) {
-                    emergencyGas = true;
-                }
-                
-                // Determine emergency type
-                if (emergencyFire && emergencyGas) {
-                    emergencyType = "BOTH";
-                } else if (emergencyFire) {
-                    emergencyType = "FIRE";
-                } else if (emergencyGas) {
-                    emergencyType = "GAS";
-                } else {
-                    emergencyType = "UNKNOWN";
-                }
-            } else {
-                // Check individual flags if emergency flag is not present
-                if (sensorData.has("emergencyFire") && sensorData.get("emergencyFire").asBoolean()) {
-                    hasEmergency = true;
-                    emergencyFire = true;
-                    emergencyType = "FIRE";
-                }
-                if (sensorData.has("emergencyGas") && sensorData.get("emergencyGas").asBoolean()) {
-                    hasEmergency = true;
-                    emergencyGas = true;
-                    emergencyType = emergencyType != null ? "BOTH" : "GAS";
-                }
-            }
-
-            // Also check gasAlert as a warning
-            boolean gasAlert = sensorData.has("gasAlert") && sensorData.get("gasAlert").asBoolean();
-            
-            if (hasEmergency && emergencyType != null && mcu.getApiKey() != null) {
-                log.warn("[MQTT] Emergency detected for homeId={}: type={}, fire={}, gas={}", 
-                        homeId, emergencyType, emergencyFire, emergencyGas);
-                
-                // Create emergency notification
-                String metadata = sensorData.toString();
-                notificationService.createEmergencyNotification(
-                        mcu.getApiKey(),
-                        emergencyType,
-                        true, // isActive
-                        null, // deviceCode - could be extracted from sensor data if needed
-                        metadata
-                );
-                
-                // Broadcast emergency to WebSocket
-                String emergencyPayload = String.format(
-                    "{\"type\":\"%s\",\"isActive\":true,\"fire\":%s,\"gas\":%s,\"timestamp\":%d}",
-                    emergencyType, emergencyFire, emergencyGas, System.currentTimeMillis()
-                );
-                messagingTemplate.convertAndSend("/topic/home/" + homeId + "/emergency", emergencyPayload);
-                log.info("[MQTT] Emergency notification created and broadcast for homeId={}", homeId);
-            } else if (!hasEmergency && (sensorData.has("emergency") && !sensorData.get("emergency").asBoolean())) {
-                // Emergency cleared - only create notification if there was a recent active emergency
-                // This prevents creating CLEARED notifications when system is already in cleared state
-                LocalDateTime since = LocalDateTime.now().minusMinutes(RECENT_EMERGENCY_WINDOW_MINUTES);
-                boolean hadRecentEmergency = notificationRepository.existsRecentEmergencyByHomeId(
-                        homeId, NotificationType.EMERGENCY, since);
-                
-                if (hadRecentEmergency) {
-                    // Tránh tạo trùng: nếu đã tạo CLEARED gần đây (2 phút), bỏ qua
-                    LocalDateTime clearedSince = LocalDateTime.now().minusMinutes(2);
-                    boolean alreadyCleared = notificationRepository.existsRecentClearedByHomeId(
-                            homeId, "%giải quyết%", clearedSince);
-                    if (alreadyCleared) {
-                        log.debug("[MQTT] Skipping CLEARED - already created recently for homeId={}", homeId);
-                    } else if (mcu.getApiKey() != null) {
-                        log.info("[MQTT] Emergency cleared for homeId={} (had recent active emergency)", homeId);
-
-                        String resolvedTypeLabel = notificationService.getResolvedEmergencyTypeLabel(homeId);
-
-                        notificationService.createEmergencyNotification(
-                                mcu.getApiKey(),
-                                "CLEARED",
-                                false, // isActive
-                                null,
-                                sensorData.toString()
-                        );
-
-                        // Broadcast emergency cleared với mô tả cụ thể
-                        String clearedPayload = String.format(
-                            "{\"type\":\"CLEARED\",\"isActive\":false,\"resolvedTypeLabel\":\"%s\",\"timestamp\":%d}",
-                            resolvedTypeLabel.replace("\"", "\\\""),
-                            System.currentTimeMillis()
-                        );
-                        messagingTemplate.convertAndSend("/topic/home/" + homeId + "/emergency", clearedPayload);
-                    }
-                } else {
-                    log.debug("[MQTT] Emergency cleared for homeId={} but no recent active emergency - skipping notification", homeId);
-                }
-            }
-            
-            // Handle gas alert as warning (not emergency but still important)
-            if (gasAlert && !hasEmergency) {
-                log.warn("[MQTT] Gas alert (warning) for homeId={}", homeId);
-                // Could create a WARNING notification here if needed
-            }
-            
-        } catch (Exception e) {
-            log.error("[MQTT] Error checking emergency conditions: {}", e.getMessage(), e);
-        }
-    }
 }
@@ -0,0 +1,110 @@
+package com.example.smart_home_system.service.implement;
+
+import com.example.smart_home_system.service.MqttService;
+import com.example.smart_home_system.service.RealtimeDelivery;
+import com.example.smart_home_system.service.RealtimeEventBus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bus giữa các node qua MQTT broker sẵn có (không cần thêm hạ tầng).
+ *
+ * <p>
+ * Sự kiện chỉ được publish một lần lên {@code realtime.bus.topic}; mọi node, kể cả node
+ * phát, nhận lại qua {@code realtimeBusInputChannel} (xem MqttConfig) và fan-out cho client
+ * của mình. Chỉ có một đường giao nên không có sự kiện nào tới client hai lần, và broker
+ * chỉ nhận một bản cho mỗi sự kiện.
+ *
+ * <p>
+ * Payload được serialize một lần ở node phát bằng ObjectMapper của ứng dụng (giống
+ * message converter của STOMP) và mang theo content-type gốc: object đi dưới dạng
+ * {@code application/json}, chuỗi dưới dạng {@code text/plain}, nên client nhận cùng một
+ * frame như khi giao trực tiếp. Sensor frame được giao qua SensorPushConflator của từng node.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "realtime.bus.mode", havingValue = "MQTT")
+public class MqttRealtimeEventBus implements RealtimeEventBus {
+
+    private static final String KIND_EVENT = "event";
+    private static final String KIND_SENSORS = "sensors";
+    private static final MimeType TEXT_CONTENT_TYPE = new MimeType("text", "plain", StandardCharsets.UTF_8);
+
+    private final RealtimeDelivery realtimeDelivery;
+    private final MqttService mqttService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${realtime.bus.topic:smarthome-cluster/realtime}")
+    private String topic;
+
+    @Override
+    public void publish(String destination, Object payload) {
+        try {
+            ObjectNode envelope = envelope(KIND_EVENT);
+            envelope.put("destination", destination);
+            if (payload instanceof String text) {
+                envelope.put("contentType", TEXT_CONTENT_TYPE.toString());
+                envelope.put("payload", text);
+            } else {
+                envelope.put("contentType", MimeTypeUtils.APPLICATION_JSON_VALUE);
+                envelope.put("payload", objectMapper.writeValueAsString(payload));
+            }
+            mqttService.publish(topic, objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            log.error("[RealtimeBus] Failed to publish event to {}: {}", destination, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void publishSensorFrame(Long homeId, String payload, boolean urgent) {
+        try {
+            ObjectNode envelope = envelope(KIND_SENSORS);
+            envelope.put("homeId", homeId);
+            envelope.put("urgent", urgent);
+            envelope.put("payload", payload);
+            mqttService.publish(topic, objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            log.error("[RealtimeBus] Failed to publish sensor frame for homeId={}: {}", homeId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sự kiện của mọi node (kể cả node này)
+     */
+    @ServiceActivator(inputChannel = "realtimeBusInputChannel")
+    public void onMessage(Message<?> message) {
+        try {
+            JsonNode envelope = objectMapper.readTree(message.getPayload().toString());
+            String payload = envelope.path("payload").asText();
+            if (KIND_SENSORS.equals(envelope.path("kind").asText())) {
+                realtimeDelivery.deliverSensorFrame(envelope.path("homeId").asLong(), payload,
+                        envelope.path("urgent").asBoolean());
+            } else {
+                String contentType = envelope.path("contentType").asText(null);
+                realtimeDelivery.deliverSerialized(envelope.path("destination").asText(), payload,
+                        contentType != null ? MimeType.valueOf(contentType) : TEXT_CONTENT_TYPE);
+            }
+        } catch (Exception e) {
+            log.warn("[RealtimeBus] Invalid realtime event: {}", e.getMessage());
+        }
+    }
+
+    private ObjectNode envelope(String kind) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("kind", kind);
+        return envelope;
+    }
+}
@@ -3,23 +3,32 @@ package com.example.smart_home_system.service.implement;
 import com.example.smart_home_system.dto.request.NotificationCreateRequest;
 import com.example.smart_home_system.dto.response.NotificationResponse;
 import com.example.smart_home_system.entity.*;
+import com.example.smart_home_system.enums.EmergencyType;
 import com.example.smart_home_system.enums.NotificationType;
 import com.example.smart_home_system.exception.AppException;
 import com.example.smart_home_system.exception.ErrorCode;
 import com.example.smart_home_system.repository.*;
+import com.example.smart_home_system.security.mcu.MCUApiKeyCache;
+import com.example.smart_home_system.security.mcu.MCUIdentity;
+import com.example.smart_home_system.service.NotificationFanout;
 import com.example.smart_home_system.service.NotificationService;
+import com.example.smart_home_system.service.UnreadCounterStore;
 import com.example.smart_home_system.util.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -30,8 +39,11 @@ public class NotificationServiceImpl implements NotificationService {
     private final HomeRepository homeRepository;
     private final UserRepository userRepository;
     private final DeviceRepository deviceRepository;
-    private final HomeMemberRepository homeMemberRepository;
-    private final MCUGatewayRepository mcuGatewayRepository;
+    private final NotificationReceiptRepository notificationReceiptRepository;
+    private final NotificationHomeWatermarkRepository notificationHomeWatermarkRepository;
+    private final NotificationFanout notificationFanout;
+    private final UnreadCounterStore unreadCounterStore;
+    private final MCUApiKeyCache mcuApiKeyCache;
 
     @Override
     @Transactional
@@ -62,35 +74,30 @@ public class NotificationServiceImpl implements NotificationService {
                     .metadata(request.getMetadata())
                     .isRead(false)
                     .build();
+            notification = notificationRepository.save(notification);
+            unreadCounterStore.adjust(user.getId(), 1);
         } else {
-            // Create notification for all home members
-            List<HomeMember> members = homeMemberRepository.findAllByHomeId(request.getHomeId());
-            
-            if (members.isEmpty()) {
+            // Create notification for all home members (một INSERT nhiều row)
+            NotificationFanout.Result result = notificationFanout.fanOut(home.getId(),
+                    device != null ? device.getId() : null, request.getTitle(), request.getMessage(),
+                    request.getType(), request.getMetadata(), System.currentTimeMillis());
+
+            if (result.recipients() == 0) {
                 throw new AppException(ErrorCode.HOME_HAS_NO_MEMBERS);
             }
 
-            // Create notification for each member
-            Notification firstNotification = null;
-            for (HomeMember member : members) {
-                Notification n = Notification.builder()
-                        .home(home)
-                        .user(member.getUser())
-                        .device(device)
-                        .title(request.getTitle())
-                        .message(request.getMessage())
-                        .type(request.getType())
-                        .metadata(request.getMetadata())
-                        .isRead(false)
-                        .build();
-                
-                Notification saved = notificationRepository.save(n);
-                if (firstNotification == null) {
-                    firstNotification = saved;
-                }
-            }
-            
-            notification = firstNotification;
+            notification = Notification.builder()
+                    .id(result.firstId())
+                    .home(home)
+                    .user(result.firstUserId() != null ? User.builder().id(result.firstUserId()).build() : null)
+                    .device(device)
+                    .title(request.getTitle())
+                    .message(request.getMessage())
+                    .type(request.getType())
+                    .metadata(request.getMetadata())
+                    .isRead(false)
+                    .createdAt(result.createdAt())
+                    .build();
         }
 
         log.info("Created notification: id={}, type={}, homeId={}", 
@@ -103,10 +110,22 @@ public class NotificationServiceImpl implements NotificationService {
     @Transactional(readOnly = true)
     public Page<NotificationResponse> getNotificationsByUser(String userId, NotificationType type, Boolean isRead,
                                                           LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
-        Page<Notification> notifications = notificationRepository.findByUserIdWithFilters(
-                userId, type, isRead, startDate, endDate, pageable);
-        
-        return notifications.map(this::mapToResponse);
+        // Thứ tự cố định (mới nhất trước) nằm trong query native
+        Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        Page<Object[]> rows = notificationRepository.findByUserIdWithFilters(
+                userId, type != null ? type.name() : null, isRead, startDate, endDate, page);
+
+        // Load entity của cả trang một lần, isRead lấy theo receipt/watermark của user
+        List<Long> ids = rows.getContent().stream().map(row -> ((Number) row[0]).longValue()).toList();
+        Map<Long, Notification> byId = new HashMap<>();
+        if (!ids.isEmpty()) {
+            notificationRepository.findAllWithRelationsByIdIn(ids).forEach(n -> byId.put(n.getId(), n));
+        }
+        return rows.map(row -> {
+            NotificationResponse response = mapToResponse(byId.get(((Number) row[0]).longValue()));
+            response.setIsRead(toBoolean(row[1]));
+            return response;
+        });
     }
 
     @Override
@@ -122,76 +141,132 @@ public class NotificationServiceImpl implements NotificationService {
     @Override
     @Transactional(readOnly = true)
     public Long getUnreadCount(String userId) {
-        return notificationRepository.countUnreadByUserId(userId);
+        return unreadCounterStore.get(userId);
     }
 
     @Override
     @Transactional
     public void markAsRead(Long notificationId, String userId) {
-        Notification notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new AppException(ErrorCode.NOTIFICATION_NOT_FOUND));
-        
-        // Verify user owns this notification
-        if (!notification.getUser().getId().equals(userId)) {
-            throw new AppException(ErrorCode.FORBIDDEN);
+        Notification notification = findVisibleNotification(notificationId, userId);
+
+        // Trạng thái "chưa đọc" lấy từ số row UPDATE/INSERT thay đổi, không đọc trước:
+        // hai request song song cho cùng notification chỉ giảm counter một lần
+        List<Long> ids = List.of(notificationId);
+        boolean wasUnread = notification.getUser() == null
+                ? markSharedRead(ids, userId, false) > 0
+                : notificationRepository.markReadByIdsAndUserId(ids, userId) > 0;
+        if (wasUnread) {
+            unreadCounterStore.adjust(userId, -1);
         }
-        
-        notification.setIsRead(true);
-        notificationRepository.save(notification);
         log.debug("Marked notification as read: id={}, userId={}", notificationId, userId);
     }
 
     @Override
     @Transactional
-    public void markAllAsRead(String userId) {
-        List<Notification> unreadNotifications = notificationRepository.findUnreadByUserId(userId);
-        unreadNotifications.forEach(n -> n.setIsRead(true));
-        notificationRepository.saveAll(unreadNotifications);
-        log.info("Marked all notifications as read for userId={}, count={}", userId, unreadNotifications.size());
+    public int markAsRead(Collection<Long> notificationIds, String userId) {
+        Set<Long> ids = new HashSet<>(notificationIds);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        // Số notification thực sự chuyển sang đã đọc (id không thuộc user bị bỏ qua)
+        int own = notificationRepository.markReadByIdsAndUserId(ids, userId);
+        int affected = own + markSharedRead(ids, userId, false);
+        if (affected > 0) {
+            unreadCounterStore.adjust(userId, -affected);
+        }
+        log.debug("Marked notifications as read: userId={}, requested={}, affected={}, own={}",
+                userId, ids.size(), affected, own);
+        return affected;
+    }
+
+    @Override
+    @Transactional
+    public int markAllAsRead(String userId) {
+        // Row counter phải có trước khi notification bị khóa bởi các UPDATE dưới đây
+        unreadCounterStore.get(userId);
+        int own = notificationRepository.markAllReadByUserId(userId);
+        // Notification dùng chung: dời mốc đọc của từng home thay vì ghi receipt từng cái
+        notificationHomeWatermarkRepository.advance(userId, LocalDateTime.now(), null);
+        // Counter (bị khóa trong transaction này) là số chưa đọc riêng + dùng chung trước đó:
+        // phần dùng chung vừa được đọc là phần còn lại sau own
+        int affected = (int) Math.max(own, unreadCounterStore.clear(userId));
+        log.info("Marked all notifications as read for userId={}, count={}, own={}, shared={}",
+                userId, affected, own, affected - own);
+        return affected;
     }
 
     @Override
     @Transactional
     public void deleteNotification(Long notificationId, String userId) {
-        Notification notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new AppException(ErrorCode.NOTIFICATION_NOT_FOUND));
-        
-        // Verify user owns this notification
-        if (!notification.getUser().getId().equals(userId)) {
-            throw new AppException(ErrorCode.FORBIDDEN);
+        Notification notification = findVisibleNotification(notificationId, userId);
+
+        boolean wasUnread;
+        if (notification.getUser() == null) {
+            // Notification dùng chung: chỉ ẩn với user này
+            wasUnread = markSharedRead(List.of(notificationId), userId, true) > 0;
+            if (!wasUnread) {
+                notificationReceiptRepository.upsert(notificationId, userId, false, true);
+            }
+        } else {
+            wasUnread = notificationRepository.deleteUnreadByIdAndUserId(notificationId, userId) > 0;
+            if (!wasUnread) {
+                notificationRepository.deleteByIdAndUserId(notificationId, userId);
+            }
+        }
+        if (wasUnread) {
+            unreadCounterStore.adjust(userId, -1);
         }
-        
-        notificationRepository.delete(notification);
         log.info("Deleted notification: id={}, userId={}", notificationId, userId);
     }
 
     @Override
     @Transactional
-    public void deleteAllNotifications(String userId) {
-        notificationRepository.deleteByUserId(userId);
-        log.info("Deleted all notifications for userId={}", userId);
+    public int deleteReadNotifications(String userId) {
+        // Chỉ đụng tới notification đã đọc nên counter chưa đọc không đổi
+        int own = notificationRepository.deleteReadByUserId(userId);
+        int shared = notificationReceiptRepository.hideReadByUserId(userId);
+        notificationHomeWatermarkRepository.hideReadByUserId(userId);
+        log.info("Deleted read notifications for userId={}, own={}, shared={}", userId, own, shared);
+        return own + shared;
+    }
+
+    @Override
+    @Transactional
+    public int deleteAllNotifications(String userId) {
+        // Row counter phải có trước khi notification bị khóa bởi các lệnh xóa dưới đây
+        unreadCounterStore.get(userId);
+        int affected = (int) notificationRepository.countVisibleByUserId(userId);
+        notificationRepository.deleteAllByUserId(userId);
+        LocalDateTime now = LocalDateTime.now();
+        notificationHomeWatermarkRepository.advance(userId, now, now);
+        unreadCounterStore.clear(userId);
+        log.info("Deleted all notifications for userId={}, count={}", userId, affected);
+        return affected;
     }
 
     @Override
     @Transactional
     public void createEmergencyNotification(String apiKey, String emergencyType, Boolean isActive,
                                            String deviceCode, String metadata) {
-        // Find MCU Gateway by API Key
-        MCUGateway mcuGateway = mcuGatewayRepository.findByApiKey(apiKey)
-                .orElseThrow(() -> new AppException(ErrorCode.MCU_NOT_FOUND));
-        
-        if (mcuGateway.getHome() == null) {
-            log.warn("MCU Gateway {} is not paired with any home", mcuGateway.getId());
-            return;
+        createEmergencyNotification(apiKey, emergencyType, isActive, deviceCode, metadata, System.currentTimeMillis());
+    }
+
+    @Override
+    @Transactional
+    public void createEmergencyNotification(String apiKey, String emergencyType, Boolean isActive,
+                                           String deviceCode, String metadata, long eventAtMs) {
+        // Find MCU Gateway by API Key (cache / MCUAuthentication của request)
+        MCUIdentity mcu = mcuApiKeyCache.resolve(apiKey);
+        if (mcu == null) {
+            throw new AppException(ErrorCode.MCU_NOT_FOUND);
         }
         
-        Home home = mcuGateway.getHome();
-        List<HomeMember> members = homeMemberRepository.findAllByHomeId(home.getId());
-        
-        if (members.isEmpty()) {
-            log.warn("Home {} has no members to notify", home.getId());
+        if (mcu.homeId() == null) {
+            log.warn("MCU Gateway {} is not paired with any home", mcu.mcuGatewayId());
             return;
         }
+        
+        Long homeId = mcu.homeId();
 
         // Determine notification type and message
         NotificationType notificationType = NotificationType.EMERGENCY;
@@ -218,7 +293,7 @@ public class NotificationServiceImpl implements NotificationService {
             }
         } else {
             // Xác định loại khẩn cấp đã được giải quyết từ thông báo gần nhất
-            String resolvedTypeLabel = getResolvedEmergencyTypeLabel(home.getId());
+            String resolvedTypeLabel = getResolvedEmergencyTypeLabel(homeId);
             title = "✅ Tình huống khẩn cấp đã được giải quyết";
             message = String.format("%s Đã được xác nhận an toàn và hệ thống đã trở về trạng thái bình thường.",
                     resolvedTypeLabel);
@@ -232,24 +307,16 @@ public class NotificationServiceImpl implements NotificationService {
                     .orElse(null);
         }
 
-        // Create notification for each member
-        for (HomeMember member : members) {
-            Notification notification = Notification.builder()
-                    .home(home)
-                    .user(member.getUser())
-                    .device(device)
-                    .title(title)
-                    .message(message)
-                    .type(notificationType)
-                    .metadata(metadata)
-                    .isRead(false)
-                    .build();
-            
-            notificationRepository.save(notification);
+        // Create notification for all members (một INSERT nhiều row)
+        NotificationFanout.Result result = notificationFanout.fanOut(homeId,
+                device != null ? device.getId() : null, title, message, notificationType, metadata, eventAtMs);
+        if (result.recipients() == 0) {
+            log.warn("Home {} has no members to notify", homeId);
+            return;
         }
-        
+
         log.info("Created emergency notification: type={}, isActive={}, homeId={}, members={}",
-                emergencyType, isActive, home.getId(), members.size());
+                emergencyType, isActive, homeId, result.recipients());
     }
 
     @Override
@@ -257,21 +324,43 @@ public class NotificationServiceImpl implements NotificationService {
         var page = notificationRepository.findRecentEmergencyByHomeId(
                 homeId, NotificationType.EMERGENCY, org.springframework.data.domain.PageRequest.of(0, 1));
         if (page.isEmpty()) {
-            return "Tình huống khẩn cấp";
+            return EmergencyType.UNKNOWN.getResolvedLabel();
         }
-        String lastTitle = page.getContent().get(0).getTitle();
-        if (lastTitle != null) {
-            if (lastTitle.contains("LỬA") && lastTitle.contains("KHÍ")) {
-                return "Cảnh báo cháy và rò rỉ khí gas";
-            }
-            if (lastTitle.contains("LỬA")) {
-                return "Cảnh báo cháy (phát hiện lửa)";
-            }
-            if (lastTitle.contains("KHÍ") || lastTitle.contains("GAS")) {
-                return "Cảnh báo rò rỉ khí gas";
-            }
+        return EmergencyType.fromTitle(page.getContent().get(0).getTitle()).getResolvedLabel();
+    }
+
+    /**
+     * Notification thuộc về user (row riêng) hoặc dùng chung của home user là thành viên
+     */
+    private Notification findVisibleNotification(Long notificationId, String userId) {
+        Notification notification = notificationRepository.findById(notificationId)
+                .orElseThrow(() -> new AppException(ErrorCode.NOTIFICATION_NOT_FOUND));
+
+        // Verify user owns this notification (or is a member of its home)
+        boolean visible = notification.getUser() != null
+                ? notification.getUser().getId().equals(userId)
+                : notificationRepository.isVisibleTo(notificationId, userId);
+        if (!visible) {
+            throw new AppException(ErrorCode.FORBIDDEN);
+        }
+        return notification;
+    }
+
+    /**
+     * Đánh dấu đã đọc (và ẩn nếu {@code deleted}) các notification dùng chung còn chưa đọc;
+     * trả về số notification vừa chuyển từ chưa đọc. Receipt có sẵn được UPDATE có điều
+     * kiện, notification chưa có receipt được INSERT; mỗi notification chỉ khớp một trong hai.
+     */
+    private int markSharedRead(Collection<Long> ids, String userId, boolean deleted) {
+        return notificationReceiptRepository.markUnreadRead(ids, userId, deleted)
+                + notificationReceiptRepository.insertRead(ids, userId, deleted);
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
         }
-        return "Tình huống khẩn cấp";
+        return value instanceof Number number && number.intValue() != 0;
     }
 
     private NotificationResponse mapToResponse(Notification notification) {
@@ -12,6 +12,8 @@ import com.example.smart_home_system.exception.ErrorCode;
 import com.example.smart_home_system.repository.HomeRepository;
 import com.example.smart_home_system.repository.MCUGatewayRepository;
 import com.example.smart_home_system.repository.RFIDAccessLogRepository;
+import com.example.smart_home_system.security.mcu.MCUApiKeyCache;
+import com.example.smart_home_system.security.mcu.MCUIdentity;
 import com.example.smart_home_system.service.MqttService;
 import com.example.smart_home_system.service.RFIDService;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -42,6 +44,7 @@ public class RFIDServiceImpl implements RFIDService {
     private final MCUGatewayRepository mcuGatewayRepository;
     private final HomeRepository homeRepository;
     private final RFIDAccessLogRepository rfidAccessLogRepository;
+    private final MCUApiKeyCache mcuApiKeyCache;
     private final MqttService mqttService;
     private final com.example.smart_home_system.service.MqttResponseStore mqttResponseStore;
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -187,20 +190,21 @@ public class RFIDServiceImpl implements RFIDService {
 
     @Override
     public void recordAccessLog(String apiKey, RFIDAccessLogRequest request) {
-        // Tìm MCU Gateway bằng API Key
-        MCUGateway mcuGateway = mcuGatewayRepository.findByApiKey(apiKey)
-                .orElseThrow(() -> new AppException(ErrorCode.INVALID_API_KEY));
+        // Tìm MCU Gateway bằng API Key (cache / MCUAuthentication của request)
+        MCUIdentity mcu = mcuApiKeyCache.resolve(apiKey);
+        if (mcu == null) {
+            throw new AppException(ErrorCode.INVALID_API_KEY);
+        }
         
-        Home home = mcuGateway.getHome();
-        if (home == null) {
-            log.warn("MCU Gateway {} has no associated home", mcuGateway.getSerialNumber());
+        if (mcu.homeId() == null) {
+            log.warn("MCU Gateway {} has no associated home", mcu.serialNumber());
             return;
         }
         
-        // Tạo access log record
+        // Tạo access log record (chỉ cần reference cho FK, không load entity)
         RFIDAccessLog accessLog = RFIDAccessLog.builder()
-                .mcuGateway(mcuGateway)
-                .home(home)
+                .mcuGateway(mcuGatewayRepository.getReferenceById(mcu.mcuGatewayId()))
+                .home(homeRepository.getReferenceById(mcu.homeId()))
                 .cardUid(request.getCardUid())
                 .cardName(request.getCardName())
                 .authorized(request.getAuthorized())
@@ -5,6 +5,7 @@ import com.example.smart_home_system.dto.response.RoleResponse;
 import com.example.smart_home_system.entity.Permission;
 import com.example.smart_home_system.entity.Role;
 import com.example.smart_home_system.enums.RoleType;
+import com.example.smart_home_system.event.UserSecurityChangedEvent;
 import com.example.smart_home_system.exception.AppException;
 import com.example.smart_home_system.exception.ErrorCode;
 import com.example.smart_home_system.mapper.RoleMapper;
@@ -14,6 +15,7 @@ import com.example.smart_home_system.repository.UserRepository;
 import com.example.smart_home_system.service.RoleService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -58,6 +60,7 @@ public class RoleServiceImpl implements RoleService {
     private final RoleRepository roleRepository;
     private final PermissionRepository permissionRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
     private final RoleMapper roleMapper;
 
     @Override
@@ -112,6 +115,8 @@ public class RoleServiceImpl implements RoleService {
         role.setPermissions(permissions);
 
         Role updatedRole = roleRepository.save(role);
+        // Authorities của mọi user mang role này đã đổi
+        eventPublisher.publishEvent(UserSecurityChangedEvent.allUsers(UserSecurityChangedEvent.Reason.ROLE_PERMISSIONS));
         return roleMapper.toRoleResponse(updatedRole);
     }
 
@@ -8,6 +8,7 @@ import com.example.smart_home_system.entity.Permission;
 import com.example.smart_home_system.entity.Role;
 import com.example.smart_home_system.entity.User;
 import com.example.smart_home_system.enums.UserStatus;
+import com.example.smart_home_system.event.UserSecurityChangedEvent;
 import com.example.smart_home_system.exception.*;
 import com.example.smart_home_system.mapper.UserMapper;
 import com.example.smart_home_system.repository.RoleRepository;
@@ -17,6 +18,7 @@ import com.example.smart_home_system.util.SecurityUtils;
 import com.example.smart_home_system.validation.UsernameValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -69,6 +71,7 @@ public class UserServiceImpl implements UserService {
     private final RoleRepository roleRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public UserResponse createUser(UserCreationRequest request) {
@@ -222,6 +225,7 @@ public class UserServiceImpl implements UserService {
         if (request.getRoleIds() != null) {
             Set<Role> roles = new HashSet<>(roleRepository.findAllById(request.getRoleIds()));
             user.setRoles(roles);
+            eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.ROLES));
         }
 
         // Update status if provided
@@ -229,6 +233,7 @@ public class UserServiceImpl implements UserService {
             UserStatus newStatus = parseUserStatus(request.getStatus());
             validateStatusChange(user, newStatus);
             user.setStatus(newStatus);
+            eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.STATUS));
         }
 
         User updatedUser = userRepository.save(user);
@@ -253,6 +258,7 @@ public class UserServiceImpl implements UserService {
 
         user.setStatus(userStatus);
         User updateUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.STATUS));
 
         return userMapper.toUserResponse(updateUser);
     }
@@ -274,6 +280,7 @@ public class UserServiceImpl implements UserService {
 
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.PASSWORD));
     }
 
     @Override
@@ -297,6 +304,7 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with ID: " + id));
         validateUserDeletion(user);
         userRepository.delete(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.DELETED));
     }
 
     @Override
@@ -307,6 +315,7 @@ public class UserServiceImpl implements UserService {
 
         user.softDelete();
         userRepository.save(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.DELETED));
     }
 
     @Override
@@ -323,6 +332,7 @@ public class UserServiceImpl implements UserService {
         user.setDeletedAt(null);
         user.setStatus(UserStatus.ACTIVE);
         User restoredUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.STATUS));
 
         log.info("User restored successfully: {}", id);
         return userMapper.toUserResponse(restoredUser);
@@ -341,6 +351,7 @@ public class UserServiceImpl implements UserService {
         user.getRoles().addAll(roles);
 
         User updatedUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.ROLES));
         log.info("Roles assigned to user {}", userId);
         return userMapper.toUserResponse(updatedUser);
     }
@@ -359,6 +370,7 @@ public class UserServiceImpl implements UserService {
 
         user.getRoles().removeAll(rolesToRemove);
         User updatedUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.ROLES));
 
         log.info("Roles removed from user {}", userId);
         return userMapper.toUserResponse(updatedUser);
@@ -419,6 +431,7 @@ public class UserServiceImpl implements UserService {
 
         // 3. Lưu lại
         userRepository.save(user);
+        eventPublisher.publishEvent(UserSecurityChangedEvent.of(user, UserSecurityChangedEvent.Reason.STATUS));
     }
 
     // ============ HELPER METHODS ============
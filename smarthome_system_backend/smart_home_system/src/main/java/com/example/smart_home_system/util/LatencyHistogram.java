@@ -0,0 +1,86 @@
+package com.example.smart_home_system.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram latency (ms) với các bucket cố định, lock-free.
+ *
+ * <p>
+ * Percentile được ước lượng bằng cận trên của bucket chứa nó, đủ để theo dõi xu hướng
+ * trên trang admin mà không cần thêm thư viện metrics.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    // Bucket cuối cùng: > 10000 ms
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumMs = new AtomicLong();
+    private final AtomicLong maxMs = new AtomicLong();
+
+    public void record(long latencyMs) {
+        long value = Math.max(0, latencyMs);
+        int bucket = BOUNDS_MS.length;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            if (value <= BOUNDS_MS[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        counts.incrementAndGet(bucket);
+        total.incrementAndGet();
+        sumMs.addAndGet(value);
+        maxMs.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public double getAvgMs() {
+        long count = total.get();
+        return count > 0 ? (double) sumMs.get() / count : 0;
+    }
+
+    public long getMaxMs() {
+        return maxMs.get();
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return cận trên (ms) của bucket chứa percentile, hoặc max nếu rơi vào bucket cuối
+     */
+    public long percentileMs(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return BOUNDS_MS[i];
+            }
+        }
+        return maxMs.get();
+    }
+
+    /**
+     * Số mẫu theo bucket, key dạng "<=50ms" (bucket rỗng bị bỏ qua)
+     */
+    public Map<String, Long> buckets() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i <= BOUNDS_MS.length; i++) {
+            long c = counts.get(i);
+            if (c > 0) {
+                result.put(i < BOUNDS_MS.length ? "<=" + BOUNDS_MS[i] + "ms" : ">" + BOUNDS_MS[BOUNDS_MS.length - 1] + "ms", c);
+            }
+        }
+        return result;
+    }
+}
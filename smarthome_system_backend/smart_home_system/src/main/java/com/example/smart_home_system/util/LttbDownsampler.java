@@ -0,0 +1,155 @@
+package com.example.smart_home_system.util;
+
+import com.example.smart_home_system.dto.response.MetricPointResponse;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Downsample chuỗi thời gian bằng Largest-Triangle-Three-Buckets (LTTB), dạng streaming.
+ *
+ * <p>
+ * Khoảng [from, to] được chia thành {@code threshold - 2} bucket theo thời gian. Với mỗi
+ * bucket, điểm được giữ là điểm tạo tam giác lớn nhất với điểm đã chọn ở bucket trước và
+ * trung bình của bucket sau, nên các đỉnh/đáy (vd. gas tăng đột biến) được giữ lại thay
+ * vì bị làm phẳng như khi lấy trung bình. Điểm đầu và cuối luôn được giữ.
+ *
+ * <p>
+ * Điểm phải được {@link #add} theo thứ tự thời gian tăng dần. Chỉ giữ tối đa hai bucket
+ * trong bộ nhớ nên có thể dùng trực tiếp trên stream từ DB.
+ */
+public class LttbDownsampler {
+
+    private final int threshold;
+    private final long fromMs;
+    private final long spanMs;
+    private final int bucketCount;
+
+    private final List<MetricPointResponse> selected = new ArrayList<>();
+    private final List<MetricPointResponse> all = new ArrayList<>();
+    private boolean overflowed;
+
+    private MetricPointResponse anchor;
+    private List<MetricPointResponse> pending = new ArrayList<>();
+    private List<MetricPointResponse> filling = new ArrayList<>();
+    private int fillingIndex = -1;
+    private MetricPointResponse last;
+    private long count;
+
+    public LttbDownsampler(LocalDateTime from, LocalDateTime to, int threshold) {
+        this.threshold = Math.max(3, threshold);
+        this.fromMs = toMillis(from);
+        this.spanMs = Math.max(1, toMillis(to) - fromMs);
+        this.bucketCount = this.threshold - 2;
+    }
+
+    public void add(MetricPointResponse point) {
+        count++;
+        // Chừng nào còn ít hơn threshold thì giữ nguyên toàn bộ (không cần downsample)
+        if (!overflowed) {
+            all.add(point);
+            if (all.size() > threshold) {
+                overflowed = true;
+                all.forEach(this::accept);
+                all.clear();
+            }
+            return;
+        }
+        accept(point);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return các điểm đã chọn theo thứ tự thời gian
+     */
+    public List<MetricPointResponse> finish() {
+        if (!overflowed) {
+            return new ArrayList<>(all);
+        }
+        // Điểm cuối cùng là anchor cố định, không tham gia bucket
+        filling.remove(filling.size() - 1);
+
+        if (!pending.isEmpty()) {
+            selectFrom(pending, filling.isEmpty() ? last : average(filling));
+        }
+        if (!filling.isEmpty()) {
+            selectFrom(filling, last);
+        }
+        selected.add(last);
+        return selected;
+    }
+
+    private void accept(MetricPointResponse point) {
+        last = point;
+        if (anchor == null) {
+            anchor = point;
+            selected.add(point);
+            return;
+        }
+
+        int index = bucketOf(point);
+        if (index != fillingIndex && !filling.isEmpty()) {
+            // Bucket đang gom đã đủ: chọn điểm cho bucket trước nó
+            if (!pending.isEmpty()) {
+                selectFrom(pending, average(filling));
+            }
+            pending = filling;
+            filling = new ArrayList<>();
+        }
+        fillingIndex = index;
+        filling.add(point);
+    }
+
+    private void selectFrom(List<MetricPointResponse> bucket, MetricPointResponse next) {
+        double ax = x(anchor);
+        double ay = anchor.getAvg();
+        double cx = x(next);
+        double cy = next.getAvg();
+
+        MetricPointResponse best = bucket.get(0);
+        double bestArea = -1;
+        for (MetricPointResponse p : bucket) {
+            double area = Math.abs((ax - cx) * (p.getAvg() - ay) - (ax - x(p)) * (cy - ay));
+            if (area > bestArea) {
+                bestArea = area;
+                best = p;
+            }
+        }
+        selected.add(best);
+        anchor = best;
+    }
+
+    private MetricPointResponse average(List<MetricPointResponse> bucket) {
+        double sumX = 0;
+        double sumY = 0;
+        for (MetricPointResponse p : bucket) {
+            sumX += x(p);
+            sumY += p.getAvg();
+        }
+        long avgMs = (long) (sumX / bucket.size());
+        return MetricPointResponse.builder()
+                .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(avgMs), ZoneId.systemDefault()))
+                .avg(sumY / bucket.size())
+                .build();
+    }
+
+    private int bucketOf(MetricPointResponse point) {
+        long offset = x(point) - fromMs;
+        int index = (int) (offset * bucketCount / spanMs);
+        return Math.min(Math.max(index, 0), bucketCount - 1);
+    }
+
+    private static long x(MetricPointResponse point) {
+        return toMillis(point.getTimestamp());
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -7,6 +7,11 @@ import lombok.experimental.UtilityClass;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
 @UtilityClass
 public class SecurityUtils {
 
@@ -33,4 +38,17 @@ public class SecurityUtils {
     public static String getCurrentUsername() {
         return getCurrentUserPrincipal().getUsername();
     }
-}
\ No newline at end of file
+
+    /**
+     * Base64(SHA-256) của một secret (JWT, API key) dùng làm key cache, để không giữ
+     * plaintext trong bộ nhớ lâu hơn request
+     */
+    public static String sha256(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.smart_home_system.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Cache LRU có giới hạn, chia thành nhiều segment để các thread không tranh một lock.
+ *
+ * <p>
+ * Mỗi segment là một LinkedHashMap theo thứ tự truy cập với lock riêng; vượt capacity thì
+ * entry ít được dùng nhất của segment bị bỏ (O(1)). Mỗi entry có hạn riêng, entry hết hạn
+ * bị bỏ khi được đọc tới hoặc khi bị LRU đẩy ra, nên không cần thread dọn định kỳ.
+ *
+ * <p>
+ * Mọi lần xóa đều tăng {@code generation}. Caller load từ nguồn chậm đọc generation trước
+ * khi load và ghi bằng {@link #put(Object, Object, long, long)}: nếu có lần xóa xen giữa,
+ * giá trị (có thể đã cũ) không được ghi vào cache.
+ */
+public class SegmentedLruCache<K, V> {
+
+    private final Segment<K, V>[] segments;
+    private final int maxSize;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(int maxSize, int segmentCount) {
+        int count = Math.max(1, Math.min(segmentCount, maxSize));
+        int perSegment = Math.max(1, (maxSize + count - 1) / count);
+        this.maxSize = maxSize;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(perSegment, generation, evictions, expirations);
+        }
+    }
+
+    /**
+     * @return giá trị còn hạn tại {@code now}, null nếu không có hoặc đã hết hạn
+     */
+    public V get(K key, long now) {
+        return segmentFor(key).get(key, now);
+    }
+
+    public void put(K key, V value, long expiresAtMs) {
+        segmentFor(key).put(key, new Entry<>(value, expiresAtMs), -1);
+    }
+
+    /**
+     * Ghi nếu không có lần xóa nào kể từ khi caller đọc {@code startGeneration}
+     *
+     * @return false nếu giá trị không được ghi
+     */
+    public boolean put(K key, V value, long expiresAtMs, long startGeneration) {
+        return segmentFor(key).put(key, new Entry<>(value, expiresAtMs), startGeneration);
+    }
+
+    public boolean remove(K key) {
+        return segmentFor(key).remove(key);
+    }
+
+    /**
+     * Xóa mọi entry có giá trị thỏa {@code filter} (duyệt toàn bộ cache)
+     *
+     * @return số entry bị xóa
+     */
+    public int removeIf(Predicate<V> filter) {
+        int removed = 0;
+        for (Segment<K, V> segment : segments) {
+            removed += segment.removeIf(filter);
+        }
+        return removed;
+    }
+
+    /**
+     * @return số entry bị xóa
+     */
+    public int clear() {
+        return removeIf(value -> true);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[Math.floorMod(h, segments.length)];
+    }
+
+    private record Entry<V>(V value, long expiresAtMs) {
+    }
+
+    private static final class Segment<K, V> {
+        private final LinkedHashMap<K, Entry<V>> map;
+        private final AtomicLong generation;
+        private final AtomicLong expirations;
+
+        Segment(int capacity, AtomicLong generation, AtomicLong evictions, AtomicLong expirations) {
+            this.generation = generation;
+            this.expirations = expirations;
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    if (eldest.getValue().expiresAtMs() <= System.currentTimeMillis()) {
+                        expirations.incrementAndGet();
+                    } else {
+                        evictions.incrementAndGet();
+                    }
+                    return true;
+                }
+            };
+        }
+
+        synchronized V get(K key, long now) {
+            Entry<V> entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtMs() <= now) {
+                map.remove(key);
+                expirations.incrementAndGet();
+                return null;
+            }
+            return entry.value();
+        }
+
+        synchronized boolean put(K key, Entry<V> entry, long startGeneration) {
+            // Kiểm tra trong lock: xóa tăng generation trước khi xóa entry (cũng trong lock)
+            if (startGeneration >= 0 && generation.get() != startGeneration) {
+                return false;
+            }
+            map.put(key, entry);
+            return true;
+        }
+
+        synchronized boolean remove(K key) {
+            generation.incrementAndGet();
+            return map.remove(key) != null;
+        }
+
+        synchronized int removeIf(Predicate<V> filter) {
+            generation.incrementAndGet();
+            int removed = 0;
+            Iterator<Entry<V>> it = map.values().iterator();
+            while (it.hasNext()) {
+                if (filter.test(it.next().value())) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.smart_home_system.util;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Chạy việc cập nhật bộ nhớ / push realtime theo kết quả của transaction hiện tại.
+ * Không có transaction (hoặc synchronization chưa bật) thì chạy ngay, như đã commit.
+ */
+@UtilityClass
+public class TransactionUtils {
+
+    /**
+     * Chạy {@code action} sau khi transaction hiện tại commit; không chạy nếu rollback
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Chạy {@code action} khi transaction hiện tại kết thúc, commit hay rollback, với trạng
+     * thái {@link TransactionSynchronization#STATUS_COMMITTED} /
+     * {@link TransactionSynchronization#STATUS_ROLLED_BACK} /
+     * {@link TransactionSynchronization#STATUS_UNKNOWN}
+     */
+    public static void afterCompletion(IntConsumer action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(TransactionSynchronization.STATUS_COMMITTED);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status);
+            }
+        });
+    }
+}
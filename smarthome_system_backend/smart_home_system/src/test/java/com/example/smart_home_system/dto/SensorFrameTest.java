@@ -0,0 +1,45 @@
+package com.example.smart_home_system.dto;
+
+import com.example.smart_home_system.enums.SensorKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorFrameTest {
+
+    @Test
+    void parsesNumbersFlagsAndPresence() throws IOException {
+        String json = "{\"tempIn\": 25.5, \"gas\": 500, \"flame\": true, \"door\": false, \"ipAddress\": \"10.0.0.7\"}";
+
+        SensorFrame frame = SensorFrame.parse(json);
+
+        assertEquals(25.5, frame.getTempIn());
+        assertEquals(500, frame.getGas());
+        assertTrue(frame.isFlame());
+        assertTrue(frame.has(SensorKey.DOOR));
+        assertFalse(frame.isDoor());
+        assertFalse(frame.has(SensorKey.HUM_IN));
+        assertEquals("10.0.0.7", frame.getIpAddress());
+        assertEquals(json, frame.getRawJson());
+        assertEquals(1.0, frame.numericValue(SensorKey.FLAME));
+    }
+
+    @Test
+    void skipsUnknownKeysNestedValuesAndNulls() throws IOException {
+        SensorFrame frame = SensorFrame.parse(
+                "{\"firmware\": {\"tempIn\": 99}, \"list\": [1, 2], \"humIn\": null, \"tempIn\": 20}");
+
+        assertEquals(20.0, frame.getTempIn());
+        assertFalse(frame.has(SensorKey.HUM_IN));
+    }
+
+    @Test
+    void rejectsNonObjectPayload() {
+        assertThrows(IOException.class, () -> SensorFrame.parse("[1, 2, 3]"));
+    }
+}
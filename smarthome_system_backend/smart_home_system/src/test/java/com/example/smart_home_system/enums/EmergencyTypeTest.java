@@ -0,0 +1,29 @@
+package com.example.smart_home_system.enums;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmergencyTypeTest {
+
+    @Test
+    void fromTitleReadsStoredNotificationTitles() {
+        assertEquals(EmergencyType.FIRE, EmergencyType.fromTitle("🚨 PHÁT HIỆN LỬA!"));
+        assertEquals(EmergencyType.GAS, EmergencyType.fromTitle("⚠️ RÒ RỈ KHÍ GAS!"));
+        assertEquals(EmergencyType.BOTH, EmergencyType.fromTitle("🚨 KHẨN CẤP: LỬA VÀ KHÍ GAS!"));
+    }
+
+    @Test
+    void fromTitleFallsBackToUnknown() {
+        assertEquals(EmergencyType.UNKNOWN, EmergencyType.fromTitle(null));
+        assertEquals(EmergencyType.UNKNOWN, EmergencyType.fromTitle("Khẩn cấp"));
+    }
+
+    @Test
+    void ofCombinesFlags() {
+        assertEquals(EmergencyType.BOTH, EmergencyType.of(true, true));
+        assertEquals(EmergencyType.FIRE, EmergencyType.of(true, false));
+        assertEquals(EmergencyType.GAS, EmergencyType.of(false, true));
+        assertEquals(EmergencyType.UNKNOWN, EmergencyType.of(false, false));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.smart_home_system.enums;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MetricResolutionTest {
+
+    @Test
+    void coarsestForPicksLargestBucketNotAboveStep() {
+        assertEquals(MetricResolution.RAW, MetricResolution.coarsestFor(Duration.ofSeconds(30)));
+        assertEquals(MetricResolution.MINUTE, MetricResolution.coarsestFor(Duration.ofMinutes(1)));
+        assertEquals(MetricResolution.MINUTE, MetricResolution.coarsestFor(Duration.ofMinutes(59)));
+        assertEquals(MetricResolution.HOUR, MetricResolution.coarsestFor(Duration.ofHours(1)));
+        assertEquals(MetricResolution.DAY, MetricResolution.coarsestFor(Duration.ofDays(2)));
+    }
+
+    @Test
+    void bucketStartTruncatesToResolution() {
+        LocalDateTime time = LocalDateTime.of(2025, 3, 4, 5, 6, 7);
+
+        assertEquals(time, MetricResolution.RAW.bucketStart(time));
+        assertEquals(LocalDateTime.of(2025, 3, 4, 5, 6), MetricResolution.MINUTE.bucketStart(time));
+        assertEquals(LocalDateTime.of(2025, 3, 4, 5, 0), MetricResolution.HOUR.bucketStart(time));
+        assertEquals(LocalDateTime.of(2025, 3, 4, 0, 0), MetricResolution.DAY.bucketStart(time));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.smart_home_system.security.jwt;
+
+import com.example.smart_home_system.dto.CustomUserDetails;
+import com.example.smart_home_system.event.UserSecurityChangedEvent;
+import com.example.smart_home_system.security.service.TokenVersionStore;
+import com.example.smart_home_system.security.service.UserDetailsCache;
+import com.nimbusds.jose.JOSEException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "test-secret-key-that-is-long-enough-for-hs512-signing-0123456789";
+
+    private TokenVersionStore tokenVersionStore;
+    private JwtTokenProvider provider;
+
+    @BeforeEach
+    void setUp() throws JOSEException {
+        UserDetailsCache userDetailsCache = new UserDetailsCache();
+        userDetailsCache.init();
+        tokenVersionStore = new TokenVersionStore(new NoOpJdbcTemplate(), userDetailsCache);
+        provider = newProvider(3600);
+    }
+
+    @Test
+    void verifyReturnsClaimsAndCachesVerifiedToken() {
+        String token = provider.generateToken(authentication("u1", "alice"));
+
+        JwtTokenProvider.VerifiedToken verified = provider.verify(token);
+
+        assertNotNull(verified);
+        assertEquals("alice", verified.username());
+        assertEquals("u1", verified.userId());
+        assertTrue(verified.authorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
+        assertSame(verified, provider.verify(token));
+    }
+
+    @Test
+    void verifiedCacheEvictsLeastRecentlyUsedToken() throws JOSEException {
+        JwtTokenProvider small = newProvider(3600, 2, 1);
+        String first = small.generateToken(authentication("u1", "alice"));
+        String second = small.generateToken(authentication("u2", "bob"));
+        String third = small.generateToken(authentication("u3", "carol"));
+
+        JwtTokenProvider.VerifiedToken firstVerified = small.verify(first);
+        JwtTokenProvider.VerifiedToken secondVerified = small.verify(second);
+        // Dùng lại token đầu: token thứ hai thành entry ít được dùng nhất
+        assertSame(firstVerified, small.verify(first));
+        small.verify(third);
+
+        assertSame(firstVerified, small.verify(first));
+        JwtTokenProvider.VerifiedToken secondAgain = small.verify(second);
+        assertNotSame(secondVerified, secondAgain);
+        assertEquals("bob", secondAgain.username());
+    }
+
+    @Test
+    void verifyRejectsForeignSignatureAndExpiredToken() throws JOSEException {
+        String alice = provider.generateToken(authentication("u1", "alice"));
+        String bob = provider.generateToken(authentication("u2", "bob"));
+        String forged = alice.substring(0, alice.lastIndexOf('.')) + bob.substring(bob.lastIndexOf('.'));
+
+        assertNull(provider.verify(forged));
+        assertNull(provider.verify("not-a-jwt"));
+
+        JwtTokenProvider expiring = newProvider(-1);
+        assertNull(expiring.verify(expiring.generateToken(authentication("u1", "alice"))));
+    }
+
+    @Test
+    void securityChangeRevokesIssuedToken() {
+        JwtTokenProvider.VerifiedToken before = provider.verify(
+                provider.generateToken(authentication("u1", "alice")));
+
+        tokenVersionStore.onUserSecurityChanged(
+                new UserSecurityChangedEvent("u1", "alice", UserSecurityChangedEvent.Reason.STATUS));
+
+        // Chữ ký vẫn hợp lệ: thu hồi được quyết định bằng phiên bản token
+        assertTrue(tokenVersionStore.isRevoked("u1", before.version()));
+        JwtTokenProvider.VerifiedToken after = provider.verify(
+                provider.generateToken(authentication("u1", "alice")));
+        assertTrue(tokenVersionStore.isCurrent("u1", after.version()));
+    }
+
+    private JwtTokenProvider newProvider(long expirationSeconds) throws JOSEException {
+        return newProvider(expirationSeconds, 10000, 16);
+    }
+
+    private JwtTokenProvider newProvider(long expirationSeconds, int cacheSize, int cacheSegments)
+            throws JOSEException {
+        JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(tokenVersionStore);
+        ReflectionTestUtils.setField(jwtTokenProvider, "SIGNER_KEY", SECRET);
+        ReflectionTestUtils.setField(jwtTokenProvider, "EXPIRATION_TIME", expirationSeconds);
+        ReflectionTestUtils.setField(jwtTokenProvider, "verifiedCacheMaxSize", cacheSize);
+        ReflectionTestUtils.setField(jwtTokenProvider, "verifiedCacheSegments", cacheSegments);
+        jwtTokenProvider.init();
+        return jwtTokenProvider;
+    }
+
+    private static UsernamePasswordAuthenticationToken authentication(String userId, String username) {
+        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        CustomUserDetails principal = new CustomUserDetails(userId, username, authorities);
+        return new UsernamePasswordAuthenticationToken(principal, null, authorities);
+    }
+
+    private static final class NoOpJdbcTemplate extends JdbcTemplate {
+        @Override
+        public int update(String sql, Object... args) {
+            return 1;
+        }
+    }
+}
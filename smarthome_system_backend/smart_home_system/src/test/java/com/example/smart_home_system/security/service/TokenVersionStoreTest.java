@@ -0,0 +1,156 @@
+package com.example.smart_home_system.security.service;
+
+import com.example.smart_home_system.event.UserSecurityChangedEvent;
+import com.example.smart_home_system.event.UserSecurityChangedEvent.Reason;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenVersionStoreTest {
+
+    private final VersionTable table = new VersionTable();
+    private TokenVersionStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = newNode();
+    }
+
+    @Test
+    void tokenIssuedAtCurrentVersionIsValid() {
+        long version = store.current("u1");
+
+        assertTrue(store.isCurrent("u1", version));
+        assertFalse(store.isRevoked("u1", version));
+    }
+
+    @Test
+    void userChangeRevokesOnlyThatUsersOlderTokens() {
+        long u1Token = store.current("u1");
+        long u2Token = store.current("u2");
+
+        store.onUserSecurityChanged(new UserSecurityChangedEvent("u1", "alice", Reason.PASSWORD));
+
+        assertTrue(store.isRevoked("u1", u1Token));
+        assertFalse(store.isCurrent("u1", u1Token));
+        assertFalse(store.isRevoked("u2", u2Token));
+        assertTrue(store.isCurrent("u2", u2Token));
+
+        long reissued = store.current("u1");
+        assertTrue(store.isCurrent("u1", reissued));
+        assertFalse(store.isRevoked("u1", reissued));
+    }
+
+    @Test
+    void rolePermissionChangeStalesEveryTokenWithoutRevokingIt() {
+        long token = store.current("u1");
+
+        store.onUserSecurityChanged(UserSecurityChangedEvent.allUsers(Reason.ROLE_PERMISSIONS));
+
+        assertFalse(store.isCurrent("u1", token));
+        assertFalse(store.isRevoked("u1", token));
+    }
+
+    @Test
+    void bumpIsPersistedAndSyncedToOtherNodes() {
+        TokenVersionStore other = newNode();
+        long token = other.current("u1");
+        awaitClockPast(token);
+
+        store.onUserSecurityChanged(new UserSecurityChangedEvent("u1", "alice", Reason.LOGOUT));
+        assertEquals(store.current("u1"), table.userVersions.get("u1"));
+        assertFalse(other.isRevoked("u1", token));
+
+        other.syncFromDatabase();
+
+        assertTrue(other.isRevoked("u1", token));
+    }
+
+    @Test
+    void persistedVersionReadOnLoadRevokesOlderToken() {
+        TokenVersionStore other = newNode();
+        long token = other.current("u1");
+        awaitClockPast(token);
+        store.onUserSecurityChanged(new UserSecurityChangedEvent("u1", "alice", Reason.STATUS));
+
+        assertTrue(other.observe("u1", table.userVersions.get("u1")));
+
+        assertTrue(other.isRevoked("u1", token));
+        assertFalse(other.isRevoked("u1", other.current("u1")));
+    }
+
+    // Phiên bản là mốc ms: hai node khởi tạo trong cùng ms có thể cho cùng giá trị
+    private static void awaitClockPast(long version) {
+        while (System.currentTimeMillis() <= version) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private TokenVersionStore newNode() {
+        UserDetailsCache cache = new UserDetailsCache();
+        cache.init();
+        return new TokenVersionStore(table, cache);
+    }
+
+    /**
+     * users.token_version / roles.permissions_version dùng chung giữa các node
+     */
+    private static final class VersionTable extends JdbcTemplate {
+        final Map<String, Long> userVersions = new ConcurrentHashMap<>();
+        long globalVersion;
+
+        @Override
+        public int update(String sql, Object... args) {
+            long version = (Long) args[0];
+            if (sql.startsWith("UPDATE roles")) {
+                globalVersion = Math.max(globalVersion, version);
+            } else {
+                userVersions.merge((String) args[1], version, Math::max);
+            }
+            return 1;
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            long since = (Long) args[0];
+            List<T> rows = new ArrayList<>();
+            try {
+                for (Map.Entry<String, Long> entry : userVersions.entrySet()) {
+                    if (entry.getValue() > since) {
+                        rows.add(rowMapper.mapRow(row(entry.getKey(), entry.getValue()), rows.size()));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return rows;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            return requiredType.cast(globalVersion);
+        }
+
+        private static ResultSet row(String userId, long version) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getString" -> (Integer) args[0] == 1 ? userId : "user-" + userId;
+                        case "getLong" -> version;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
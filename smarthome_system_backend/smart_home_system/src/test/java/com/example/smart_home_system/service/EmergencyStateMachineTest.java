@@ -0,0 +1,120 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.dto.SensorFrame;
+import com.example.smart_home_system.entity.MCUGateway;
+import com.example.smart_home_system.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class EmergencyStateMachineTest {
+
+    private static final Long HOME_ID = 1L;
+
+    private NotificationService notificationService;
+    private RealtimeEventBus realtimeEventBus;
+    private EmergencyStateMachine stateMachine;
+    private MCUGateway mcu;
+
+    @BeforeEach
+    void setUp() {
+        notificationService = mock(NotificationService.class);
+        realtimeEventBus = mock(RealtimeEventBus.class);
+        stateMachine = new EmergencyStateMachine(notificationService, mock(NotificationRepository.class),
+                realtimeEventBus);
+        mcu = new MCUGateway();
+        mcu.setApiKey("api-key");
+    }
+
+    @Test
+    void activatesOnceForRepeatedEmergencyFrames() throws IOException {
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyFire\":true}"));
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyFire\":true}"));
+
+        assertEquals(EmergencyStateMachine.State.ACTIVE, stateMachine.getState(HOME_ID));
+        verify(notificationService, times(1)).createEmergencyNotification(
+                eq("api-key"), eq("FIRE"), eq(true), any(), anyString(), anyLong());
+        verify(realtimeEventBus, times(1)).publish(eq("/topic/home/1/emergency"), any());
+    }
+
+    @Test
+    void escalatesWhenNewEmergencyTypeAppears() throws IOException {
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyFire\":true}"));
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyGas\":true}"));
+
+        verify(notificationService).createEmergencyNotification(
+                eq("api-key"), eq("BOTH"), eq(true), any(), anyString(), anyLong());
+    }
+
+    @Test
+    void clearsOnlyOnExplicitNonEmergencyFrame() throws IOException {
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyGas\":true}"));
+
+        // Frame không có key emergency không giải quyết tình huống
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"tempIn\":25}"));
+        assertEquals(EmergencyStateMachine.State.ACTIVE, stateMachine.getState(HOME_ID));
+
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":false}"));
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":false}"));
+
+        assertEquals(EmergencyStateMachine.State.CLEARED, stateMachine.getState(HOME_ID));
+        verify(notificationService, times(1)).createEmergencyNotification(
+                eq("api-key"), eq("CLEARED"), eq(false), any(), anyString(), anyLong());
+    }
+
+    @Test
+    void normalFramesDoNotNotify() throws IOException {
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":false,\"gasAlert\":true}"));
+
+        assertEquals(EmergencyStateMachine.State.NORMAL, stateMachine.getState(HOME_ID));
+        verify(notificationService, never()).createEmergencyNotification(
+                any(), any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void rollsBackWhenNotificationFailsSoNextFrameRetries() throws IOException {
+        doThrow(new IllegalStateException("mail server down")).doNothing()
+                .when(notificationService).createEmergencyNotification(
+                        any(), any(), any(), any(), any(), anyLong());
+
+        assertThrows(IllegalStateException.class,
+                () -> stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyFire\":true}")));
+        assertEquals(EmergencyStateMachine.State.NORMAL, stateMachine.getState(HOME_ID));
+
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyFire\":true}"));
+
+        assertEquals(EmergencyStateMachine.State.ACTIVE, stateMachine.getState(HOME_ID));
+        verify(notificationService, times(2)).createEmergencyNotification(
+                eq("api-key"), eq("FIRE"), eq(true), any(), anyString(), anyLong());
+    }
+
+    @Test
+    void keepsStateWhenOnlyRealtimePublishFails() throws IOException {
+        doThrow(new IllegalStateException("broker down")).doNothing()
+                .when(realtimeEventBus).publish(any(), any());
+
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyFire\":true}"));
+        stateMachine.onFrame(HOME_ID, mcu, frame("{\"emergency\":true,\"emergencyFire\":true}"));
+
+        assertEquals(EmergencyStateMachine.State.ACTIVE, stateMachine.getState(HOME_ID));
+        verify(notificationService, times(1)).createEmergencyNotification(
+                eq("api-key"), eq("FIRE"), eq(true), any(), anyString(), anyLong());
+    }
+
+    private static SensorFrame frame(String json) throws IOException {
+        return SensorFrame.parse(json);
+    }
+}
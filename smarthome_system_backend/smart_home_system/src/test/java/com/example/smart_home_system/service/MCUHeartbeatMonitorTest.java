@@ -0,0 +1,138 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.enums.MCUStatus;
+import com.example.smart_home_system.repository.MCUGatewayRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MCUHeartbeatMonitorTest {
+
+    private static final long TIMEOUT_MS = 150;
+
+    private MCUGatewayRepository mcuGatewayRepository;
+    private RealtimeEventBus realtimeEventBus;
+    private RecordingJdbcTemplate jdbcTemplate;
+    private ThreadPoolTaskScheduler taskScheduler;
+    private MCUHeartbeatMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        mcuGatewayRepository = mock(MCUGatewayRepository.class);
+        realtimeEventBus = mock(RealtimeEventBus.class);
+        jdbcTemplate = new RecordingJdbcTemplate();
+        when(mcuGatewayRepository.findByStatus(MCUStatus.ONLINE)).thenReturn(List.of());
+
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.initialize();
+
+        monitor = new MCUHeartbeatMonitor(mcuGatewayRepository, realtimeEventBus, jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), taskScheduler);
+        ReflectionTestUtils.setField(monitor, "timeoutMs", TIMEOUT_MS);
+        // Wheel được quay bằng tay trong test: tick dài để timer không tự chạy
+        ReflectionTestUtils.setField(monitor, "tickMs", 3_600_000L);
+        ReflectionTestUtils.setField(monitor, "wheelSize", 512);
+        ReflectionTestUtils.setField(monitor, "persistIntervalMs", 60_000L);
+        monitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    void marksMcuOfflineAfterTimeout() throws InterruptedException {
+        assertTrue(monitor.beat(10L, 7L));
+        assertFalse(monitor.beat(10L, 7L));
+        monitor.advance();
+
+        Thread.sleep(TIMEOUT_MS + 50);
+        monitor.advance();
+
+        assertEquals(0, monitor.getTrackedCount());
+        verify(mcuGatewayRepository).updateStatusByIds(List.of(10L), MCUStatus.ONLINE, MCUStatus.OFFLINE);
+        verify(realtimeEventBus).publish("/topic/home/7/status", "offline");
+        // lastHeartbeat cuối cùng được ghi trước khi chuyển OFFLINE
+        assertEquals(1, jdbcTemplate.rows.size());
+        assertEquals(10L, jdbcTemplate.rows.get(0)[1]);
+    }
+
+    @Test
+    void heartbeatBeforeDeadlineKeepsMcuOnline() throws InterruptedException {
+        monitor.beat(10L, 7L);
+        monitor.advance();
+
+        Thread.sleep(TIMEOUT_MS / 2);
+        monitor.beat(10L, 7L);
+        Thread.sleep(TIMEOUT_MS / 2 + 20);
+        monitor.advance();
+
+        assertEquals(1, monitor.getTrackedCount());
+        verify(realtimeEventBus, never()).publish(any(), any());
+    }
+
+    @Test
+    void forgottenMcuIsNotMarkedOffline() throws InterruptedException {
+        monitor.beat(10L, 7L);
+        monitor.advance();
+        monitor.forget(10L);
+
+        Thread.sleep(TIMEOUT_MS + 50);
+        monitor.advance();
+
+        verify(realtimeEventBus, never()).publish(any(), any());
+    }
+
+    @Test
+    void failedOfflineUpdateIsRetriedOnNextTick() throws InterruptedException {
+        when(mcuGatewayRepository.updateStatusByIds(List.of(10L), MCUStatus.ONLINE, MCUStatus.OFFLINE))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(1);
+        monitor.beat(10L, 7L);
+        monitor.advance();
+
+        Thread.sleep(TIMEOUT_MS + 50);
+        assertThrows(IllegalStateException.class, monitor::advance);
+
+        assertEquals(1, monitor.getTrackedCount());
+        verify(realtimeEventBus, never()).publish(any(), any());
+
+        monitor.advance();
+
+        assertEquals(0, monitor.getTrackedCount());
+        verify(realtimeEventBus).publish("/topic/home/7/status", "offline");
+    }
+
+    /**
+     * Ghi lại các batch UPDATE last_heartbeat thay vì chạy trên DB
+     */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        final List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            rows.addAll(batchArgs);
+            return new int[batchArgs.size()];
+        }
+    }
+}
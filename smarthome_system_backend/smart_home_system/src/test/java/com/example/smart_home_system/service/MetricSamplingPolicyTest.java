@@ -0,0 +1,56 @@
+package com.example.smart_home_system.service;
+
+import com.example.smart_home_system.enums.SensorKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricSamplingPolicyTest {
+
+    private MetricSamplingPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        policy = new MetricSamplingPolicy();
+        ReflectionTestUtils.setField(policy, "deadbands", Map.of("tempIn", 0.2));
+        ReflectionTestUtils.setField(policy, "maxSilenceOverrides", Map.of());
+        ReflectionTestUtils.setField(policy, "defaultDeadband", 0.5);
+        ReflectionTestUtils.setField(policy, "maxSilenceMs", 60_000L);
+    }
+
+    @Test
+    void keepsFirstValueAndValuesOutsideDeadband() {
+        assertTrue(policy.shouldKeep(1L, SensorKey.TEMP_IN, 0, 25.0));
+        assertFalse(policy.shouldKeep(1L, SensorKey.TEMP_IN, 1_000, 25.1));
+        assertTrue(policy.shouldKeep(1L, SensorKey.TEMP_IN, 2_000, 25.3));
+        // So với giá trị đã giữ gần nhất (25.3), không phải frame trước
+        assertFalse(policy.shouldKeep(1L, SensorKey.TEMP_IN, 3_000, 25.2));
+    }
+
+    @Test
+    void keepsValueAfterMaxSilenceOrWhenClockGoesBack() {
+        assertTrue(policy.shouldKeep(1L, SensorKey.TEMP_IN, 100_000, 25.0));
+        assertFalse(policy.shouldKeep(1L, SensorKey.TEMP_IN, 159_999, 25.0));
+        assertTrue(policy.shouldKeep(1L, SensorKey.TEMP_IN, 160_000, 25.0));
+        assertTrue(policy.shouldKeep(1L, SensorKey.TEMP_IN, 10_000, 25.0));
+    }
+
+    @Test
+    void tracksSeriesPerDeviceAndCountsDecisions() {
+        assertTrue(policy.shouldKeep(1L, SensorKey.TEMP_IN, 0, 25.0));
+        assertTrue(policy.shouldKeep(2L, SensorKey.TEMP_IN, 0, 25.0));
+        // Key boolean dùng deadband mặc định 0.5: mọi lần đổi trạng thái đều được giữ
+        assertTrue(policy.shouldKeep(1L, SensorKey.FLAME, 0, 0));
+        assertTrue(policy.shouldKeep(1L, SensorKey.FLAME, 1, 1));
+        assertFalse(policy.shouldKeep(1L, SensorKey.FLAME, 2, 1));
+
+        assertEquals(4, policy.getStats().getKept());
+        assertEquals(1, policy.getStats().getDropped());
+    }
+}
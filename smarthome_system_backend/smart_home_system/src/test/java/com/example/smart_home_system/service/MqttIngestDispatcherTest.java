@@ -0,0 +1,37 @@
+package com.example.smart_home_system.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MqttIngestDispatcherTest {
+
+    @Test
+    void parseHomeIdReadsSecondTopicLevel() {
+        assertEquals(42, MqttIngestDispatcher.parseHomeId("smarthome/42/sensors"));
+        assertEquals(7, MqttIngestDispatcher.parseHomeId("smarthome/7/rfid/access"));
+        assertEquals(-1, MqttIngestDispatcher.parseHomeId("smarthome/abc/sensors"));
+        assertEquals(-1, MqttIngestDispatcher.parseHomeId("smarthome//sensors"));
+        assertEquals(-1, MqttIngestDispatcher.parseHomeId("smarthome"));
+        assertEquals(-1, MqttIngestDispatcher.parseHomeId(null));
+    }
+
+    @Test
+    void onlyPlainSensorFramesAreSheddable() {
+        assertTrue(MqttIngestDispatcher.isSheddable("smarthome/1/sensors", "{\"tempIn\":25,\"emergency\":false}"));
+        assertFalse(MqttIngestDispatcher.isSheddable("smarthome/1/sensors", "{\"emergency\": true}"));
+        assertFalse(MqttIngestDispatcher.isSheddable("smarthome/1/status", "online"));
+        assertFalse(MqttIngestDispatcher.isSheddable("smarthome/1/rfid/access", "{}"));
+    }
+
+    @Test
+    void emergencyFramesAndRfidAccessArePriority() {
+        assertTrue(MqttIngestDispatcher.isPriority("smarthome/1/sensors", "{\"emergencyGas\" : true}"));
+        assertTrue(MqttIngestDispatcher.isPriority("smarthome/1/rfid/access", "{\"uid\":\"AB\"}"));
+        assertFalse(MqttIngestDispatcher.isPriority("smarthome/1/sensors", "{\"emergencyFire\":false}"));
+        assertFalse(MqttIngestDispatcher.isPriority("smarthome/1/status", "{\"emergency\":true}"));
+        assertFalse(MqttIngestDispatcher.isPriority(null, "{}"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.smart_home_system.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.percentileMs(99));
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    void percentileIsUpperBoundOfBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(150);
+        }
+
+        assertEquals(5, histogram.percentileMs(50));
+        assertEquals(5, histogram.percentileMs(90));
+        assertEquals(200, histogram.percentileMs(95));
+        assertEquals(150, histogram.getMaxMs());
+    }
+
+    @Test
+    void percentileBeyondLastBoundReturnsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1);
+        histogram.record(42_000);
+
+        assertEquals(42_000, histogram.percentileMs(100));
+        assertEquals(1L, histogram.buckets().get(">10000ms"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.smart_home_system.util;
+
+import com.example.smart_home_system.dto.response.MetricPointResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LttbDownsamplerTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Test
+    void keepsEveryPointWhenBelowThreshold() {
+        LttbDownsampler downsampler = new LttbDownsampler(FROM, FROM.plusMinutes(5), 10);
+        for (int i = 0; i < 5; i++) {
+            downsampler.add(point(i, i));
+        }
+
+        List<MetricPointResponse> selected = downsampler.finish();
+
+        assertEquals(5, selected.size());
+        assertEquals(5, downsampler.getCount());
+    }
+
+    @Test
+    void keepsFirstAndLastPointAndOnePointPerBucket() {
+        int threshold = 20;
+        LttbDownsampler downsampler = new LttbDownsampler(FROM, FROM.plusMinutes(999), threshold);
+        for (int i = 0; i < 1000; i++) {
+            downsampler.add(point(i, Math.sin(i / 10.0)));
+        }
+
+        List<MetricPointResponse> selected = downsampler.finish();
+
+        assertEquals(threshold, selected.size());
+        assertEquals(FROM, selected.get(0).getTimestamp());
+        assertEquals(FROM.plusMinutes(999), selected.get(selected.size() - 1).getTimestamp());
+        for (int i = 1; i < selected.size(); i++) {
+            assertTrue(selected.get(i).getTimestamp().isAfter(selected.get(i - 1).getTimestamp()));
+        }
+    }
+
+    @Test
+    void keepsSpikeThatAveragingWouldFlatten() {
+        LttbDownsampler downsampler = new LttbDownsampler(FROM, FROM.plusMinutes(299), 10);
+        for (int i = 0; i < 300; i++) {
+            downsampler.add(point(i, i == 137 ? 900 : 100));
+        }
+
+        List<MetricPointResponse> selected = downsampler.finish();
+
+        assertTrue(selected.stream().anyMatch(p -> p.getAvg() == 900),
+                "spike should be selected for its bucket");
+    }
+
+    private static MetricPointResponse point(int minute, double value) {
+        return new MetricPointResponse(FROM.plusMinutes(minute), value, value, value, 1L);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.smart_home_system.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SegmentedLruCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(2, 1);
+        cache.put("a", "A", Long.MAX_VALUE);
+        cache.put("b", "B", Long.MAX_VALUE);
+        cache.get("a", 0);
+        cache.put("c", "C", Long.MAX_VALUE);
+
+        assertEquals("A", cache.get("a", 0));
+        assertNull(cache.get("b", 0));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void expiredEntryIsDroppedOnRead() {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(10, 4);
+        cache.put("a", "A", 100);
+
+        assertEquals("A", cache.get("a", 99));
+        assertNull(cache.get("a", 100));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    void putIsSkippedAfterConcurrentRemove() {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(10, 4);
+        long startGeneration = cache.generation();
+        cache.remove("a");
+
+        assertFalse(cache.put("a", "stale", Long.MAX_VALUE, startGeneration));
+        assertNull(cache.get("a", 0));
+    }
+
+    @Test
+    void removeIfCountsMatchingEntries() {
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(100, 8);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i, Long.MAX_VALUE);
+        }
+
+        assertEquals(5, cache.removeIf(value -> value % 2 == 0));
+        assertEquals(5, cache.clear());
+        assertEquals(0, cache.size());
+    }
+}